@@ -65,6 +65,13 @@ public class GenerateMojo extends AbstractMojo {
     @Parameter(defaultValue = "false")
     private boolean decimal;
 
+    /**
+     * Enable fixed-point decimal representation (long mantissa and scale).
+     * Takes precedence over decimal.
+     */
+    @Parameter(defaultValue = "false")
+    private boolean fixedDecimal;
+
     /**
      * Enable BigDecimal representation.
      */
@@ -141,6 +148,7 @@ public class GenerateMojo extends AbstractMojo {
             task.setOverwrite(true);
             task.setOrderedFields(orderedFields);
             task.setDecimalGenerated(decimal);
+            task.setFixedDecimalGenerated(fixedDecimal);
             task.setValidate(validate);
 
             generator.generate(task);
@@ -161,7 +161,10 @@ public class MessageCodeGenerator {
                     Map<String, String> parameters = new HashMap<String, String>();
                     parameters.put("fieldName", fieldName);
                     parameters.put("fieldPackage", task.getFieldPackage());
-                    if (task.isDecimalGenerated()) {
+                    if (task.isFixedDecimalGenerated()) {
+                        parameters.put("decimalType", "java.math.BigDecimal");
+                        parameters.put("decimalConverter", "FixedDecimal");
+                    } else if (task.isDecimalGenerated()) {
                         parameters.put("decimalType", "java.math.BigDecimal");
                         parameters.put("decimalConverter", "Decimal");
                     }
@@ -460,6 +463,8 @@ public class MessageCodeGenerator {
 
         private boolean useDecimal;
 
+        private boolean useFixedDecimal;
+
         private long specificationLastModified;
 
         public long getSpecificationLastModified() {
@@ -589,5 +594,15 @@ public class MessageCodeGenerator {
 
             return useDecimal;
         }
+
+        public void setFixedDecimalGenerated(boolean useFixedDecimal) {
+
+            this.useFixedDecimal = useFixedDecimal;
+        }
+
+        public boolean isFixedDecimalGenerated() {
+
+            return useFixedDecimal;
+        }
     }
 }
@@ -95,9 +95,26 @@
 			(double data) {
 			super(
 			<xsl:value-of select="@number" />
-			, new
-			<xsl:value-of select="$dataType" />
-			(data));
+			<xsl:choose>
+				<xsl:when test="$decimalConverter = 'FixedDecimal'">
+					, data);
+				</xsl:when>
+				<xsl:otherwise>
+					, new
+					<xsl:value-of select="$dataType" />
+					(data));
+				</xsl:otherwise>
+			</xsl:choose>
+			}
+		</xsl:if>
+
+		<xsl:if test="$dataType = 'java.math.BigDecimal' and $decimalConverter = 'FixedDecimal'">
+			public
+			<xsl:value-of select="@name" />
+			(long mantissa, int scale) {
+			super(
+			<xsl:value-of select="@number" />
+			, mantissa, scale);
 			}
 		</xsl:if>
 		}
@@ -22,7 +22,9 @@ package quickfix;
 import java.io.Closeable;
 import java.io.IOException;
 
-abstract class AbstractLog implements Log, Closeable {
+import quickfix.field.MsgType;
+
+abstract class AbstractLog implements ByteLog, Closeable {
     private boolean logHeartbeats;
 
     protected void setLogHeartbeats(boolean logHeartbeats) {
@@ -38,6 +40,21 @@ abstract class AbstractLog implements Log, Closeable {
 
     protected abstract void logIncoming(String message);
 
+    public final void onIncoming(byte[] data, int offset, int length) {
+        if (!logHeartbeats && isHeartbeat(data, offset, length)) {
+            return;
+        }
+        logIncoming(data, offset, length);
+    }
+
+    /**
+     * Logs an encoded incoming message. By default, the message is decoded
+     * and logged as a String.
+     */
+    protected void logIncoming(byte[] data, int offset, int length) {
+        logIncoming(RawMessage.decode(data, offset, length));
+    }
+
     public final void onOutgoing(String message) {
         if (!logHeartbeats && MessageUtils.isHeartbeat(message)) {
             return;
@@ -47,6 +64,26 @@ abstract class AbstractLog implements Log, Closeable {
 
     protected abstract void logOutgoing(String message);
 
+    public final void onOutgoing(byte[] data, int offset, int length) {
+        if (!logHeartbeats && isHeartbeat(data, offset, length)) {
+            return;
+        }
+        logOutgoing(data, offset, length);
+    }
+
+    /**
+     * Logs an encoded outgoing message. By default, the message is decoded
+     * and logged as a String.
+     */
+    protected void logOutgoing(byte[] data, int offset, int length) {
+        logOutgoing(RawMessage.decode(data, offset, length));
+    }
+
+    private static boolean isHeartbeat(byte[] data, int offset, int length) {
+        return MsgType.HEARTBEAT.equals(new RawMessage(data, offset, length)
+                .getStringField(MsgType.FIELD));
+    }
+
     public void close() throws IOException {
         // default is to do nothing
     }
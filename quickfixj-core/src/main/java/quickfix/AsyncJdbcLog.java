@@ -0,0 +1,625 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.quickfixj.CharsetSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A JDBC log that writes in the background. Logging a message or event only
+ * queues it, so the session thread does not wait for the database. A writer
+ * thread inserts the queued entries with JDBC batches.
+ * <p>
+ * The queue is bounded. When it is full, the {@link OverflowPolicy} decides
+ * what happens to new entries. Database errors are reported to SLF4J, since
+ * logging them to the session log would queue more entries. With
+ * {@link OverflowPolicy#SPILL_TO_FILE}, entries that could not be inserted
+ * are kept in a file and inserted again, before any later entries, once the
+ * database is available. Entries of a batch that was partly inserted may then
+ * be inserted twice. With the other policies they are discarded and counted
+ * as failed.
+ *
+ * @see JdbcSetting#SETTING_JDBC_LOG_ASYNC
+ */
+public class AsyncJdbcLog extends AbstractLog {
+
+    /**
+     * What happens to log entries while the queue is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * The logging thread waits until there is room.
+         */
+        BLOCK,
+
+        /**
+         * A queued event is dropped to make room. If no events are queued, a
+         * new event or message is dropped.
+         */
+        DROP_EVENTS_FIRST,
+
+        /**
+         * New entries are appended to a spill file. They are inserted, in
+         * order, once the writer has caught up with the queue.
+         */
+        SPILL_TO_FILE
+    }
+
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final JdbcLog jdbcLog;
+    private final int capacity;
+    private final int batchSize;
+    private final OverflowPolicy overflowPolicy;
+    private final File spillFile;
+    private final File drainFile;
+    private final Thread writerThread;
+
+    // guards the fields below
+    private final Object lock = new Object();
+    private final LinkedList<JdbcLog.Record> queue = new LinkedList<JdbcLog.Record>();
+    private int queuedEvents;
+    private DataOutputStream spillOutput;
+    private int unwrittenSpilled;
+    private boolean writing;
+    // the drain file holds entries that are inserted again before any others
+    private boolean retrying;
+    private int generation;
+    private boolean closed;
+    private long droppedEvents;
+    private long droppedMessages;
+    private long spilled;
+    private long failed;
+
+    // guards the database, acquired before lock
+    private final Object writeLock = new Object();
+
+    /**
+     * @param jdbcLog the log the entries are inserted with
+     * @param sessionID the session, used to name the writer thread
+     * @param capacity the maximum number of queued entries
+     * @param batchSize the maximum number of entries inserted at once
+     * @param overflowPolicy what happens to entries while the queue is full
+     * @param spillFile the file that entries are spilled to, which is only
+     *            needed for {@link OverflowPolicy#SPILL_TO_FILE}
+     */
+    AsyncJdbcLog(JdbcLog jdbcLog, SessionID sessionID, int capacity, int batchSize,
+            OverflowPolicy overflowPolicy, File spillFile) {
+        if (capacity < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("Invalid asynchronous log capacity " + capacity
+                    + " or batch size " + batchSize);
+        }
+        if (overflowPolicy == OverflowPolicy.SPILL_TO_FILE && spillFile == null) {
+            throw new IllegalArgumentException("No spill file");
+        }
+        this.jdbcLog = jdbcLog;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.overflowPolicy = overflowPolicy;
+        this.spillFile = spillFile;
+        drainFile = spillFile != null ? new File(spillFile.getPath() + ".drain") : null;
+        setLogHeartbeats(jdbcLog.isLogHeartbeats());
+        // until the entries left over by an earlier log have been inserted
+        writing = true;
+        writerThread = new Thread(new Writer(), "QF/J Log writer " + sessionID);
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    public void onEvent(String text) {
+        add(JdbcLog.EVENT, text);
+    }
+
+    public void onErrorEvent(String text) {
+        add(JdbcLog.EVENT, text);
+    }
+
+    protected void logIncoming(String message) {
+        add(JdbcLog.INCOMING, message);
+    }
+
+    protected void logOutgoing(String message) {
+        add(JdbcLog.OUTGOING, message);
+    }
+
+    private void add(int kind, String text) {
+        final JdbcLog.Record record = new JdbcLog.Record(kind, SystemTime.currentTimeMillis(),
+                text);
+        synchronized (lock) {
+            if (closed) {
+                drop(record);
+                return;
+            }
+            if (unwrittenSpilled > 0) {
+                // later entries are spilled too, so they are inserted in order
+                spill(record);
+                return;
+            }
+            if (queue.size() >= capacity) {
+                switch (overflowPolicy) {
+                case BLOCK:
+                    if (!awaitCapacity()) {
+                        drop(record);
+                        return;
+                    }
+                    break;
+                case DROP_EVENTS_FIRST:
+                    if (kind == JdbcLog.EVENT || !dropQueuedEvent()) {
+                        drop(record);
+                        return;
+                    }
+                    break;
+                default:
+                    spill(record);
+                    return;
+                }
+            }
+            queue.add(record);
+            if (kind == JdbcLog.EVENT) {
+                queuedEvents++;
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * @return false if the thread was interrupted or the log closed while
+     *         waiting
+     */
+    private boolean awaitCapacity() {
+        while (queue.size() >= capacity && !closed) {
+            try {
+                lock.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return !closed;
+    }
+
+    private boolean dropQueuedEvent() {
+        if (queuedEvents == 0) {
+            return false;
+        }
+        final Iterator<JdbcLog.Record> records = queue.iterator();
+        while (records.hasNext()) {
+            final JdbcLog.Record record = records.next();
+            if (record.kind == JdbcLog.EVENT) {
+                records.remove();
+                queuedEvents--;
+                droppedEvents++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void drop(JdbcLog.Record record) {
+        if (record.kind == JdbcLog.EVENT) {
+            droppedEvents++;
+        } else {
+            droppedMessages++;
+        }
+    }
+
+    private void spill(JdbcLog.Record record) {
+        try {
+            if (spillOutput == null) {
+                spillOutput = new DataOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(spillFile, true)));
+            }
+            writeRecord(spillOutput, record);
+            unwrittenSpilled++;
+            spilled++;
+            lock.notifyAll();
+        } catch (IOException e) {
+            log.error("Could not spill log entry to " + spillFile, e);
+            drop(record);
+        }
+    }
+
+    private static void writeRecord(DataOutputStream output, JdbcLog.Record record)
+            throws IOException {
+        final byte[] text = record.text.getBytes(CharsetSupport.getCharsetInstance());
+        output.writeByte(record.kind);
+        output.writeLong(record.time);
+        output.writeInt(text.length);
+        output.write(text);
+    }
+
+    /**
+     * @return the number of entries waiting to be inserted, including spilled
+     *         entries but not the entries that are inserted again after a
+     *         database error
+     */
+    public int getQueuedCount() {
+        synchronized (lock) {
+            return queue.size() + unwrittenSpilled;
+        }
+    }
+
+    /**
+     * @return the number of events dropped because the queue was full or the
+     *         log was closed
+     */
+    public long getDroppedEventCount() {
+        synchronized (lock) {
+            return droppedEvents;
+        }
+    }
+
+    /**
+     * @return the number of messages dropped because the queue was full or
+     *         the log was closed
+     */
+    public long getDroppedMessageCount() {
+        synchronized (lock) {
+            return droppedMessages;
+        }
+    }
+
+    /**
+     * @return the number of entries that have been spilled to the spill file
+     */
+    public long getSpilledCount() {
+        synchronized (lock) {
+            return spilled;
+        }
+    }
+
+    /**
+     * @return the number of entries that were discarded because they could
+     *         not be inserted, nor kept to be inserted again
+     */
+    public long getFailedCount() {
+        synchronized (lock) {
+            return failed;
+        }
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Waits until everything logged so far has been inserted or discarded.
+     * With {@link OverflowPolicy#SPILL_TO_FILE}, this includes the entries
+     * that are inserted again after a database error.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void flush() throws InterruptedException {
+        synchronized (lock) {
+            while ((!queue.isEmpty() || unwrittenSpilled > 0 || writing || retrying)
+                    && writerThread.isAlive()) {
+                lock.wait(100);
+            }
+        }
+    }
+
+    /**
+     * Discards the queued entries and deletes all rows from the log tables.
+     */
+    public void clear() {
+        synchronized (writeLock) {
+            synchronized (lock) {
+                queue.clear();
+                queuedEvents = 0;
+                closeSpillOutput();
+                unwrittenSpilled = 0;
+                deleteFile(spillFile);
+                deleteFile(drainFile);
+                retrying = false;
+                generation++;
+                lock.notifyAll();
+            }
+            jdbcLog.clear();
+        }
+    }
+
+    /**
+     * Inserts everything queued so far and stops the writer thread. Entries
+     * logged afterwards are dropped. With {@link OverflowPolicy#SPILL_TO_FILE},
+     * entries that cannot be inserted are left in the spill files and inserted
+     * when the log is created again.
+     */
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        jdbcLog.close();
+    }
+
+    private void closeSpillOutput() {
+        if (spillOutput != null) {
+            try {
+                spillOutput.close();
+            } catch (IOException e) {
+                log.error("Could not close " + spillFile, e);
+            }
+            spillOutput = null;
+        }
+    }
+
+    private void deleteFile(File file) {
+        if (file != null && file.exists() && !file.delete()) {
+            log.error("File delete failed: " + file);
+        }
+    }
+
+    private class Writer implements Runnable {
+        public void run() {
+            if (drainFile != null) {
+                // left over if the process stopped before they were inserted
+                synchronized (writeLock) {
+                    boolean inserted = insertSpilled(drainFile);
+                    if (inserted) {
+                        final boolean drain;
+                        synchronized (lock) {
+                            drain = unwrittenSpilled == 0 && spillFile.exists()
+                                    && spillFile.renameTo(drainFile);
+                        }
+                        if (drain) {
+                            inserted = insertSpilled(drainFile);
+                        }
+                    }
+                    if (!inserted && overflowPolicy == OverflowPolicy.SPILL_TO_FILE) {
+                        synchronized (lock) {
+                            retrying = true;
+                        }
+                    }
+                }
+            }
+            while (true) {
+                final List<JdbcLog.Record> batch = new ArrayList<JdbcLog.Record>();
+                final boolean drain;
+                final int batchGeneration;
+                synchronized (lock) {
+                    writing = false;
+                    lock.notifyAll();
+                    try {
+                        if (retrying) {
+                            if (!closed) {
+                                lock.wait(RETRY_DELAY_MILLIS);
+                            }
+                        } else {
+                            while (queue.isEmpty() && unwrittenSpilled == 0 && !closed) {
+                                lock.wait();
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    if (retrying) {
+                        // the entries that failed are inserted before any later ones
+                        drain = true;
+                    } else if (!queue.isEmpty()) {
+                        while (!queue.isEmpty() && batch.size() < batchSize) {
+                            final JdbcLog.Record record = queue.removeFirst();
+                            if (record.kind == JdbcLog.EVENT) {
+                                queuedEvents--;
+                            }
+                            batch.add(record);
+                        }
+                        drain = false;
+                        // room for entries waiting to be queued
+                        lock.notifyAll();
+                    } else if (unwrittenSpilled > 0) {
+                        // the queue has caught up with the spilled entries
+                        closeSpillOutput();
+                        unwrittenSpilled = 0;
+                        drain = spillFile.renameTo(drainFile);
+                        if (!drain) {
+                            log.error("Could not rename " + spillFile + " to " + drainFile);
+                        }
+                    } else {
+                        return;
+                    }
+                    writing = true;
+                    batchGeneration = generation;
+                }
+                synchronized (writeLock) {
+                    synchronized (lock) {
+                        if (batchGeneration != generation) {
+                            // the log was cleared after the batch was taken
+                            continue;
+                        }
+                    }
+                    final boolean inserted = drain ? insertSpilled(drainFile) : insert(batch);
+                    synchronized (lock) {
+                        retrying = false;
+                        if (!inserted) {
+                            if (overflowPolicy != OverflowPolicy.SPILL_TO_FILE) {
+                                failed += batch.size();
+                            } else if (drain || retain(batch)) {
+                                retrying = true;
+                                if (closed) {
+                                    // inserted when the log is created again
+                                    retain(queue);
+                                    queue.clear();
+                                    closeSpillOutput();
+                                    return;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        private boolean insert(List<JdbcLog.Record> records) {
+            if (records.isEmpty()) {
+                return true;
+            }
+            try {
+                jdbcLog.insert(records);
+                return true;
+            } catch (SQLException e) {
+                log.error("Could not insert " + records.size() + " log entries", e);
+                return false;
+            }
+        }
+
+        /**
+         * Appends entries that could not be inserted to the drain file.
+         *
+         * @return false if they were discarded
+         */
+        private boolean retain(List<JdbcLog.Record> records) {
+            if (records.isEmpty()) {
+                return true;
+            }
+            try {
+                final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(drainFile, true)));
+                try {
+                    for (final JdbcLog.Record record : records) {
+                        writeRecord(output, record);
+                    }
+                } finally {
+                    output.close();
+                }
+                return true;
+            } catch (IOException e) {
+                log.error("Could not keep " + records.size() + " log entries in " + drainFile, e);
+                failed += records.size();
+                return false;
+            }
+        }
+
+        /**
+         * Inserts the entries of a spill file. If an insert fails, the file
+         * keeps the entries that were not inserted.
+         *
+         * @return false if an insert failed
+         */
+        private boolean insertSpilled(File file) {
+            if (!file.exists()) {
+                return true;
+            }
+            final File retryFile = new File(file.getPath() + ".retry");
+            boolean inserted = true;
+            boolean copied = false;
+            try {
+                final DataInputStream input = new DataInputStream(new BufferedInputStream(
+                        new FileInputStream(file)));
+                try {
+                    final List<JdbcLog.Record> records = new ArrayList<JdbcLog.Record>();
+                    JdbcLog.Record record;
+                    while ((record = readRecord(input)) != null) {
+                        records.add(record);
+                        if (records.size() == batchSize) {
+                            inserted = insert(records);
+                            if (!inserted) {
+                                break;
+                            }
+                            records.clear();
+                        }
+                    }
+                    if (inserted) {
+                        inserted = insert(records);
+                    }
+                    if (!inserted) {
+                        copyRemaining(records, input, retryFile);
+                        copied = true;
+                    }
+                } finally {
+                    input.close();
+                }
+            } catch (IOException e) {
+                log.error("Could not read spilled log entries from " + file, e);
+            }
+            if (inserted) {
+                deleteFile(file);
+            } else if (copied) {
+                deleteFile(file);
+                if (!retryFile.renameTo(file)) {
+                    log.error("Could not rename " + retryFile + " to " + file);
+                }
+            } else {
+                // entries inserted before the error are inserted again
+                deleteFile(retryFile);
+            }
+            return inserted;
+        }
+
+        private void copyRemaining(List<JdbcLog.Record> records, DataInputStream input,
+                File file) throws IOException {
+            final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(file)));
+            try {
+                for (final JdbcLog.Record record : records) {
+                    writeRecord(output, record);
+                }
+                JdbcLog.Record record;
+                while ((record = readRecord(input)) != null) {
+                    writeRecord(output, record);
+                }
+            } finally {
+                output.close();
+            }
+        }
+
+        /**
+         * @return the next spilled entry, or null at the end of the file or
+         *         of its complete entries
+         */
+        private JdbcLog.Record readRecord(DataInputStream input) throws IOException {
+            try {
+                final int kind = input.readByte();
+                final long time = input.readLong();
+                final byte[] text = new byte[input.readInt()];
+                input.readFully(text);
+                return new JdbcLog.Record(kind, time, new String(text, CharsetSupport
+                        .getCharsetInstance()));
+            } catch (EOFException e) {
+                return null;
+            }
+        }
+    }
+}
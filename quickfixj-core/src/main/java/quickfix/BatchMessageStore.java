@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * This extension of the MessageStore interface stores a block of messages
+ * with consecutive sequence numbers in one operation. Sessions use it when
+ * sending several messages at once; other stores get one
+ * {@link MessageStore#set(int, String)} call per message.
+ *
+ * @see Session#send(java.util.Collection)
+ */
+public interface BatchMessageStore extends MessageStore {
+
+    /**
+     * Adds raw FIX messages to the store. The first message has the given
+     * sequence number and each following message the next one.
+     *
+     * @param startSequence the sequence number of the first message
+     * @param messages the raw FIX message strings
+     * @return true is successful, false otherwise
+     * @throws IOException IO error
+     */
+    boolean set(int startSequence, List<String> messages) throws IOException;
+}
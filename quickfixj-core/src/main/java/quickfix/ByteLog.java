@@ -0,0 +1,46 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+/**
+ * This extension of the Log interface logs messages as encoded bytes, so a
+ * message received or sent as bytes does not have to be decoded into a String
+ * first. Use {@link ByteLogAdapter} for other logs.
+ */
+public interface ByteLog extends Log {
+
+    /**
+     * Logs an encoded incoming message.
+     *
+     * @param data the array holding the message bytes
+     * @param offset the position of the message in the array
+     * @param length the number of message bytes
+     */
+    void onIncoming(byte[] data, int offset, int length);
+
+    /**
+     * Logs an encoded outgoing message.
+     *
+     * @param data the array holding the message bytes
+     * @param offset the position of the message in the array
+     * @param length the number of message bytes
+     */
+    void onOutgoing(byte[] data, int offset, int length);
+}
@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import org.quickfixj.CharsetSupport;
+
+/**
+ * Logs encoded messages with a log that only logs Strings, decoding them with
+ * the {@link CharsetSupport#setCharset global charset}.
+ */
+public class ByteLogAdapter implements ByteLog {
+    private final Log log;
+
+    public ByteLogAdapter(Log log) {
+        this.log = log;
+    }
+
+    /**
+     * @return the log itself if it logs bytes, and an adapter otherwise
+     */
+    public static ByteLog adapt(Log log) {
+        return log instanceof ByteLog ? (ByteLog) log : new ByteLogAdapter(log);
+    }
+
+    public Log getLog() {
+        return log;
+    }
+
+    public void onIncoming(byte[] data, int offset, int length) {
+        log.onIncoming(RawMessage.decode(data, offset, length));
+    }
+
+    public void onOutgoing(byte[] data, int offset, int length) {
+        log.onOutgoing(RawMessage.decode(data, offset, length));
+    }
+
+    public void clear() {
+        log.clear();
+    }
+
+    public void onIncoming(String message) {
+        log.onIncoming(message);
+    }
+
+    public void onOutgoing(String message) {
+        log.onOutgoing(message);
+    }
+
+    public void onEvent(String text) {
+        log.onEvent(text);
+    }
+
+    public void onErrorEvent(String text) {
+        log.onErrorEvent(text);
+    }
+}
@@ -21,6 +21,7 @@ package quickfix;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
@@ -35,8 +36,6 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 import java.util.TreeMap;
 
 import org.quickfixj.CharsetSupport;
@@ -51,7 +50,7 @@ import quickfix.field.converter.UtcTimestampConverter;
  *
  * @see quickfix.CachedFileStoreFactory
  */
-public class CachedFileStore implements MessageStore {
+public class CachedFileStore implements BatchMessageStore, StreamingMessageStore {
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -83,7 +82,7 @@ public class CachedFileStore implements MessageStore {
 
     private final boolean syncWrites;
 
-    private final CachedHashMap messageIndex = new CachedHashMap(100);
+    private final CachedMessageIndex messageIndex = new CachedMessageIndex(100);
 
     private FileOutputStream headerFileOutputStream;
 
@@ -185,19 +184,27 @@ public class CachedFileStore implements MessageStore {
     }
 
     private void initializeMessageIndex() throws IOException {
+        messageIndex.clear();
         final File headerFile = new File(headerFileName);
         if (headerFile.exists()) {
-            final DataInputStream headerDataInputStream = new DataInputStream(
-                    new BufferedInputStream(new FileInputStream(headerFile)));
+            // only the most recent headers are cached, so only they are read
+            final RandomAccessFile headerFileReader = new RandomAccessFile(headerFile, READ_OPTION);
             try {
-                while (headerDataInputStream.available() > 0) {
+                final long records = headerFileReader.length() / 16;
+                final long cachedRecords = Math.min(records, messageIndex.getMaxSize());
+                final byte[] data = new byte[(int) cachedRecords * 16];
+                headerFileReader.seek((records - cachedRecords) * 16);
+                headerFileReader.readFully(data);
+                final DataInputStream headerDataInputStream = new DataInputStream(
+                        new ByteArrayInputStream(data));
+                for (int i = 0; i < cachedRecords; i++) {
                     final int sequenceNumber = headerDataInputStream.readInt();
                     final long offset = headerDataInputStream.readLong();
                     final int size = headerDataInputStream.readInt();
-                    messageIndex.put((long) sequenceNumber, new long[] { offset, size });
+                    messageIndex.put(sequenceNumber, offset, size);
                 }
             } finally {
-                headerDataInputStream.close();
+                headerFileReader.close();
             }
         }
         headerFileOutputStream = new FileOutputStream(headerFileName, true);
@@ -310,6 +317,30 @@ public class CachedFileStore implements MessageStore {
         messages.addAll(readedMsg);
     }
 
+    /**
+     * Looks up where the messages are stored and then reads them one at a time, so only their offsets and sizes are
+     * held in memory.
+     */
+    public StoredMessageCursor openCursor(int startSequence, int endSequence) throws IOException {
+        final Iterator<long[]> offsetAndSizes = messageIndex.get(startSequence, endSequence).iterator();
+        return new StoredMessageCursor() {
+            public String next() throws IOException {
+                while (offsetAndSizes.hasNext()) {
+                    final long[] offsetAndSize = offsetAndSizes.next();
+                    if (offsetAndSize != null) {
+                        final String message = read(offsetAndSize[0], offsetAndSize[1]);
+                        messageFileReader.seek(messageFileReader.length());
+                        return message;
+                    }
+                }
+                return null;
+            }
+
+            public void close() {
+            }
+        };
+    }
+
     /**
      * This method is here for JNI API consistency but it's not implemented. Use get(int, int, Collection) with the same
      * start and end sequence.
@@ -352,7 +383,7 @@ public class CachedFileStore implements MessageStore {
     public boolean set(int sequence, String message) throws IOException {
         final long offset = messageFileWriter.getFilePointer();
         final int size = message.length();
-        messageIndex.put((long) sequence, new long[] { offset, size });
+        messageIndex.put(sequence, offset, size);
         headerDataOutputStream.writeInt(sequence);
         headerDataOutputStream.writeLong(offset);
         headerDataOutputStream.writeInt(size);
@@ -364,6 +395,40 @@ public class CachedFileStore implements MessageStore {
         return true;
     }
 
+    /**
+     * Appends all messages with a single write to each file and, when
+     * writes are synchronized, a single sync of the header file.
+     */
+    public boolean set(int startSequence, List<String> messages) throws IOException {
+        final byte[][] data = new byte[messages.size()][];
+        int length = 0;
+        long offset = messageFileWriter.getFilePointer();
+        int sequence = startSequence;
+        for (int i = 0; i < data.length; i++) {
+            final String message = messages.get(i);
+            final int size = message.length();
+            data[i] = message.getBytes(CharsetSupport.getCharset());
+            messageIndex.put(sequence, offset, size);
+            headerDataOutputStream.writeInt(sequence++);
+            headerDataOutputStream.writeLong(offset);
+            headerDataOutputStream.writeInt(size);
+            offset += data[i].length;
+            length += data[i].length;
+        }
+        headerDataOutputStream.flush();
+        if (syncWrites) {
+            headerFileOutputStream.getFD().sync();
+        }
+        final byte[] bytes = new byte[length];
+        int position = 0;
+        for (final byte[] messageData : data) {
+            System.arraycopy(messageData, 0, bytes, position, messageData.length);
+            position += messageData.length;
+        }
+        messageFileWriter.write(bytes);
+        return true;
+    }
+
     private void storeSequenceNumbers() throws IOException {
         sequenceNumberFile.seek(0);
         // I changed this from explicitly using a StringBuffer because of
@@ -403,110 +468,55 @@ public class CachedFileStore implements MessageStore {
     }
 
     /**
-     * @author mratsimbazafy 29 août 2008
+     * Caches the locations of the most recent messages. Ranges of messages
+     * that are not all cached are looked up in the header file.
      */
-    private class CachedHashMap implements Map<Long, long[]> {
+    private class CachedMessageIndex {
 
-        private final TreeMap<Long, long[]> cacheIndex = new TreeMap<Long, long[]>();
-
-        private int currentSize;
+        private final SequenceIndex cacheIndex = new SequenceIndex();
 
         private final int maxSize;
 
-        public CachedHashMap(int _maxSize) {
-            currentSize = 0;
+        public CachedMessageIndex(int _maxSize) {
             maxSize = _maxSize;
         }
 
-        public void clear() {
-            cacheIndex.clear();
-            currentSize = 0;
-        }
-
-        public boolean containsKey(Object key) {
-            return cacheIndex.containsKey(key);
+        public int getMaxSize() {
+            return maxSize;
         }
 
-        public boolean containsValue(Object value) {
-            return cacheIndex.containsValue(value);
-        }
-
-        public Set<java.util.Map.Entry<Long, long[]>> entrySet() {
-            return cacheIndex.entrySet();
+        public void clear() {
+            cacheIndex.clear();
         }
 
-        public long[] get(Object key) {
-            final long[] v = cacheIndex.get(key);
-            if (v != null) {
-                return v;
+        public void put(int sequence, long offset, int size) {
+            cacheIndex.put(sequence, offset, size);
+            if (cacheIndex.size() > maxSize) {
+                cacheIndex.removeFirst();
             }
-            return seekMessageIndex((Long) key);
-        }
-
-        public boolean isEmpty() {
-            return cacheIndex.isEmpty();
-        }
-
-        public Set<Long> keySet() {
-            return cacheIndex.keySet();
         }
 
-        public long[] put(Long key, long[] value) {
-            cacheIndex.put(key, value);
-            currentSize++;
-            if (currentSize > maxSize) {
-                final Iterator<Entry<Long, long[]>> it = cacheIndex.entrySet().iterator();
-                it.next();
-                it.remove();
-                currentSize--;
+        /**
+         * @return the locations of the range, or null unless every message
+         *         in it is cached
+         */
+        private List<long[]> getCached(final long startSequence, final long endSequence) {
+            final int first = cacheIndex.indexOf((int) startSequence);
+            final long count = endSequence - startSequence + 1;
+            if (first == -1 || count <= 0 || count > cacheIndex.size() - first) {
+                return null;
             }
-            return value;
-        }
-
-        public void putAll(Map<? extends Long, ? extends long[]> t) {
-            throw new UnsupportedOperationException("not supported");
-        }
-
-        public long[] remove(Object key) {
-            throw new UnsupportedOperationException("not supported");
-        }
-
-        public int size() {
-            return cacheIndex.size();
-        }
-
-        public Collection<long[]> values() {
-            return cacheIndex.values();
-        }
-
-        private long[] seekMessageIndex(final long index) {
-            final File headerFile = new File(headerFileName);
-            if (headerFile.exists()) {
-                DataInputStream headerDataInputStream = null;
-                try {
-                    headerDataInputStream = new DataInputStream(new BufferedInputStream(
-                            new FileInputStream(headerFile)));
-                    while (headerDataInputStream.available() > 0) {
-                        final int sequenceNumber = headerDataInputStream.readInt();
-                        final long offset = headerDataInputStream.readLong();
-                        final int size = headerDataInputStream.readInt();
-                        if (index == sequenceNumber) {
-                            return new long[] { offset, size };
-                        }
-                    }
-                } catch (final IOException e) {
-                    return null;
-                } finally {
-                    try {
-                        if (headerDataInputStream != null) {
-                            headerDataInputStream.close();
-                        }
-                    } catch (final IOException e) {
-                        log.error("", e);
-                    }
-                }
+            final int last = first + (int) count - 1;
+            // the cached sequence numbers are distinct and sorted, so the range is
+            // complete if it ends at the expected position
+            if (cacheIndex.sequenceAt(last) != endSequence) {
+                return null;
+            }
+            final List<long[]> offsetAndSizes = new ArrayList<long[]>();
+            for (int i = first; i <= last; i++) {
+                offsetAndSizes.add(new long[] { cacheIndex.valueAt(i), cacheIndex.lengthAt(i) });
             }
-            return null;
+            return offsetAndSizes;
         }
 
         private List<long[]> seekMessageIndex(final long startSequence, final long endSequence) {
@@ -542,7 +552,9 @@ public class CachedFileStore implements MessageStore {
         }
 
         public List<long[]> get(final long startSequence, final long endSequence) {
-            return seekMessageIndex(startSequence, endSequence);
+            final List<long[]> offsetAndSizes = getCached(startSequence, endSequence);
+            return offsetAndSizes != null ? offsetAndSizes : seekMessageIndex(startSequence,
+                    endSequence);
         }
     }
 
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A cursor that retrieves messages from a store in chunks of a limited range
+ * of sequence numbers, using {@link MessageStore#get(int, int, java.util.Collection)}.
+ * At most one chunk of messages is held in memory.
+ */
+public class ChunkedMessageCursor implements StoredMessageCursor {
+
+    /**
+     * The number of sequence numbers retrieved at once by default.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 256;
+
+    private final MessageStore store;
+    private final long endSequence;
+    private final int chunkSize;
+    private final List<String> chunk = new ArrayList<String>();
+    private long nextSequence;
+    private int position;
+
+    public ChunkedMessageCursor(MessageStore store, int startSequence, int endSequence) {
+        this(store, startSequence, endSequence, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param store the store
+     * @param startSequence the starting message sequence number
+     * @param endSequence the ending message sequence number (inclusive)
+     * @param chunkSize the number of sequence numbers retrieved at once
+     */
+    public ChunkedMessageCursor(MessageStore store, int startSequence, int endSequence,
+            int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+        }
+        this.store = store;
+        this.endSequence = endSequence;
+        this.chunkSize = chunkSize;
+        nextSequence = startSequence;
+    }
+
+    public String next() throws IOException {
+        while (position == chunk.size()) {
+            if (nextSequence > endSequence) {
+                return null;
+            }
+            chunk.clear();
+            position = 0;
+            final long last = Math.min(nextSequence + chunkSize - 1, endSequence);
+            store.get((int) nextSequence, (int) last, chunk);
+            nextSequence = last + 1;
+        }
+        final String message = chunk.get(position);
+        // released as soon as the caller is done with it
+        chunk.set(position++, null);
+        return message;
+    }
+
+    public void close() {
+        chunk.clear();
+        position = 0;
+        nextSequence = endSequence + 1;
+    }
+}
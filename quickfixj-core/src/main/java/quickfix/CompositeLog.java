@@ -27,13 +27,18 @@ import org.slf4j.LoggerFactory;
  * one logger. For example, you can log to both the screen and to a file
  * or database.
  */
-class CompositeLog implements Log {
+class CompositeLog implements ByteLog {
     private Logger defaultLog = LoggerFactory.getLogger(getClass());
     private final Log[] logs;
+    private final ByteLog[] byteLogs;
     private boolean rethrowException;
 
     public CompositeLog(Log[] logs) {
         this.logs = logs;
+        byteLogs = new ByteLog[logs.length];
+        for (int i = 0; i < logs.length; i++) {
+            byteLogs[i] = ByteLogAdapter.adapt(logs[i]);
+        }
     }
 
     public void clear() {
@@ -63,6 +68,16 @@ class CompositeLog implements Log {
         }
     }
 
+    public void onIncoming(byte[] data, int offset, int length) {
+        for (ByteLog log : byteLogs) {
+            try {
+                log.onIncoming(data, offset, length);
+            } catch (Throwable e) {
+                handleError(e);
+            }
+        }
+    }
+
     public void onOutgoing(String message) {
         for (Log log : logs) {
             try {
@@ -73,6 +88,16 @@ class CompositeLog implements Log {
         }
     }
 
+    public void onOutgoing(byte[] data, int offset, int length) {
+        for (ByteLog log : byteLogs) {
+            try {
+                log.onOutgoing(data, offset, length);
+            } catch (Throwable e) {
+                defaultLog.error(e.getMessage() + ", continuing", e);
+            }
+        }
+    }
+
     public void onEvent(String text) {
         for (Log log : logs) {
             try {
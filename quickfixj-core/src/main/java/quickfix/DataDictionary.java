@@ -64,11 +64,6 @@ import quickfix.field.MsgType;
 import quickfix.field.SessionRejectReason;
 import quickfix.field.converter.BooleanConverter;
 import quickfix.field.converter.CharConverter;
-import quickfix.field.converter.DoubleConverter;
-import quickfix.field.converter.IntConverter;
-import quickfix.field.converter.UtcDateOnlyConverter;
-import quickfix.field.converter.UtcTimeOnlyConverter;
-import quickfix.field.converter.UtcTimestampConverter;
 
 /**
  * Provide the message metadata for various versions of FIX.
@@ -803,13 +798,13 @@ public class DataDictionary {
                     // String, for older FIX versions
                 }
             } else if (fieldType == FieldType.Price) {
-                DoubleConverter.convert(field.getValue());
+                field.doubleValue();
             } else if (fieldType == FieldType.Int) {
-                IntConverter.convert(field.getValue());
+                field.intValue();
             } else if (fieldType == FieldType.Amt) {
-                DoubleConverter.convert(field.getValue());
+                field.doubleValue();
             } else if (fieldType == FieldType.Qty) {
-                DoubleConverter.convert(field.getValue());
+                field.doubleValue();
             } else if (fieldType == FieldType.Qty) {
                 // String
             } else if (fieldType == FieldType.MultipleValueString) {
@@ -823,28 +818,28 @@ public class DataDictionary {
             } else if (fieldType == FieldType.Data) {
                 // String
             } else if (fieldType == FieldType.Float) {
-                DoubleConverter.convert(field.getValue());
+                field.doubleValue();
             } else if (fieldType == FieldType.PriceOffset) {
-                DoubleConverter.convert(field.getValue());
+                field.doubleValue();
             } else if (fieldType == FieldType.MonthYear) {
                 // String
             } else if (fieldType == FieldType.DayOfMonth) {
                 // String
             } else if (fieldType == FieldType.UtcDate) {
-                UtcDateOnlyConverter.convert(field.getValue());
+                field.utcDateOnlyValue();
             } else if (fieldType == FieldType.UtcTimeOnly) {
-                UtcTimeOnlyConverter.convert(field.getValue());
+                field.utcTimeOnlyValue();
             } else if (fieldType == FieldType.UtcTimeStamp
                     || fieldType == FieldType.Time) {
-                UtcTimestampConverter.convert(field.getValue());
+                field.utcTimeStampValue();
             } else if (fieldType == FieldType.NumInGroup) {
-                IntConverter.convert(field.getValue());
+                field.intValue();
             } else if (fieldType == FieldType.Percentage) {
-                DoubleConverter.convert(field.getValue());
+                field.doubleValue();
             } else if (fieldType == FieldType.SeqNum) {
-                IntConverter.convert(field.getValue());
+                field.intValue();
             } else if (fieldType == FieldType.Length) {
-                IntConverter.convert(field.getValue());
+                field.intValue();
             } else if (fieldType == FieldType.Country) {
                 // String
             }
@@ -869,7 +864,7 @@ public class DataDictionary {
     // / Check if a field has a value.
     private void checkHasValue(StringField field) {
 
-        if (checkFieldsHaveValues && field.getValue().length() == 0) {
+        if (checkFieldsHaveValues && !field.hasValue()) {
             throw new FieldException(
                     SessionRejectReason.TAG_SPECIFIED_WITHOUT_A_VALUE,
                     field.getField());
@@ -176,6 +176,19 @@ public class DefaultSessionFactory implements SessionFactory {
             final boolean enableNextExpectedMsgSeqNum = getSetting(settings, sessionID, Session.SETTING_ENABLE_NEXT_EXPECTED_MSG_SEQ_NUM, false);
             final boolean enableLastMsgSeqNumProcessed = getSetting(settings, sessionID, Session.SETTING_ENABLE_LAST_MSG_SEQ_NUM_PROCESSED, false);
             final int resendRequestChunkSize = getSetting(settings, sessionID, Session.SETTING_RESEND_REQUEST_CHUNK_SIZE, Session.DEFAULT_RESEND_RANGE_CHUNK_SIZE);
+            final boolean rawMessageDecoding = getSetting(settings, sessionID, Session.SETTING_RAW_MESSAGE_DECODING, false);
+            final int messagePoolSize = getSetting(settings, sessionID, Session.SETTING_MESSAGE_POOL_SIZE, 0);
+            final boolean rawResend = getSetting(settings, sessionID, Session.SETTING_RAW_RESEND, false);
+            UtcTimestampPrecision timestampPrecision = null;
+            if (settings.isSetting(sessionID, Session.SETTING_TIMESTAMP_PRECISION)) {
+                final String precision = settings.getString(sessionID, Session.SETTING_TIMESTAMP_PRECISION);
+                try {
+                    timestampPrecision = UtcTimestampPrecision.valueOf(precision.toUpperCase());
+                } catch (final IllegalArgumentException e) {
+                    throw new ConfigError("Invalid " + Session.SETTING_TIMESTAMP_PRECISION + ": "
+                            + precision);
+                }
+            }
 
             final int[] logonIntervals = getLogonIntervalsInSeconds(settings, sessionID);
             final Set<InetAddress> allowedRemoteAddresses = getInetAddresses(settings, sessionID);
@@ -193,6 +206,10 @@ public class DefaultSessionFactory implements SessionFactory {
 
             session.setLogonTimeout(logonTimeout);
             session.setLogoutTimeout(logoutTimeout);
+            session.setRawMessageDecoding(rawMessageDecoding);
+            session.setTimestampPrecision(timestampPrecision);
+            session.setMessagePoolSize(messagePoolSize);
+            session.setRawResend(rawResend);
 
             //
             // Session registration and creation callback is done here instead of in
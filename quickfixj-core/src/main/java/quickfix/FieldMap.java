@@ -22,7 +22,6 @@ package quickfix;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
@@ -38,6 +37,7 @@ import quickfix.field.converter.BooleanConverter;
 import quickfix.field.converter.CharConverter;
 import quickfix.field.converter.DecimalConverter;
 import quickfix.field.converter.DoubleConverter;
+import quickfix.field.converter.FixedDecimalConverter;
 import quickfix.field.converter.IntConverter;
 import quickfix.field.converter.UtcDateOnlyConverter;
 import quickfix.field.converter.UtcTimeOnlyConverter;
@@ -52,14 +52,13 @@ public abstract class FieldMap implements Serializable {
 
     private final int[] fieldOrder;
 
-    private final TreeMap<Integer, Field<?>> fields;
+    private final FieldTable fields;
 
     private final TreeMap<Integer, List<Group>> groups = new TreeMap<Integer, List<Group>>();
 
     protected FieldMap(int[] fieldOrder) {
         this.fieldOrder = fieldOrder;
-        fields = new TreeMap<Integer, Field<?>>(
-                fieldOrder != null ? new FieldOrderComparator() : null);
+        fields = new FieldTable(fieldOrder);
     }
 
     protected FieldMap() {
@@ -94,24 +93,6 @@ public abstract class FieldMap implements Serializable {
         return indexOf(field, fieldOrder) > -1;
     }
 
-    private class FieldOrderComparator implements Comparator<Integer>, Serializable {
-        static final long serialVersionUID = 3416006398018829270L;
-
-        private int rank(int field, int[] fieldOrder) {
-            int index = indexOf(field, fieldOrder);
-            return index > -1 ? index : Integer.MAX_VALUE; // unspecified fields are last
-        }
-
-        public int compare(Integer tag1, Integer tag2) {
-            int rank1 = rank(tag1, getFieldOrder());
-            int rank2 = rank(tag2, getFieldOrder());
-
-            return rank1 != Integer.MAX_VALUE || rank2 != Integer.MAX_VALUE
-                    ? rank1 - rank2 // order by rank if it is specified for either tag
-                    : tag1 - tag2; // order by tag if both tags have unspecified ordering
-        }
-    }
-
     public void setFields(FieldMap fieldMap) {
         fields.clear();
         fields.putAll(fieldMap.fields);
@@ -171,6 +152,20 @@ public abstract class FieldMap implements Serializable {
         setField(new StringField(field, DecimalConverter.convert(value, padding)));
     }
 
+    /**
+     * Sets a fixed-point decimal value. The value is formatted with exactly
+     * scale digits after the decimal point, and is not converted to a String
+     * unless the String is requested.
+     *
+     * @param field the tag
+     * @param mantissa the mantissa, the value being mantissa * 10^-scale
+     * @param scale the number of digits after the decimal point, 0 to
+     *        {@link FixedDecimalConverter#MAX_SCALE}
+     */
+    public void setFixedDecimal(int field, long mantissa, int scale) {
+        setField(field, new FixedDecimalStringField(field, mantissa, scale));
+    }
+
     public void setUtcTimeStamp(int field, Date value) {
         setUtcTimeStamp(field, value, false);
     }
@@ -179,6 +174,22 @@ public abstract class FieldMap implements Serializable {
         setField(new StringField(field, UtcTimestampConverter.convert(value, includeMilliseconds)));
     }
 
+    public void setUtcTimeStamp(int field, Date value, UtcTimestampPrecision precision) {
+        setField(new StringField(field, UtcTimestampConverter.convert(value, precision)));
+    }
+
+    /**
+     * Sets a UTC timestamp from nanoseconds since the epoch.
+     *
+     * @param field the tag
+     * @param epochNanos the timestamp
+     * @param precision the precision of the fractional seconds
+     */
+    public void setUtcTimeStampNanos(int field, long epochNanos, UtcTimestampPrecision precision) {
+        setField(new StringField(field, UtcTimestampConverter.convertEpochNanos(epochNanos,
+                precision)));
+    }
+
     public void setUtcTimeOnly(int field, Date value) {
         setUtcTimeOnly(field, value, false);
     }
@@ -229,7 +240,7 @@ public abstract class FieldMap implements Serializable {
 
     public int getInt(int field) throws FieldNotFound {
         try {
-            return IntConverter.convert(getString(field));
+            return getField(field).intValue();
         } catch (final FieldConvertError e) {
             throw newIncorrectDataException(e, field);
         }
@@ -237,7 +248,7 @@ public abstract class FieldMap implements Serializable {
 
     public double getDouble(int field) throws FieldNotFound {
         try {
-            return DoubleConverter.convert(getString(field));
+            return getField(field).doubleValue();
         } catch (final FieldConvertError e) {
             throw newIncorrectDataException(e, field);
         }
@@ -245,7 +256,26 @@ public abstract class FieldMap implements Serializable {
 
     public BigDecimal getDecimal(int field) throws FieldNotFound {
         try {
-            return DecimalConverter.convert(getString(field));
+            return getField(field).decimalValue();
+        } catch (final FieldConvertError e) {
+            throw newIncorrectDataException(e, field);
+        }
+    }
+
+    /**
+     * Gets a decimal value as the mantissa of a fixed-point decimal with the
+     * given scale.
+     *
+     * @param field the tag
+     * @param scale the scale of the result
+     * @return the mantissa, the value being mantissa * 10^-scale
+     * @throws FieldNotFound if the field is not set
+     * @throws FieldException if the value is not a decimal, does not fit a long
+     *         or needs more digits after the decimal point than the scale.
+     */
+    public long getFixedDecimal(int field, int scale) throws FieldNotFound {
+        try {
+            return getField(field).fixedDecimalValue(scale);
         } catch (final FieldConvertError e) {
             throw newIncorrectDataException(e, field);
         }
@@ -253,7 +283,23 @@ public abstract class FieldMap implements Serializable {
 
     public Date getUtcTimeStamp(int field) throws FieldNotFound {
         try {
-            return UtcTimestampConverter.convert(getString(field));
+            return getField(field).utcTimeStampValue();
+        } catch (final FieldConvertError e) {
+            throw newIncorrectDataException(e, field);
+        }
+    }
+
+    /**
+     * Gets a UTC timestamp as nanoseconds since the epoch, keeping micro- and
+     * nanosecond digits that a Date cannot hold.
+     *
+     * @param field the tag
+     * @return the timestamp
+     * @throws FieldNotFound if the field is not set
+     */
+    public long getUtcTimeStampNanos(int field) throws FieldNotFound {
+        try {
+            return getField(field).utcTimeStampNanos();
         } catch (final FieldConvertError e) {
             throw newIncorrectDataException(e, field);
         }
@@ -261,7 +307,7 @@ public abstract class FieldMap implements Serializable {
 
     public Date getUtcTimeOnly(int field) throws FieldNotFound {
         try {
-            return UtcTimeOnlyConverter.convert(getString(field));
+            return getField(field).utcTimeOnlyValue();
         } catch (final FieldConvertError e) {
             throw newIncorrectDataException(e, field);
         }
@@ -269,7 +315,7 @@ public abstract class FieldMap implements Serializable {
 
     public Date getUtcDateOnly(int field) throws FieldNotFound {
         try {
-            return UtcDateOnlyConverter.convert(getString(field));
+            return getField(field).utcDateOnlyValue();
         } catch (final FieldConvertError e) {
             throw newIncorrectDataException(e, field);
         }
@@ -306,6 +352,10 @@ public abstract class FieldMap implements Serializable {
         setDecimal(field.getField(), field.getValue());
     }
 
+    public void setField(FixedDecimalField field) {
+        setFixedDecimal(field.getField(), field.getMantissa(), field.getScale());
+    }
+
     public void setField(UtcTimeStampField field) {
         setUtcTimeStamp(field.getField(), field.getValue(), field.showMilliseconds());
     }
@@ -363,6 +413,17 @@ public abstract class FieldMap implements Serializable {
         return updateValue(field, getDecimal(field.getField()));
     }
 
+    public FixedDecimalField getField(FixedDecimalField field) throws FieldNotFound {
+        final StringField f = getField(field.getField());
+        try {
+            final int scale = f.fixedDecimalScale();
+            field.setValue(f.fixedDecimalValue(scale), scale);
+        } catch (final FieldConvertError e) {
+            throw newIncorrectDataException(e, field.getField());
+        }
+        return field;
+    }
+
     public UtcTimeStampField getField(UtcTimeStampField field) throws FieldNotFound {
         return updateValue(field, getUtcTimeStamp(field.getField()));
     }
@@ -393,7 +454,7 @@ public abstract class FieldMap implements Serializable {
     }
 
     public Iterator<Field<?>> iterator() {
-        return fields.values().iterator();
+        return fields.iterator();
     }
 
     protected void initializeFrom(FieldMap source) {
@@ -412,33 +473,67 @@ public abstract class FieldMap implements Serializable {
     }
 
     private boolean isGroupField(int field) {
-        return groups.containsKey(field);
+        return !groups.isEmpty() && groups.containsKey(field);
     }
 
-    private static void appendField(StringBuilder buffer, Field<?> field) {
-        if (field != null) {
+    /**
+     * Receives the fields of a field map in message order.
+     *
+     * @see FieldMap#writeFields(FieldWriter, int[], int[])
+     */
+    interface FieldWriter {
+        void write(Field<?> field);
+    }
+
+    private static final class StringFieldWriter implements FieldWriter {
+        private final StringBuilder buffer;
+
+        StringFieldWriter(StringBuilder buffer) {
+            this.buffer = buffer;
+        }
+
+        public void write(Field<?> field) {
             field.toString(buffer);
             buffer.append('\001');
         }
     }
 
     protected void calculateString(StringBuilder buffer, int[] preFields, int[] postFields) {
+        writeFields(new StringFieldWriter(buffer), preFields, postFields);
+    }
+
+    private static void writeField(FieldWriter writer, Field<?> field) {
+        if (field != null) {
+            writer.write(field);
+        }
+    }
+
+    /**
+     * Passes the fields and groups to the writer in the order they appear in
+     * the encoded message.
+     *
+     * @param writer the field writer
+     * @param preFields fields written first, in the given order, or null
+     * @param postFields fields written last, in the given order, or null
+     */
+    void writeFields(FieldWriter writer, int[] preFields, int[] postFields) {
         if (preFields != null) {
             for (int preField : preFields) {
-                appendField(buffer, getField(preField, null));
+                writeField(writer, getField(preField, null));
             }
         }
 
-        for (final Field<?> field : fields.values()) {
+        for (int i = 0; i < fields.size(); i++) {
+            final Field<?> field = fields.valueAt(i);
             final int tag = field.getField();
             if (!isOrderedField(tag, preFields) && !isOrderedField(tag, postFields)
                     && !isGroupField(tag)) {
-                appendField(buffer, field);
+                writeField(writer, field);
             } else if (isGroupField(tag) && isOrderedField(tag, fieldOrder)
                     && getGroupCount(tag) > 0) {
-                appendField(buffer, field);
+                writeField(writer, field);
                 for (Group group : getGroups(tag)) {
-                    group.calculateString(buffer, preFields, postFields);
+                    group.writeFields(writer, preFields, postFields);
                 }
             }
         }
@@ -450,9 +545,9 @@ public abstract class FieldMap implements Serializable {
                 int groupCount = groups.size();
                 if (groupCount > 0) {
                     final IntField countField = new IntField(groupCountTag.intValue(), groupCount);
-                    appendField(buffer, countField);
+                    writeField(writer, countField);
                     for (Group group : groups) {
-                        group.calculateString(buffer, preFields, postFields);
+                        group.writeFields(writer, preFields, postFields);
                     }
                 }
             }
@@ -460,14 +555,15 @@ public abstract class FieldMap implements Serializable {
 
         if (postFields != null) {
             for (int postField : postFields) {
-                appendField(buffer, getField(postField, null));
+                writeField(writer, getField(postField, null));
             }
         }
     }
 
     int calculateLength() {
         int result = 0;
-        for (final Field<?> field : fields.values()) {
+        for (int i = 0; i < fields.size(); i++) {
+            final Field<?> field = fields.valueAt(i);
             int tag = field.getField();
             if (tag != BeginString.FIELD && tag != BodyLength.FIELD
                     && tag != CheckSum.FIELD && !isGroupField(tag)) {
@@ -491,7 +587,8 @@ public abstract class FieldMap implements Serializable {
 
     int calculateChecksum() {
         int result = 0;
-        for (final Field<?> field : fields.values()) {
+        for (int i = 0; i < fields.size(); i++) {
+            final Field<?> field = fields.valueAt(i);
             if (field.getField() != CheckSum.FIELD && !isGroupField(field.getField())) {
                 result += field.getChecksum();
             }
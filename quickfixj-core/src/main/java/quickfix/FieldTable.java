@@ -0,0 +1,231 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Sorted array map from tags to fields used by {@link FieldMap}.
+ *
+ * Fields are kept in message order: fields listed in the field order come
+ * first in that order, followed by all other fields in ascending tag order.
+ * The rank and tag of each field are combined into a single primitive sort
+ * key, so lookups are a binary search without boxing and inserts do not
+ * allocate entry objects.
+ */
+class FieldTable implements Serializable {
+    static final long serialVersionUID = 5264632941582378720L;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final long[] EMPTY_KEYS = new long[0];
+    private static final Field<?>[] EMPTY_VALUES = new Field<?>[0];
+
+    private final int[] fieldOrder;
+
+    private long[] keys = EMPTY_KEYS;
+    private Field<?>[] values = EMPTY_VALUES;
+    private int size;
+    private transient int modCount;
+
+    FieldTable(int[] fieldOrder) {
+        this.fieldOrder = fieldOrder;
+    }
+
+    private long key(int tag) {
+        int rank = Integer.MAX_VALUE; // unspecified fields are last
+        if (fieldOrder != null) {
+            for (int i = 0; i < fieldOrder.length; i++) {
+                if (fieldOrder[i] == tag) {
+                    rank = i;
+                    break;
+                }
+            }
+        }
+        // order by rank if it is specified, otherwise by tag
+        return ((long) rank << 32) | (tag & 0xFFFFFFFFL);
+    }
+
+    private int search(long key) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final long midKey = keys[mid];
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    Field<?> get(int tag) {
+        final int index = search(key(tag));
+        return index >= 0 ? values[index] : null;
+    }
+
+    boolean containsKey(int tag) {
+        return search(key(tag)) >= 0;
+    }
+
+    /**
+     * @return the field at the given position in message order
+     */
+    Field<?> valueAt(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("index=" + index + ", size=" + size);
+        }
+        return values[index];
+    }
+
+    Field<?> put(int tag, Field<?> field) {
+        final long key = key(tag);
+        int index = search(key);
+        if (index >= 0) {
+            final Field<?> previous = values[index];
+            values[index] = field;
+            return previous;
+        }
+        index = -(index + 1);
+        if (size == keys.length) {
+            grow(size + 1);
+        }
+        if (index < size) {
+            System.arraycopy(keys, index, keys, index + 1, size - index);
+            System.arraycopy(values, index, values, index + 1, size - index);
+        }
+        keys[index] = key;
+        values[index] = field;
+        size++;
+        modCount++;
+        return null;
+    }
+
+    Field<?> remove(int tag) {
+        final int index = search(key(tag));
+        if (index < 0) {
+            return null;
+        }
+        final Field<?> previous = values[index];
+        removeAt(index);
+        return previous;
+    }
+
+    private void removeAt(int index) {
+        final int moved = size - index - 1;
+        if (moved > 0) {
+            System.arraycopy(keys, index + 1, keys, index, moved);
+            System.arraycopy(values, index + 1, values, index, moved);
+        }
+        values[--size] = null;
+        modCount++;
+    }
+
+    void putAll(FieldTable source) {
+        if (Arrays.equals(fieldOrder, source.fieldOrder) && isEmpty()) {
+            // same ordering, so the sorted arrays can be copied as they are
+            if (keys.length < source.size) {
+                keys = new long[source.size];
+                values = new Field<?>[source.size];
+            }
+            System.arraycopy(source.keys, 0, keys, 0, source.size);
+            System.arraycopy(source.values, 0, values, 0, source.size);
+            size = source.size;
+            modCount++;
+        } else {
+            for (int i = 0; i < source.size; i++) {
+                put((int) source.keys[i], source.values[i]);
+            }
+        }
+    }
+
+    void clear() {
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+        modCount++;
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = Math.max(INITIAL_CAPACITY, keys.length + (keys.length >> 1));
+        if (capacity < minCapacity) {
+            capacity = minCapacity;
+        }
+        final long[] newKeys = new long[capacity];
+        final Field<?>[] newValues = new Field<?>[capacity];
+        System.arraycopy(keys, 0, newKeys, 0, size);
+        System.arraycopy(values, 0, newValues, 0, size);
+        keys = newKeys;
+        values = newValues;
+    }
+
+    Iterator<Field<?>> iterator() {
+        return new Iterator<Field<?>>() {
+            private int next;
+            private int last = -1;
+            private int expectedModCount = modCount;
+
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            public Field<?> next() {
+                checkForComodification();
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                last = next++;
+                return values[last];
+            }
+
+            public void remove() {
+                if (last < 0) {
+                    throw new IllegalStateException();
+                }
+                checkForComodification();
+                removeAt(last);
+                next = last;
+                last = -1;
+                expectedModCount = modCount;
+            }
+
+            private void checkForComodification() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+            }
+        };
+    }
+}
@@ -50,6 +50,7 @@ public class FileLog extends AbstractLog {
     private String messagesFileName;
     private String eventFileName;
     private boolean syncAfterWrite;
+    private GroupCommit groupCommit;
 
     private FileOutputStream messages;
     private FileOutputStream events;
@@ -90,21 +91,48 @@ public class FileLog extends AbstractLog {
         writeMessage(messages, message, false);
     }
 
+    /**
+     * Writes the message bytes as they are.
+     */
+    @Override
+    protected void logIncoming(byte[] data, int offset, int length) {
+        writeMessage(messages, data, offset, length, false);
+    }
+
+    /**
+     * Writes the message bytes as they are.
+     */
+    @Override
+    protected void logOutgoing(byte[] data, int offset, int length) {
+        writeMessage(messages, data, offset, length, false);
+    }
+
     private void writeMessage(FileOutputStream stream, String message, boolean forceTimestamp) {
+        final byte[] data = message.getBytes(CharsetSupport.getCharsetInstance());
+        writeMessage(stream, data, 0, data.length, forceTimestamp);
+    }
+
+    private void writeMessage(FileOutputStream stream, byte[] data, int offset, int length,
+            boolean forceTimestamp) {
         try {
             if (forceTimestamp || includeTimestampForMessages) {
                 writeTimeStamp(stream);
             }
-            stream.write(message.getBytes(CharsetSupport.getCharset()));
+            stream.write(data, offset, length);
             stream.write('\n');
             stream.flush();
             if (syncAfterWrite) {
-                stream.getFD().sync();
+                if (groupCommit != null) {
+                    groupCommit.sync(stream.getFD());
+                } else {
+                    stream.getFD().sync();
+                }
             }
         } catch (IOException e) {
             // QFJ-459: no point trying to log the error in the file if we had an IOException
             // we will end up with a java.lang.StackOverflowError
-            System.err.println("error writing message to log : " + message);
+            System.err.println("error writing message to log : "
+                    + RawMessage.decode(data, offset, length));
             e.printStackTrace(System.err);
         }
     }
@@ -135,6 +163,16 @@ public class FileLog extends AbstractLog {
         this.syncAfterWrite = syncAfterWrite;
     }
 
+    /**
+     * Syncs the writes together with those of other logs and stores, when
+     * syncing after writes, instead of syncing every write on its own.
+     *
+     * @param groupCommit the group commit, or null to sync every write
+     */
+    void setGroupCommit(GroupCommit groupCommit) {
+        this.groupCommit = groupCommit;
+    }
+
     /**
      * Closes the messages and events files.
      *
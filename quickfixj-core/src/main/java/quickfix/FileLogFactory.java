@@ -50,6 +50,13 @@ public class FileLogFactory implements LogFactory {
      */
     public static final String SETTING_LOG_HEARTBEATS = "FileLogHeartbeats";
 
+    /**
+     * Maximum time in microseconds that a log write waits for writes of other
+     * logs and stores to be synced with it. A value greater than 0 makes the
+     * log sync every write, using a group commit.
+     */
+    public static final String SETTING_LOG_GROUP_COMMIT_LATENCY = "FileLogGroupCommitLatency";
+
     private SessionSettings settings;
 
     /**
@@ -83,8 +90,16 @@ public class FileLogFactory implements LogFactory {
                 logHeartbeats = settings.getBool(sessionID, SETTING_LOG_HEARTBEATS);
             }
 
-            return new FileLog(settings.getString(sessionID, FileLogFactory.SETTING_FILE_LOG_PATH),
+            FileLog log = new FileLog(settings.getString(sessionID, FileLogFactory.SETTING_FILE_LOG_PATH),
                     sessionID, includeMillis, includeTimestampInMessages, logHeartbeats);
+            if (settings.isSetting(sessionID, SETTING_LOG_GROUP_COMMIT_LATENCY)) {
+                long latency = settings.getLong(sessionID, SETTING_LOG_GROUP_COMMIT_LATENCY);
+                if (latency > 0) {
+                    log.setSyncAfterWrite(true);
+                    log.setGroupCommit(GroupCommit.getInstance(latency));
+                }
+            }
+            return log;
         } catch (Exception e) {
             throw new RuntimeError(e);
         }
@@ -30,12 +30,11 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.util.BitSet;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.TreeMap;
+import java.util.List;
 
 import org.quickfixj.CharsetSupport;
 
@@ -45,16 +44,24 @@ import quickfix.field.converter.UtcTimestampConverter;
  * File store implementation. THIS CLASS IS PUBLIC ONLY TO MAINTAIN
  * COMPATIBILITY WITH THE QUICKFIX JNI. IT SHOULD ONLY BE CREATED USING A
  * FACTORY.
+ * <p>
+ * The locations of the most recent messages are held in a primitive index.
+ * The index is periodically saved to a checkpoint file along with the length
+ * of the header file it covers, so opening the store only reads the headers
+ * written after the last checkpoint.
  *
  * @see quickfix.FileStoreFactory
  */
-public class FileStore implements MessageStore, Closeable {
+public class FileStore implements BatchMessageStore, StreamingMessageStore, Closeable {
     private static final String READ_OPTION = "r";
     private static final String WRITE_OPTION = "w";
     private static final String SYNC_OPTION = "d";
     private static final String NOSYNC_OPTION = "";
+    private static final int HEADER_RECORD_LENGTH = 16;
+    private static final int READ_BUFFER_SIZE = 65536;
+    private static final int CURSOR_CHUNK_SIZE = 4096;
 
-    private final TreeMap<Long, long[]> messageIndex;
+    private final SequenceIndex messageIndex;
     private final MemoryStore cache = new MemoryStore();
 
     private final String msgFileName;
@@ -62,8 +69,11 @@ public class FileStore implements MessageStore, Closeable {
     private final String senderSeqNumFileName;
     private final String targetSeqNumFileName;
     private final String sessionFileName;
+    private final String indexFileName;
     private final boolean syncWrites;
+    private final GroupCommit groupCommit;
     private final int maxCachedMsgs;
+    private final int checkpointInterval;
     private final String charsetEncoding = CharsetSupport.getCharset();
     private RandomAccessFile messageFileReader;
     private RandomAccessFile messageFileWriter;
@@ -71,14 +81,43 @@ public class FileStore implements MessageStore, Closeable {
     private FileOutputStream headerFileOutputStream;
     private RandomAccessFile senderSequenceNumberFile;
     private RandomAccessFile targetSequenceNumberFile;
+    private long headerLength;
+    private int uncheckpointedMsgs;
+    // the highest sequence number in the header file, or -1 until it is known
+    private int lastStoredSequence;
+    // whether an incremented sender sequence number still has to be synced
+    private boolean senderSequenceNumberPending;
 
     FileStore(String path, SessionID sessionID, boolean syncWrites, int maxCachedMsgs)
             throws IOException {
+        this(path, sessionID, syncWrites, maxCachedMsgs, 0);
+    }
+
+    /**
+     * @param checkpointInterval the number of stored messages after which the
+     *            message index is saved, or 0 to never save it
+     */
+    FileStore(String path, SessionID sessionID, boolean syncWrites, int maxCachedMsgs,
+            int checkpointInterval) throws IOException {
+        this(path, sessionID, syncWrites, maxCachedMsgs, checkpointInterval, null);
+    }
+
+    /**
+     * @param checkpointInterval the number of stored messages after which the
+     *            message index is saved, or 0 to never save it
+     * @param groupCommit syncs the writes together with those of other
+     *            stores and logs instead of syncing every write on its own,
+     *            or null
+     */
+    FileStore(String path, SessionID sessionID, boolean syncWrites, int maxCachedMsgs,
+            int checkpointInterval, GroupCommit groupCommit) throws IOException {
         this.syncWrites = syncWrites;
+        this.groupCommit = syncWrites ? groupCommit : null;
         this.maxCachedMsgs = maxCachedMsgs;
+        this.checkpointInterval = checkpointInterval;
 
         if (maxCachedMsgs > 0) {
-            messageIndex = new TreeMap<Long, long[]>();
+            messageIndex = new SequenceIndex(Math.min(maxCachedMsgs, 1024));
         } else {
             messageIndex = null;
         }
@@ -92,6 +131,7 @@ public class FileStore implements MessageStore, Closeable {
         senderSeqNumFileName = prefix + "senderseqnums";
         targetSeqNumFileName = prefix + "targetseqnums";
         sessionFileName = prefix + "session";
+        indexFileName = prefix + "index";
 
         final File directory = new File(msgFileName).getParentFile();
         if (!directory.exists()) {
@@ -107,6 +147,7 @@ public class FileStore implements MessageStore, Closeable {
         if (deleteFiles) {
             deleteFiles();
         }
+        lastStoredSequence = deleteFiles ? 0 : -1;
 
         messageFileWriter = new RandomAccessFile(msgFileName, getRandomAccessFileOptions());
         messageFileReader = new RandomAccessFile(msgFileName, READ_OPTION);
@@ -169,26 +210,67 @@ public class FileStore implements MessageStore, Closeable {
             final String s = senderSequenceNumberFile.readUTF();
             cache.setNextSenderMsgSeqNum(Integer.parseInt(s));
         }
+        // an increment that was not synced before a crash must not reuse the
+        // sequence number of the last stored message
+        final int lastSequence = readLastHeaderSequence();
+        if (lastSequence >= cache.getNextSenderMsgSeqNum()) {
+            cache.setNextSenderMsgSeqNum(lastSequence + 1);
+        }
         if (targetSequenceNumberFile.length() > 0) {
             final String s = targetSequenceNumberFile.readUTF();
             cache.setNextTargetMsgSeqNum(Integer.parseInt(s));
         }
     }
 
+    /**
+     * @return the sequence number of the last message that was stored, or 0
+     *         if there is none
+     */
+    private int readLastHeaderSequence() throws IOException {
+        if (headerLength == 0) {
+            return 0;
+        }
+        final RandomAccessFile headerFileReader = new RandomAccessFile(headerFileName,
+                READ_OPTION);
+        try {
+            headerFileReader.seek(headerLength - HEADER_RECORD_LENGTH);
+            return headerFileReader.readInt();
+        } finally {
+            headerFileReader.close();
+        }
+    }
+
     private void initializeMessageIndex() throws IOException {
+        final File headerFile = new File(headerFileName);
+        headerLength = headerFile.length();
+        if (headerLength % HEADER_RECORD_LENGTH != 0) {
+            // cut off a partly written record, so the records appended later stay aligned
+            headerLength -= headerLength % HEADER_RECORD_LENGTH;
+            final RandomAccessFile headerFileWriter = new RandomAccessFile(headerFile,
+                    READ_OPTION + WRITE_OPTION);
+            try {
+                headerFileWriter.setLength(headerLength);
+            } finally {
+                headerFileWriter.close();
+            }
+        }
+        uncheckpointedMsgs = 0;
         // this part is unnecessary if no offsets are being stored in memory
         if (messageIndex != null) {
             messageIndex.clear();
-            final File headerFile = new File(headerFileName);
-            if (headerFile.exists()) {
+            final long checkpointLength = checkpointInterval > 0 ? readCheckpoint() : 0;
+            if (checkpointLength < headerLength) {
                 final DataInputStream headerDataInputStream = new DataInputStream(
-                        new BufferedInputStream(new FileInputStream(headerFile)));
+                        new BufferedInputStream(new FileInputStream(headerFile), READ_BUFFER_SIZE));
                 try {
-                    while (headerDataInputStream.available() > 0) {
+                    skipFully(headerDataInputStream, checkpointLength);
+                    long records = (headerLength - checkpointLength) / HEADER_RECORD_LENGTH;
+                    while (records-- > 0) {
                         final int sequenceNumber = headerDataInputStream.readInt();
                         final long offset = headerDataInputStream.readLong();
                         final int size = headerDataInputStream.readInt();
-                        updateMessageIndex((long) sequenceNumber, new long[] { offset, size });
+                        updateMessageIndex(sequenceNumber, offset, size);
+                        uncheckpointedMsgs++;
                     }
                 } finally {
                     headerDataInputStream.close();
@@ -200,29 +282,112 @@ public class FileStore implements MessageStore, Closeable {
                 headerFileOutputStream));
     }
 
-    private void updateMessageIndex(Long sequenceNum, long[] offsetAndSize) {
+    /**
+     * Loads the message index from the checkpoint file, if there is a valid
+     * one.
+     *
+     * @return the length of the header file covered by the checkpoint, or 0
+     *         if none was loaded
+     */
+    private long readCheckpoint() throws IOException {
+        final File indexFile = new File(indexFileName);
+        final long indexLength = indexFile.length();
+        if (indexLength < 8 || (indexLength - 8) % HEADER_RECORD_LENGTH != 0) {
+            return 0;
+        }
+        final DataInputStream indexDataInputStream = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(indexFile), READ_BUFFER_SIZE));
+        try {
+            final long checkpointLength = indexDataInputStream.readLong();
+            if (checkpointLength < 0 || checkpointLength > headerLength
+                    || checkpointLength % HEADER_RECORD_LENGTH != 0) {
+                // the checkpoint does not belong to this header file
+                return 0;
+            }
+            long records = (indexLength - 8) / HEADER_RECORD_LENGTH;
+            while (records-- > 0) {
+                final int sequenceNumber = indexDataInputStream.readInt();
+                final long offset = indexDataInputStream.readLong();
+                final int size = indexDataInputStream.readInt();
+                updateMessageIndex(sequenceNumber, offset, size);
+            }
+            return checkpointLength;
+        } finally {
+            indexDataInputStream.close();
+        }
+    }
+
+    /**
+     * Saves the message index and the length of the header file it covers.
+     * The checkpoint is written to a temporary file first, so a checkpoint
+     * that is interrupted leaves the previous one in place.
+     */
+    private void writeCheckpoint() throws IOException {
+        final File tempFile = new File(indexFileName + ".tmp");
+        final DataOutputStream indexDataOutputStream = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tempFile), READ_BUFFER_SIZE));
+        try {
+            indexDataOutputStream.writeLong(headerLength);
+            for (int i = 0; i < messageIndex.size(); i++) {
+                indexDataOutputStream.writeInt(messageIndex.sequenceAt(i));
+                indexDataOutputStream.writeLong(messageIndex.valueAt(i));
+                indexDataOutputStream.writeInt(messageIndex.lengthAt(i));
+            }
+        } finally {
+            indexDataOutputStream.close();
+        }
+        final File indexFile = new File(indexFileName);
+        if (!tempFile.renameTo(indexFile)) {
+            // renaming does not replace an existing file on some platforms
+            deleteFile(indexFileName);
+            if (!tempFile.renameTo(indexFile)) {
+                throw new IOException("Could not rename " + tempFile + " to " + indexFile);
+            }
+        }
+        uncheckpointedMsgs = 0;
+    }
+
+    private static void skipFully(DataInputStream in, long length) throws IOException {
+        while (length > 0) {
+            final long skipped = in.skip(length);
+            if (skipped <= 0) {
+                throw new IOException("Unexpected end of header file");
+            }
+            length -= skipped;
+        }
+    }
+
+    private void updateMessageIndex(int sequenceNum, long offset, int size) {
         // Remove the lowest indexed sequence number if this addition
         // would result the index growing to larger than maxCachedMsgs.
-        if (messageIndex.size() >= maxCachedMsgs && messageIndex.get(sequenceNum) == null) {
-            // Line below requires Java 6, using Java 5 approximation
-            //messageIndex.pollFirstEntry();
-            messageIndex.remove(messageIndex.firstKey());
+        if (messageIndex.size() >= maxCachedMsgs && messageIndex.indexOf(sequenceNum) == -1) {
+            messageIndex.removeFirst();
         }
 
-        messageIndex.put(sequenceNum, offsetAndSize);
+        messageIndex.put(sequenceNum, offset, size);
     }
 
     private String getRandomAccessFileOptions() {
-        return READ_OPTION + WRITE_OPTION + (syncWrites ? SYNC_OPTION : NOSYNC_OPTION);
+        // with a group commit, the files are synced after writing
+        return READ_OPTION + WRITE_OPTION
+                + (syncWrites && groupCommit == null ? SYNC_OPTION : NOSYNC_OPTION);
     }
 
     /**
-     * Close the store's files.
+     * Close the store's files, saving the message index if checkpoints are
+     * enabled.
      *
      * @throws IOException
      */
     public void close() throws IOException {
+        if (senderSequenceNumberPending) {
+            groupCommit.sync(senderSequenceNumberFile.getFD());
+            senderSequenceNumberPending = false;
+        }
         closeOutputStream(headerDataOutputStream);
+        if (messageIndex != null && checkpointInterval > 0 && uncheckpointedMsgs > 0) {
+            writeCheckpoint();
+        }
         closeFile(messageFileWriter);
         closeFile(messageFileReader);
         closeFile(senderSequenceNumberFile);
@@ -248,6 +413,7 @@ public class FileStore implements MessageStore, Closeable {
         deleteFile(senderSeqNumFileName);
         deleteFile(targetSeqNumFileName);
         deleteFile(sessionFileName);
+        deleteFile(indexFileName);
     }
 
     private void deleteFile(String fileName) throws IOException {
@@ -276,7 +442,7 @@ public class FileStore implements MessageStore, Closeable {
      */
     public void setNextSenderMsgSeqNum(int next) throws IOException {
         cache.setNextSenderMsgSeqNum(next);
-        storeSenderSequenceNumber();
+        storeSenderSequenceNumber(true);
     }
 
     /* (non-Javadoc)
@@ -292,7 +458,7 @@ public class FileStore implements MessageStore, Closeable {
      */
     public void incrNextSenderMsgSeqNum() throws IOException {
         cache.incrNextSenderMsgSeqNum();
-        storeSenderSequenceNumber();
+        storeSenderSequenceNumber(false);
     }
 
     /* (non-Javadoc)
@@ -308,45 +474,95 @@ public class FileStore implements MessageStore, Closeable {
      */
     public void get(int startSequence, int endSequence, Collection<String> messages)
             throws IOException {
-        final Set<Integer> uncachedOffsetMsgIds = new HashSet<Integer>();
-        // Use a treemap to make sure the messages are sorted by sequence num
-        final TreeMap<Integer, String> messagesFound = new TreeMap<Integer, String>();
-        for (int i = startSequence; i <= endSequence; i++) {
-            final String message = getMessage(i);
-            if (message != null) {
-                messagesFound.put(i, message);
+        final SequenceIndex locations = getMessageLocations(startSequence, endSequence);
+        for (int i = 0; i < locations.size(); i++) {
+            messages.add(getMessage(locations, i));
+        }
+    }
+
+    /**
+     * Looks up where the messages are stored a chunk of sequence numbers at a
+     * time and then reads them one at a time, so only the offsets and sizes
+     * of one chunk are held in memory.
+     */
+    public StoredMessageCursor openCursor(final int startSequence, final int endSequence)
+            throws IOException {
+        return new StoredMessageCursor() {
+            private long nextSequence = startSequence;
+            private SequenceIndex locations = new SequenceIndex();
+            private int position;
+
+            public String next() throws IOException {
+                while (position == locations.size()) {
+                    if (nextSequence > endSequence
+                            || (lastStoredSequence != -1 && nextSequence > lastStoredSequence)) {
+                        return null;
+                    }
+                    final long last = Math.min(nextSequence + CURSOR_CHUNK_SIZE - 1, endSequence);
+                    locations = getMessageLocations((int) nextSequence, (int) last);
+                    position = 0;
+                    nextSequence = last + 1;
+                }
+                return getMessage(locations, position++);
+            }
+
+            public void close() {
+                locations = new SequenceIndex();
+                position = 0;
+                nextSequence = endSequence + 1L;
+            }
+        };
+    }
+
+    private SequenceIndex getMessageLocations(int startSequence, int endSequence)
+            throws IOException {
+        // the sequence numbers that are not in the index, relative to the start
+        final BitSet uncached = new BitSet();
+        // the index keeps the messages sorted by sequence num
+        final SequenceIndex locations = new SequenceIndex();
+        int position = messageIndex != null ? messageIndex.ceiling(startSequence) : 0;
+        for (long sequence = startSequence; sequence <= endSequence; sequence++) {
+            final int i = (int) sequence;
+            if (messageIndex != null && position < messageIndex.size()
+                    && messageIndex.sequenceAt(position) == i) {
+                locations.put(i, messageIndex.valueAt(position), messageIndex.lengthAt(position));
+                position++;
             } else {
-                uncachedOffsetMsgIds.add(i);
+                uncached.set(i - startSequence);
             }
         }
 
-        if (!uncachedOffsetMsgIds.isEmpty()) {
+        int uncachedCount = uncached.cardinality();
+        if (uncachedCount > 0) {
             // parse the header file to find missing messages
             final File headerFile = new File(headerFileName);
             final DataInputStream headerDataInputStream = new DataInputStream(
                     new BufferedInputStream(new FileInputStream(headerFile)));
+            int lastSequence = 0;
             try {
                 while (headerDataInputStream.available() > 0) {
                     final int sequenceNumber = headerDataInputStream.readInt();
                     final long offset = headerDataInputStream.readLong();
                     final int size = headerDataInputStream.readInt();
-                    if (uncachedOffsetMsgIds.remove(sequenceNumber)) {
-                        final String message = getMessage(new long[] { offset, size },
-                                sequenceNumber);
-                        if (message != null) {
-                            messagesFound.put(sequenceNumber, message);
+                    lastSequence = Math.max(lastSequence, sequenceNumber);
+                    if (sequenceNumber >= startSequence && sequenceNumber <= endSequence
+                            && uncached.get(sequenceNumber - startSequence)) {
+                        uncached.clear(sequenceNumber - startSequence);
+                        locations.put(sequenceNumber, offset, size);
+                        if (--uncachedCount == 0) {
+                            break;
                         }
                     }
-                    if (uncachedOffsetMsgIds.isEmpty()) {
-                        break;
-                    }
+                }
+                if (uncachedCount > 0) {
+                    // the whole file was read
+                    lastStoredSequence = lastSequence;
                 }
             } finally {
                 headerDataInputStream.close();
             }
         }
-
-        messages.addAll(messagesFound.values());
+        return locations;
     }
 
     /**
@@ -358,21 +574,11 @@ public class FileStore implements MessageStore, Closeable {
         throw new UnsupportedOperationException("not supported");
     }
 
-    private String getMessage(int i) throws IOException {
-        String message = null;
-        if (messageIndex != null) {
-            final long[] offsetAndSize = messageIndex.get((long) i);
-            if (offsetAndSize != null) {
-                message = getMessage(offsetAndSize, i);
-            }
-        }
-        return message;
-    }
-
-    private String getMessage(long[] offsetAndSize, int i) throws IOException {
-        final long offset = offsetAndSize[0];
+    private String getMessage(SequenceIndex locations, int position) throws IOException {
+        final int i = locations.sequenceAt(position);
+        final long offset = locations.valueAt(position);
         messageFileReader.seek(offset);
-        final int size = (int) offsetAndSize[1];
+        final int size = locations.lengthAt(position);
         final byte[] data = new byte[size];
         final int sizeRead = messageFileReader.read(data);
         if (sizeRead != size) {
@@ -390,29 +596,120 @@ public class FileStore implements MessageStore, Closeable {
      */
     public boolean set(int sequence, String message) throws IOException {
         final long offset = messageFileWriter.getFilePointer();
-        final int size = message.length();
+        final byte[] data = message.getBytes(charsetEncoding);
+        final int size = data.length;
         if (messageIndex != null) {
-            updateMessageIndex((long) sequence, new long[] { offset, size });
+            updateMessageIndex(sequence, offset, size);
         }
         headerDataOutputStream.writeInt(sequence);
         headerDataOutputStream.writeLong(offset);
         headerDataOutputStream.writeInt(size);
         headerDataOutputStream.flush();
-        if (syncWrites) {
+        if (syncWrites && groupCommit == null) {
             headerFileOutputStream.getFD().sync();
         }
-        messageFileWriter.write(message.getBytes(CharsetSupport.getCharset()));
+        messageFileWriter.write(data);
+        commitMessages();
+        headersWritten(1);
+        messagesStored(sequence);
         return true;
     }
 
-    private void storeSenderSequenceNumber() throws IOException {
+    /**
+     * Appends all messages with a single write to each file and, when
+     * writes are synchronized, a single sync of the header file, or a single
+     * group commit.
+     */
+    public boolean set(int startSequence, List<String> messages) throws IOException {
+        final byte[][] data = new byte[messages.size()][];
+        int length = 0;
+        long offset = messageFileWriter.getFilePointer();
+        int sequence = startSequence;
+        for (int i = 0; i < data.length; i++) {
+            data[i] = messages.get(i).getBytes(charsetEncoding);
+            final int size = data[i].length;
+            if (messageIndex != null) {
+                updateMessageIndex(sequence, offset, size);
+            }
+            headerDataOutputStream.writeInt(sequence++);
+            headerDataOutputStream.writeLong(offset);
+            headerDataOutputStream.writeInt(size);
+            offset += data[i].length;
+            length += data[i].length;
+        }
+        headerDataOutputStream.flush();
+        if (syncWrites && groupCommit == null) {
+            headerFileOutputStream.getFD().sync();
+        }
+        final byte[] bytes = new byte[length];
+        int position = 0;
+        for (final byte[] messageData : data) {
+            System.arraycopy(messageData, 0, bytes, position, messageData.length);
+            position += messageData.length;
+        }
+        messageFileWriter.write(bytes);
+        commitMessages();
+        headersWritten(data.length);
+        messagesStored(sequence - 1);
+        return true;
+    }
+
+    private void commitMessages() throws IOException {
+        if (groupCommit != null) {
+            if (senderSequenceNumberPending) {
+                groupCommit.sync(headerFileOutputStream.getFD(), messageFileWriter.getFD(),
+                        senderSequenceNumberFile.getFD());
+                senderSequenceNumberPending = false;
+            } else {
+                groupCommit.sync(headerFileOutputStream.getFD(), messageFileWriter.getFD());
+            }
+        }
+    }
+
+    private void messagesStored(int lastSequence) {
+        if (lastStoredSequence != -1) {
+            lastStoredSequence = Math.max(lastStoredSequence, lastSequence);
+        }
+    }
+
+    private void headersWritten(int count) throws IOException {
+        headerLength += (long) count * HEADER_RECORD_LENGTH;
+        if (messageIndex != null && checkpointInterval > 0) {
+            uncheckpointedMsgs += count;
+            if (uncheckpointedMsgs >= checkpointInterval) {
+                writeCheckpoint();
+            }
+        }
+    }
+
+    /**
+     * @param wait whether a group commit waits for the sync. Otherwise the
+     *            sequence number is synced with the current group without
+     *            waiting for it, and the next message commit waits for it.
+     *            This way sending a message waits for one group commit
+     *            instead of two. Should the increment be lost, opening the
+     *            store again continues after the last stored message.
+     */
+    private void storeSenderSequenceNumber(boolean wait) throws IOException {
         senderSequenceNumberFile.seek(0);
         senderSequenceNumberFile.writeUTF("" + cache.getNextSenderMsgSeqNum());
+        if (groupCommit != null) {
+            if (wait) {
+                groupCommit.sync(senderSequenceNumberFile.getFD());
+                senderSequenceNumberPending = false;
+            } else {
+                groupCommit.submit(senderSequenceNumberFile.getFD());
+                senderSequenceNumberPending = true;
+            }
+        }
     }
 
     private void storeTargetSequenceNumber() throws IOException {
         targetSequenceNumberFile.seek(0);
         targetSequenceNumberFile.writeUTF("" + cache.getNextTargetMsgSeqNum());
+        if (groupCommit != null) {
+            groupCommit.sync(targetSequenceNumberFile.getFD());
+        }
     }
 
     String getHeaderFileName() {
@@ -431,6 +728,10 @@ public class FileStore implements MessageStore, Closeable {
         return targetSeqNumFileName;
     }
 
+    String getIndexFileName() {
+        return indexFileName;
+    }
+
     /*
      * (non-Javadoc)
      * @see quickfix.RefreshableMessageStore#refresh()
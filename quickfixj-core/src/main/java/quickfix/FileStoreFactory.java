@@ -48,6 +48,26 @@ public class FileStoreFactory implements MessageStoreFactory {
      */
     public static final String SETTING_FILE_STORE_MAX_CACHED_MSGS = "FileStoreMaxCachedMsgs";
 
+    /**
+     * Numeric option for the number of stored messages after which the
+     * in-memory message index is saved to disk, so that reopening the store
+     * only reads the headers of the messages stored since. The index is also
+     * saved when the store is closed. 0 disables saving the index. The
+     * default is 10000.
+     */
+    public static final String SETTING_FILE_STORE_INDEX_CHECKPOINT_INTERVAL = "FileStoreIndexCheckpointInterval";
+
+    /**
+     * Maximum time in microseconds that a synced write waits for writes of
+     * other stores and logs to be synced with it. A value greater than 0
+     * enables the group commit when {@link #SETTING_FILE_STORE_SYNC} is on.
+     * Storing a sent message then waits for one group commit, and the
+     * increment of the sender sequence number that follows it is synced
+     * without waiting. Should a crash lose the increment, the store
+     * continues after the last stored message when it is opened again.
+     */
+    public static final String SETTING_FILE_STORE_GROUP_COMMIT_LATENCY = "FileStoreGroupCommitLatency";
+
     protected final SessionSettings settings;
 
     /**
@@ -77,7 +97,21 @@ public class FileStoreFactory implements MessageStoreFactory {
                     maxCachedMsgs = (int) maxCachedMsgsSetting;
                 }
             }
-            return new FileStore(settings.getString(sessionID, FileStoreFactory.SETTING_FILE_STORE_PATH), sessionID, syncWrites, maxCachedMsgs);
+            int checkpointInterval = 10000;
+            if (settings.isSetting(sessionID, SETTING_FILE_STORE_INDEX_CHECKPOINT_INTERVAL)) {
+                long checkpointIntervalSetting = settings.getLong(sessionID, SETTING_FILE_STORE_INDEX_CHECKPOINT_INTERVAL);
+                if (checkpointIntervalSetting >= 0 && checkpointIntervalSetting <= (long) Integer.MAX_VALUE) {
+                    checkpointInterval = (int) checkpointIntervalSetting;
+                }
+            }
+            GroupCommit groupCommit = null;
+            if (syncWrites && settings.isSetting(sessionID, SETTING_FILE_STORE_GROUP_COMMIT_LATENCY)) {
+                long latency = settings.getLong(sessionID, SETTING_FILE_STORE_GROUP_COMMIT_LATENCY);
+                if (latency > 0) {
+                    groupCommit = GroupCommit.getInstance(latency);
+                }
+            }
+            return new FileStore(settings.getString(sessionID, FileStoreFactory.SETTING_FILE_STORE_PATH), sessionID, syncWrites, maxCachedMsgs, checkpointInterval, groupCommit);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.math.BigDecimal;
+
+import quickfix.field.converter.FixedDecimalConverter;
+
+/**
+ * A fixed-point decimal message field. The value is held as a long mantissa
+ * and a scale, the number of digits after the decimal point, so it can be set
+ * and read without creating BigDecimals. The BigDecimal accessors are there for
+ * compatibility with {@link DecimalField}.
+ *
+ * @see FieldMap#setFixedDecimal(int, long, int)
+ * @see FieldMap#getFixedDecimal(int, int)
+ */
+public class FixedDecimalField extends Field<BigDecimal> {
+    static final long serialVersionUID = -3167316583513093236L;
+
+    private long mantissa;
+    private int scale;
+
+    public FixedDecimalField(int field) {
+        super(field, null);
+    }
+
+    public FixedDecimalField(int field, long mantissa, int scale) {
+        super(field, null);
+        setValue(mantissa, scale);
+    }
+
+    public FixedDecimalField(int field, BigDecimal data) {
+        super(field, null);
+        setValue(data);
+    }
+
+    public FixedDecimalField(int field, double data) {
+        this(field, BigDecimal.valueOf(data));
+    }
+
+    public void setValue(long mantissa, int scale) {
+        // validates the scale
+        FixedDecimalConverter.length(mantissa, scale);
+        this.mantissa = mantissa;
+        this.scale = scale;
+        super.setObject(null);
+    }
+
+    public void setValue(BigDecimal value) {
+        setObject(value);
+    }
+
+    public void setValue(double value) {
+        setObject(BigDecimal.valueOf(value));
+    }
+
+    public BigDecimal getValue() {
+        return getObject();
+    }
+
+    public long getMantissa() {
+        return mantissa;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    /**
+     * Sets the value from a BigDecimal.
+     *
+     * @throws NumberFormatException if the value cannot be represented with a
+     *         long mantissa and a scale of at most
+     *         {@link FixedDecimalConverter#MAX_SCALE}
+     */
+    @Override
+    protected void setObject(BigDecimal value) {
+        BigDecimal d = value.scale() < 0 ? value.setScale(0) : value;
+        if (d.scale() > FixedDecimalConverter.MAX_SCALE) {
+            d = d.stripTrailingZeros();
+        }
+        if (d.scale() > FixedDecimalConverter.MAX_SCALE || d.unscaledValue().bitLength() > 63) {
+            throw new NumberFormatException("Decimal value cannot be represented as a fixed-point decimal: "
+                    + value.toPlainString());
+        }
+        setValue(d.unscaledValue().longValue(), d.scale());
+    }
+
+    @Override
+    public BigDecimal getObject() {
+        return BigDecimal.valueOf(mantissa, scale);
+    }
+
+    @Override
+    protected String objectAsString() {
+        return FixedDecimalConverter.convert(mantissa, scale);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (mantissa ^ (mantissa >>> 32)) * 31 + scale;
+    }
+
+    public boolean valueEquals(long mantissa, int scale) {
+        if (this.scale == scale) {
+            return this.mantissa == mantissa;
+        }
+        return valueEquals(BigDecimal.valueOf(mantissa, scale));
+    }
+
+    public boolean valueEquals(BigDecimal value) {
+        return getValue().compareTo(value) == 0;
+    }
+}
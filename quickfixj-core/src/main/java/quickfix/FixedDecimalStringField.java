@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+
+import quickfix.field.converter.FixedDecimalConverter;
+
+/**
+ * A string field set from a fixed-point decimal. The String value is only
+ * formatted when it is requested; messages encoded into a ByteBuffer get the
+ * digits written directly and typed getters convert from the mantissa.
+ */
+class FixedDecimalStringField extends StringField {
+    static final long serialVersionUID = 4163473625893720549L;
+
+    private final long mantissa;
+    private final int scale;
+    private boolean fixed = true;
+
+    FixedDecimalStringField(int field, long mantissa, int scale) {
+        super(field, null);
+        // validates the scale
+        FixedDecimalConverter.length(mantissa, scale);
+        this.mantissa = mantissa;
+        this.scale = scale;
+    }
+
+    @Override
+    public String getObject() {
+        String value = super.getObject();
+        if (value == null) {
+            value = FixedDecimalConverter.convert(mantissa, scale);
+            super.setObject(value);
+        }
+        return value;
+    }
+
+    @Override
+    protected void setObject(String object) {
+        if (object == null) {
+            throw new NullPointerException("Null field values are not allowed.");
+        }
+        super.setObject(object);
+        fixed = false;
+    }
+
+    @Override
+    protected String objectAsString() {
+        return getObject();
+    }
+
+    @Override
+    public int hashCode() {
+        return getObject().hashCode();
+    }
+
+    /**
+     * @return false once the value has been replaced with another String
+     */
+    private boolean isFixed() {
+        return fixed;
+    }
+
+    @Override
+    int writeValue(ByteBuffer buffer) {
+        if (!isFixed()) {
+            return -1;
+        }
+        final int start = buffer.position();
+        FixedDecimalConverter.write(mantissa, scale, buffer);
+        int sum = 0;
+        for (int i = start, end = buffer.position(); i < end; i++) {
+            sum += buffer.get(i);
+        }
+        return sum & 0xFF;
+    }
+
+    @Override
+    BigDecimal decimalValue() throws FieldConvertError {
+        return isFixed() ? BigDecimal.valueOf(mantissa, scale) : super.decimalValue();
+    }
+
+    @Override
+    long fixedDecimalValue(int scale) throws FieldConvertError {
+        return isFixed()
+                ? FixedDecimalConverter.rescale(mantissa, this.scale, scale)
+                : super.fixedDecimalValue(scale);
+    }
+
+    @Override
+    int fixedDecimalScale() {
+        return isFixed() ? scale : super.fixedDecimalScale();
+    }
+}
@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Syncs files for many writers at once. A writer that needs its data on the
+ * device submits the descriptors of the files it wrote and waits on the
+ * returned ticket. A background thread collects the submissions for up to the
+ * maximum latency and then syncs each of the files once, so concurrent
+ * writers of all sessions share the syncs.
+ * <p>
+ * The instances are shared by everyone who uses the same maximum latency.
+ */
+final class GroupCommit {
+    private static final Map<Long, GroupCommit> INSTANCES = new HashMap<Long, GroupCommit>();
+
+    /**
+     * The files submitted for one sync of each of them.
+     */
+    private static final class Round {
+        private final Map<FileDescriptor, IOException> files = new IdentityHashMap<FileDescriptor, IOException>();
+        private long firstSubmitNanos;
+        private boolean done;
+    }
+
+    /**
+     * Waits for the sync of the files of one submission.
+     */
+    static final class Ticket {
+        private final GroupCommit groupCommit;
+        private final Round round;
+        private final FileDescriptor[] files;
+
+        private Ticket(GroupCommit groupCommit, Round round, FileDescriptor[] files) {
+            this.groupCommit = groupCommit;
+            this.round = round;
+            this.files = files;
+        }
+
+        boolean isDone() {
+            synchronized (groupCommit.lock) {
+                return round.done;
+            }
+        }
+
+        /**
+         * Waits until the files have been synced.
+         *
+         * @throws IOException if syncing one of the files failed
+         */
+        void await() throws IOException {
+            synchronized (groupCommit.lock) {
+                while (!round.done) {
+                    try {
+                        groupCommit.lock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted waiting for file sync");
+                    }
+                }
+                for (final FileDescriptor file : files) {
+                    final IOException failure = round.files.get(file);
+                    if (failure != null) {
+                        throw failure;
+                    }
+                }
+            }
+        }
+    }
+
+    private final long maxLatencyNanos;
+    private final Object lock = new Object();
+    private Round round = new Round();
+    private long syncCount;
+    private long submitCount;
+
+    /**
+     * @param maxLatencyMicros how long a submission waits for others to be
+     *            synced with it, in microseconds
+     */
+    GroupCommit(long maxLatencyMicros) {
+        if (maxLatencyMicros <= 0) {
+            throw new IllegalArgumentException("Invalid maximum latency: " + maxLatencyMicros);
+        }
+        maxLatencyNanos = TimeUnit.MICROSECONDS.toNanos(maxLatencyMicros);
+        final Thread thread = new Thread(new Syncer(), "QF/J Group commit " + maxLatencyMicros
+                + "us");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return the group commit shared by everyone with the given maximum
+     *         latency
+     */
+    static GroupCommit getInstance(long maxLatencyMicros) {
+        synchronized (INSTANCES) {
+            GroupCommit groupCommit = INSTANCES.get(maxLatencyMicros);
+            if (groupCommit == null) {
+                groupCommit = new GroupCommit(maxLatencyMicros);
+                INSTANCES.put(maxLatencyMicros, groupCommit);
+            }
+            return groupCommit;
+        }
+    }
+
+    /**
+     * Submits files to be synced with the next group.
+     *
+     * @param files the descriptors of the files that have been written
+     * @return the ticket to wait for the sync with
+     */
+    Ticket submit(FileDescriptor... files) {
+        synchronized (lock) {
+            if (round.files.isEmpty()) {
+                round.firstSubmitNanos = System.nanoTime();
+                lock.notifyAll();
+            }
+            for (final FileDescriptor file : files) {
+                round.files.put(file, null);
+            }
+            submitCount++;
+            return new Ticket(this, round, files);
+        }
+    }
+
+    /**
+     * Submits files to be synced and waits until they are.
+     *
+     * @throws IOException if syncing one of the files failed
+     */
+    void sync(FileDescriptor... files) throws IOException {
+        submit(files).await();
+    }
+
+    /**
+     * @return the number of file syncs
+     */
+    long getSyncCount() {
+        synchronized (lock) {
+            return syncCount;
+        }
+    }
+
+    /**
+     * @return the number of submissions
+     */
+    long getSubmitCount() {
+        synchronized (lock) {
+            return submitCount;
+        }
+    }
+
+    private class Syncer implements Runnable {
+        public void run() {
+            while (true) {
+                final Round current;
+                synchronized (lock) {
+                    while (round.files.isEmpty()) {
+                        try {
+                            lock.wait();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                    current = round;
+                }
+                // collect the submissions until the first one has waited long enough
+                long remaining;
+                while ((remaining = current.firstSubmitNanos + maxLatencyNanos - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(remaining);
+                }
+                synchronized (lock) {
+                    round = new Round();
+                }
+                for (final Map.Entry<FileDescriptor, IOException> entry : current.files.entrySet()) {
+                    try {
+                        entry.getKey().sync();
+                    } catch (IOException e) {
+                        entry.setValue(e);
+                    }
+                }
+                synchronized (lock) {
+                    syncCount += current.files.size();
+                    current.done = true;
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+
+/**
+ * The SQL that differs between databases. Inserting a row or replacing it if
+ * its key already exists takes one statement on the databases that support
+ * it. On other databases the row is inserted and, if that fails, updated.
+ */
+enum JdbcDialect {
+    GENERIC,
+
+    MYSQL {
+        @Override
+        String getUpsertSql(String table, String keyColumns, String valueColumn) {
+            return getInsertSql(table, keyColumns, valueColumn) + " ON DUPLICATE KEY UPDATE "
+                    + valueColumn + "=VALUES(" + valueColumn + ")";
+        }
+    },
+
+    POSTGRESQL {
+        @Override
+        String getUpsertSql(String table, String keyColumns, String valueColumn) {
+            return getInsertSql(table, keyColumns, valueColumn) + " ON CONFLICT (" + keyColumns
+                    + ") DO UPDATE SET " + valueColumn + "=EXCLUDED." + valueColumn;
+        }
+    },
+
+    H2 {
+        @Override
+        String getUpsertSql(String table, String keyColumns, String valueColumn) {
+            return "MERGE INTO " + table + " (" + keyColumns + "," + valueColumn + ") KEY ("
+                    + keyColumns + ") VALUES (" + getPlaceholders(keyColumns) + ",?)";
+        }
+    },
+
+    ORACLE {
+        @Override
+        String getUpsertSql(String table, String keyColumns, String valueColumn) {
+            final String[] columns = (keyColumns + "," + valueColumn).split(",");
+            final StringBuilder values = new StringBuilder();
+            for (int i = 0; i < columns.length; i++) {
+                values.append(i > 0 ? ", ? " : "? ").append(columns[i]);
+            }
+            return getMergeSql(table, keyColumns, valueColumn, "(SELECT " + values
+                    + " FROM dual) v", "");
+        }
+    },
+
+    SQLSERVER {
+        @Override
+        String getUpsertSql(String table, String keyColumns, String valueColumn) {
+            return getMergeSql(table, keyColumns, valueColumn, "(VALUES ("
+                    + getPlaceholders(keyColumns) + ",?)) AS v (" + keyColumns + ","
+                    + valueColumn + ")", ";");
+        }
+    };
+
+    /**
+     * @return the dialect of the database, or {@link #GENERIC} if it has no
+     *         known upsert statement
+     */
+    static JdbcDialect forDatabase(DatabaseMetaData metaData) throws SQLException {
+        final String product = metaData.getDatabaseProductName().toLowerCase();
+        if (product.contains("mysql") || product.contains("mariadb")) {
+            return MYSQL;
+        } else if (product.contains("postgresql")) {
+            // ON CONFLICT was added in 9.5
+            final int major = metaData.getDatabaseMajorVersion();
+            return major > 9 || major == 9 && metaData.getDatabaseMinorVersion() >= 5
+                    ? POSTGRESQL
+                    : GENERIC;
+        } else if (product.equals("h2")) {
+            return H2;
+        } else if (product.contains("oracle")) {
+            return ORACLE;
+        } else if (product.contains("microsoft sql server")) {
+            return SQLSERVER;
+        }
+        return GENERIC;
+    }
+
+    /**
+     * Creates a statement that inserts a row or replaces the value column of
+     * the row with the same key. The parameters are the key columns followed
+     * by the value column, like those of an insert.
+     *
+     * @param table the table name
+     * @param keyColumns the comma separated columns of the primary key
+     * @param valueColumn the column that is replaced
+     * @return the statement, or null if the database has none
+     */
+    String getUpsertSql(String table, String keyColumns, String valueColumn) {
+        return null;
+    }
+
+    private static String getInsertSql(String table, String keyColumns, String valueColumn) {
+        return "INSERT INTO " + table + " (" + keyColumns + "," + valueColumn + ") VALUES ("
+                + getPlaceholders(keyColumns) + ",?)";
+    }
+
+    private static String getMergeSql(String table, String keyColumns, String valueColumn,
+            String source, String terminator) {
+        final String[] keys = keyColumns.split(",");
+        final StringBuilder condition = new StringBuilder();
+        final StringBuilder values = new StringBuilder();
+        for (int i = 0; i < keys.length; i++) {
+            condition.append(i > 0 ? " and t." : "t.").append(keys[i]).append("=v.")
+                    .append(keys[i]);
+            values.append("v.").append(keys[i]).append(',');
+        }
+        return "MERGE INTO " + table + " t USING " + source + " ON (" + condition
+                + ") WHEN MATCHED THEN UPDATE SET t." + valueColumn + "=v." + valueColumn
+                + " WHEN NOT MATCHED THEN INSERT (" + keyColumns + "," + valueColumn
+                + ") VALUES (" + values + "v." + valueColumn + ")" + terminator;
+    }
+
+    private static String getPlaceholders(String columns) {
+        final StringBuilder placeholders = new StringBuilder("?");
+        for (int i = columns.indexOf(','); i != -1; i = columns.indexOf(',', i + 1)) {
+            placeholders.append(",?");
+        }
+        return placeholders.toString();
+    }
+}
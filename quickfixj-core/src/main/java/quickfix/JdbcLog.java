@@ -27,11 +27,16 @@ import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.sql.DataSource;
 
 class JdbcLog extends AbstractLog {
+    static final int EVENT = 0;
+    static final int INCOMING = 1;
+    static final int OUTGOING = 2;
+
     private static final String DEFAULT_MESSAGES_LOG_TABLE = "messages_log";
     private static final String DEFAULT_EVENT_LOG_TABLE = "event_log";
     private final String outgoingMessagesTableName;
@@ -170,6 +175,72 @@ class JdbcLog extends AbstractLog {
         }
     }
 
+    /**
+     * A log entry that is written later.
+     */
+    static final class Record {
+        final int kind;
+        final long time;
+        final String text;
+
+        /**
+         * @param kind {@link #EVENT}, {@link #INCOMING} or {@link #OUTGOING}
+         * @param time the time of the entry in milliseconds
+         * @param text the event or raw FIX message
+         */
+        Record(int kind, long time, String text) {
+            this.kind = kind;
+            this.time = time;
+            this.text = text;
+        }
+    }
+
+    /**
+     * Inserts log entries with one JDBC batch per table on one connection.
+     */
+    void insert(List<Record> records) throws SQLException {
+        Connection connection = null;
+        final Map<String, PreparedStatement> inserts = new HashMap<String, PreparedStatement>();
+        try {
+            connection = dataSource.getConnection();
+            for (final Record record : records) {
+                final String tableName = getTableName(record.kind);
+                PreparedStatement insert = inserts.get(tableName);
+                if (insert == null) {
+                    insert = connection.prepareStatement(getInsertItemSql(tableName));
+                    inserts.put(tableName, insert);
+                }
+                insert.setTimestamp(1, new Timestamp(record.time));
+                int offset = setSessionIdParameters(insert, 2);
+                insert.setString(offset, record.text);
+                insert.addBatch();
+            }
+            for (final PreparedStatement insert : inserts.values()) {
+                insert.executeBatch();
+            }
+        } finally {
+            for (final PreparedStatement insert : inserts.values()) {
+                JdbcUtil.close(sessionID, insert);
+            }
+            JdbcUtil.close(sessionID, connection);
+        }
+    }
+
+    private String getTableName(int kind) {
+        switch (kind) {
+        case INCOMING:
+            return incomingMessagesTableName;
+        case OUTGOING:
+            return outgoingMessagesTableName;
+        default:
+            return eventTableName;
+        }
+    }
+
+    boolean isLogHeartbeats() {
+        return logHeartbeats;
+    }
+
     /**
      * Deletes all rows from the log tables.
      */
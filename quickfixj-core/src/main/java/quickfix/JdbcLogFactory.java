@@ -19,6 +19,8 @@
 
 package quickfix;
 
+import java.io.File;
+
 import javax.sql.DataSource;
 
 /**
@@ -35,12 +37,46 @@ public class JdbcLogFactory implements LogFactory {
      */
     public Log create(SessionID sessionID) {
         try {
-            return new JdbcLog(settings, sessionID, dataSource);
+            final JdbcLog log = new JdbcLog(settings, sessionID, dataSource);
+            if (settings.isSetting(sessionID, JdbcSetting.SETTING_JDBC_LOG_ASYNC)
+                    && settings.getBool(sessionID, JdbcSetting.SETTING_JDBC_LOG_ASYNC)) {
+                return createAsyncLog(sessionID, log);
+            }
+            return log;
         } catch (Exception e) {
             throw new RuntimeError(e);
         }
     }
 
+    private Log createAsyncLog(SessionID sessionID, JdbcLog log) throws ConfigError,
+            FieldConvertError {
+        final int capacity = settings.isSetting(sessionID,
+                JdbcSetting.SETTING_JDBC_LOG_ASYNC_CAPACITY) ? (int) settings.getLong(sessionID,
+                JdbcSetting.SETTING_JDBC_LOG_ASYNC_CAPACITY) : 65536;
+        final int batchSize = settings.isSetting(sessionID,
+                JdbcSetting.SETTING_JDBC_LOG_ASYNC_BATCH_SIZE) ? (int) settings.getLong(sessionID,
+                JdbcSetting.SETTING_JDBC_LOG_ASYNC_BATCH_SIZE) : 1000;
+        AsyncJdbcLog.OverflowPolicy overflowPolicy = AsyncJdbcLog.OverflowPolicy.BLOCK;
+        if (settings.isSetting(sessionID, JdbcSetting.SETTING_JDBC_LOG_ASYNC_OVERFLOW_POLICY)) {
+            final String policy = settings.getString(sessionID,
+                    JdbcSetting.SETTING_JDBC_LOG_ASYNC_OVERFLOW_POLICY);
+            try {
+                overflowPolicy = AsyncJdbcLog.OverflowPolicy.valueOf(policy.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new ConfigError("Invalid "
+                        + JdbcSetting.SETTING_JDBC_LOG_ASYNC_OVERFLOW_POLICY + ": " + policy);
+            }
+        }
+        final String spillPath = settings.isSetting(sessionID,
+                JdbcSetting.SETTING_JDBC_LOG_ASYNC_SPILL_PATH) ? settings.getString(sessionID,
+                JdbcSetting.SETTING_JDBC_LOG_ASYNC_SPILL_PATH) : System
+                .getProperty("java.io.tmpdir");
+        new File(spillPath).mkdirs();
+        final File spillFile = new File(spillPath, FileUtil.sessionIdFileName(sessionID)
+                + ".logspill");
+        return new AsyncJdbcLog(log, sessionID, capacity, batchSize, overflowPolicy, spillFile);
+    }
+
     /**
      * Create a factory using session settings.
      */
@@ -101,4 +101,43 @@ public class JdbcSetting {
      * is primarily for Oracle which treats empty strings as SQL NULLs.
      */
     public static final String SETTING_JDBC_SESSION_ID_DEFAULT_PROPERTY_VALUE = "JdbcSessionIdDefaultPropertyValue";
+
+    /**
+     * Flag for writing messages and sequence numbers to the database in the
+     * background. Consecutive stores are grouped into one transaction, using
+     * the write-behind settings of {@link WriteBehindMessageStoreFactory}.
+     */
+    public static final String SETTING_JDBC_STORE_WRITE_BEHIND = "JdbcStoreWriteBehind";
+
+    /**
+     * Flag for inserting log entries in the background. Logging only queues
+     * the entry, and a writer thread inserts the queued entries in batches.
+     *
+     * @see AsyncJdbcLog
+     */
+    public static final String SETTING_JDBC_LOG_ASYNC = "JdbcLogAsync";
+
+    /**
+     * Maximum number of log entries queued by an asynchronous JDBC log.
+     */
+    public static final String SETTING_JDBC_LOG_ASYNC_CAPACITY = "JdbcLogAsyncCapacity";
+
+    /**
+     * Maximum number of log entries inserted with one JDBC batch by an
+     * asynchronous JDBC log.
+     */
+    public static final String SETTING_JDBC_LOG_ASYNC_BATCH_SIZE = "JdbcLogAsyncBatchSize";
+
+    /**
+     * What an asynchronous JDBC log does with new entries while its queue is
+     * full: BLOCK, DROP_EVENTS_FIRST or SPILL_TO_FILE.
+     *
+     * @see AsyncJdbcLog.OverflowPolicy
+     */
+    public static final String SETTING_JDBC_LOG_ASYNC_OVERFLOW_POLICY = "JdbcLogAsyncOverflowPolicy";
+
+    /**
+     * Directory of the files that an asynchronous JDBC log spills entries to.
+     */
+    public static final String SETTING_JDBC_LOG_ASYNC_SPILL_PATH = "JdbcLogAsyncSpillPath";
 }
@@ -21,16 +21,32 @@ package quickfix;
 
 import static quickfix.JdbcSetting.*;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.sql.*;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.TimeZone;
 
 import javax.sql.DataSource;
 
-class JdbcStore implements MessageStore {
+/**
+ * Stores messages and sequence numbers in a database.
+ * <p>
+ * Each operation borrows a connection from the data source, except
+ * {@link #commit(int[], List, int, int)}, which writes a group of messages and
+ * the sequence numbers in one transaction on a connection that is kept until
+ * the store is closed, along with its prepared statements. Messages are
+ * written with the upsert statement of the database if it has one. The
+ * factory wraps the store in a {@link WriteBehindMessageStore} that commits
+ * the groups when {@link JdbcSetting#SETTING_JDBC_STORE_WRITE_BEHIND} is set.
+ */
+class JdbcStore implements BatchMessageStore, StreamingMessageStore, TransactionalMessageStore,
+        Closeable {
     private final static String DEFAULT_SESSION_TABLE_NAME = "sessions";
     private final static String DEFAULT_MESSAGE_TABLE_NAME = "messages";
 
@@ -41,6 +57,11 @@ class JdbcStore implements MessageStore {
     private final String sessionTableName;
     private final String messageTableName;
     private final String defaultSessionIdPropertyValue;
+    private final JdbcDialect dialect;
+
+    // used by commit, guarded by this
+    private Connection transactionConnection;
+    private final Map<String, PreparedStatement> transactionStatements = new HashMap<String, PreparedStatement>();
 
     private String SQL_UPDATE_SEQNUMS;
     private String SQL_INSERT_SESSION;
@@ -50,6 +71,7 @@ class JdbcStore implements MessageStore {
     private String SQL_GET_MESSAGES;
     private String SQL_UPDATE_SESSION;
     private String SQL_DELETE_MESSAGES;
+    private String SQL_UPSERT_MESSAGE;
 
     public JdbcStore(SessionSettings settings, SessionID sessionID, DataSource ds) throws Exception {
         this.sessionID = sessionID;
@@ -80,6 +102,7 @@ class JdbcStore implements MessageStore {
         // that all tables are extended if you extend any of them.
         extendedSessionIdSupported = JdbcUtil.determineSessionIdSupport(dataSource,
                 sessionTableName);
+        dialect = JdbcUtil.determineDialect(dataSource);
 
         setSqlStrings();
 
@@ -114,6 +137,9 @@ class JdbcStore implements MessageStore {
                 + "incoming_seqnum=?, outgoing_seqnum=? " + "WHERE " + idWhereClause;
 
         SQL_DELETE_MESSAGES = "DELETE FROM " + messageTableName + " WHERE " + idWhereClause;
+
+        SQL_UPSERT_MESSAGE = dialect.getUpsertSql(messageTableName, idColumns + ",msgseqnum",
+                "message");
     }
 
     private void loadCache() throws SQLException, IOException {
@@ -225,6 +251,14 @@ class JdbcStore implements MessageStore {
         }
     }
 
+    /**
+     * Queries the messages in chunks rather than keeping a connection while the
+     * caller processes them, since the caller may need a connection of its own.
+     */
+    public StoredMessageCursor openCursor(int startSequence, int endSequence) {
+        return new ChunkedMessageCursor(this, startSequence, endSequence);
+    }
+
     public boolean set(int sequence, String message) throws IOException {
         Connection connection = null;
         PreparedStatement insert = null;
@@ -260,6 +294,42 @@ class JdbcStore implements MessageStore {
         return true;
     }
 
+    /**
+     * Inserts the messages as one JDBC batch. If the batch fails, for example
+     * because some of the sequence numbers are already stored, the messages
+     * are stored one at a time.
+     */
+    public boolean set(int startSequence, List<String> messages) throws IOException {
+        Connection connection = null;
+        PreparedStatement insert = null;
+        try {
+            connection = dataSource.getConnection();
+            insert = connection.prepareStatement(SQL_INSERT_MESSAGE);
+            int sequence = startSequence;
+            for (final String message : messages) {
+                int offset = setSessionIdParameters(insert, 1);
+                insert.setInt(offset++, sequence++);
+                insert.setString(offset, message);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+            return true;
+        } catch (SQLException ex) {
+            if (connection == null) {
+                throw (IOException) new IOException(ex.getMessage()).initCause(ex);
+            }
+        } finally {
+            JdbcUtil.close(sessionID, insert);
+            JdbcUtil.close(sessionID, connection);
+        }
+        boolean result = true;
+        int sequence = startSequence;
+        for (final String message : messages) {
+            result &= set(sequence++, message);
+        }
+        return result;
+    }
+
     public void setNextSenderMsgSeqNum(int next) throws IOException {
         cache.setNextSenderMsgSeqNum(next);
         storeSequenceNumbers();
@@ -288,6 +358,133 @@ class JdbcStore implements MessageStore {
         }
     }
 
+    /**
+     * Stores the messages and sequence numbers in one transaction. If the
+     * database has no upsert statement, the messages are inserted as one batch
+     * and, if that fails because some of them are already stored, stored one
+     * at a time in a new attempt of the transaction.
+     */
+    public synchronized void commit(int[] sequences, List<String> messages,
+            int nextSenderMsgSeqNum, int nextTargetMsgSeqNum) throws IOException {
+        try {
+            final Connection connection = getTransactionConnection();
+            try {
+                if (SQL_UPSERT_MESSAGE != null) {
+                    addMessages(SQL_UPSERT_MESSAGE, sequences, messages).executeBatch();
+                } else {
+                    try {
+                        addMessages(SQL_INSERT_MESSAGE, sequences, messages).executeBatch();
+                    } catch (BatchUpdateException e) {
+                        connection.rollback();
+                        upsertMessages(sequences, messages);
+                    }
+                }
+                if (nextSenderMsgSeqNum != -1 || nextTargetMsgSeqNum != -1) {
+                    final PreparedStatement update = getTransactionStatement(SQL_UPDATE_SEQNUMS);
+                    update.setInt(1, nextTargetMsgSeqNum != -1 ? nextTargetMsgSeqNum : cache
+                            .getNextTargetMsgSeqNum());
+                    update.setInt(2, nextSenderMsgSeqNum != -1 ? nextSenderMsgSeqNum : cache
+                            .getNextSenderMsgSeqNum());
+                    setSessionIdParameters(update, 3);
+                    update.execute();
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackError) {
+                    LogUtil.logThrowable(sessionID, rollbackError.getMessage(), rollbackError);
+                }
+                // the connection may be broken, so the next commit gets a new one
+                closeTransactionConnection();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw (IOException) new IOException(e.getMessage()).initCause(e);
+        }
+        if (nextSenderMsgSeqNum != -1) {
+            cache.setNextSenderMsgSeqNum(nextSenderMsgSeqNum);
+        }
+        if (nextTargetMsgSeqNum != -1) {
+            cache.setNextTargetMsgSeqNum(nextTargetMsgSeqNum);
+        }
+    }
+
+    private PreparedStatement addMessages(String sql, int[] sequences, List<String> messages)
+            throws SQLException {
+        final PreparedStatement statement = getTransactionStatement(sql);
+        for (int i = 0; i < sequences.length; i++) {
+            int offset = setSessionIdParameters(statement, 1);
+            statement.setInt(offset++, sequences[i]);
+            statement.setString(offset, messages.get(i));
+            statement.addBatch();
+        }
+        return statement;
+    }
+
+    private void upsertMessages(int[] sequences, List<String> messages) throws SQLException {
+        final PreparedStatement update = getTransactionStatement(SQL_UPDATE_MESSAGE);
+        final PreparedStatement insert = getTransactionStatement(SQL_INSERT_MESSAGE);
+        boolean inserts = false;
+        for (int i = 0; i < sequences.length; i++) {
+            update.setString(1, messages.get(i));
+            final int offset = setSessionIdParameters(update, 2);
+            update.setInt(offset, sequences[i]);
+            if (update.executeUpdate() == 0) {
+                int insertOffset = setSessionIdParameters(insert, 1);
+                insert.setInt(insertOffset++, sequences[i]);
+                insert.setString(insertOffset, messages.get(i));
+                insert.addBatch();
+                inserts = true;
+            }
+        }
+        if (inserts) {
+            insert.executeBatch();
+        }
+    }
+
+    private Connection getTransactionConnection() throws SQLException {
+        if (transactionConnection == null) {
+            transactionConnection = dataSource.getConnection();
+            transactionConnection.setAutoCommit(false);
+        }
+        return transactionConnection;
+    }
+
+    private PreparedStatement getTransactionStatement(String sql) throws SQLException {
+        PreparedStatement statement = transactionStatements.get(sql);
+        if (statement == null) {
+            statement = transactionConnection.prepareStatement(sql);
+            transactionStatements.put(sql, statement);
+        } else {
+            statement.clearBatch();
+        }
+        return statement;
+    }
+
+    private void closeTransactionConnection() {
+        for (final PreparedStatement statement : transactionStatements.values()) {
+            JdbcUtil.close(sessionID, statement);
+        }
+        transactionStatements.clear();
+        if (transactionConnection != null) {
+            try {
+                transactionConnection.setAutoCommit(true);
+            } catch (SQLException e) {
+                LogUtil.logThrowable(sessionID, e.getMessage(), e);
+            }
+            JdbcUtil.close(sessionID, transactionConnection);
+            transactionConnection = null;
+        }
+    }
+
+    /**
+     * Releases the connection used by {@link #commit(int[], List, int, int)}.
+     */
+    public synchronized void close() {
+        closeTransactionConnection();
+    }
+
     public void refresh() throws IOException {
         try {
             loadCache();
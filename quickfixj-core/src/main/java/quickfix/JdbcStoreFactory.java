@@ -22,7 +22,9 @@ package quickfix;
 import javax.sql.DataSource;
 
 /**
- * Creates a generic JDBC message store.
+ * Creates a generic JDBC message store. If
+ * {@link JdbcSetting#SETTING_JDBC_STORE_WRITE_BEHIND} is set, the store writes
+ * in the background.
  */
 public class JdbcStoreFactory implements MessageStoreFactory {
     private final SessionSettings settings;
@@ -42,7 +44,12 @@ public class JdbcStoreFactory implements MessageStoreFactory {
      */
     public MessageStore create(SessionID sessionID) {
         try {
-            return new JdbcStore(settings, sessionID, dataSource);
+            final JdbcStore store = new JdbcStore(settings, sessionID, dataSource);
+            if (settings.isSetting(sessionID, JdbcSetting.SETTING_JDBC_STORE_WRITE_BEHIND)
+                    && settings.getBool(sessionID, JdbcSetting.SETTING_JDBC_STORE_WRITE_BEHIND)) {
+                return new WriteBehindMessageStoreFactory(this, settings).create(sessionID, store);
+            }
+            return store;
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -135,6 +135,15 @@ class JdbcUtil {
         }
     }
 
+    static JdbcDialect determineDialect(DataSource dataSource) throws SQLException {
+        Connection connection = dataSource.getConnection();
+        try {
+            return JdbcDialect.forDatabase(connection.getMetaData());
+        } finally {
+            connection.close();
+        }
+    }
+
     private static boolean isColumn(DatabaseMetaData metaData, String tableName, String columnName)
             throws SQLException {
         ResultSet columns = metaData.getColumns(null, null, tableName, columnName);
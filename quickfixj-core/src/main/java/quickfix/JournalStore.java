@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A message store that keeps its session in a journal shared with other
+ * sessions. Thousands of sessions can be stored with one open file, and all
+ * the writes are appends to it.
+ * <p>
+ * The session state is kept in memory. {@link #refresh()} reads the journal
+ * again, which picks up the changes of a journal that another process opened
+ * for failover, and reloads the state of all the sessions in the journal.
+ *
+ * @see JournalStoreFactory
+ */
+public class JournalStore implements BatchMessageStore, Closeable {
+    private final StoreJournal journal;
+    private final StoreJournal.Session session;
+    private boolean closed;
+
+    JournalStore(StoreJournal journal, SessionID sessionID) throws IOException {
+        this.journal = journal;
+        session = journal.acquire(sessionID);
+    }
+
+    public boolean set(int sequence, String message) throws IOException {
+        journal.setMessages(session, sequence, Collections.singletonList(message));
+        return true;
+    }
+
+    /**
+     * Appends the messages to the journal with one write.
+     */
+    public boolean set(int startSequence, List<String> messages) throws IOException {
+        journal.setMessages(session, startSequence, messages);
+        return true;
+    }
+
+    public void get(int startSequence, int endSequence, Collection<String> messages)
+            throws IOException {
+        journal.get(session, startSequence, endSequence, messages);
+    }
+
+    /**
+     * This method is here for JNI API consistency but it's not implemented.
+     * Use get(int, int, Collection) with the same start and end sequence.
+     */
+    public boolean get(int sequence, String message) {
+        throw new UnsupportedOperationException("not supported");
+    }
+
+    public Date getCreationTime() {
+        synchronized (journal) {
+            return new Date(session.getCreationTime());
+        }
+    }
+
+    public int getNextSenderMsgSeqNum() {
+        synchronized (journal) {
+            return session.getNextSenderMsgSeqNum();
+        }
+    }
+
+    public int getNextTargetMsgSeqNum() {
+        synchronized (journal) {
+            return session.getNextTargetMsgSeqNum();
+        }
+    }
+
+    public void setNextSenderMsgSeqNum(int next) throws IOException {
+        journal.setNextSenderMsgSeqNum(session, next);
+    }
+
+    public void setNextTargetMsgSeqNum(int next) throws IOException {
+        journal.setNextTargetMsgSeqNum(session, next);
+    }
+
+    public void incrNextSenderMsgSeqNum() throws IOException {
+        synchronized (journal) {
+            setNextSenderMsgSeqNum(session.getNextSenderMsgSeqNum() + 1);
+        }
+    }
+
+    public void incrNextTargetMsgSeqNum() throws IOException {
+        synchronized (journal) {
+            setNextTargetMsgSeqNum(session.getNextTargetMsgSeqNum() + 1);
+        }
+    }
+
+    public void reset() throws IOException {
+        journal.reset(session);
+    }
+
+    public void refresh() throws IOException {
+        journal.refresh();
+    }
+
+    /**
+     * Releases the journal, which is closed once none of its stores uses it.
+     */
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            JournalStoreFactory.release(journal);
+        }
+    }
+
+    StoreJournal getJournal() {
+        return journal;
+    }
+}
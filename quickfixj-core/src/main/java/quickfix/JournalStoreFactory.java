@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Creates message stores that share one journal file per directory, instead
+ * of opening several files per session like {@link FileStoreFactory}. This
+ * suits acceptors with very many sessions, such as dynamic sessions.
+ * <p>
+ * A journal is opened once per JVM, and the stores of all the factories
+ * that use its directory share it.
+ *
+ * @see JournalStore
+ */
+public class JournalStoreFactory implements MessageStoreFactory {
+
+    /**
+     * Directory of the journal. Sessions with the same directory share a
+     * journal.
+     */
+    public static final String SETTING_JOURNAL_STORE_PATH = "JournalStorePath";
+
+    /**
+     * Whether every write to the journal is synced to the device. The
+     * setting of the first session that opens a journal applies to it.
+     */
+    public static final String SETTING_JOURNAL_STORE_SYNC = "JournalStoreSync";
+
+    /**
+     * Size in bytes the journal must have before it is compacted, which
+     * happens when less than half of it is still needed. 0 disables
+     * compaction. The default is 128 MB. The sessions that share the journal
+     * cannot write while it is compacted, which takes about as long as
+     * copying the messages it still holds.
+     */
+    public static final String SETTING_JOURNAL_STORE_COMPACTION_THRESHOLD = "JournalStoreCompactionThreshold";
+
+    static final String JOURNAL_FILE_NAME = "store.journal";
+
+    private static final long DEFAULT_COMPACTION_THRESHOLD = 128 * 1024 * 1024;
+
+    private static final Map<File, StoreJournal> journals = new HashMap<File, StoreJournal>();
+
+    private final SessionSettings settings;
+
+    public JournalStoreFactory(SessionSettings settings) {
+        this.settings = settings;
+    }
+
+    public MessageStore create(SessionID sessionID) {
+        try {
+            final File file = new File(settings.getString(sessionID, SETTING_JOURNAL_STORE_PATH),
+                    JOURNAL_FILE_NAME).getCanonicalFile();
+            synchronized (journals) {
+                StoreJournal journal = journals.get(file);
+                if (journal == null || !journal.isOpen()) {
+                    journal = openJournal(sessionID, file);
+                    journals.put(file, journal);
+                }
+                return new JournalStore(journal, sessionID);
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private StoreJournal openJournal(SessionID sessionID, File file) throws Exception {
+        final boolean syncWrites = settings.isSetting(sessionID, SETTING_JOURNAL_STORE_SYNC)
+                && settings.getBool(sessionID, SETTING_JOURNAL_STORE_SYNC);
+        long compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+        if (settings.isSetting(sessionID, SETTING_JOURNAL_STORE_COMPACTION_THRESHOLD)) {
+            compactionThreshold = settings.getLong(sessionID,
+                    SETTING_JOURNAL_STORE_COMPACTION_THRESHOLD);
+            if (compactionThreshold < 0) {
+                throw new ConfigError("Invalid " + SETTING_JOURNAL_STORE_COMPACTION_THRESHOLD
+                        + ": " + compactionThreshold);
+            }
+        }
+        final File directory = file.getParentFile();
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        return new StoreJournal(file, syncWrites, compactionThreshold);
+    }
+
+    /**
+     * Releases a journal for one of its stores. This is done under the same
+     * lock as opening the stores, so a journal is never handed out while it
+     * is being closed.
+     */
+    static void release(StoreJournal journal) throws IOException {
+        synchronized (journals) {
+            journal.release();
+            if (!journal.isOpen() && journals.get(journal.getFile()) == journal) {
+                journals.remove(journal.getFile());
+            }
+        }
+    }
+}
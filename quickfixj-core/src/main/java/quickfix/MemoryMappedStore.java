@@ -0,0 +1,437 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import org.quickfixj.CharsetSupport;
+
+/**
+ * A message store that appends messages to memory-mapped segment files.
+ * <p>
+ * Each segment file has a fixed size and is mapped into memory when it is
+ * created, so storing a message is a copy into memory that needs no system
+ * call until the segment is full. Every record holds the length and sequence
+ * number of its message, which is all that is needed to rebuild the index
+ * of the sequence numbers when the store is opened. A message that is stored
+ * again is appended and replaces the earlier record in the index. The
+ * sequence numbers and the creation time are kept in a small mapped file.
+ * <p>
+ * A reset starts a new generation of segment files instead of reusing the
+ * files of the previous one, which may still be mapped and, on some
+ * platforms, cannot be deleted until the mappings are garbage collected.
+ * Segment files of earlier generations are deleted when possible and are
+ * otherwise ignored.
+ * <p>
+ * How often the mapped memory is forced to the disk is controlled by the
+ * {@link SyncPolicy}. Since the files stay mapped, the store holds no open
+ * file descriptors.
+ *
+ * @see MemoryMappedStoreFactory
+ */
+public class MemoryMappedStore implements BatchMessageStore, StreamingMessageStore, Closeable {
+
+    /**
+     * When the mapped memory is forced to the disk. The operating system
+     * writes it back in any case, so messages survive a crash of the process
+     * but only the synced ones are guaranteed to survive a crash of the host.
+     */
+    public enum SyncPolicy {
+        /** Only when the store is closed. */
+        NONE,
+        /** When a segment is full, and when the store is closed. */
+        SEGMENT,
+        /** After every update, or batch of messages. */
+        ALWAYS
+    }
+
+    private static final int SEGMENT_MAGIC = 0x514a5347;
+    private static final int META_MAGIC = 0x514a534d;
+    private static final int SEGMENT_HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int META_SIZE = 64;
+    private static final int META_CREATION_TIME = 8;
+    private static final int META_SENDER_SEQ_NUM = 16;
+    private static final int META_TARGET_SEQ_NUM = 20;
+    private static final int META_GENERATION = 24;
+    private static final String SEGMENT_FILE_NAME = "segment";
+
+    private final String prefix;
+    private final int segmentSize;
+    private final SyncPolicy syncPolicy;
+    private final Charset charset = CharsetSupport.getCharsetInstance();
+    private final SequenceIndex index = new SequenceIndex();
+    private final List<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+    private MappedByteBuffer meta;
+    private MappedByteBuffer segment;
+    // written through to the meta file, and read from it when refreshed
+    private long creationTime;
+    private int nextSenderMsgSeqNum;
+    private int nextTargetMsgSeqNum;
+    private int generation;
+
+    /**
+     * @param path the directory of the store files
+     * @param sessionID the session
+     * @param segmentSize the size of a segment file in bytes
+     * @param syncPolicy when the mapped memory is forced to the disk
+     * @throws IOException if the store files cannot be opened
+     */
+    public MemoryMappedStore(String path, SessionID sessionID, int segmentSize,
+            SyncPolicy syncPolicy) throws IOException {
+        if (segmentSize <= SEGMENT_HEADER_SIZE + RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("Invalid segment size: " + segmentSize);
+        }
+        this.segmentSize = segmentSize;
+        this.syncPolicy = syncPolicy;
+        final String fullPath = new File(path == null ? "." : path).getAbsolutePath();
+        prefix = FileUtil.fileAppendPath(fullPath, FileUtil.sessionIdFileName(sessionID) + ".");
+        final File directory = new File(prefix).getParentFile();
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        open();
+    }
+
+    private void open() throws IOException {
+        meta = map(new File(prefix + "meta"), META_SIZE);
+        if (meta.getInt(0) != META_MAGIC) {
+            initializeMeta();
+        }
+        creationTime = meta.getLong(META_CREATION_TIME);
+        nextSenderMsgSeqNum = meta.getInt(META_SENDER_SEQ_NUM);
+        nextTargetMsgSeqNum = meta.getInt(META_TARGET_SEQ_NUM);
+        generation = meta.getInt(META_GENERATION);
+        for (int number = 0;; number++) {
+            final File file = getSegmentFile(generation, number);
+            if (!file.exists()) {
+                break;
+            }
+            final MappedByteBuffer buffer = map(file, (int) file.length());
+            if (buffer.capacity() < SEGMENT_HEADER_SIZE || buffer.getInt(0) != SEGMENT_MAGIC
+                    || buffer.getInt(4) != number) {
+                if (!getSegmentFile(generation, number + 1).exists()) {
+                    // created but not stamped before a crash, stamped when it is added again
+                    break;
+                }
+                throw new IOException("Invalid segment file: " + file);
+            }
+            buffer.position(scan(number, buffer));
+            segments.add(buffer);
+        }
+        if (segments.isEmpty()) {
+            addSegment(0);
+        } else {
+            segment = segments.get(segments.size() - 1);
+        }
+        deleteSegmentFiles(false);
+    }
+
+    private void initializeMeta() {
+        creationTime = SystemTime.currentTimeMillis();
+        nextSenderMsgSeqNum = 1;
+        nextTargetMsgSeqNum = 1;
+        meta.putLong(META_CREATION_TIME, creationTime);
+        meta.putInt(META_SENDER_SEQ_NUM, nextSenderMsgSeqNum);
+        meta.putInt(META_TARGET_SEQ_NUM, nextTargetMsgSeqNum);
+        meta.putInt(META_GENERATION, generation);
+        meta.putInt(0, META_MAGIC);
+        if (syncPolicy != SyncPolicy.NONE) {
+            meta.force();
+        }
+    }
+
+    /**
+     * Adds the records of a segment to the index.
+     *
+     * @return the position after the last complete record
+     */
+    private int scan(int number, MappedByteBuffer buffer) {
+        int position = SEGMENT_HEADER_SIZE;
+        while (position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+            final int length = buffer.getInt(position);
+            // the length is written last, a record without one is incomplete
+            if (length <= 0 || position + RECORD_HEADER_SIZE + length > buffer.capacity()) {
+                break;
+            }
+            index.put(buffer.getInt(position + 4), location(number, position));
+            position += RECORD_HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    private static long location(int segmentNumber, int position) {
+        return (long) segmentNumber << 32 | position;
+    }
+
+    private File getSegmentFile(int generation, int number) {
+        return new File(prefix + SEGMENT_FILE_NAME + generation + "." + number);
+    }
+
+    private void addSegment(int minimumCapacity) throws IOException {
+        final int number = segments.size();
+        segment = map(getSegmentFile(generation, number), Math.max(segmentSize,
+                SEGMENT_HEADER_SIZE + minimumCapacity));
+        segment.putInt(0, SEGMENT_MAGIC);
+        segment.putInt(4, number);
+        segment.position(SEGMENT_HEADER_SIZE);
+        segments.add(segment);
+    }
+
+    private static MappedByteBuffer map(File file, int size) throws IOException {
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            // the mapping stays valid after the file is closed
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    public synchronized boolean set(int sequence, String message) throws IOException {
+        append(sequence, message);
+        if (syncPolicy == SyncPolicy.ALWAYS) {
+            segment.force();
+        }
+        return true;
+    }
+
+    /**
+     * Appends the messages and, with {@link SyncPolicy#ALWAYS}, forces them to
+     * the disk together.
+     */
+    public synchronized boolean set(int startSequence, List<String> messages) throws IOException {
+        final MappedByteBuffer first = segment;
+        int sequence = startSequence;
+        for (final String message : messages) {
+            append(sequence++, message);
+        }
+        if (syncPolicy == SyncPolicy.ALWAYS) {
+            if (first != segment) {
+                first.force();
+            }
+            segment.force();
+        }
+        return true;
+    }
+
+    private void append(int sequence, String message) throws IOException {
+        final int length = MessageUtils.length(charset, message);
+        if (segment.remaining() < RECORD_HEADER_SIZE + length) {
+            if (syncPolicy != SyncPolicy.NONE) {
+                segment.force();
+            }
+            addSegment(RECORD_HEADER_SIZE + length);
+        }
+        final int position = segment.position();
+        segment.position(position + RECORD_HEADER_SIZE);
+        MessageUtils.encode(charset, message, segment);
+        segment.putInt(position + 4, sequence);
+        segment.putInt(position, length);
+        index.put(sequence, location(segments.size() - 1, position));
+    }
+
+    public synchronized void get(int startSequence, int endSequence, Collection<String> messages) {
+        for (int i = index.ceiling(startSequence); i < index.size()
+                && index.sequenceAt(i) <= endSequence; i++) {
+            messages.add(read(index.valueAt(i)));
+        }
+    }
+
+    /**
+     * Reads the messages one at a time from the mapped memory.
+     */
+    public StoredMessageCursor openCursor(final int startSequence, final int endSequence) {
+        return new StoredMessageCursor() {
+            private int position = -1;
+
+            public String next() {
+                synchronized (MemoryMappedStore.this) {
+                    if (position == -1) {
+                        position = index.ceiling(startSequence);
+                    }
+                    if (position < index.size() && index.sequenceAt(position) <= endSequence) {
+                        return read(index.valueAt(position++));
+                    }
+                    return null;
+                }
+            }
+
+            public void close() {
+            }
+        };
+    }
+
+    private String read(long location) {
+        final MappedByteBuffer buffer = segments.get((int) (location >>> 32));
+        final int position = (int) location;
+        final byte[] data = new byte[buffer.getInt(position)];
+        final ByteBuffer record = buffer.duplicate();
+        record.position(position + RECORD_HEADER_SIZE);
+        record.get(data);
+        return new String(data, charset);
+    }
+
+    /**
+     * This method is here for JNI API consistency but it's not implemented.
+     * Use get(int, int, Collection) with the same start and end sequence.
+     */
+    public boolean get(int sequence, String message) {
+        throw new UnsupportedOperationException("not supported");
+    }
+
+    public synchronized Date getCreationTime() {
+        return new Date(creationTime);
+    }
+
+    public synchronized int getNextSenderMsgSeqNum() {
+        return nextSenderMsgSeqNum;
+    }
+
+    public synchronized int getNextTargetMsgSeqNum() {
+        return nextTargetMsgSeqNum;
+    }
+
+    public synchronized void setNextSenderMsgSeqNum(int next) {
+        nextSenderMsgSeqNum = next;
+        setMeta(META_SENDER_SEQ_NUM, next);
+    }
+
+    public synchronized void setNextTargetMsgSeqNum(int next) {
+        nextTargetMsgSeqNum = next;
+        setMeta(META_TARGET_SEQ_NUM, next);
+    }
+
+    public synchronized void incrNextSenderMsgSeqNum() {
+        setNextSenderMsgSeqNum(nextSenderMsgSeqNum + 1);
+    }
+
+    public synchronized void incrNextTargetMsgSeqNum() {
+        setNextTargetMsgSeqNum(nextTargetMsgSeqNum + 1);
+    }
+
+    private void setMeta(int offset, int value) {
+        meta.putInt(offset, value);
+        if (syncPolicy == SyncPolicy.ALWAYS) {
+            meta.force();
+        }
+    }
+
+    /**
+     * Deletes the segments and starts a new session.
+     */
+    /**
+     * Removes the messages by starting a new generation of segment files.
+     */
+    public synchronized void reset() throws IOException {
+        segments.clear();
+        segment = null;
+        index.clear();
+        generation++;
+        // a stale file of this generation is left if an earlier delete failed
+        for (int number = 0; getSegmentFile(generation, number).exists(); number++) {
+            if (!getSegmentFile(generation, number).delete()) {
+                throw new IOException("Segment file cannot be reused: "
+                        + getSegmentFile(generation, number));
+            }
+        }
+        initializeMeta();
+        addSegment(0);
+        deleteSegmentFiles(false);
+    }
+
+    /**
+     * Maps the store files again, which picks up the changes of another
+     * store of the same session.
+     */
+    public synchronized void refresh() throws IOException {
+        segments.clear();
+        segment = null;
+        index.clear();
+        open();
+    }
+
+    /**
+     * Forces the mapped memory to the disk. The store cannot be used once it
+     * is closed.
+     */
+    public synchronized void close() {
+        if (meta != null) {
+            for (final MappedByteBuffer buffer : segments) {
+                buffer.force();
+            }
+            meta.force();
+        }
+        segments.clear();
+        segment = null;
+        meta = null;
+        index.clear();
+    }
+
+    public synchronized void deleteFiles() {
+        close();
+        deleteSegmentFiles(true);
+        deleteFile(new File(prefix + "meta"));
+    }
+
+    /**
+     * Deletes the segment files of other generations, or of all of them.
+     */
+    private void deleteSegmentFiles(boolean all) {
+        final File directory = new File(prefix).getParentFile();
+        final String name = new File(prefix).getName() + SEGMENT_FILE_NAME;
+        final String current = name + generation + ".";
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (final File file : files) {
+            if (file.getName().startsWith(name)
+                    && (all || !file.getName().startsWith(current))) {
+                deleteFile(file);
+            }
+        }
+    }
+
+    private static void deleteFile(File file) {
+        if (file.exists() && !file.delete()) {
+            System.err.println("File delete failed: " + file);
+        }
+    }
+
+    SyncPolicy getSyncPolicy() {
+        return syncPolicy;
+    }
+
+    int getSegmentCount() {
+        return segments.size();
+    }
+}
@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+/**
+ * Creates message stores that append messages to memory-mapped segment files.
+ *
+ * @see MemoryMappedStore
+ */
+public class MemoryMappedStoreFactory implements MessageStoreFactory {
+
+    /**
+     * File path for writing the message store.
+     */
+    public static final String SETTING_MEMORY_MAPPED_STORE_PATH = "MemoryMappedStorePath";
+
+    /**
+     * Size in bytes of a segment file. A segment is mapped into memory as a
+     * whole. The default is 64 MB.
+     */
+    public static final String SETTING_MEMORY_MAPPED_STORE_SEGMENT_SIZE = "MemoryMappedStoreSegmentSize";
+
+    /**
+     * When the mapped memory is forced to the disk: NONE, SEGMENT or ALWAYS.
+     * The default is NONE.
+     *
+     * @see MemoryMappedStore.SyncPolicy
+     */
+    public static final String SETTING_MEMORY_MAPPED_STORE_SYNC = "MemoryMappedStoreSync";
+
+    private static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private final SessionSettings settings;
+
+    public MemoryMappedStoreFactory(SessionSettings settings) {
+        this.settings = settings;
+    }
+
+    public MessageStore create(SessionID sessionID) {
+        try {
+            int segmentSize = DEFAULT_SEGMENT_SIZE;
+            if (settings.isSetting(sessionID, SETTING_MEMORY_MAPPED_STORE_SEGMENT_SIZE)) {
+                final long size = settings.getLong(sessionID, SETTING_MEMORY_MAPPED_STORE_SEGMENT_SIZE);
+                if (size <= 0 || size > Integer.MAX_VALUE) {
+                    throw new ConfigError("Invalid " + SETTING_MEMORY_MAPPED_STORE_SEGMENT_SIZE
+                            + ": " + size);
+                }
+                segmentSize = (int) size;
+            }
+            MemoryMappedStore.SyncPolicy syncPolicy = MemoryMappedStore.SyncPolicy.NONE;
+            if (settings.isSetting(sessionID, SETTING_MEMORY_MAPPED_STORE_SYNC)) {
+                final String policy = settings.getString(sessionID, SETTING_MEMORY_MAPPED_STORE_SYNC);
+                try {
+                    syncPolicy = MemoryMappedStore.SyncPolicy.valueOf(policy.toUpperCase());
+                } catch (final IllegalArgumentException e) {
+                    throw new ConfigError("Invalid " + SETTING_MEMORY_MAPPED_STORE_SYNC + ": "
+                            + policy);
+                }
+            }
+            return new MemoryMappedStore(settings.getString(sessionID,
+                    SETTING_MEMORY_MAPPED_STORE_PATH), sessionID, segmentSize, syncPolicy);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
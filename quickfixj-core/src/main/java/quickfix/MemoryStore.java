@@ -24,6 +24,7 @@ import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 
 import org.slf4j.LoggerFactory;
 
@@ -32,7 +33,7 @@ import org.slf4j.LoggerFactory;
  *
  * @see quickfix.MemoryStoreFactory
  */
-public class MemoryStore implements MessageStore {
+public class MemoryStore implements BatchMessageStore, StreamingMessageStore {
     private HashMap<Integer, String> messages = new HashMap<Integer, String>();
     private int nextSenderMsgSeqNum;
     private int nextTargetMsgSeqNum;
@@ -56,6 +57,26 @@ public class MemoryStore implements MessageStore {
         }
     }
 
+    public StoredMessageCursor openCursor(final int startSequence, final int endSequence) {
+        return new StoredMessageCursor() {
+            private long sequence = startSequence;
+
+            public String next() {
+                while (sequence <= endSequence) {
+                    final String message = messages.get((int) sequence++);
+                    if (message != null) {
+                        return message;
+                    }
+                }
+                return null;
+            }
+
+            public void close() {
+                sequence = endSequence + 1L;
+            }
+        };
+    }
+
     /**
      * This method is here for JNI API consistency but it's not
      * implemented. Use get(int, int, Collection) with the same
@@ -100,6 +121,15 @@ public class MemoryStore implements MessageStore {
         return messages.put(sequence, message) == null;
     }
 
+    public boolean set(int startSequence, List<String> messages) throws IOException {
+        boolean result = true;
+        int sequence = startSequence;
+        for (final String message : messages) {
+            result &= set(sequence++, message);
+        }
+        return result;
+    }
+
     public void setNextSenderMsgSeqNum(int next) throws IOException {
         nextSenderMsgSeqNum = next;
     }
@@ -20,6 +20,9 @@
 package quickfix;
 
 import java.io.ByteArrayOutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.text.DecimalFormat;
 import java.util.Iterator;
 import java.util.List;
@@ -82,6 +85,10 @@ public class Message extends FieldMap {
     // @GuardedBy("this")
     private FieldException exception;
 
+    // set for inbound messages that are recycled after processing
+    transient MessagePool.TypePool pool;
+    private transient boolean retained;
+
     public Message() {
         // empty
     }
@@ -159,6 +166,147 @@ public class Message extends FieldMap {
             (header.calculateChecksum() + calculateChecksum() + trailer.calculateChecksum()) & 0xFF);
     }
 
+    /**
+     * Encodes the message into the buffer in a single pass. The body length and
+     * checksum are calculated while the fields are written, and the BodyLength
+     * and CheckSum fields are updated as they are by {@link #toString()}.
+     * <p>
+     * The BeginString and BodyLength prefix is written in front of the body once
+     * its length is known, so space for the largest possible prefix is reserved
+     * at the current position and the encoded message may start after it.
+     * Do not call this method concurrently while modifying the contents of the
+     * message.
+     *
+     * @param buffer the buffer the message is written to
+     * @return the position in the buffer at which the encoded message starts; it
+     *         ends at the position of the buffer when this method returns
+     * @throws BufferOverflowException if the buffer is too small for the message,
+     *         in which case the contents and position of the buffer are undefined
+     */
+    public int encode(ByteBuffer buffer) {
+        final ByteBufferFieldWriter writer = new ByteBufferFieldWriter(buffer,
+                CharsetSupport.getCharsetInstance());
+        final Field<?> beginString = header.getField(BeginString.FIELD, null);
+        final int beginStringLength = beginString != null ? writer.length(beginString) : 0;
+        final int bodyStart = buffer.position() + beginStringLength + MAX_BODY_LENGTH_FIELD_LENGTH;
+        if (bodyStart > buffer.limit()) {
+            throw new BufferOverflowException();
+        }
+
+        buffer.position(bodyStart);
+        header.writeFields(writer, null, null);
+        writeFields(writer, null, null);
+        trailer.writeFields(writer, null, null);
+        final int bodyEnd = buffer.position();
+
+        final int bodyLength = bodyEnd - bodyStart;
+        final int start = bodyStart - beginStringLength - writer.length(BodyLength.FIELD, bodyLength);
+        buffer.position(start);
+        if (beginString != null) {
+            writer.writeField(beginString);
+        }
+        writer.writeField(BodyLength.FIELD, bodyLength);
+        buffer.position(bodyEnd);
+
+        final String checksum = writer.writeChecksum();
+        header.setInt(BodyLength.FIELD, bodyLength);
+        trailer.setString(CheckSum.FIELD, checksum);
+        return start;
+    }
+
+    /** "9=" followed by up to ten digits and the SOH */
+    private static final int MAX_BODY_LENGTH_FIELD_LENGTH = 13;
+
+    /**
+     * Writes fields to a byte buffer, summing the written bytes for the
+     * checksum. The BeginString, BodyLength and CheckSum fields are skipped
+     * when passed by a field map since they are calculated by the encoder.
+     */
+    private static final class ByteBufferFieldWriter implements FieldWriter {
+        private final ByteBuffer buffer;
+        private final Charset charset;
+        private int checksum;
+
+        ByteBufferFieldWriter(ByteBuffer buffer, Charset charset) {
+            this.buffer = buffer;
+            this.charset = charset;
+        }
+
+        public void write(Field<?> field) {
+            final int tag = field.getTag();
+            if (tag != BeginString.FIELD && tag != BodyLength.FIELD && tag != CheckSum.FIELD) {
+                writeField(field);
+            }
+        }
+
+        void writeField(Field<?> field) {
+            writeInt(field.getTag());
+            writeByte('=');
+            int sum = -1;
+            if (field instanceof StringField) {
+                sum = ((StringField) field).writeValue(buffer);
+            }
+            if (sum == -1) {
+                sum = MessageUtils.encode(charset, field.objectAsString(), buffer);
+            }
+            checksum += sum;
+            writeByte('\001');
+        }
+
+        void writeField(int tag, int value) {
+            writeInt(tag);
+            writeByte('=');
+            writeInt(value);
+            writeByte('\001');
+        }
+
+        String writeChecksum() {
+            final int value = checksum & 0xFF;
+            final char[] digits = { (char) ('0' + value / 100), (char) ('0' + value / 10 % 10),
+                    (char) ('0' + value % 10) };
+            writeInt(CheckSum.FIELD);
+            writeByte('=');
+            buffer.put((byte) digits[0]).put((byte) digits[1]).put((byte) digits[2]);
+            buffer.put((byte) '\001');
+            return new String(digits);
+        }
+
+        int length(Field<?> field) {
+            return digits(field.getTag()) + MessageUtils.length(charset, field.objectAsString()) + 2;
+        }
+
+        int length(int tag, int value) {
+            return digits(tag) + digits(value) + 2;
+        }
+
+        private void writeInt(int value) {
+            if (value < 0) {
+                writeByte('-');
+                value = -value;
+            }
+            int divisor = 1;
+            while (value / divisor >= 10) {
+                divisor *= 10;
+            }
+            for (; divisor > 0; divisor /= 10) {
+                writeByte('0' + value / divisor % 10);
+            }
+        }
+
+        private void writeByte(int b) {
+            buffer.put((byte) b);
+            checksum += b;
+        }
+
+        private static int digits(int value) {
+            int digits = value < 0 ? 2 : 1;
+            for (value = Math.abs(value); value >= 10; value /= 10) {
+                digits++;
+            }
+            return digits;
+        }
+    }
+
     public void headerAddGroup(Group group) {
         header.addGroup(group);
     }
@@ -364,8 +512,8 @@ public class Message extends FieldMap {
         }
 
         @Override
-        protected void calculateString(StringBuilder buffer, int[] excludedFields, int[] postFields) {
-            super.calculateString(buffer, EXCLUDED_HEADER_FIELDS, postFields);
+        void writeFields(FieldWriter writer, int[] excludedFields, int[] postFields) {
+            super.writeFields(writer, EXCLUDED_HEADER_FIELDS, postFields);
         }
     }
 
@@ -373,6 +521,7 @@ public class Message extends FieldMap {
         static final long serialVersionUID = -3193357271891865972L;
         private static final int[] TRAILER_FIELD_ORDER = { SignatureLength.FIELD, Signature.FIELD,
                 CheckSum.FIELD };
+        private static final int[] TRAILER_POST_FIELDS = { CheckSum.FIELD };
 
         public Trailer() {
             super(TRAILER_FIELD_ORDER);
@@ -383,8 +532,8 @@ public class Message extends FieldMap {
         }
 
         @Override
-        protected void calculateString(StringBuilder buffer, int[] excludedFields, int[] postFields) {
-            super.calculateString(buffer, null, new int[] { CheckSum.FIELD });
+        void writeFields(FieldWriter writer, int[] excludedFields, int[] postFields) {
+            super.writeFields(writer, null, TRAILER_POST_FIELDS);
         }
     }
 
@@ -469,33 +618,56 @@ public class Message extends FieldMap {
     void parse(String messageData, DataDictionary sessionDataDictionary,
             DataDictionary applicationDataDictionary, boolean doValidation) throws InvalidMessage {
         this.messageData = messageData;
+        this.rawMessageData = null;
+        parse(sessionDataDictionary, applicationDataDictionary, doValidation);
+    }
 
+    /**
+     * Parses the message directly from the received bytes. Field values are
+     * not decoded until they are accessed.
+     */
+    void parse(RawMessage messageData, DataDictionary sessionDataDictionary,
+            DataDictionary applicationDataDictionary, boolean doValidation) throws InvalidMessage {
+        this.messageData = null;
+        this.rawMessageData = messageData;
+        parse(sessionDataDictionary, applicationDataDictionary, doValidation);
+    }
+
+    private void parse(DataDictionary sessionDataDictionary,
+            DataDictionary applicationDataDictionary, boolean doValidation) throws InvalidMessage {
         try {
             parseHeader(sessionDataDictionary, doValidation);
             parseBody(applicationDataDictionary, doValidation);
             parseTrailer(sessionDataDictionary);
             if (doValidation) {
-                validateCheckSum(messageData);
+                validateCheckSum();
             }
         } catch (final FieldException e) {
             exception = e;
         }
     }
 
-    private void validateCheckSum(String messageData) throws InvalidMessage {
+    private void validateCheckSum() throws InvalidMessage {
         try {
             // Body length is checked at the protocol layer
             final int checksum = trailer.getInt(CheckSum.FIELD);
-            if (checksum != MessageUtils.checksum(messageData)) {
+            final int expectedChecksum = rawMessageData != null ? MessageUtils.checksum(
+                    rawMessageData.getData(), rawMessageData.getOffset(),
+                    rawMessageData.getLength(), true) : MessageUtils.checksum(messageData);
+            if (checksum != expectedChecksum) {
                 // message will be ignored if checksum is wrong or missing
-                throw new InvalidMessage("Expected CheckSum=" + MessageUtils.checksum(messageData)
-                        + ", Received CheckSum=" + checksum + " in " + messageData);
+                throw new InvalidMessage("Expected CheckSum=" + expectedChecksum
+                        + ", Received CheckSum=" + checksum + " in " + getMessageData());
             }
         } catch (final FieldNotFound e) {
-            throw new InvalidMessage("Field not found: " + e.field + " in " + messageData);
+            throw new InvalidMessage("Field not found: " + e.field + " in " + getMessageData());
         }
     }
 
+    private String getMessageData() {
+        return rawMessageData != null ? rawMessageData.toString() : messageData;
+    }
+
     private void parseHeader(DataDictionary dd, boolean doValidation) throws InvalidMessage {
         if (doValidation) {
             final boolean validHeaderFieldOrder = isNextField(dd, header, BeginString.FIELD)
@@ -504,7 +676,7 @@ public class Message extends FieldMap {
             if (!validHeaderFieldOrder) {
                 // Invalid message preamble (first three fields) is a serious
                 // condition and is handled differently from other message parsing errors.
-                throw new InvalidMessage("Header fields out of order in " + messageData);
+                throw new InvalidMessage("Header fields out of order in " + getMessageData());
             }
         }
 
@@ -534,7 +706,7 @@ public class Message extends FieldMap {
         try {
             return header.getString(MsgType.FIELD);
         } catch (final FieldNotFound e) {
-            throw new InvalidMessage(e.getMessage() + " in " + messageData);
+            throw new InvalidMessage(e.getMessage() + " in " + getMessageData());
         }
     }
 
@@ -611,7 +783,7 @@ public class Message extends FieldMap {
             } else if (groupDataDictionary.isGroup(msgType, tag)) {
                 if (!firstFieldFound) {
                     throw new InvalidMessage("The group " + groupCountTag
-                            + " must set the delimiter field " + firstField + " in " + messageData);
+                            + " must set the delimiter field " + firstField + " in " + getMessageData());
                 }
                 parseGroup(msgType, field, groupDataDictionary, group);
             } else if (groupDataDictionary.isField(tag)) {
@@ -719,6 +891,10 @@ public class Message extends FieldMap {
     //
     private String messageData;
 
+    private RawMessage rawMessageData;
+
+    private static final int BAD_TAG = Integer.MIN_VALUE;
+
     private int position;
 
     private StringField pushedBackField;
@@ -735,6 +911,10 @@ public class Message extends FieldMap {
             return f;
         }
 
+        if (rawMessageData != null) {
+            return extractRawField(dataDictionary, fields);
+        }
+
         if (position >= messageData.length()) {
             return null;
         }
@@ -788,6 +968,99 @@ public class Message extends FieldMap {
         return new StringField(tag, messageData.substring(equalsOffset + 1, sohOffset));
     }
 
+    private StringField extractRawField(DataDictionary dataDictionary, FieldMap fields)
+            throws InvalidMessage {
+        final byte[] data = rawMessageData.getData();
+        final int offset = rawMessageData.getOffset();
+        final int end = offset + rawMessageData.getLength();
+
+        final int start = offset + position;
+        if (start >= end) {
+            return null;
+        }
+
+        final int equalsOffset = indexOf(data, (byte) '=', start, end);
+        if (equalsOffset == -1) {
+            throw new InvalidMessage("Equal sign not found in field" + " in " + getMessageData());
+        }
+
+        final int tag = parseTag(data, start, equalsOffset);
+        if (tag == BAD_TAG) {
+            final int nextField = indexOf(data, (byte) '\001', start + 1, end) + 1;
+            position = (nextField > 0 ? nextField : end) - offset;
+            throw new InvalidMessage("Bad tag format: For input string: \""
+                    + RawMessage.decode(data, start, equalsOffset - start) + "\" in "
+                    + getMessageData());
+        }
+
+        int sohOffset = indexOf(data, (byte) '\001', equalsOffset + 1, end);
+        if (sohOffset == -1) {
+            throw new InvalidMessage("SOH not found at end of field: " + tag + " in " + getMessageData());
+        }
+
+        if (dataDictionary != null && dataDictionary.isDataField(tag)) {
+            /* Assume length field is 1 less. */
+            int lengthField = tag - 1;
+            /* Special case for Signature which violates above assumption. */
+            if (tag == 89) {
+                lengthField = 93;
+            }
+            int fieldLength;
+            try {
+                fieldLength = fields.getInt(lengthField);
+            } catch (final FieldNotFound e) {
+                throw new InvalidMessage("Tag " + e.field + " not found in " + getMessageData());
+            }
+
+            // the length is in bytes, so the field-ending SOH is the first one after the data
+            if (sohOffset - equalsOffset - 1 < fieldLength) {
+                sohOffset = fieldLength < end - equalsOffset - 1 ? indexOf(data, (byte) '\001',
+                        equalsOffset + 1 + fieldLength, end) : -1;
+                if (sohOffset == -1) {
+                    throw new InvalidMessage("SOH not found at end of field: " + tag + " in " + getMessageData());
+                }
+            }
+        }
+
+        position = sohOffset + 1 - offset;
+        return new RawStringField(tag, data, equalsOffset + 1, sohOffset - equalsOffset - 1);
+    }
+
+    /**
+     * Parses a tag the same way as Integer.parseInt, so out of range tags are
+     * rejected by validation rather than by the parser.
+     *
+     * @return the tag or BAD_TAG if it is not a number
+     */
+    private static int parseTag(byte[] data, int start, int end) {
+        boolean negative = false;
+        if (start < end && (data[start] == '-' || data[start] == '+')) {
+            negative = data[start] == '-';
+            start++;
+        }
+        if (start == end || end - start > 9) {
+            return BAD_TAG;
+        }
+        int tag = 0;
+        for (int i = start; i < end; i++) {
+            final byte b = data[i];
+            if (b < '0' || b > '9') {
+                return BAD_TAG;
+            }
+            tag = tag * 10 + (b - '0');
+        }
+        return negative ? -tag : tag;
+    }
+
+    private static int indexOf(byte[] data, byte b, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (data[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     /**
      * Queries message structural validity.
      *
@@ -801,6 +1074,37 @@ public class Message extends FieldMap {
         return exception;
     }
 
+    /**
+     * Keeps a received message from being recycled. When a session recycles
+     * inbound messages (see {@link Session#SETTING_MESSAGE_POOL_SIZE}), the
+     * message passed to {@link Application#fromApp(Message, SessionID)} or
+     * {@link Application#fromAdmin(Message, SessionID)} is cleared and reused
+     * once the callback returns. An application that keeps a reference to
+     * the message after the callback, or hands it to another thread, must
+     * call this method before returning. It has no effect on other messages.
+     */
+    public void retain() {
+        retained = true;
+    }
+
+    public boolean isRetained() {
+        return retained;
+    }
+
+    /**
+     * Clears the message, including the state of the last parse, so that it
+     * can be parsed again.
+     */
+    void recycle() {
+        clear();
+        synchronized (this) {
+            exception = null;
+        }
+        messageData = null;
+        rawMessageData = null;
+        pushedBackField = null;
+    }
+
     /**
      * Returns the first invalid tag, which is all that can be reported
      * in the resulting FIX reject message.
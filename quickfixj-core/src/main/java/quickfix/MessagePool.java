@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Recycles inbound messages of a session. Messages are created by the message
+ * factory the first time and are cleared and kept for reuse, per BeginString
+ * and MsgType, when they are released after processing. Messages are usually
+ * parsed in an I/O thread and released by the event handling thread, so the
+ * pool is safe for concurrent use.
+ *
+ * @see Session#SETTING_MESSAGE_POOL_SIZE
+ * @see Message#retain()
+ */
+class MessagePool {
+    private final MessageFactory messageFactory;
+    private final int capacity;
+    private final ConcurrentMap<String, ConcurrentMap<String, TypePool>> pools = new ConcurrentHashMap<String, ConcurrentMap<String, TypePool>>();
+
+    /**
+     * @param messageFactory creates messages when the pool is empty
+     * @param capacity the number of messages kept per message type
+     */
+    MessagePool(MessageFactory messageFactory, int capacity) {
+        this.messageFactory = messageFactory;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns an empty message of the type, reusing a released message if one
+     * is available.
+     */
+    Message create(String beginString, String msgType) {
+        final TypePool pool = getPool(beginString, msgType);
+        Message message = pool.messages.poll();
+        if (message == null) {
+            message = messageFactory.create(beginString, msgType);
+            message.pool = pool;
+        }
+        return message;
+    }
+
+    /**
+     * Clears a message created by this pool and keeps it for reuse, unless it
+     * has been retained. Other messages are ignored.
+     */
+    void release(Message message) {
+        final TypePool pool = message.pool;
+        if (pool == null || pool.owner != this || message.isRetained()) {
+            return;
+        }
+        message.recycle();
+        // a full pool drops the message
+        pool.messages.offer(message);
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    int size(String beginString, String msgType) {
+        return getPool(beginString, msgType).messages.size();
+    }
+
+    private TypePool getPool(String beginString, String msgType) {
+        ConcurrentMap<String, TypePool> typePools = pools.get(beginString);
+        if (typePools == null) {
+            typePools = new ConcurrentHashMap<String, TypePool>();
+            final ConcurrentMap<String, TypePool> existing = pools.putIfAbsent(beginString, typePools);
+            if (existing != null) {
+                typePools = existing;
+            }
+        }
+        TypePool pool = typePools.get(msgType);
+        if (pool == null) {
+            pool = new TypePool(this, capacity);
+            final TypePool existing = typePools.putIfAbsent(msgType, pool);
+            if (existing != null) {
+                pool = existing;
+            }
+        }
+        return pool;
+    }
+
+    static final class TypePool {
+        private final MessagePool owner;
+        private final BlockingQueue<Message> messages;
+
+        private TypePool(MessagePool owner, int capacity) {
+            this.owner = owner;
+            messages = new ArrayBlockingQueue<Message>(capacity);
+        }
+    }
+}
@@ -19,6 +19,8 @@
 
 package quickfix;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.HashMap;
 import java.util.Map;
@@ -78,6 +80,16 @@ public class MessageUtils {
                         SenderLocationID.FIELD), null);
     }
 
+    public static SessionID getReverseSessionID(RawMessage rawMessage) {
+        return new SessionID(rawMessage.getStringField(BeginString.FIELD),
+                rawMessage.getStringField(TargetCompID.FIELD),
+                rawMessage.getStringField(TargetSubID.FIELD),
+                rawMessage.getStringField(TargetLocationID.FIELD),
+                rawMessage.getStringField(SenderCompID.FIELD),
+                rawMessage.getStringField(SenderSubID.FIELD),
+                rawMessage.getStringField(SenderLocationID.FIELD), null);
+    }
+
     private static String getFieldOrDefault(FieldMap fields, int tag, String defaultValue) {
         if (fields.isSetField(tag)) {
             try {
@@ -134,15 +146,16 @@ public class MessageUtils {
             applVerID = toApplVerID(beginString);
         }
 
-        final MessageFactory messageFactory = session.getMessageFactory();
-
         final DataDictionaryProvider ddProvider = session.getDataDictionaryProvider();
         final DataDictionary sessionDataDictionary = ddProvider == null ? null : ddProvider
                 .getSessionDataDictionary(beginString);
         final DataDictionary applicationDataDictionary = ddProvider == null ? null : ddProvider
                 .getApplicationDataDictionary(applVerID);
 
-        final quickfix.Message message = messageFactory.create(beginString, msgType);
+        final MessagePool messagePool = session.getMessagePool();
+        final quickfix.Message message = messagePool != null
+                ? messagePool.create(beginString, msgType)
+                : session.getMessageFactory().create(beginString, msgType);
         final DataDictionary payloadDictionary = MessageUtils.isAdminMessage(msgType)
                 ? sessionDataDictionary
                 : applicationDataDictionary;
@@ -153,6 +166,76 @@ public class MessageUtils {
         return message;
     }
 
+    /**
+     * NOTE: This method is intended for internal use.
+     *
+     * Parses a message directly from its received bytes. Field values are decoded
+     * on demand rather than during parsing.
+     *
+     * @param session the Session that will process the message
+     * @param rawMessage the received message bytes
+     * @return the parsed message
+     * @throws InvalidMessage
+     */
+    public static Message parse(Session session, RawMessage rawMessage) throws InvalidMessage {
+        final String beginString = rawMessage.getStringField(BeginString.FIELD);
+        final String msgType = getMessageType(rawMessage);
+
+        ApplVerID applVerID;
+
+        if (FixVersions.BEGINSTRING_FIXT11.equals(beginString)) {
+            applVerID = getApplVerID(session, rawMessage, msgType);
+        } else {
+            applVerID = toApplVerID(beginString);
+        }
+
+        final DataDictionaryProvider ddProvider = session.getDataDictionaryProvider();
+        final DataDictionary sessionDataDictionary = ddProvider == null ? null : ddProvider
+                .getSessionDataDictionary(beginString);
+        final DataDictionary applicationDataDictionary = ddProvider == null ? null : ddProvider
+                .getApplicationDataDictionary(applVerID);
+
+        final MessagePool messagePool = session.getMessagePool();
+        final quickfix.Message message = messagePool != null
+                ? messagePool.create(beginString, msgType)
+                : session.getMessageFactory().create(beginString, msgType);
+        final DataDictionary payloadDictionary = MessageUtils.isAdminMessage(msgType)
+                ? sessionDataDictionary
+                : applicationDataDictionary;
+
+        message.parse(rawMessage, sessionDataDictionary, payloadDictionary,
+                payloadDictionary != null);
+
+        return message;
+    }
+
+    private static ApplVerID getApplVerID(Session session, RawMessage rawMessage, String msgType)
+            throws InvalidMessage {
+        ApplVerID applVerID = null;
+
+        final String applVerIdString = rawMessage.getStringField(ApplVerID.FIELD);
+        if (applVerIdString != null) {
+            applVerID = new ApplVerID(applVerIdString);
+        }
+
+        if (applVerID == null) {
+            applVerID = session.getTargetDefaultApplicationVersionID();
+        }
+
+        if (applVerID == null && MsgType.LOGON.equals(msgType)) {
+            final String defaultApplVerIdString = rawMessage.getStringField(DefaultApplVerID.FIELD);
+            if (defaultApplVerIdString != null) {
+                applVerID = new ApplVerID(defaultApplVerIdString);
+            }
+        }
+
+        if (applVerID == null) {
+            throw new InvalidMessage("Can't determine ApplVerID for message");
+        }
+
+        return applVerID;
+    }
+
     private static ApplVerID getApplVerID(Session session, String messageString)
             throws InvalidMessage {
         ApplVerID applVerID = null;
@@ -209,6 +292,14 @@ public class MessageUtils {
         return value;
     }
 
+    public static String getMessageType(RawMessage rawMessage) throws InvalidMessage {
+        final String value = rawMessage.getStringField(MsgType.FIELD);
+        if (value == null) {
+            throw new InvalidMessage("Missing or garbled message type in " + rawMessage);
+        }
+        return value;
+    }
+
     public static String getStringField(String messageString, int tag) {
         String value = null;
         final String tagString = Integer.toString(tag);
@@ -315,13 +406,31 @@ public class MessageUtils {
             }
         } else {
             byte[] bytes = data.getBytes(charset);
-            int len = bytes.length;
-            if (isEntireMessage && bytes[len - 8] == '\001' && bytes[len - 7] == '1'
-                    && bytes[len - 6] == '0' && bytes[len - 5] == '=')
-                len = len - 7;
-            for (int i = 0; i < len; i++) {
-                sum += (bytes[i] & 0xFF);
-            }
+            return checksum(bytes, 0, bytes.length, isEntireMessage);
+        }
+        return sum & 0xFF; // better than sum % 256 since it avoids overflow issues
+    }
+
+    /**
+     * Calculates the checksum for the given encoded data.
+     *
+     * @param data the encoded data
+     * @param offset the offset of the first byte to include
+     * @param length the number of bytes to include
+     * @param isEntireMessage specifies whether the data is an entire message;
+     *        if true, and it ends with a checksum field, that checksum
+     *        field is excluded from the current checksum calculation
+     * @return the calculated checksum
+     */
+    public static int checksum(byte[] data, int offset, int length, boolean isEntireMessage) {
+        int end = offset + length;
+        if (isEntireMessage && length >= 8 && data[end - 8] == '\001' && data[end - 7] == '1'
+                && data[end - 6] == '0' && data[end - 5] == '=') {
+            end = end - 7;
+        }
+        int sum = 0;
+        for (int i = offset; i < end; i++) {
+            sum += (data[i] & 0xFF);
         }
         return sum & 0xFF; // better than sum % 256 since it avoids overflow issues
     }
@@ -349,4 +458,46 @@ public class MessageUtils {
     public static int length(Charset charset, String data) {
         return CharsetSupport.isStringEquivalent(charset) ? data.length() : data.getBytes(charset).length;
     }
+
+    /**
+     * Writes the byte representation of the given string in the given charset
+     * to the buffer. For string-equivalent charsets the characters are written
+     * directly, without encoding the string into an intermediate byte array.
+     *
+     * @param charset the charset used in encoding the data
+     * @param data the data to encode
+     * @param buffer the buffer the encoded data is written to
+     * @return the checksum of the encoded data
+     * @throws BufferOverflowException if the buffer is too small for the data
+     */
+    public static int encode(Charset charset, String data, ByteBuffer buffer) {
+        int sum = 0;
+        if (CharsetSupport.isStringEquivalent(charset)) { // optimization - skip encoding
+            final int length = data.length();
+            if (buffer.remaining() < length) {
+                throw new BufferOverflowException();
+            }
+            if (buffer.hasArray()) {
+                final byte[] array = buffer.array();
+                final int offset = buffer.arrayOffset() + buffer.position();
+                for (int i = 0; i < length; i++) {
+                    final char c = data.charAt(i);
+                    array[offset + i] = (byte) c;
+                    sum += c;
+                }
+                buffer.position(buffer.position() + length);
+            } else {
+                for (int i = 0; i < length; i++) {
+                    final char c = data.charAt(i);
+                    buffer.put((byte) c);
+                    sum += c;
+                }
+            }
+        } else {
+            byte[] bytes = data.getBytes(charset);
+            buffer.put(bytes);
+            return checksum(bytes, 0, bytes.length, false);
+        }
+        return sum & 0xFF;
+    }
 }
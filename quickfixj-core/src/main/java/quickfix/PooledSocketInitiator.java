@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import quickfix.mina.EventHandlingStrategy;
+import quickfix.mina.WorkerPoolEventHandlingStrategy;
+import quickfix.mina.initiator.AbstractSocketInitiator;
+
+/**
+ * Initiates connections and processes the messages of all sessions on a pool of
+ * worker threads, preserving the order of the messages of each session.
+ *
+ * @see quickfix.mina.SessionConnector#SETTING_EVENT_WORKER_THREADS
+ */
+public class PooledSocketInitiator extends AbstractSocketInitiator {
+    private final WorkerPoolEventHandlingStrategy eventHandlingStrategy;
+
+    public PooledSocketInitiator(Application application,
+            MessageStoreFactory messageStoreFactory, SessionSettings settings,
+            LogFactory logFactory, MessageFactory messageFactory, int queueCapacity) throws ConfigError {
+        super(application, messageStoreFactory, settings, logFactory, messageFactory);
+        eventHandlingStrategy = createWorkerPoolEventHandlingStrategy(queueCapacity);
+    }
+
+    public PooledSocketInitiator(Application application,
+            MessageStoreFactory messageStoreFactory, SessionSettings settings,
+            LogFactory logFactory, MessageFactory messageFactory) throws ConfigError {
+        super(application, messageStoreFactory, settings, logFactory, messageFactory);
+        eventHandlingStrategy = createWorkerPoolEventHandlingStrategy(DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public PooledSocketInitiator(Application application,
+            MessageStoreFactory messageStoreFactory, SessionSettings settings,
+            MessageFactory messageFactory, int queueCapacity) throws ConfigError {
+        super(application, messageStoreFactory, settings, new ScreenLogFactory(settings),
+                messageFactory);
+        eventHandlingStrategy = createWorkerPoolEventHandlingStrategy(queueCapacity);
+    }
+
+    public PooledSocketInitiator(Application application,
+            MessageStoreFactory messageStoreFactory, SessionSettings settings,
+            MessageFactory messageFactory) throws ConfigError {
+        super(application, messageStoreFactory, settings, new ScreenLogFactory(settings),
+                messageFactory);
+        eventHandlingStrategy = createWorkerPoolEventHandlingStrategy(DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public PooledSocketInitiator(SessionFactory sessionFactory, SessionSettings settings, int queueCapacity)
+            throws ConfigError {
+        super(settings, sessionFactory);
+        eventHandlingStrategy = createWorkerPoolEventHandlingStrategy(queueCapacity);
+    }
+
+    public PooledSocketInitiator(SessionFactory sessionFactory, SessionSettings settings)
+            throws ConfigError {
+        super(settings, sessionFactory);
+        eventHandlingStrategy = createWorkerPoolEventHandlingStrategy(DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public void start() throws ConfigError, RuntimeError {
+        eventHandlingStrategy.startWorkerThreads();
+        createSessionInitiators();
+        startInitiators();
+    }
+
+    public void stop() {
+        stop(false);
+    }
+
+    public void stop(boolean forceDisconnect) {
+        logoutAllSessions(forceDisconnect);
+        stopSessionTimer();
+        if (!forceDisconnect) {
+            waitForLogout();
+        }
+        eventHandlingStrategy.stopWorkerThreads();
+        Session.unregisterSessions(getSessions());
+    }
+
+    public void block() throws ConfigError, RuntimeError {
+        throw new UnsupportedOperationException("Blocking not supported: " + getClass());
+    }
+
+    @Override
+    public void removeDynamicSession(SessionID inSessionID) {
+        super.removeDynamicSession(inSessionID);
+        eventHandlingStrategy.removeSession(inSessionID);
+    }
+
+    @Override
+    protected EventHandlingStrategy getEventHandlingStrategy() {
+        return eventHandlingStrategy;
+    }
+
+}
@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import org.quickfixj.CharsetSupport;
+
+/**
+ * An encoded FIX message frame as it was received on the wire. The bytes are
+ * not decoded into a String unless explicitly requested, which allows a
+ * {@link Message} to be parsed directly from the received bytes.
+ */
+public class RawMessage {
+    private static final byte SOH = '\001';
+
+    private final byte[] data;
+    private final int offset;
+    private final int length;
+
+    private String string;
+
+    public RawMessage(byte[] data) {
+        this(data, 0, data.length);
+    }
+
+    public RawMessage(byte[] data, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > data.length) {
+            throw new IndexOutOfBoundsException("offset=" + offset + ", length=" + length
+                    + ", data length=" + data.length);
+        }
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * @return the array holding the message bytes (not copied)
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Returns the value of the first occurrence of a field, decoding only that
+     * value. Like {@link MessageUtils#getStringField(String, int)}, this method
+     * does not know about data fields and is intended for header lookups.
+     *
+     * @param tag the field tag
+     * @return the field value or null if the field is not present
+     */
+    public String getStringField(int tag) {
+        final int end = offset + length;
+        int position = offset;
+        while (position < end) {
+            int fieldTag = 0;
+            int i = position;
+            while (i < end && data[i] >= '0' && data[i] <= '9') {
+                fieldTag = fieldTag * 10 + (data[i++] - '0');
+            }
+            final boolean isTag = i > position && i < end && data[i] == '=';
+            final int valueOffset = i + 1;
+            while (i < end && data[i] != SOH) {
+                i++;
+            }
+            if (i == end) {
+                return null;
+            }
+            if (isTag && fieldTag == tag) {
+                return decode(data, valueOffset, i - valueOffset);
+            }
+            position = i + 1;
+        }
+        return null;
+    }
+
+    /**
+     * Decodes the message bytes using the {@link CharsetSupport#setCharset global charset}.
+     * The result is cached.
+     */
+    @Override
+    public String toString() {
+        if (string == null) {
+            string = decode(data, offset, length);
+        }
+        return string;
+    }
+
+    static String decode(byte[] data, int offset, int length) {
+        return new String(data, offset, length, CharsetSupport.getCharsetInstance());
+    }
+}
@@ -0,0 +1,296 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Date;
+
+import quickfix.field.converter.FixedDecimalConverter;
+import quickfix.field.converter.UtcTimestampConverter;
+
+/**
+ * A string field parsed from a {@link RawMessage}. The field only records
+ * where its value is located in the received bytes; the String value is
+ * decoded the first time it is requested. Typed values are cached after the
+ * first conversion, and integers, plain decimal numbers, fixed-point
+ * decimals and timestamps are converted directly from the received bytes.
+ */
+class RawStringField extends StringField {
+    static final long serialVersionUID = -2624378264913524736L;
+
+    private static final int NOT_CONVERTED = 0;
+    private static final int INT = 1;
+    private static final int DOUBLE = 2;
+    private static final int DECIMAL = 3;
+    private static final int UTC_TIMESTAMP = 4;
+    private static final int UTC_TIME_ONLY = 5;
+    private static final int UTC_DATE_ONLY = 6;
+
+    // doubles up to 10^15 are exact, so dividing by them rounds like Double.parseDouble
+    private static final int MAX_FAST_DOUBLE_DIGITS = 15;
+    private static final double[] POWERS_OF_TEN = new double[MAX_FAST_DOUBLE_DIGITS + 1];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final byte[] data;
+    private final int offset;
+    private final int length;
+
+    private int convertedType = NOT_CONVERTED;
+    private long convertedValue;
+    private Object convertedObject;
+
+    RawStringField(int field, byte[] data, int offset, int length) {
+        super(field, null);
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public String getObject() {
+        String value = super.getObject();
+        if (value == null) {
+            // decoding is idempotent so a racing reader at worst decodes twice
+            value = RawMessage.decode(data, offset, length);
+            super.setObject(value);
+        }
+        return value;
+    }
+
+    @Override
+    protected void setObject(String object) {
+        super.setObject(object);
+        convertedType = NOT_CONVERTED;
+        convertedObject = null;
+    }
+
+    @Override
+    protected String objectAsString() {
+        return getObject();
+    }
+
+    @Override
+    public int hashCode() {
+        return getObject().hashCode();
+    }
+
+    private boolean isDecoded() {
+        return super.getObject() != null;
+    }
+
+    @Override
+    int getLength() {
+        if (isDecoded()) {
+            return super.getLength();
+        }
+        return digits(getTag()) + length + 2;
+    }
+
+    @Override
+    int getChecksum() {
+        if (isDecoded()) {
+            return super.getChecksum();
+        }
+        int sum = '=' + '\001';
+        for (int tag = getTag(); tag > 0; tag /= 10) {
+            sum += '0' + tag % 10;
+        }
+        for (int i = offset, end = offset + length; i < end; i++) {
+            sum += data[i] & 0xFF;
+        }
+        return sum & 0xFF;
+    }
+
+    /**
+     * Writes the received value bytes, unless the value has been decoded.
+     */
+    @Override
+    int writeValue(ByteBuffer buffer) {
+        if (isDecoded()) {
+            return -1;
+        }
+        buffer.put(data, offset, length);
+        int sum = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            sum += data[i] & 0xFF;
+        }
+        return sum & 0xFF;
+    }
+
+    @Override
+    boolean hasValue() {
+        return isDecoded() ? super.hasValue() : length > 0;
+    }
+
+    @Override
+    int intValue() throws FieldConvertError {
+        if (convertedType != INT) {
+            convertedValue = isDecoded() ? super.intValue() : parseInt();
+            convertedType = INT;
+        }
+        return (int) convertedValue;
+    }
+
+    @Override
+    double doubleValue() throws FieldConvertError {
+        if (convertedType != DOUBLE) {
+            convertedValue = Double.doubleToRawLongBits(isDecoded()
+                    ? super.doubleValue()
+                    : parseDouble());
+            convertedType = DOUBLE;
+        }
+        return Double.longBitsToDouble(convertedValue);
+    }
+
+    @Override
+    BigDecimal decimalValue() throws FieldConvertError {
+        if (convertedType != DECIMAL) {
+            convertedObject = super.decimalValue();
+            convertedType = DECIMAL;
+        }
+        return (BigDecimal) convertedObject;
+    }
+
+    @Override
+    long fixedDecimalValue(int scale) throws FieldConvertError {
+        return isDecoded()
+                ? super.fixedDecimalValue(scale)
+                : FixedDecimalConverter.convert(data, offset, length, scale);
+    }
+
+    @Override
+    int fixedDecimalScale() {
+        return isDecoded() ? super.fixedDecimalScale() : FixedDecimalConverter.scale(data, offset, length);
+    }
+
+    @Override
+    Date utcTimeStampValue() throws FieldConvertError {
+        if (convertedType != UTC_TIMESTAMP) {
+            convertedValue = isDecoded()
+                    ? super.utcTimeStampValue().getTime()
+                    : UtcTimestampConverter.convertToEpochMillis(data, offset, length);
+            convertedType = UTC_TIMESTAMP;
+        }
+        return new Date(convertedValue);
+    }
+
+    @Override
+    long utcTimeStampNanos() throws FieldConvertError {
+        return isDecoded()
+                ? super.utcTimeStampNanos()
+                : UtcTimestampConverter.convertToEpochNanos(data, offset, length);
+    }
+
+    @Override
+    Date utcTimeOnlyValue() throws FieldConvertError {
+        if (convertedType != UTC_TIME_ONLY) {
+            convertedValue = super.utcTimeOnlyValue().getTime();
+            convertedType = UTC_TIME_ONLY;
+        }
+        return new Date(convertedValue);
+    }
+
+    @Override
+    Date utcDateOnlyValue() throws FieldConvertError {
+        if (convertedType != UTC_DATE_ONLY) {
+            convertedValue = super.utcDateOnlyValue().getTime();
+            convertedType = UTC_DATE_ONLY;
+        }
+        return new Date(convertedValue);
+    }
+
+    /**
+     * Parses plain ASCII integers from the received bytes. Anything else is left
+     * to the converter so that values and error messages are the same as for a
+     * decoded value.
+     */
+    private int parseInt() throws FieldConvertError {
+        final int end = offset + length;
+        int i = offset;
+        final boolean negative = i < end && data[i] == '-';
+        if (negative) {
+            i++;
+        }
+        if (i == end || end - i > 9) {
+            return super.intValue();
+        }
+        int value = 0;
+        for (; i < end; i++) {
+            final int digit = data[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return super.intValue();
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses decimal numbers with up to 15 digits from the received bytes.
+     * Anything else is left to the converter.
+     */
+    private double parseDouble() throws FieldConvertError {
+        final int end = offset + length;
+        int i = offset;
+        final boolean negative = i < end && data[i] == '-';
+        if (negative) {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        for (; i < end; i++) {
+            final byte b = data[i];
+            if (b == '.' && scale == -1) {
+                scale = 0;
+                continue;
+            }
+            final int digit = b - '0';
+            if (digit < 0 || digit > 9 || digits == MAX_FAST_DOUBLE_DIGITS) {
+                return super.doubleValue();
+            }
+            mantissa = mantissa * 10 + digit;
+            digits++;
+            if (scale != -1) {
+                scale++;
+            }
+        }
+        if (digits == 0) {
+            return super.doubleValue();
+        }
+        final double value = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+        return negative ? -value : value;
+    }
+
+    private static int digits(int tag) {
+        int digits = 1;
+        while (tag >= 10) {
+            tag /= 10;
+            digits++;
+        }
+        return digits;
+    }
+}
@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.nio.charset.Charset;
+
+import org.quickfixj.CharsetSupport;
+
+import quickfix.field.BeginString;
+import quickfix.field.BodyLength;
+import quickfix.field.CheckSum;
+import quickfix.field.MsgSeqNum;
+import quickfix.field.MsgType;
+import quickfix.field.NoHops;
+import quickfix.field.OrigSendingTime;
+import quickfix.field.PossDupFlag;
+import quickfix.field.SecureDataLen;
+import quickfix.field.SendingTime;
+import quickfix.field.XmlDataLen;
+import quickfix.field.converter.UtcTimestampConverter;
+
+/**
+ * Prepares a stored message for a resend by rewriting its header in the
+ * message string. PossDupFlag is set, the original SendingTime becomes the
+ * OrigSendingTime and the SendingTime is replaced. Only the header fields are
+ * located; the body is copied as is and only scanned to recalculate the
+ * BodyLength and CheckSum.
+ * <p>
+ * The result is the same as parsing the message, setting the header fields and
+ * converting it back to a string. Messages with a header this class does not
+ * handle, such as headers with data fields or groups, are not rewritten.
+ */
+final class ResendHeaderRewriter {
+    private static final char SOH = '\001';
+    private static final int[] RESEND_FIELDS = { PossDupFlag.FIELD, SendingTime.FIELD,
+            OrigSendingTime.FIELD };
+
+    private final String message;
+    // start and end (after the SOH) of each header field
+    private final int[] starts;
+    private final int[] ends;
+    private final int[] tags;
+    private final int fieldCount;
+    private final int bodyStart;
+    private final int checkSumStart;
+    private final String msgType;
+    private final int msgSeqNum;
+    private final String sendingTime;
+
+    private ResendHeaderRewriter(String message, int[] starts, int[] ends, int[] tags,
+            int fieldCount, int bodyStart, int checkSumStart, String msgType, int msgSeqNum,
+            String sendingTime) {
+        this.message = message;
+        this.starts = starts;
+        this.ends = ends;
+        this.tags = tags;
+        this.fieldCount = fieldCount;
+        this.bodyStart = bodyStart;
+        this.checkSumStart = checkSumStart;
+        this.msgType = msgType;
+        this.msgSeqNum = msgSeqNum;
+        this.sendingTime = sendingTime;
+    }
+
+    /**
+     * Locates the header fields of a stored message.
+     *
+     * @param message the stored message
+     * @param dataDictionary the session data dictionary, or null
+     * @return the rewriter, or null if the header cannot be rewritten
+     */
+    static ResendHeaderRewriter parse(String message, DataDictionary dataDictionary) {
+        // the SOH that precedes the CheckSum field
+        final int checkSumStart = message.lastIndexOf("\00110=");
+        if (checkSumStart == -1) {
+            return null;
+        }
+        int[] starts = new int[16];
+        int[] ends = new int[16];
+        int[] tags = new int[16];
+        int fieldCount = 0;
+        String msgType = null;
+        int msgSeqNum = -1;
+        String sendingTime = null;
+        int position = 0;
+        while (position <= checkSumStart) {
+            int tag = 0;
+            int i = position;
+            char c;
+            while (i < checkSumStart && (c = message.charAt(i)) >= '0' && c <= '9') {
+                tag = tag * 10 + (c - '0');
+                i++;
+            }
+            if (i == position || message.charAt(i) != '=') {
+                return null;
+            }
+            final int valueStart = i + 1;
+            final int valueEnd = message.indexOf(SOH, valueStart);
+            if (fieldCount < 3) {
+                if (tag != (fieldCount == 0 ? BeginString.FIELD : fieldCount == 1
+                        ? BodyLength.FIELD
+                        : MsgType.FIELD)) {
+                    return null;
+                }
+            } else if (!Message.isHeaderField(tag)
+                    && (dataDictionary == null || !dataDictionary.isHeaderField(tag))) {
+                break;
+            }
+            if (tag == SecureDataLen.FIELD || tag == XmlDataLen.FIELD || tag == NoHops.FIELD
+                    || dataDictionary != null
+                    && dataDictionary.isGroup(DataDictionary.HEADER_ID, tag)) {
+                return null;
+            }
+            if (tag == MsgType.FIELD) {
+                msgType = message.substring(valueStart, valueEnd);
+            } else if (tag == MsgSeqNum.FIELD) {
+                try {
+                    msgSeqNum = Integer.parseInt(message.substring(valueStart, valueEnd));
+                } catch (final NumberFormatException e) {
+                    return null;
+                }
+            } else if (tag == SendingTime.FIELD) {
+                sendingTime = message.substring(valueStart, valueEnd);
+            }
+            if (fieldCount == tags.length) {
+                starts = grow(starts);
+                ends = grow(ends);
+                tags = grow(tags);
+            }
+            starts[fieldCount] = position;
+            ends[fieldCount] = valueEnd + 1;
+            tags[fieldCount] = tag;
+            fieldCount++;
+            position = valueEnd + 1;
+        }
+        if (msgType == null || msgSeqNum == -1 || sendingTime == null) {
+            return null;
+        }
+        return new ResendHeaderRewriter(message, starts, ends, tags, fieldCount, position,
+                checkSumStart, msgType, msgSeqNum, sendingTime);
+    }
+
+    private static int[] grow(int[] array) {
+        final int[] grown = new int[array.length * 2];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+    String getMsgType() {
+        return msgType;
+    }
+
+    int getMsgSeqNum() {
+        return msgSeqNum;
+    }
+
+    /**
+     * @param newSendingTime the SendingTime of the resent message
+     * @param precision the precision of the OrigSendingTime
+     * @return the message to resend, or null if the SendingTime of the stored
+     *         message is invalid
+     */
+    String rewrite(String newSendingTime, UtcTimestampPrecision precision) {
+        final String origSendingTime;
+        try {
+            origSendingTime = UtcTimestampConverter.convertEpochNanos(
+                    UtcTimestampConverter.convertToEpochNanos(sendingTime), precision);
+        } catch (final FieldConvertError e) {
+            return null;
+        }
+        final String[] resendValues = { "Y", newSendingTime, origSendingTime };
+
+        // everything after the BodyLength field up to the CheckSum field
+        final StringBuilder body = new StringBuilder(message.length() + 64);
+        body.append(message, starts[2], ends[2]);
+        int resendField = 0;
+        for (int i = 3; i < fieldCount; i++) {
+            final int tag = tags[i];
+            while (resendField < RESEND_FIELDS.length && RESEND_FIELDS[resendField] < tag) {
+                appendField(body, RESEND_FIELDS[resendField], resendValues[resendField]);
+                resendField++;
+            }
+            if (tag != PossDupFlag.FIELD && tag != SendingTime.FIELD
+                    && tag != OrigSendingTime.FIELD) {
+                body.append(message, starts[i], ends[i]);
+            }
+        }
+        while (resendField < RESEND_FIELDS.length) {
+            appendField(body, RESEND_FIELDS[resendField], resendValues[resendField]);
+            resendField++;
+        }
+        body.append(message, bodyStart, checkSumStart + 1);
+
+        final Charset charset = CharsetSupport.getCharsetInstance();
+        final String bodyString = body.toString();
+        final StringBuilder sb = new StringBuilder(bodyString.length() + 32);
+        sb.append(message, starts[0], ends[0]);
+        appendField(sb, BodyLength.FIELD, Integer.toString(MessageUtils.length(charset,
+                bodyString)));
+        sb.append(bodyString);
+        final int checksum = MessageUtils.checksum(charset, sb.toString(), false);
+        sb.append(CheckSum.FIELD).append('=');
+        if (checksum < 100) {
+            sb.append(checksum < 10 ? "00" : "0");
+        }
+        sb.append(checksum).append(SOH);
+        return sb.toString();
+    }
+
+    private static void appendField(StringBuilder sb, int tag, String value) {
+        sb.append(tag).append('=').append(value).append(SOH);
+    }
+}
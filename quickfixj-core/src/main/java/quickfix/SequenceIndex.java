@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.util.Arrays;
+
+/**
+ * Maps message sequence numbers to a long value, such as the location of the
+ * message in a file, and optionally an int length, using sorted primitive
+ * arrays. Sequence numbers normally arrive in ascending order, so adding one
+ * is an append, and the lowest ones are removed first, which takes constant
+ * time.
+ * <p>
+ * This class is not thread safe.
+ */
+final class SequenceIndex {
+    private int[] sequences;
+    private long[] values;
+    private int[] lengths;
+    private int head;
+    private int size;
+
+    SequenceIndex() {
+        this(64);
+    }
+
+    SequenceIndex(int initialCapacity) {
+        sequences = new int[Math.max(initialCapacity, 1)];
+        values = new long[sequences.length];
+    }
+
+    /**
+     * Sets the value of a sequence number, replacing its previous value.
+     */
+    void put(int sequence, long value) {
+        final int index = insert(sequence);
+        values[index] = value;
+    }
+
+    /**
+     * Sets the value and length of a sequence number, replacing the previous
+     * ones.
+     */
+    void put(int sequence, long value, int length) {
+        if (lengths == null) {
+            lengths = new int[sequences.length];
+        }
+        final int index = insert(sequence);
+        values[index] = value;
+        lengths[index] = length;
+    }
+
+    /**
+     * @return the array position of the sequence number, which is added if
+     *         it is not indexed yet
+     */
+    private int insert(int sequence) {
+        int index;
+        if (size == 0 || sequences[head + size - 1] < sequence) {
+            index = size;
+        } else {
+            index = Arrays.binarySearch(sequences, head, head + size, sequence);
+            if (index >= 0) {
+                return index;
+            }
+            index = -index - 1 - head;
+        }
+        if (head + size == sequences.length) {
+            grow();
+        }
+        index += head;
+        final int end = head + size;
+        if (index < end) {
+            System.arraycopy(sequences, index, sequences, index + 1, end - index);
+            System.arraycopy(values, index, values, index + 1, end - index);
+            if (lengths != null) {
+                System.arraycopy(lengths, index, lengths, index + 1, end - index);
+            }
+        }
+        sequences[index] = sequence;
+        size++;
+        return index;
+    }
+
+    /**
+     * Makes room at the end of the arrays, moving the entries to the start if
+     * enough of them have been removed, and otherwise doubling the capacity.
+     */
+    private void grow() {
+        if (head >= sequences.length / 2) {
+            System.arraycopy(sequences, head, sequences, 0, size);
+            System.arraycopy(values, head, values, 0, size);
+            if (lengths != null) {
+                System.arraycopy(lengths, head, lengths, 0, size);
+            }
+            head = 0;
+            return;
+        }
+        final int capacity = sequences.length * 2;
+        sequences = Arrays.copyOf(sequences, capacity);
+        values = Arrays.copyOf(values, capacity);
+        if (lengths != null) {
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+    }
+
+    /**
+     * Removes the entry with the lowest sequence number.
+     */
+    void removeFirst() {
+        if (size > 0) {
+            head++;
+            size--;
+            if (size == 0) {
+                head = 0;
+            }
+        }
+    }
+
+    /**
+     * @return the position of the first entry with a sequence number greater
+     *         than or equal to the given one, which is {@link #size()} if
+     *         there is none
+     */
+    int ceiling(int sequence) {
+        if (size == 0 || sequences[head + size - 1] < sequence) {
+            return size;
+        }
+        final int index = Arrays.binarySearch(sequences, head, head + size, sequence);
+        return (index >= 0 ? index : -index - 1) - head;
+    }
+
+    /**
+     * @return the position of the sequence number, or -1 if it has no value
+     */
+    int indexOf(int sequence) {
+        final int index = ceiling(sequence);
+        return index < size && sequences[head + index] == sequence ? index : -1;
+    }
+
+    int sequenceAt(int index) {
+        return sequences[head + index];
+    }
+
+    long valueAt(int index) {
+        return values[head + index];
+    }
+
+    /**
+     * @return the length of the entry, or 0 if no lengths have been set
+     */
+    int lengthAt(int index) {
+        return lengths != null ? lengths[head + index] : 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        head = 0;
+        size = 0;
+    }
+}
@@ -25,7 +25,9 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -69,6 +71,7 @@ import quickfix.field.TargetLocationID;
 import quickfix.field.TargetSubID;
 import quickfix.field.TestReqID;
 import quickfix.field.Text;
+import quickfix.field.converter.UtcTimestampConverter;
 
 /**
  * The Session is the primary FIX abstraction for message communication. It
@@ -334,6 +337,37 @@ public class Session implements Closeable {
      */
     public static final String SETTING_RESEND_REQUEST_CHUNK_SIZE = "ResendRequestChunkSize";
 
+    /**
+     * Session setting for parsing incoming messages directly from the received bytes.
+     * Field values are only decoded, and converted to typed values, when they are
+     * accessed. Valid values are "Y" or "N". Default is "N".
+     */
+    public static final String SETTING_RAW_MESSAGE_DECODING = "RawMessageDecoding";
+
+    /**
+     * Session setting for the precision of the fractional seconds in message
+     * timestamps. Valid values are "SECONDS", "MILLIS", "MICROS" or "NANOS".
+     * Default is "MILLIS", or "SECONDS" when {@link #SETTING_MILLISECONDS_IN_TIMESTAMP}
+     * is "N". Only valid for FIX version >= 4.2.
+     */
+    public static final String SETTING_TIMESTAMP_PRECISION = "TimeStampPrecision";
+
+    /**
+     * Session setting for recycling inbound messages. It is the number of
+     * processed messages kept for reuse per message type; 0 disables recycling.
+     * Recycled messages are only valid until the Application callback returns
+     * unless the application calls {@link Message#retain()}. Default is 0.
+     */
+    public static final String SETTING_MESSAGE_POOL_SIZE = "MessagePoolSize";
+
+    /**
+     * Session setting for resending stored application messages by rewriting
+     * their header fields, without parsing them. {@link Application#toApp} is
+     * not called for the resent messages. Valid values are "Y" or "N".
+     * Default is "N".
+     */
+    public static final String SETTING_RAW_RESEND = "RawResend";
+
     private static final ConcurrentMap<SessionID, Session> sessions = new ConcurrentHashMap<SessionID, Session>();
 
     private final Application application;
@@ -353,6 +387,7 @@ public class Session implements Closeable {
     // The session time checks were causing performance problems
     // so we are checking only once per second.
     private long lastSessionTimeCheck = 0;
+    private volatile Runnable timerWakeUp;
     private int logonAttempts = 0;
     private long lastSessionLogon = 0;
 
@@ -378,6 +413,10 @@ public class Session implements Closeable {
     private boolean forceResendWhenCorruptedStore = false;
     private boolean enableNextExpectedMsgSeqNum = false;
     private boolean enableLastMsgSeqNumProcessed = false;
+    private boolean rawMessageDecoding = false;
+    private boolean rawResend = false;
+    private UtcTimestampPrecision timestampPrecision;
+    private volatile MessagePool messagePool;
 
     private final AtomicBoolean isResetting = new AtomicBoolean();
 
@@ -491,6 +530,23 @@ public class Session implements Closeable {
         return messageFactory;
     }
 
+    /**
+     * NOTE: This method is intended for internal use.
+     *
+     * Called by the event handling strategy once a received message has been
+     * processed. The message is recycled if this session recycles inbound
+     * messages and it has not been retained.
+     *
+     * @param message the processed message
+     * @see Message#retain()
+     */
+    public void releaseMessage(Message message) {
+        final MessagePool pool = messagePool;
+        if (pool != null) {
+            pool.release(message);
+        }
+    }
+
     /**
      * Registers a responder with the session. This is used by the acceptor and
      * initiator implementations.
@@ -506,6 +562,7 @@ public class Session implements Closeable {
                 stateListener.onDisconnect();
             }
         }
+        wakeUpTimer();
     }
 
     public Responder getResponder() {
@@ -538,8 +595,8 @@ public class Session implements Closeable {
 
     private boolean isCurrentSession(final long time)
             throws IOException {
-        return sessionSchedule == null || sessionSchedule.isSameSession(
-                SystemTime.getUtcCalendar(time), SystemTime.getUtcCalendar(state.getCreationTime()));
+        return sessionSchedule == null
+                || sessionSchedule.isSameSession(time, state.getCreationTime().getTime());
     }
 
     /**
@@ -668,8 +725,11 @@ public class Session implements Closeable {
         setEnabled(true);
     }
 
-    private synchronized void setEnabled(boolean enabled) {
-        this.enabled = enabled;
+    private void setEnabled(boolean enabled) {
+        synchronized (this) {
+            this.enabled = enabled;
+        }
+        wakeUpTimer();
     }
 
     private void initializeHeader(Message.Header header) {
@@ -692,12 +752,22 @@ public class Session implements Closeable {
     }
 
     private void insertSendingTime(Message.Header header) {
-        header.setUtcTimeStamp(SendingTime.FIELD, SystemTime.getDate(), includeMillis());
+        header.setString(SendingTime.FIELD, getSendingTime());
     }
 
-    private boolean includeMillis() {
-        return millisecondsInTimeStamp
-                && sessionID.getBeginString().compareTo(FixVersions.BEGINSTRING_FIX42) >= 0;
+    private String getSendingTime() {
+        return UtcTimestampConverter.convert(SystemTime.currentTimeMillis(),
+                getEffectiveTimestampPrecision());
+    }
+
+    private UtcTimestampPrecision getEffectiveTimestampPrecision() {
+        if (sessionID.getBeginString().compareTo(FixVersions.BEGINSTRING_FIX42) < 0) {
+            return UtcTimestampPrecision.SECONDS;
+        }
+        if (timestampPrecision != null) {
+            return timestampPrecision;
+        }
+        return millisecondsInTimeStamp ? UtcTimestampPrecision.MILLIS : UtcTimestampPrecision.SECONDS;
     }
 
     /**
@@ -1229,8 +1299,8 @@ public class Session implements Closeable {
         final Header header = sequenceReset.getHeader();
         header.setBoolean(PossDupFlag.FIELD, true);
         initializeHeader(header);
-        header.setUtcTimeStamp(OrigSendingTime.FIELD, header.getUtcTimeStamp(SendingTime.FIELD),
-                includeMillis());
+        header.setUtcTimeStampNanos(OrigSendingTime.FIELD,
+                header.getUtcTimeStampNanos(SendingTime.FIELD), getEffectiveTimestampPrecision());
         header.setInt(MsgSeqNum.FIELD, beginSeqNo);
         sequenceReset.setInt(NewSeqNo.FIELD, newSeqNo);
         sequenceReset.setBoolean(GapFillFlag.FIELD, true);
@@ -1262,8 +1332,9 @@ public class Session implements Closeable {
 
     private void initializeResendFields(Message message) throws FieldNotFound {
         final Message.Header header = message.getHeader();
-        final Date sendingTime = header.getUtcTimeStamp(SendingTime.FIELD);
-        header.setUtcTimeStamp(OrigSendingTime.FIELD, sendingTime, includeMillis());
+        final long sendingTime = header.getUtcTimeStampNanos(SendingTime.FIELD);
+        header.setUtcTimeStampNanos(OrigSendingTime.FIELD, sendingTime,
+                getEffectiveTimestampPrecision());
         header.setBoolean(PossDupFlag.FIELD, true);
         insertSendingTime(header);
     }
@@ -1347,6 +1418,8 @@ public class Session implements Closeable {
         }
         sendRaw(logout, 0);
         state.setLogoutSent(true);
+        // the logout timeout is checked in next()
+        wakeUpTimer();
     }
 
     private void nextSequenceReset(Message sequenceReset) throws IOException, RejectLogon,
@@ -1832,6 +1905,64 @@ public class Session implements Closeable {
         }
     }
 
+    /**
+     * Returns the earliest time at which {@link #next()} may have something to
+     * do, such as sending a heartbeat or test request, timing out or checking
+     * the session schedule, provided that the state of the session does not
+     * change before. Connectors that only call {@link #next()} when this time
+     * is reached register a wake-up with {@link #setTimerWakeUp(Runnable)}.
+     *
+     * @return the time in milliseconds, or Long.MAX_VALUE if there is nothing
+     *         to do until the state of the session changes
+     */
+    public long getNextTimerDeadline() {
+        final long now = SystemTime.currentTimeMillis();
+        // states in which next() polls, like the connector timer
+        final long poll = now + 1000L;
+
+        long deadline = Long.MAX_VALUE;
+        if (sessionSchedule != null && !sessionSchedule.isNonStopSession()) {
+            // the schedule is checked at most once per second
+            deadline = lastSessionTimeCheck == 0 ? now : Math.max(lastSessionTimeCheck + 1000L,
+                    sessionSchedule.getNextSessionTimeBoundary(lastSessionTimeCheck));
+        }
+        if (!isEnabled()) {
+            if (!isLoggedOn()) {
+                return deadline;
+            }
+            return state.isLogoutSent() ? Math.min(deadline, poll) : now;
+        }
+        if (!hasResponder()) {
+            return deadline;
+        }
+        if (!state.isLogonReceived() || state.isLogoutSent()) {
+            return Math.min(deadline, poll);
+        }
+        if (state.getHeartBeatInterval() == 0) {
+            return deadline;
+        }
+        return Math.min(deadline, state.getNextHeartBeatEventTime());
+    }
+
+    /**
+     * Registers a task that is run when the session may have something to do
+     * in {@link #next()} before the time returned by
+     * {@link #getNextTimerDeadline()}, e.g. after a logout request or when
+     * the session connects or logs on. The task must not block.
+     *
+     * @param timerWakeUp the task, or null to remove it
+     */
+    public void setTimerWakeUp(Runnable timerWakeUp) {
+        this.timerWakeUp = timerWakeUp;
+    }
+
+    private void wakeUpTimer() {
+        final Runnable wakeUp = timerWakeUp;
+        if (wakeUp != null) {
+            wakeUp.run();
+        }
+    }
+
     private long computeNextLogonDelayMillis() {
         int index = logonAttempts - 1;
         if (index < 0) {
@@ -2120,25 +2251,35 @@ public class Session implements Closeable {
             stateListener.onLogon();
             lastSessionLogon = SystemTime.currentTimeMillis();
             logonAttempts = 0;
+            wakeUpTimer();
         }
     }
 
     private void resendMessages(Message receivedMessage, int beginSeqNo, int endSeqNo)
             throws IOException, InvalidMessage, FieldNotFound {
 
-        final ArrayList<String> messages = new ArrayList<String>();
+        // a store that cannot be read fails on the first message
+        StoredMessageCursor messages = null;
+        String message;
         try {
-            state.get(beginSeqNo, endSeqNo, messages);
+            messages = state.openCursor(beginSeqNo, endSeqNo);
+            message = messages.next();
         } catch (final IOException e) {
+            if (messages != null) {
+                messages.close();
+            }
             if (forceResendWhenCorruptedStore) {
                 log.error("Cannot read messages from stores, resend HeartBeats", e);
+                final ArrayList<String> heartbeats = new ArrayList<String>();
                 for (int i = beginSeqNo; i < endSeqNo; i++) {
                     final Message heartbeat = messageFactory.create(sessionID.getBeginString(),
                             MsgType.HEARTBEAT);
                     initializeHeader(heartbeat.getHeader());
                     heartbeat.getHeader().setInt(MsgSeqNum.FIELD, i);
-                    messages.add(heartbeat.toString());
+                    heartbeats.add(heartbeat.toString());
                 }
+                messages = new ListMessageCursor(heartbeats);
+                message = messages.next();
             } else {
                 throw e;
             }
@@ -2147,47 +2288,73 @@ public class Session implements Closeable {
         int msgSeqNum = 0;
         int begin = 0;
         int current = beginSeqNo;
+        final DataDictionary sessionDataDictionary = dataDictionaryProvider != null
+                ? dataDictionaryProvider.getSessionDataDictionary(sessionID.getBeginString())
+                : null;
 
-        for (final String message : messages) {
-            final Message msg;
-            try {
-                // QFJ-626
-                msg = parseMessage(message);
-                msgSeqNum = msg.getHeader().getInt(MsgSeqNum.FIELD);
-            } catch (final Exception e) {
-                getLog().onErrorEvent(
-                        "Error handling ResendRequest: failed to parse message (" + e.getMessage()
-                        + "): " + message);
-                // Note: a SequenceReset message will be generated to fill the gap
-                continue;
-            }
-
-            if ((current != msgSeqNum) && begin == 0) {
-                begin = current;
-            }
-
-            final String msgType = msg.getHeader().getString(MsgType.FIELD);
+        try {
+            for (; message != null; message = messages.next()) {
+                // admin messages are skipped, and with raw resends application messages
+                // are resent, without parsing more than the header
+                final ResendHeaderRewriter header = forceResendWhenCorruptedStore ? null
+                        : ResendHeaderRewriter.parse(message, sessionDataDictionary);
+                String resendData = null;
+                final Message msg;
+                final String msgType;
+                if (header != null
+                        && (MessageUtils.isAdminMessage(header.getMsgType()) || rawResend
+                                && (resendData = header.rewrite(getSendingTime(),
+                                        getEffectiveTimestampPrecision())) != null)) {
+                    msg = null;
+                    msgSeqNum = header.getMsgSeqNum();
+                    msgType = header.getMsgType();
+                } else {
+                    try {
+                        // QFJ-626
+                        msg = parseMessage(message);
+                        msgSeqNum = msg.getHeader().getInt(MsgSeqNum.FIELD);
+                    } catch (final Exception e) {
+                        getLog().onErrorEvent(
+                                "Error handling ResendRequest: failed to parse message (" + e.getMessage()
+                                + "): " + message);
+                        // Note: a SequenceReset message will be generated to fill the gap
+                        continue;
+                    }
+                    msgType = msg.getHeader().getString(MsgType.FIELD);
+                }
 
-            if (MessageUtils.isAdminMessage(msgType) && !forceResendWhenCorruptedStore) {
-                if (begin == 0) {
-                    begin = msgSeqNum;
+                if ((current != msgSeqNum) && begin == 0) {
+                    begin = current;
                 }
-            } else {
-                initializeResendFields(msg);
-                if (resendApproved(msg)) {
-                    if (begin != 0) {
-                        generateSequenceReset(receivedMessage, begin, msgSeqNum);
-                    }
-                    getLog().onEvent("Resending Message: " + msgSeqNum);
-                    send(msg.toString());
-                    begin = 0;
-                } else {
+
+                if (MessageUtils.isAdminMessage(msgType) && !forceResendWhenCorruptedStore) {
                     if (begin == 0) {
                         begin = msgSeqNum;
                     }
+                } else {
+                    if (msg != null) {
+                        initializeResendFields(msg);
+                        if (resendApproved(msg)) {
+                            resendData = msg.toString();
+                        }
+                    }
+                    if (resendData != null) {
+                        if (begin != 0) {
+                            generateSequenceReset(receivedMessage, begin, msgSeqNum);
+                        }
+                        getLog().onEvent("Resending Message: " + msgSeqNum);
+                        send(resendData);
+                        begin = 0;
+                    } else {
+                        if (begin == 0) {
+                            begin = msgSeqNum;
+                        }
+                    }
                 }
+                current = msgSeqNum + 1;
             }
-            current = msgSeqNum + 1;
+        } finally {
+            messages.close();
         }
         if (enableNextExpectedMsgSeqNum) {
             if (begin != 0) {
@@ -2476,6 +2643,8 @@ public class Session implements Closeable {
     }
 
     private void enqueueMessage(final Message msg, final int msgSeqNum) {
+        // queued messages are processed after the strategy has released them
+        msg.retain();
         state.enqueue(msgSeqNum, msg);
         getLog().onEvent("Enqueued at pos " + msgSeqNum + ": " + msg);
     }
@@ -2505,6 +2674,98 @@ public class Session implements Closeable {
         return sendRaw(message, 0);
     }
 
+    /**
+     * Send several messages to a counterparty at once. The messages are prepared
+     * as in {@link #send(Message)}, but they get consecutive sequence numbers under
+     * a single acquisition of the sender sequence number lock, are persisted with
+     * one message store operation (see {@link BatchMessageStore}) and are passed
+     * to the responder as a single write. A message rejected by the application
+     * with {@link DoNotSend} does not use a sequence number.
+     *
+     * Logon messages cannot be sent this way.
+     *
+     * @param messages the messages to send, in order
+     * @return true if every message was passed to the network layer
+     */
+    public boolean send(Collection<? extends Message> messages) {
+        state.lockSenderMsgSeqNum();
+        try {
+            for (final Message message : messages) {
+                if (MsgType.LOGON.equals(message.getHeader().getString(MsgType.FIELD))) {
+                    throw new IllegalArgumentException("Logon messages cannot be sent in a batch");
+                }
+            }
+            final int firstSeqNum = getExpectedSenderNum();
+            final List<String> messageStrings = new ArrayList<String>(messages.size());
+            final List<String> sendableStrings = new ArrayList<String>(messages.size());
+            boolean result = true;
+            for (final Message message : messages) {
+                final Message.Header header = message.getHeader();
+                header.removeField(PossDupFlag.FIELD);
+                header.removeField(OrigSendingTime.FIELD);
+                final String msgType = header.getString(MsgType.FIELD);
+
+                initializeHeader(header);
+                header.setInt(MsgSeqNum.FIELD, firstSeqNum + messageStrings.size());
+
+                if (enableLastMsgSeqNumProcessed) {
+                    if (!header.isSetField(LastMsgSeqNumProcessed.FIELD)) {
+                        header.setInt(LastMsgSeqNumProcessed.FIELD, getExpectedTargetNum() - 1);
+                    }
+                }
+
+                final boolean sendable;
+                if (message.isAdmin()) {
+                    try {
+                        application.toAdmin(message, sessionID);
+                    } catch (final Throwable t) {
+                        logApplicationException("toAdmin()", t);
+                    }
+                    sendable = msgType.equals(MsgType.LOGOUT)
+                            || msgType.equals(MsgType.RESEND_REQUEST)
+                            || msgType.equals(MsgType.SEQUENCE_RESET) || isLoggedOn();
+                } else {
+                    try {
+                        application.toApp(message, sessionID);
+                    } catch (final DoNotSend e) {
+                        result = false;
+                        continue;
+                    } catch (final Throwable t) {
+                        logApplicationException("toApp()", t);
+                    }
+                    sendable = isLoggedOn();
+                }
+
+                final String messageString = message.toString();
+                messageStrings.add(messageString);
+                if (sendable) {
+                    sendableStrings.add(messageString);
+                } else {
+                    result = false;
+                }
+            }
+
+            if (!sendableStrings.isEmpty()) {
+                result &= send(sendableStrings);
+            }
+            if (!messageStrings.isEmpty()) {
+                if (persistMessages) {
+                    state.set(firstSeqNum, messageStrings);
+                }
+                state.setNextSenderMsgSeqNum(firstSeqNum + messageStrings.size());
+            }
+            return result;
+        } catch (final IOException e) {
+            logThrowable(getLog(), "Error Reading/Writing in MessageStore", e);
+            return false;
+        } catch (final FieldNotFound e) {
+            logThrowable(state.getLog(), "Error accessing message fields", e);
+            return false;
+        } finally {
+            state.unlockSenderMsgSeqNum();
+        }
+    }
+
     private boolean send(String messageString) {
         getLog().onOutgoing(messageString);
         Responder responder;
@@ -2518,6 +2779,24 @@ public class Session implements Closeable {
         return responder.send(messageString);
     }
 
+    private boolean send(List<String> messageStrings) {
+        final StringBuilder data = new StringBuilder();
+        for (final String messageString : messageStrings) {
+            getLog().onOutgoing(messageString);
+            data.append(messageString);
+        }
+        Responder responder;
+        synchronized (responderSync) {
+            responder = this.responder;
+        }
+        if (responder == null) {
+            getLog().onEvent("No responder, not sending " + messageStrings.size() + " messages");
+            return false;
+        }
+        // one write for all messages
+        return responder.send(data.toString());
+    }
+
     private boolean isCorrectCompID(Message message) throws FieldNotFound {
         if (!checkCompID) {
             return true;
@@ -2791,6 +3070,57 @@ public class Session implements Closeable {
         this.forceResendWhenCorruptedStore = forceResendWhenCorruptedStore;
     }
 
+    public void setRawMessageDecoding(boolean rawMessageDecoding) {
+        this.rawMessageDecoding = rawMessageDecoding;
+    }
+
+    public boolean isRawMessageDecoding() {
+        return rawMessageDecoding;
+    }
+
+    public void setRawResend(boolean rawResend) {
+        this.rawResend = rawResend;
+    }
+
+    public boolean isRawResend() {
+        return rawResend;
+    }
+
+    /**
+     * Sets the precision of the fractional seconds in SendingTime and
+     * OrigSendingTime. The sending time comes from a millisecond clock, so
+     * digits beyond milliseconds are zero.
+     *
+     * @param timestampPrecision the precision, or null to use the
+     *        {@link #SETTING_MILLISECONDS_IN_TIMESTAMP} setting
+     */
+    public void setTimestampPrecision(UtcTimestampPrecision timestampPrecision) {
+        this.timestampPrecision = timestampPrecision;
+    }
+
+    public UtcTimestampPrecision getTimestampPrecision() {
+        return timestampPrecision;
+    }
+
+    /**
+     * Sets the number of inbound messages kept for reuse per message type.
+     *
+     * @param messagePoolSize the pool size, or 0 to not recycle messages
+     * @see #SETTING_MESSAGE_POOL_SIZE
+     */
+    public void setMessagePoolSize(int messagePoolSize) {
+        messagePool = messagePoolSize > 0 ? new MessagePool(messageFactory, messagePoolSize) : null;
+    }
+
+    public int getMessagePoolSize() {
+        final MessagePool pool = messagePool;
+        return pool != null ? pool.getCapacity() : 0;
+    }
+
+    MessagePool getMessagePool() {
+        return messagePool;
+    }
+
     public boolean isAllowedForSession(InetAddress remoteInetAddress) {
         return allowedRemoteAddresses == null || allowedRemoteAddresses.isEmpty()
                 || allowedRemoteAddresses.contains(remoteInetAddress);
@@ -2818,4 +3148,18 @@ public class Session implements Closeable {
         }
     }
 
+    private static class ListMessageCursor implements StoredMessageCursor {
+        private final Iterator<String> messages;
+
+        ListMessageCursor(List<String> messages) {
+            this.messages = messages.iterator();
+        }
+
+        public String next() {
+            return messages.hasNext() ? messages.next() : null;
+        }
+
+        public void close() {
+        }
+    }
 }
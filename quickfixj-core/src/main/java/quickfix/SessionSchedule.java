@@ -37,6 +37,7 @@ public class SessionSchedule {
     private final TimeEndPoint startTime;
     private final TimeEndPoint endTime;
     private final boolean nonStopSession;
+    private volatile Interval cachedInterval;
     protected final static Logger log = LoggerFactory.getLogger(SessionSchedule.class);
 
     public SessionSchedule(SessionSettings settings, SessionID sessionID) throws ConfigError,
@@ -252,18 +253,77 @@ public class SessionSchedule {
         }
     }
 
+    /**
+     * A session interval in epoch milliseconds, together with the start of the
+     * following interval. The interval is the most recent one for any time
+     * from its start up to, but excluding, the start of the following one.
+     */
+    private static final class Interval {
+        private final long start;
+        private final long end;
+        private final long nextStart;
+
+        private Interval(long start, long end, long nextStart) {
+            this.start = start;
+            this.end = end;
+            this.nextStart = nextStart;
+        }
+
+        private boolean isContainingTime(long time) {
+            return time >= start && time <= end;
+        }
+    }
+
+    /**
+     * Returns the most recent interval before the time, from the cache unless
+     * a session boundary has been crossed since it was computed.
+     */
+    private Interval getInterval(long time) {
+        Interval interval = cachedInterval;
+        if (interval == null || time < interval.start || time >= interval.nextStart) {
+            interval = computeInterval(time);
+            cachedInterval = interval;
+        }
+        return interval;
+    }
+
+    private Interval computeInterval(long time) {
+        final TimeInterval timeInterval = theMostRecentIntervalBefore(SystemTime.getUtcCalendar(time));
+        final long start = timeInterval.getStart().getTimeInMillis();
+        // the calendar keeps the local time of day across DST changes
+        final Calendar following = (Calendar) timeInterval.getStart().clone();
+        following.add(isSet(startTime.getDay()) ? Calendar.WEEK_OF_YEAR : Calendar.DAY_OF_YEAR, 1);
+        long nextStart = theMostRecentIntervalBefore(following).getStart().getTimeInMillis();
+        if (nextStart <= time) {
+            // not expected, but never cache an interval that is already stale
+            nextStart = time + 1;
+        }
+        return new Interval(start, timeInterval.getEnd().getTimeInMillis(), nextStart);
+    }
+
     public boolean isSameSession(Calendar time1, Calendar time2) {
         if (nonStopSession)
             return true;
-        TimeInterval interval1 = theMostRecentIntervalBefore(time1);
+        return isSameSession(time1.getTimeInMillis(), time2.getTimeInMillis());
+    }
+
+    /**
+     * @param time1 a time in epoch milliseconds
+     * @param time2 another time in epoch milliseconds
+     * @return true if both times are in the same session interval
+     */
+    public boolean isSameSession(long time1, long time2) {
+        if (nonStopSession)
+            return true;
+        Interval interval1 = getInterval(time1);
         if (!interval1.isContainingTime(time1)) {
             return false;
         }
-        TimeInterval interval2 = theMostRecentIntervalBefore(time2);
+        Interval interval2 = getInterval(time2);
         if (!interval2.isContainingTime(time2)) {
             return false;
         }
-        return interval1.equals(interval2);
+        return interval1.start == interval2.start && interval1.end == interval2.end;
     }
 
     public boolean isNonStopSession() {
@@ -275,12 +335,36 @@ public class SessionSchedule {
     }
 
     public boolean isSessionTime() {
-        if(nonStopSession) {
+        return isSessionTime(SystemTime.currentTimeMillis());
+    }
+
+    /**
+     * @param time a time in epoch milliseconds
+     * @return true if the time is within a session interval
+     */
+    public boolean isSessionTime(long time) {
+        if (nonStopSession) {
             return true;
         }
-        Calendar now = SystemTime.getUtcCalendar();
-        TimeInterval interval = theMostRecentIntervalBefore(now);
-        return interval.isContainingTime(now);
+        return getInterval(time).isContainingTime(time);
+    }
+
+    /**
+     * Returns the first time after the given time at which the result of
+     * {@link #isSessionTime(long)} changes, i.e. the end of the current session
+     * interval or the start of the next one.
+     *
+     * @param time a time in epoch milliseconds
+     * @return the time in epoch milliseconds, or Long.MAX_VALUE for a non-stop
+     *         session
+     */
+    public long getNextSessionTimeBoundary(long time) {
+        if (nonStopSession) {
+            return Long.MAX_VALUE;
+        }
+        final Interval interval = getInterval(time);
+        // the end of an interval is part of the session
+        return time <= interval.end ? interval.end + 1 : interval.nextStart;
     }
 
     public String toString() {
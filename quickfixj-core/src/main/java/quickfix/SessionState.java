@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.util.Collection;
 import java.util.Date;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
@@ -294,14 +295,59 @@ public final class SessionState {
         return millisSinceLastReceivedTime >= 2.4 * getHeartBeatMillis();
     }
 
+    /**
+     * Returns the earliest time at which {@link #isHeartBeatNeeded()},
+     * {@link #isTestRequestNeeded()} or {@link #isTimedOut()} can become true,
+     * unless messages are sent or received before.
+     *
+     * @return the time in milliseconds
+     */
+    public long getNextHeartBeatEventTime() {
+        synchronized (lock) {
+            final long timedOut = lastReceivedTime + (long) Math.ceil(2.4 * heartBeatMillis);
+            final long testRequestNeeded = lastReceivedTime
+                    + (long) Math.ceil((1 + testRequestDelayMultiplier) * (testRequestCounter + 1)
+                            * heartBeatMillis);
+            long next = Math.min(timedOut, testRequestNeeded);
+            if (testRequestCounter == 0) {
+                // see the leeway in isHeartBeatNeeded()
+                next = Math.min(next, lastSentTime + heartBeatMillis - 9);
+            }
+            return next;
+        }
+    }
+
     public boolean set(int sequence, String message) throws IOException {
         return messageStore.set(sequence, message);
     }
 
+    public boolean set(int startSequence, List<String> messages) throws IOException {
+        if (messageStore instanceof BatchMessageStore) {
+            return ((BatchMessageStore) messageStore).set(startSequence, messages);
+        }
+        boolean result = true;
+        int sequence = startSequence;
+        for (final String message : messages) {
+            result &= messageStore.set(sequence++, message);
+        }
+        return result;
+    }
+
     public void get(int first, int last, Collection<String> messages) throws IOException {
         messageStore.get(first, last, messages);
     }
 
+    /**
+     * Opens a cursor over the stored messages in a range. Stores that cannot stream
+     * their messages are read in chunks.
+     */
+    public StoredMessageCursor openCursor(int first, int last) throws IOException {
+        if (messageStore instanceof StreamingMessageStore) {
+            return ((StreamingMessageStore) messageStore).openCursor(first, last);
+        }
+        return new ChunkedMessageCursor(messageStore, first, last);
+    }
+
     public void enqueue(int sequence, Message message) {
         messageQueue.put(sequence, message);
     }
@@ -357,6 +403,10 @@ public final class SessionState {
         return messageStore.getNextTargetMsgSeqNum();
     }
 
+    public void setNextSenderMsgSeqNum(int sequence) throws IOException {
+        messageStore.setNextSenderMsgSeqNum(sequence);
+    }
+
     public void setNextTargetMsgSeqNum(int sequence) throws IOException {
         messageStore.setNextTargetMsgSeqNum(sequence);
     }
@@ -502,10 +552,16 @@ public final class SessionState {
         return lock;
     }
 
-    private final static class NullLog implements Log {
+    private final static class NullLog implements ByteLog {
         public void onOutgoing(String message) {
         }
 
+        public void onOutgoing(byte[] data, int offset, int length) {
+        }
+
+        public void onIncoming(byte[] data, int offset, int length) {
+        }
+
         public void onIncoming(String message) {
         }
 
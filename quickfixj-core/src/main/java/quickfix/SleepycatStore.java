@@ -49,7 +49,7 @@ import com.sleepycat.je.OperationStatus;
  *
  * @see SleepycatStoreFactory
  */
-public class SleepycatStore implements MessageStore {
+public class SleepycatStore implements StreamingMessageStore {
     private Logger log = LoggerFactory.getLogger(getClass());
     private final SessionID sessionID; // session key
     private SessionInfo info;
@@ -212,8 +212,8 @@ public class SleepycatStore implements MessageStore {
         try {
             DatabaseEntry sequenceKey = new DatabaseEntry();
             EntryBinding sequenceBinding = TupleBinding.getPrimitiveBinding(Integer.class);
-            // Must start at start-1 because db will look for next record larger
-            sequenceBinding.objectToEntry(startSequence - 1, sequenceKey);
+            // the db looks for the first record with a key greater or equal
+            sequenceBinding.objectToEntry(startSequence, sequenceKey);
 
             cursor = messageDatabase.openCursor(null, null);
             DatabaseEntry messageBytes = new DatabaseEntry();
@@ -232,7 +232,9 @@ public class SleepycatStore implements MessageStore {
                                 + new String(messageBytes.getData(), charsetEncoding) + " for search key/data: "
                                 + sequenceKey + "=>" + messageBytes);
                     }
-                    cursor.getNext(sequenceKey, messageBytes, LockMode.DEFAULT);
+                    if (cursor.getNext(sequenceKey, messageBytes, LockMode.DEFAULT) != OperationStatus.SUCCESS) {
+                        break;
+                    }
                     sequenceNumber = (Integer) sequenceBinding.entryToObject(sequenceKey);
                 }
             }
@@ -249,6 +251,14 @@ public class SleepycatStore implements MessageStore {
         }
     }
 
+    /**
+     * Reads the messages in chunks, so no database cursor is held open while
+     * the caller processes them.
+     */
+    public StoredMessageCursor openCursor(int startSequence, int endSequence) {
+        return new ChunkedMessageCursor(this, startSequence, endSequence);
+    }
+
     private void convertToIOExceptionAndRethrow(Exception e) throws IOException {
         if (e instanceof IOException) {
             throw (IOException) e;
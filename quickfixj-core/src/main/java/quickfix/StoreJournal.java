@@ -0,0 +1,637 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.quickfixj.CharsetSupport;
+
+/**
+ * An append-only file shared by the message stores of many sessions.
+ * <p>
+ * Every change of a session is appended as a record tagged with the number
+ * of the session: the session itself when it is first stored, a reset with
+ * its creation time, a sequence number, or a message. The state of each
+ * session, including the locations of its messages, is kept in memory and
+ * rebuilt from the records when the journal is opened, so all writes are
+ * sequential and the sessions share one open file.
+ * <p>
+ * Records end with a CRC32 of their content. A torn record at the end of the
+ * file is cut off when the journal is opened. When the file has grown past
+ * the compaction threshold and less than half of it is still needed, the
+ * current records are copied to a new file that replaces it. The sessions
+ * cannot write while the journal is compacted.
+ * <p>
+ * The methods are synchronized on the journal, which is also how its
+ * sessions are guarded.
+ */
+final class StoreJournal {
+    private static final int MAGIC = 0x514a534a;
+    private static final int FILE_HEADER_SIZE = 8;
+    private static final int VERSION = 1;
+
+    private static final byte SESSION = 1;
+    private static final byte RESET = 2;
+    private static final byte SENDER_SEQ_NUM = 3;
+    private static final byte TARGET_SEQ_NUM = 4;
+    private static final byte MESSAGE = 5;
+
+    // length, type and session number
+    private static final int RECORD_HEADER_SIZE = 9;
+    private static final int CHECKSUM_SIZE = 4;
+    // header, sequence number and checksum
+    private static final int MESSAGE_OVERHEAD = RECORD_HEADER_SIZE + 4 + CHECKSUM_SIZE;
+    // session, reset and sequence number records, roughly
+    private static final int SESSION_STATE_SIZE = 128;
+    private static final int COPY_BUFFER_SIZE = 65536;
+
+    /**
+     * The state of a session, as of the last record.
+     */
+    static final class Session {
+        private final int number;
+        private final String key;
+        private final SequenceIndex messages = new SequenceIndex();
+        private long creationTime;
+        private int nextSenderMsgSeqNum = 1;
+        private int nextTargetMsgSeqNum = 1;
+
+        private Session(int number, String key) {
+            this.number = number;
+            this.key = key;
+        }
+
+        long getCreationTime() {
+            return creationTime;
+        }
+
+        int getNextSenderMsgSeqNum() {
+            return nextSenderMsgSeqNum;
+        }
+
+        int getNextTargetMsgSeqNum() {
+            return nextTargetMsgSeqNum;
+        }
+
+        private void reset(long creationTime) {
+            this.creationTime = creationTime;
+            nextSenderMsgSeqNum = 1;
+            nextTargetMsgSeqNum = 1;
+            messages.clear();
+        }
+    }
+
+    private final File file;
+    private final boolean syncWrites;
+    private final long compactionThreshold;
+    private final Charset charset = CharsetSupport.getCharsetInstance();
+    private final CRC32 crc = new CRC32();
+    private final Map<String, Session> sessions = new HashMap<String, Session>();
+    private final List<Session> sessionsByNumber = new ArrayList<Session>();
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+    private long end;
+    private long liveBytes;
+    private int users;
+
+    /**
+     * Opens the journal and rebuilds the state of its sessions.
+     *
+     * @param file the journal file, which is created if it does not exist
+     * @param syncWrites whether every write is synced to the device
+     * @param compactionThreshold the size in bytes the file must have before
+     *            it is compacted, or 0 to never compact it
+     * @throws IOException if the journal cannot be read
+     */
+    StoreJournal(File file, boolean syncWrites, long compactionThreshold) throws IOException {
+        this.file = file;
+        this.syncWrites = syncWrites;
+        this.compactionThreshold = compactionThreshold;
+        recoverCompaction();
+        open();
+        replay(true);
+        compactIfNeeded();
+    }
+
+    /**
+     * Finishes or discards a compaction that did not complete. The compacted
+     * file is only complete once the journal may be removed, so it replaces
+     * a journal that is missing or has no valid header, and is deleted
+     * otherwise.
+     */
+    private void recoverCompaction() throws IOException {
+        final File compactionFile = getCompactionFile();
+        if (!compactionFile.exists()) {
+            return;
+        }
+        if (hasValidHeader(file)) {
+            deleteFile(compactionFile);
+        } else {
+            deleteFile(file);
+            if (!compactionFile.renameTo(file)) {
+                throw new IOException("Could not rename " + compactionFile + " to " + file);
+            }
+        }
+    }
+
+    private static boolean hasValidHeader(File file) throws IOException {
+        if (file.length() < FILE_HEADER_SIZE) {
+            return false;
+        }
+        final DataInputStream input = new DataInputStream(new FileInputStream(file));
+        try {
+            return input.readInt() == MAGIC && input.readInt() == VERSION;
+        } finally {
+            input.close();
+        }
+    }
+
+    private void open() throws IOException {
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        channel = randomAccessFile.getChannel();
+        end = channel.size();
+        if (end == 0) {
+            buffer.clear();
+            buffer.putInt(MAGIC).putInt(VERSION).flip();
+            write(channel, buffer, 0);
+            end = FILE_HEADER_SIZE;
+        }
+    }
+
+    /**
+     * @param truncate whether an incomplete record at the end is cut off,
+     *            which must not happen while another journal may be writing
+     *            it
+     */
+    private void replay(boolean truncate) throws IOException {
+        final DataInputStream input = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file), COPY_BUFFER_SIZE));
+        try {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("Invalid store journal: " + file);
+            }
+            long position = FILE_HEADER_SIZE;
+            byte[] record = new byte[256];
+            while (position < end) {
+                final int length;
+                try {
+                    length = input.readInt();
+                    if (length < RECORD_HEADER_SIZE - 4 + CHECKSUM_SIZE
+                            || length > end - position - 4) {
+                        break;
+                    }
+                    if (record.length < length) {
+                        record = new byte[Math.max(length, record.length * 2)];
+                    }
+                    input.readFully(record, 0, length);
+                } catch (EOFException e) {
+                    break;
+                }
+                final ByteBuffer content = ByteBuffer.wrap(record, 0, length);
+                crc.reset();
+                crc.update(record, 0, length - CHECKSUM_SIZE);
+                if (content.getInt(length - CHECKSUM_SIZE) != (int) crc.getValue()) {
+                    break;
+                }
+                apply(position, content, length);
+                position += 4 + length;
+            }
+            if (position < end) {
+                // an incomplete record of a write that did not finish
+                if (truncate) {
+                    channel.truncate(position);
+                }
+                end = position;
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    private void apply(long position, ByteBuffer content, int length) throws IOException {
+        final byte type = content.get();
+        final int number = content.getInt();
+        if (type == SESSION) {
+            final String key = new String(content.array(), content.position(), length
+                    - CHECKSUM_SIZE - content.position(), charset);
+            if (number < sessionsByNumber.size() && sessionsByNumber.get(number).key.equals(key)) {
+                // known from an earlier replay
+                liveBytes += SESSION_STATE_SIZE;
+                return;
+            }
+            if (number != sessionsByNumber.size()) {
+                throw new IOException("Invalid session number " + number + " in " + file);
+            }
+            final Session session = new Session(number, key);
+            sessions.put(key, session);
+            sessionsByNumber.add(session);
+            liveBytes += SESSION_STATE_SIZE;
+            return;
+        }
+        if (number < 0 || number >= sessionsByNumber.size()) {
+            throw new IOException("Invalid session number " + number + " in " + file);
+        }
+        final Session session = sessionsByNumber.get(number);
+        switch (type) {
+        case RESET:
+            removeMessages(session);
+            session.reset(content.getLong());
+            break;
+        case SENDER_SEQ_NUM:
+            session.nextSenderMsgSeqNum = content.getInt();
+            break;
+        case TARGET_SEQ_NUM:
+            session.nextTargetMsgSeqNum = content.getInt();
+            break;
+        case MESSAGE:
+            index(session, content.getInt(), position + MESSAGE_OVERHEAD - CHECKSUM_SIZE, length
+                    + 4 - MESSAGE_OVERHEAD);
+            break;
+        default:
+            throw new IOException("Invalid record type " + type + " in " + file);
+        }
+    }
+
+    private void index(Session session, int sequence, long location, int length) {
+        final int index = session.messages.indexOf(sequence);
+        if (index != -1) {
+            liveBytes -= session.messages.lengthAt(index) + MESSAGE_OVERHEAD;
+        }
+        session.messages.put(sequence, location, length);
+        liveBytes += length + MESSAGE_OVERHEAD;
+    }
+
+    private void removeMessages(Session session) {
+        for (int i = 0; i < session.messages.size(); i++) {
+            liveBytes -= session.messages.lengthAt(i) + MESSAGE_OVERHEAD;
+        }
+    }
+
+    /**
+     * Returns the session with the given ID, which is added to the journal
+     * if it has not been stored before. Every call must be matched by a call
+     * to {@link #release()}.
+     */
+    synchronized Session acquire(SessionID sessionID) throws IOException {
+        checkOpen();
+        final String key = sessionID.toString();
+        Session session = sessions.get(key);
+        if (session == null) {
+            session = new Session(sessionsByNumber.size(), key);
+            session.reset(SystemTime.currentTimeMillis());
+            final byte[] data = key.getBytes(charset);
+            buffer.clear();
+            final int start = startRecord(SESSION, session.number, data.length);
+            buffer.put(data);
+            endRecord(start);
+            appendReset(session);
+            appendBuffer();
+            sessions.put(key, session);
+            sessionsByNumber.add(session);
+            liveBytes += SESSION_STATE_SIZE;
+        }
+        users++;
+        return session;
+    }
+
+    /**
+     * Closes the journal when the last session that uses it is released.
+     */
+    synchronized void release() throws IOException {
+        if (users > 0 && --users == 0) {
+            close();
+        }
+    }
+
+    synchronized boolean isOpen() {
+        return channel != null;
+    }
+
+    private void checkOpen() throws IOException {
+        if (channel == null) {
+            throw new IOException("Store journal is closed: " + file);
+        }
+    }
+
+    /**
+     * Appends messages with consecutive sequence numbers using one write.
+     */
+    synchronized void setMessages(Session session, int startSequence, List<String> messages)
+            throws IOException {
+        checkOpen();
+        buffer.clear();
+        final long[] locations = new long[messages.size()];
+        final int[] lengths = new int[messages.size()];
+        for (int i = 0; i < messages.size(); i++) {
+            lengths[i] = MessageUtils.length(charset, messages.get(i));
+            final int start = startRecord(MESSAGE, session.number, 4 + lengths[i]);
+            buffer.putInt(startSequence + i);
+            MessageUtils.encode(charset, messages.get(i), buffer);
+            endRecord(start);
+            locations[i] = start + MESSAGE_OVERHEAD - CHECKSUM_SIZE;
+        }
+        final long position = appendBuffer();
+        for (int i = 0; i < locations.length; i++) {
+            index(session, startSequence + i, position + locations[i], lengths[i]);
+        }
+        compactIfNeeded();
+    }
+
+    synchronized void setNextSenderMsgSeqNum(Session session, int next) throws IOException {
+        checkOpen();
+        appendSequenceNumber(SENDER_SEQ_NUM, session, next);
+        session.nextSenderMsgSeqNum = next;
+    }
+
+    synchronized void setNextTargetMsgSeqNum(Session session, int next) throws IOException {
+        checkOpen();
+        appendSequenceNumber(TARGET_SEQ_NUM, session, next);
+        session.nextTargetMsgSeqNum = next;
+    }
+
+    private void appendSequenceNumber(byte type, Session session, int next) throws IOException {
+        buffer.clear();
+        final int start = startRecord(type, session.number, 4);
+        buffer.putInt(next);
+        endRecord(start);
+        appendBuffer();
+    }
+
+    /**
+     * Removes the messages of the session and starts it again with a new
+     * creation time.
+     */
+    synchronized void reset(Session session) throws IOException {
+        checkOpen();
+        removeMessages(session);
+        session.reset(SystemTime.currentTimeMillis());
+        buffer.clear();
+        appendReset(session);
+        appendBuffer();
+    }
+
+    private void appendReset(Session session) {
+        final int start = startRecord(RESET, session.number, 8);
+        buffer.putLong(session.creationTime);
+        endRecord(start);
+    }
+
+    synchronized void get(Session session, int startSequence, int endSequence,
+            Collection<String> messages) throws IOException {
+        checkOpen();
+        final SequenceIndex index = session.messages;
+        for (int i = index.ceiling(startSequence); i < index.size()
+                && index.sequenceAt(i) <= endSequence; i++) {
+            final ByteBuffer data = read(index.valueAt(i), index.lengthAt(i));
+            messages.add(new String(data.array(), 0, data.limit(), charset));
+        }
+    }
+
+    private ByteBuffer read(long location, int length) throws IOException {
+        ensureCapacity(length);
+        buffer.clear();
+        buffer.limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, location + buffer.position()) == -1) {
+                throw new EOFException("Message beyond the end of " + file);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Reads the journal again, which picks up the records that another
+     * journal of the same file has appended. The state of all its sessions is
+     * rebuilt.
+     */
+    synchronized void refresh() throws IOException {
+        checkOpen();
+        for (final Session session : sessionsByNumber) {
+            session.messages.clear();
+        }
+        liveBytes = 0;
+        end = channel.size();
+        replay(false);
+    }
+
+    /**
+     * Starts a record in the write buffer.
+     *
+     * @return the position of the record in the buffer
+     */
+    private int startRecord(byte type, int sessionNumber, int contentSize) {
+        ensureCapacity(buffer.position() + RECORD_HEADER_SIZE + contentSize + CHECKSUM_SIZE);
+        final int start = buffer.position();
+        buffer.putInt(0);
+        buffer.put(type);
+        buffer.putInt(sessionNumber);
+        return start;
+    }
+
+    /**
+     * Adds the checksum and length of the record started at the given
+     * position.
+     */
+    private void endRecord(int start) {
+        crc.reset();
+        crc.update(buffer.array(), start + 4, buffer.position() - start - 4);
+        buffer.putInt((int) crc.getValue());
+        buffer.putInt(start, buffer.position() - start - 4);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (buffer.capacity() < capacity) {
+            final ByteBuffer larger = ByteBuffer.allocate(Math.max(capacity,
+                    buffer.capacity() * 2));
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+    }
+
+    /**
+     * Appends the records in the write buffer to the file.
+     *
+     * @return the position of the first record in the file
+     */
+    private long appendBuffer() throws IOException {
+        buffer.flip();
+        final long position = end;
+        write(channel, buffer, position);
+        end += buffer.limit();
+        if (syncWrites) {
+            channel.force(false);
+        }
+        buffer.clear();
+        return position;
+    }
+
+    private void compactIfNeeded() throws IOException {
+        if (compactionThreshold > 0 && end > compactionThreshold && end > 2 * liveBytes) {
+            compact();
+        }
+    }
+
+    /**
+     * Copies the current records to a new file that replaces the journal.
+     * The sessions keep their numbers, so the message records are copied as
+     * they are.
+     * <p>
+     * The copy is made while holding the lock of the journal, so the
+     * sessions that share it wait until the compaction has finished.
+     * Should the journal be removed before the new file could take its
+     * place, the new file replaces it when the journal is opened again.
+     */
+    synchronized void compact() throws IOException {
+        checkOpen();
+        final File compactionFile = getCompactionFile();
+        final RandomAccessFile output = new RandomAccessFile(compactionFile, "rw");
+        final List<long[]> locations = new ArrayList<long[]>();
+        try {
+            output.setLength(0);
+            final FileChannel outputChannel = output.getChannel();
+            final ByteBuffer copy = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+            copy.putInt(MAGIC).putInt(VERSION);
+            long position = FILE_HEADER_SIZE;
+            for (final Session session : sessionsByNumber) {
+                buffer.clear();
+                final byte[] key = session.key.getBytes(charset);
+                int start = startRecord(SESSION, session.number, key.length);
+                buffer.put(key);
+                endRecord(start);
+                appendReset(session);
+                start = startRecord(SENDER_SEQ_NUM, session.number, 4);
+                buffer.putInt(session.nextSenderMsgSeqNum);
+                endRecord(start);
+                start = startRecord(TARGET_SEQ_NUM, session.number, 4);
+                buffer.putInt(session.nextTargetMsgSeqNum);
+                endRecord(start);
+                buffer.flip();
+                position = copy(buffer, copy, outputChannel, position);
+                final SequenceIndex messages = session.messages;
+                final long[] sessionLocations = new long[messages.size()];
+                for (int i = 0; i < messages.size(); i++) {
+                    final int length = messages.lengthAt(i) + MESSAGE_OVERHEAD;
+                    sessionLocations[i] = position + MESSAGE_OVERHEAD - CHECKSUM_SIZE;
+                    position = copy(read(messages.valueAt(i) - MESSAGE_OVERHEAD + CHECKSUM_SIZE,
+                            length), copy, outputChannel, position);
+                }
+                locations.add(sessionLocations);
+            }
+            copy.flip();
+            write(outputChannel, copy, position - copy.limit());
+            outputChannel.force(true);
+        } finally {
+            output.close();
+        }
+        close();
+        if (!compactionFile.renameTo(file)) {
+            deleteFile(file);
+            if (!compactionFile.renameTo(file)) {
+                throw new IOException("Could not rename " + compactionFile + " to " + file);
+            }
+        }
+        open();
+        for (final Session session : sessionsByNumber) {
+            final long[] sessionLocations = locations.get(session.number);
+            final SequenceIndex messages = session.messages;
+            for (int i = 0; i < sessionLocations.length; i++) {
+                messages.put(messages.sequenceAt(i), sessionLocations[i], messages.lengthAt(i));
+            }
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Adds data to the copy buffer, writing the buffer when it is full.
+     *
+     * @return the position in the output file after the data
+     */
+    private static long copy(ByteBuffer data, ByteBuffer copy, FileChannel output,
+            long position) throws IOException {
+        if (copy.remaining() < data.remaining()) {
+            copy.flip();
+            write(output, copy, position - copy.limit());
+            copy.clear();
+            if (copy.capacity() < data.remaining()) {
+                write(output, data, position);
+                return position + data.limit();
+            }
+        }
+        final int length = data.remaining();
+        copy.put(data);
+        return position + length;
+    }
+
+    private static void write(FileChannel output, ByteBuffer data, long position)
+            throws IOException {
+        long offset = position;
+        while (data.hasRemaining()) {
+            offset += output.write(data, offset);
+        }
+    }
+
+    private File getCompactionFile() {
+        return new File(file.getPath() + ".compact");
+    }
+
+    synchronized void close() throws IOException {
+        if (randomAccessFile != null) {
+            try {
+                channel.force(false);
+            } finally {
+                randomAccessFile.close();
+                randomAccessFile = null;
+                channel = null;
+            }
+        }
+    }
+
+    synchronized long size() {
+        return end;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    private static void deleteFile(File file) {
+        if (file.exists() && !file.delete()) {
+            System.err.println("File delete failed: " + file);
+        }
+    }
+}
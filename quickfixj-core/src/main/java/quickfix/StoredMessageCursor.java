@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Iterates over stored messages in sequence number order without loading
+ * them all into memory. A cursor must be closed when it is no longer needed.
+ *
+ * @see StreamingMessageStore
+ */
+public interface StoredMessageCursor extends Closeable {
+
+    /**
+     * @return the raw FIX message string of the next stored message, or null
+     *         if there are no more messages
+     * @throws IOException IO error
+     */
+    String next() throws IOException;
+}
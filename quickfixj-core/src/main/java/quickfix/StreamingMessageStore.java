@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.io.IOException;
+
+/**
+ * This extension of the MessageStore interface retrieves a range of messages
+ * one at a time, so that a large resend does not need memory for all of them.
+ * Sessions use {@link ChunkedMessageCursor} for other stores.
+ */
+public interface StreamingMessageStore extends MessageStore {
+
+    /**
+     * Opens a cursor over the messages within the sequence number range
+     * (inclusive).
+     *
+     * @param startSequence the starting message sequence number
+     * @param endSequence the ending message sequence number
+     * @return the cursor, which must be closed
+     * @throws IOException IO error
+     */
+    StoredMessageCursor openCursor(int startSequence, int endSequence) throws IOException;
+}
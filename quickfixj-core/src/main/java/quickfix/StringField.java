@@ -19,6 +19,18 @@
 
 package quickfix;
 
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Date;
+
+import quickfix.field.converter.DecimalConverter;
+import quickfix.field.converter.DoubleConverter;
+import quickfix.field.converter.FixedDecimalConverter;
+import quickfix.field.converter.IntConverter;
+import quickfix.field.converter.UtcDateOnlyConverter;
+import quickfix.field.converter.UtcTimeOnlyConverter;
+import quickfix.field.converter.UtcTimestampConverter;
+
 /**
  * A string-valued message field.
  */
@@ -43,4 +55,61 @@ public class StringField extends Field<String> {
     public boolean valueEquals(String value) {
         return getValue().equals(value);
     }
+
+    /*
+     * Typed conversions used by FieldMap and DataDictionary. Fields parsed from
+     * raw message bytes override these to convert without decoding the value
+     * where possible and to cache the result.
+     */
+
+    /*package*/ boolean hasValue() {
+        return getValue().length() > 0;
+    }
+
+    /*package*/ int intValue() throws FieldConvertError {
+        return IntConverter.convert(getValue());
+    }
+
+    /*package*/ double doubleValue() throws FieldConvertError {
+        return DoubleConverter.convert(getValue());
+    }
+
+    /*package*/ BigDecimal decimalValue() throws FieldConvertError {
+        return DecimalConverter.convert(getValue());
+    }
+
+    /*package*/ long fixedDecimalValue(int scale) throws FieldConvertError {
+        return FixedDecimalConverter.convert(getValue(), scale);
+    }
+
+    /*package*/ int fixedDecimalScale() {
+        return FixedDecimalConverter.scale(getValue());
+    }
+
+    /*package*/ Date utcTimeStampValue() throws FieldConvertError {
+        return UtcTimestampConverter.convert(getValue());
+    }
+
+    /*package*/ long utcTimeStampNanos() throws FieldConvertError {
+        return UtcTimestampConverter.convertToEpochNanos(getValue());
+    }
+
+    /*package*/ Date utcTimeOnlyValue() throws FieldConvertError {
+        return UtcTimeOnlyConverter.convert(getValue());
+    }
+
+    /*package*/ Date utcDateOnlyValue() throws FieldConvertError {
+        return UtcDateOnlyConverter.convert(getValue());
+    }
+
+    /**
+     * Writes the value bytes when the field can do so without encoding a
+     * String.
+     *
+     * @return the checksum of the written bytes, or -1 if nothing was written
+     *         and the value must be encoded from its string
+     */
+    /*package*/ int writeValue(ByteBuffer buffer) {
+        return -1;
+    }
 }
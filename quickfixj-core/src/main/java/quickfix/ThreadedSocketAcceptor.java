@@ -34,39 +34,39 @@ public class ThreadedSocketAcceptor extends AbstractSocketAcceptor {
                                   int queueCapacity )
                                   throws ConfigError {
         super(application, messageStoreFactory, settings, logFactory, messageFactory);
-        eventHandlingStrategy = new ThreadPerSessionEventHandlingStrategy(this, queueCapacity);
+        eventHandlingStrategy = createThreadPerSessionEventHandlingStrategy(queueCapacity);
     }
 
     public ThreadedSocketAcceptor(Application application, MessageStoreFactory messageStoreFactory,
             SessionSettings settings, LogFactory logFactory, MessageFactory messageFactory)
             throws ConfigError {
         super(application, messageStoreFactory, settings, logFactory, messageFactory);
-        eventHandlingStrategy = new ThreadPerSessionEventHandlingStrategy(this, DEFAULT_QUEUE_CAPACITY);
+        eventHandlingStrategy = createThreadPerSessionEventHandlingStrategy(DEFAULT_QUEUE_CAPACITY);
     }
 
     public ThreadedSocketAcceptor(Application application, MessageStoreFactory messageStoreFactory,
                                   SessionSettings settings, MessageFactory messageFactory,
                                   int queueCapacity ) throws ConfigError {
         super(application, messageStoreFactory, settings, messageFactory);
-        eventHandlingStrategy = new ThreadPerSessionEventHandlingStrategy(this, queueCapacity);
+        eventHandlingStrategy = createThreadPerSessionEventHandlingStrategy(queueCapacity);
     }
 
     public ThreadedSocketAcceptor(Application application, MessageStoreFactory messageStoreFactory,
             SessionSettings settings, MessageFactory messageFactory) throws ConfigError {
         super(application, messageStoreFactory, settings, messageFactory);
-        eventHandlingStrategy = new ThreadPerSessionEventHandlingStrategy(this, DEFAULT_QUEUE_CAPACITY);
+        eventHandlingStrategy = createThreadPerSessionEventHandlingStrategy(DEFAULT_QUEUE_CAPACITY);
     }
 
     public ThreadedSocketAcceptor(SessionFactory sessionFactory, SessionSettings settings, int queueCapacity)
             throws ConfigError {
         super(settings, sessionFactory);
-        eventHandlingStrategy = new ThreadPerSessionEventHandlingStrategy(this, queueCapacity);
+        eventHandlingStrategy = createThreadPerSessionEventHandlingStrategy(queueCapacity);
     }
 
     public ThreadedSocketAcceptor(SessionFactory sessionFactory, SessionSettings settings)
             throws ConfigError {
         super(settings, sessionFactory);
-        eventHandlingStrategy = new ThreadPerSessionEventHandlingStrategy(this, DEFAULT_QUEUE_CAPACITY);
+        eventHandlingStrategy = createThreadPerSessionEventHandlingStrategy(DEFAULT_QUEUE_CAPACITY);
     }
 
     public void start() throws ConfigError, RuntimeError {
@@ -33,14 +33,14 @@ public class ThreadedSocketInitiator extends AbstractSocketInitiator {
             MessageStoreFactory messageStoreFactory, SessionSettings settings,
             LogFactory logFactory, MessageFactory messageFactory, int queueCapacity) throws ConfigError {
         super(application, messageStoreFactory, settings, logFactory, messageFactory);
-        eventHandlingStrategy = new ThreadPerSessionEventHandlingStrategy(this, queueCapacity);
+        eventHandlingStrategy = createThreadPerSessionEventHandlingStrategy(queueCapacity);
     }
 
     public ThreadedSocketInitiator(Application application,
             MessageStoreFactory messageStoreFactory, SessionSettings settings,
             LogFactory logFactory, MessageFactory messageFactory) throws ConfigError {
         super(application, messageStoreFactory, settings, logFactory, messageFactory);
-        eventHandlingStrategy = new ThreadPerSessionEventHandlingStrategy(this, DEFAULT_QUEUE_CAPACITY);
+        eventHandlingStrategy = createThreadPerSessionEventHandlingStrategy(DEFAULT_QUEUE_CAPACITY);
     }
 
     public ThreadedSocketInitiator(Application application,
@@ -48,7 +48,7 @@ public class ThreadedSocketInitiator extends AbstractSocketInitiator {
             MessageFactory messageFactory, int queueCapacity) throws ConfigError {
         super(application, messageStoreFactory, settings, new ScreenLogFactory(settings),
                 messageFactory);
-        eventHandlingStrategy = new ThreadPerSessionEventHandlingStrategy(this, queueCapacity);
+        eventHandlingStrategy = createThreadPerSessionEventHandlingStrategy(queueCapacity);
     }
 
     public ThreadedSocketInitiator(Application application,
@@ -56,19 +56,19 @@ public class ThreadedSocketInitiator extends AbstractSocketInitiator {
             MessageFactory messageFactory) throws ConfigError {
         super(application, messageStoreFactory, settings, new ScreenLogFactory(settings),
                 messageFactory);
-        eventHandlingStrategy = new ThreadPerSessionEventHandlingStrategy(this, DEFAULT_QUEUE_CAPACITY);
+        eventHandlingStrategy = createThreadPerSessionEventHandlingStrategy(DEFAULT_QUEUE_CAPACITY);
     }
 
     public ThreadedSocketInitiator(SessionFactory sessionFactory, SessionSettings settings, int queueCapacity)
             throws ConfigError {
         super(settings, sessionFactory);
-        eventHandlingStrategy = new ThreadPerSessionEventHandlingStrategy(this, queueCapacity);
+        eventHandlingStrategy = createThreadPerSessionEventHandlingStrategy(queueCapacity);
     }
 
     public ThreadedSocketInitiator(SessionFactory sessionFactory, SessionSettings settings)
             throws ConfigError {
         super(settings, sessionFactory);
-        eventHandlingStrategy = new ThreadPerSessionEventHandlingStrategy(this, DEFAULT_QUEUE_CAPACITY);
+        eventHandlingStrategy = createThreadPerSessionEventHandlingStrategy(DEFAULT_QUEUE_CAPACITY);
     }
 
     public void start() throws ConfigError, RuntimeError {
@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * This extension of the MessageStore interface stores a group of messages
+ * together with the sequence numbers in one transaction. A
+ * {@link WriteBehindMessageStore} writes each of its groups this way, so the
+ * store never has a sequence number without the messages sent before it.
+ */
+public interface TransactionalMessageStore extends MessageStore {
+
+    /**
+     * Stores raw FIX messages and sequence numbers in one transaction. A
+     * message with a sequence number that is already stored replaces the
+     * stored one.
+     *
+     * @param sequences the sequence numbers of the messages
+     * @param messages the raw FIX message strings
+     * @param nextSenderMsgSeqNum the next sender sequence number, or -1 to keep
+     *            the current one
+     * @param nextTargetMsgSeqNum the next target sequence number, or -1 to keep
+     *            the current one
+     * @throws IOException IO error, in which case nothing has been stored
+     */
+    void commit(int[] sequences, List<String> messages, int nextSenderMsgSeqNum,
+            int nextTargetMsgSeqNum) throws IOException;
+}
@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+/**
+ * The precision of the fractional seconds in UTC timestamps, as in the FIX 5.0
+ * TimestampPrecision attribute.
+ */
+public enum UtcTimestampPrecision {
+    SECONDS(0), MILLIS(3), MICROS(6), NANOS(9);
+
+    private final int digits;
+
+    private UtcTimestampPrecision(int digits) {
+        this.digits = digits;
+    }
+
+    /**
+     * @return the number of digits after the decimal point of the seconds
+     */
+    public int getDigits() {
+        return digits;
+    }
+}
@@ -0,0 +1,566 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A message store that writes messages and sequence numbers to another store
+ * in the background. Storing a message only queues it, so the sending thread
+ * does not wait for the underlying store. A writer thread takes everything
+ * queued so far and writes it as one group, either when enough messages are
+ * queued or when the oldest one has waited for the maximum delay. Consecutive
+ * messages of a group are written with one call to a {@link BatchMessageStore}
+ * so that, for example, a synchronized FileStore syncs once per group. A
+ * {@link TransactionalMessageStore} gets the whole group, including the
+ * sequence numbers, in one transaction.
+ * <p>
+ * Messages that have not been written yet are kept in memory and returned by
+ * {@link #get(int, int, Collection)}, so resend requests are always served.
+ * Use {@link #flush()} or a {@link WriteListener} to find out when messages
+ * have been written.
+ * <p>
+ * If the underlying store fails, the writer stops and all following calls
+ * throw an IOException. Messages that were not written are still returned for
+ * resends.
+ *
+ * @see WriteBehindMessageStoreFactory
+ */
+public class WriteBehindMessageStore implements BatchMessageStore, StreamingMessageStore,
+        Closeable {
+
+    /**
+     * Receives the sequence numbers of messages once they have been written to
+     * the underlying store. Called from the writer thread.
+     */
+    public interface WriteListener {
+        void onWritten(int sequence);
+    }
+
+    private static final class PendingMessage {
+        private final int sequence;
+        private final String message;
+
+        private PendingMessage(int sequence, String message) {
+            this.sequence = sequence;
+            this.message = message;
+        }
+    }
+
+    private static final class Commit extends FutureTask<Void> {
+        private static final Runnable NOTHING = new Runnable() {
+            public void run() {
+            }
+        };
+
+        private Commit() {
+            super(NOTHING, null);
+        }
+
+        @Override
+        protected void setException(Throwable t) {
+            super.setException(t);
+        }
+    }
+
+    private final SessionID sessionID;
+    private final MessageStore store;
+    private final int batchSize;
+    private final long maxDelayMillis;
+    private final int capacity;
+    private final Thread writerThread;
+    private volatile WriteListener writeListener;
+
+    // guards the fields below
+    private final Object lock = new Object();
+    private List<PendingMessage> queue = new ArrayList<PendingMessage>();
+    private List<Commit> commits = new ArrayList<Commit>();
+    private final TreeMap<Integer, String> unwritten = new TreeMap<Integer, String>();
+    private int nextSenderMsgSeqNum;
+    private int nextTargetMsgSeqNum;
+    private boolean senderMsgSeqNumChanged;
+    private boolean targetMsgSeqNumChanged;
+    // the number of resets, so the writer drops a group taken before one
+    private int resetCount;
+    private boolean closed;
+    private IOException failure;
+
+    // guards the underlying store, acquired before lock
+    private final Object storeLock = new Object();
+
+    /**
+     * @param sessionID the session, used to name the writer thread and for
+     *            logging
+     * @param store the store the messages are written to
+     * @param batchSize the number of queued messages that are written without
+     *            waiting for the maximum delay
+     * @param maxDelayMillis how long a queued message waits for others to be
+     *            written with it
+     * @param capacity the maximum number of messages that have not been
+     *            written; storing a message blocks while it is reached
+     * @throws IOException if the sequence numbers cannot be read from the store
+     */
+    public WriteBehindMessageStore(SessionID sessionID, MessageStore store, int batchSize,
+            long maxDelayMillis, int capacity) throws IOException {
+        if (batchSize < 1 || maxDelayMillis < 0 || capacity < batchSize) {
+            throw new IllegalArgumentException("Invalid write-behind batch size " + batchSize
+                    + ", delay " + maxDelayMillis + " or capacity " + capacity);
+        }
+        this.sessionID = sessionID;
+        this.store = store;
+        this.batchSize = batchSize;
+        this.maxDelayMillis = maxDelayMillis;
+        this.capacity = capacity;
+        nextSenderMsgSeqNum = store.getNextSenderMsgSeqNum();
+        nextTargetMsgSeqNum = store.getNextTargetMsgSeqNum();
+        writerThread = new Thread(new Writer(), "QF/J Store writer " + sessionID);
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * @return the store the messages are written to
+     */
+    public MessageStore getStore() {
+        return store;
+    }
+
+    public void setWriteListener(WriteListener writeListener) {
+        this.writeListener = writeListener;
+    }
+
+    /**
+     * @return the number of messages that have not been written yet
+     */
+    public int getUnwrittenCount() {
+        synchronized (lock) {
+            return unwritten.size();
+        }
+    }
+
+    public boolean set(int sequence, String message) throws IOException {
+        synchronized (lock) {
+            awaitCapacity();
+            unwritten.put(sequence, message);
+            queue.add(new PendingMessage(sequence, message));
+            lock.notifyAll();
+        }
+        return true;
+    }
+
+    public boolean set(int startSequence, List<String> messages) throws IOException {
+        synchronized (lock) {
+            awaitCapacity();
+            int sequence = startSequence;
+            for (final String message : messages) {
+                unwritten.put(sequence, message);
+                queue.add(new PendingMessage(sequence++, message));
+            }
+            lock.notifyAll();
+        }
+        return true;
+    }
+
+    private void awaitCapacity() throws IOException {
+        checkState();
+        while (unwritten.size() >= capacity) {
+            try {
+                lock.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the store writer");
+            }
+            checkState();
+        }
+    }
+
+    private void checkState() throws IOException {
+        if (failure != null) {
+            throw new IOException("Writing to the message store failed", failure);
+        }
+        if (closed) {
+            throw new IOException("Message store is closed");
+        }
+    }
+
+    /**
+     * Reads the messages in chunks, each merging the unwritten messages with
+     * those of the underlying store.
+     */
+    public StoredMessageCursor openCursor(int startSequence, int endSequence) {
+        return new ChunkedMessageCursor(this, startSequence, endSequence);
+    }
+
+    /**
+     * Returns the stored messages in the range, including those that have not
+     * been written to the underlying store yet.
+     */
+    public void get(int startSequence, int endSequence, Collection<String> messages)
+            throws IOException {
+        synchronized (storeLock) {
+            final Map<Integer, String> pending;
+            synchronized (lock) {
+                pending = new TreeMap<Integer, String>(unwritten.subMap(startSequence, true,
+                        endSequence, true));
+            }
+            // the writer cannot write while the store lock is held, so the
+            // store has exactly the messages that are not pending
+            int next = startSequence;
+            for (final Map.Entry<Integer, String> entry : pending.entrySet()) {
+                final int sequence = entry.getKey();
+                if (next < sequence) {
+                    store.get(next, sequence - 1, messages);
+                }
+                messages.add(entry.getValue());
+                next = sequence + 1;
+            }
+            if (next <= endSequence) {
+                store.get(next, endSequence, messages);
+            }
+        }
+    }
+
+    public int getNextSenderMsgSeqNum() throws IOException {
+        synchronized (lock) {
+            return nextSenderMsgSeqNum;
+        }
+    }
+
+    public int getNextTargetMsgSeqNum() throws IOException {
+        synchronized (lock) {
+            return nextTargetMsgSeqNum;
+        }
+    }
+
+    public void setNextSenderMsgSeqNum(int next) throws IOException {
+        synchronized (lock) {
+            checkState();
+            nextSenderMsgSeqNum = next;
+            senderMsgSeqNumChanged = true;
+            lock.notifyAll();
+        }
+    }
+
+    public void setNextTargetMsgSeqNum(int next) throws IOException {
+        synchronized (lock) {
+            checkState();
+            nextTargetMsgSeqNum = next;
+            targetMsgSeqNumChanged = true;
+            lock.notifyAll();
+        }
+    }
+
+    public void incrNextSenderMsgSeqNum() throws IOException {
+        synchronized (lock) {
+            setNextSenderMsgSeqNum(nextSenderMsgSeqNum + 1);
+        }
+    }
+
+    public void incrNextTargetMsgSeqNum() throws IOException {
+        synchronized (lock) {
+            setNextTargetMsgSeqNum(nextTargetMsgSeqNum + 1);
+        }
+    }
+
+    public Date getCreationTime() throws IOException {
+        synchronized (storeLock) {
+            return store.getCreationTime();
+        }
+    }
+
+    /**
+     * Discards everything that has not been written yet and then resets the
+     * underlying store.
+     */
+    public void reset() throws IOException {
+        synchronized (storeLock) {
+            synchronized (lock) {
+                checkState();
+                queue = new ArrayList<PendingMessage>();
+                unwritten.clear();
+                senderMsgSeqNumChanged = false;
+                targetMsgSeqNumChanged = false;
+                resetCount++;
+                lock.notifyAll();
+            }
+            store.reset();
+            reloadSequenceNumbers();
+        }
+    }
+
+    /**
+     * Writes everything queued so far and then refreshes the underlying store.
+     */
+    public void refresh() throws IOException {
+        awaitWritten();
+        synchronized (storeLock) {
+            store.refresh();
+            reloadSequenceNumbers();
+        }
+    }
+
+    private void reloadSequenceNumbers() throws IOException {
+        synchronized (lock) {
+            nextSenderMsgSeqNum = store.getNextSenderMsgSeqNum();
+            nextTargetMsgSeqNum = store.getNextTargetMsgSeqNum();
+            senderMsgSeqNumChanged = false;
+            targetMsgSeqNumChanged = false;
+        }
+    }
+
+    /**
+     * Requests that everything queued so far is written without waiting for
+     * the maximum delay.
+     *
+     * @return a future that completes when everything queued before this call
+     *         has been written to the underlying store, or fails with the
+     *         error of the underlying store
+     */
+    public Future<Void> flush() {
+        final Commit commit = new Commit();
+        synchronized (lock) {
+            if (failure != null) {
+                commit.setException(failure);
+            } else if (closed) {
+                commit.run();
+            } else {
+                commits.add(commit);
+                lock.notifyAll();
+            }
+        }
+        return commit;
+    }
+
+    private void awaitWritten() throws IOException {
+        try {
+            flush().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the store writer");
+        } catch (ExecutionException e) {
+            throw new IOException("Writing to the message store failed", e.getCause());
+        }
+    }
+
+    /**
+     * Writes everything queued so far, stops the writer thread and closes the
+     * underlying store if it is closeable.
+     */
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (storeLock) {
+            if (store instanceof Closeable) {
+                ((Closeable) store).close();
+            }
+        }
+        synchronized (lock) {
+            if (failure != null) {
+                throw new IOException("Writing to the message store failed", failure);
+            }
+        }
+    }
+
+    private class Writer implements Runnable {
+        public void run() {
+            while (true) {
+                final List<PendingMessage> batch;
+                final List<Commit> batchCommits;
+                final int senderMsgSeqNum;
+                final int targetMsgSeqNum;
+                final int batchResetCount;
+                synchronized (lock) {
+                    try {
+                        if (!awaitBatch()) {
+                            return;
+                        }
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    batch = queue;
+                    queue = new ArrayList<PendingMessage>();
+                    batchCommits = commits;
+                    commits = new ArrayList<Commit>();
+                    senderMsgSeqNum = senderMsgSeqNumChanged ? nextSenderMsgSeqNum : -1;
+                    targetMsgSeqNum = targetMsgSeqNumChanged ? nextTargetMsgSeqNum : -1;
+                    senderMsgSeqNumChanged = false;
+                    targetMsgSeqNumChanged = false;
+                    batchResetCount = resetCount;
+                }
+                final boolean written;
+                try {
+                    written = write(batch, senderMsgSeqNum, targetMsgSeqNum, batchResetCount);
+                } catch (Throwable t) {
+                    LogUtil.logThrowable(sessionID, "Error writing to the message store", t);
+                    final IOException e = t instanceof IOException ? (IOException) t
+                            : new IOException(t.toString(), t);
+                    synchronized (lock) {
+                        failure = e;
+                        batchCommits.addAll(commits);
+                        commits.clear();
+                        lock.notifyAll();
+                    }
+                    for (final Commit commit : batchCommits) {
+                        commit.setException(e);
+                    }
+                    return;
+                }
+                final WriteListener listener = writeListener;
+                if (written && listener != null) {
+                    for (final PendingMessage pending : batch) {
+                        listener.onWritten(pending.sequence);
+                    }
+                }
+                for (final Commit commit : batchCommits) {
+                    commit.run();
+                }
+            }
+        }
+
+        /**
+         * Waits until there is something to write, and then for the group to
+         * fill up.
+         *
+         * @return false if the store has been closed and everything is written
+         */
+        private boolean awaitBatch() throws InterruptedException {
+            while (!hasWork()) {
+                if (closed) {
+                    return false;
+                }
+                lock.wait();
+            }
+            final long deadline = System.currentTimeMillis() + maxDelayMillis;
+            long remaining = maxDelayMillis;
+            while (queue.size() < batchSize && commits.isEmpty() && !closed && remaining > 0) {
+                lock.wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+            return true;
+        }
+
+        private boolean hasWork() {
+            return !queue.isEmpty() || !commits.isEmpty() || senderMsgSeqNumChanged
+                    || targetMsgSeqNumChanged;
+        }
+
+        /**
+         * @return false if the store was reset after the group was taken, in
+         *         which case it is dropped
+         */
+        private boolean write(List<PendingMessage> batch, int senderMsgSeqNum,
+                int targetMsgSeqNum, int batchResetCount) throws IOException {
+            synchronized (storeLock) {
+                synchronized (lock) {
+                    if (batchResetCount != resetCount) {
+                        return false;
+                    }
+                }
+                if (store instanceof TransactionalMessageStore) {
+                    commit(batch, senderMsgSeqNum, targetMsgSeqNum);
+                } else {
+                    writeMessages(batch, senderMsgSeqNum, targetMsgSeqNum);
+                }
+                synchronized (lock) {
+                    for (final PendingMessage pending : batch) {
+                        // unless it has been stored again in the meantime
+                        if (unwritten.get(pending.sequence) == pending.message) {
+                            unwritten.remove(pending.sequence);
+                        }
+                    }
+                    lock.notifyAll();
+                }
+            }
+            return true;
+        }
+
+        private void commit(List<PendingMessage> batch, int senderMsgSeqNum, int targetMsgSeqNum)
+                throws IOException {
+            if (batch.isEmpty() && senderMsgSeqNum == -1 && targetMsgSeqNum == -1) {
+                return;
+            }
+            final int[] sequences = new int[batch.size()];
+            final List<String> messages = new ArrayList<String>(batch.size());
+            for (int i = 0; i < sequences.length; i++) {
+                sequences[i] = batch.get(i).sequence;
+                messages.add(batch.get(i).message);
+            }
+            ((TransactionalMessageStore) store).commit(sequences, messages, senderMsgSeqNum,
+                    targetMsgSeqNum);
+        }
+
+        private void writeMessages(List<PendingMessage> batch, int senderMsgSeqNum,
+                int targetMsgSeqNum) throws IOException {
+            int start = 0;
+            while (start < batch.size()) {
+                // consecutive sequence numbers are written together
+                int end = start + 1;
+                while (end < batch.size()
+                        && batch.get(end).sequence == batch.get(end - 1).sequence + 1) {
+                    end++;
+                }
+                writeConsecutiveMessages(batch.subList(start, end));
+                start = end;
+            }
+            // after the messages, so the store never has a sequence number
+            // beyond a message that is missing
+            if (senderMsgSeqNum != -1) {
+                store.setNextSenderMsgSeqNum(senderMsgSeqNum);
+            }
+            if (targetMsgSeqNum != -1) {
+                store.setNextTargetMsgSeqNum(targetMsgSeqNum);
+            }
+        }
+
+        private void writeConsecutiveMessages(List<PendingMessage> messages) throws IOException {
+            if (messages.size() > 1 && store instanceof BatchMessageStore) {
+                final List<String> data = new ArrayList<String>(messages.size());
+                for (final PendingMessage pending : messages) {
+                    data.add(pending.message);
+                }
+                ((BatchMessageStore) store).set(messages.get(0).sequence, data);
+            } else {
+                for (final PendingMessage pending : messages) {
+                    store.set(pending.sequence, pending.message);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+/**
+ * Creates message stores that write to the stores of another factory in the
+ * background.
+ *
+ * @see WriteBehindMessageStore
+ */
+public class WriteBehindMessageStoreFactory implements MessageStoreFactory {
+
+    /**
+     * Number of queued messages that are written to the underlying store
+     * without waiting for the maximum delay.
+     */
+    public static final String SETTING_WRITE_BEHIND_BATCH_SIZE = "WriteBehindBatchSize";
+
+    /**
+     * Maximum time in milliseconds a queued message waits for others to be
+     * written with it.
+     */
+    public static final String SETTING_WRITE_BEHIND_MAX_DELAY = "WriteBehindMaxDelay";
+
+    /**
+     * Maximum number of messages that have not been written to the underlying
+     * store. Storing a message blocks while it is reached.
+     */
+    public static final String SETTING_WRITE_BEHIND_CAPACITY = "WriteBehindCapacity";
+
+    private final MessageStoreFactory storeFactory;
+    private final SessionSettings settings;
+
+    /**
+     * @param storeFactory creates the stores the messages are written to
+     * @param settings the session settings
+     */
+    public WriteBehindMessageStoreFactory(MessageStoreFactory storeFactory,
+            SessionSettings settings) {
+        this.storeFactory = storeFactory;
+        this.settings = settings;
+    }
+
+    public MessageStore create(SessionID sessionID) {
+        return create(sessionID, storeFactory.create(sessionID));
+    }
+
+    /**
+     * Creates a store that writes to the given store in the background.
+     */
+    MessageStore create(SessionID sessionID, MessageStore store) {
+        try {
+            return new WriteBehindMessageStore(sessionID, store,
+                    (int) getSetting(sessionID, SETTING_WRITE_BEHIND_BATCH_SIZE, 256),
+                    getSetting(sessionID, SETTING_WRITE_BEHIND_MAX_DELAY, 2),
+                    (int) getSetting(sessionID, SETTING_WRITE_BEHIND_CAPACITY, 65536));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private long getSetting(SessionID sessionID, String key, long defaultValue)
+            throws ConfigError, FieldConvertError {
+        return settings.isSetting(sessionID, key) ? settings.getLong(sessionID, key) : defaultValue;
+    }
+}
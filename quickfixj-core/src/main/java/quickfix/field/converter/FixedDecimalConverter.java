@@ -0,0 +1,275 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix.field.converter;
+
+import java.nio.ByteBuffer;
+
+import quickfix.FieldConvertError;
+
+/**
+ * Converts between fixed-point decimals and Strings or bytes. A fixed-point
+ * decimal is a long mantissa and a scale, the number of digits after the
+ * decimal point, so 12.345 is the mantissa 12345 with a scale of 3.
+ */
+public final class FixedDecimalConverter {
+
+    /**
+     * The largest supported scale.
+     */
+    public static final int MAX_SCALE = 18;
+
+    private static final long[] POWERS_OF_TEN = new long[MAX_SCALE + 1];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    /**
+     * Converts a fixed-point decimal to a String with exactly scale digits
+     * after the decimal point.
+     *
+     * @param mantissa the mantissa
+     * @param scale the scale
+     * @return the formatted String
+     */
+    public static String convert(long mantissa, int scale) {
+        final char[] chars = new char[length(mantissa, scale)];
+        int i = chars.length;
+        long m = mantissa;
+        for (int digits = 0; m != 0 || digits <= scale; digits++) {
+            if (digits == scale && scale > 0) {
+                chars[--i] = '.';
+            }
+            chars[--i] = (char) ('0' + Math.abs(m % 10));
+            m /= 10;
+        }
+        if (mantissa < 0) {
+            chars[--i] = '-';
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Writes a fixed-point decimal as ASCII bytes at the buffer position, in
+     * the format of {@link #convert(long, int)}.
+     *
+     * @param mantissa the mantissa
+     * @param scale the scale
+     * @param buffer the buffer
+     * @throws java.nio.BufferOverflowException if the buffer is too small
+     */
+    public static void write(long mantissa, int scale, ByteBuffer buffer) {
+        final int start = buffer.position();
+        final int end = start + length(mantissa, scale);
+        // move to the end first so that an overflow leaves the buffer unchanged
+        buffer.position(end);
+        int i = end;
+        long m = mantissa;
+        for (int digits = 0; m != 0 || digits <= scale; digits++) {
+            if (digits == scale && scale > 0) {
+                buffer.put(--i, (byte) '.');
+            }
+            buffer.put(--i, (byte) ('0' + Math.abs(m % 10)));
+            m /= 10;
+        }
+        if (mantissa < 0) {
+            buffer.put(--i, (byte) '-');
+        }
+    }
+
+    /**
+     * Returns the number of characters of the formatted fixed-point decimal.
+     *
+     * @param mantissa the mantissa
+     * @param scale the scale
+     * @return the length
+     */
+    public static int length(long mantissa, int scale) {
+        checkScale(scale);
+        int digits = 1;
+        for (long m = mantissa / 10; m != 0; m /= 10) {
+            digits++;
+        }
+        int length = scale > 0 ? Math.max(digits, scale + 1) + 1 : digits;
+        return mantissa < 0 ? length + 1 : length;
+    }
+
+    /**
+     * Convert a String value to the mantissa of a fixed-point decimal with the
+     * given scale.
+     *
+     * @param value the String value to convert
+     * @param scale the scale of the result
+     * @return the mantissa
+     * @throws FieldConvertError if the String is not a valid decimal, does not fit
+     *         a long or has more significant digits after the decimal point than the scale.
+     */
+    public static long convert(String value, int scale) throws FieldConvertError {
+        return parse(value, null, 0, value.length(), scale);
+    }
+
+    /**
+     * Convert ASCII bytes to the mantissa of a fixed-point decimal with the
+     * given scale.
+     *
+     * @see #convert(String, int)
+     */
+    public static long convert(byte[] data, int offset, int length, int scale)
+            throws FieldConvertError {
+        return parse(null, data, offset, length, scale);
+    }
+
+    /**
+     * Returns the number of digits after the decimal point of a String value,
+     * which is the scale that represents the value exactly.
+     *
+     * @param value the String value
+     * @return the scale
+     */
+    public static int scale(String value) {
+        final int point = value.indexOf('.');
+        return point == -1 ? 0 : Math.min(value.length() - point - 1, MAX_SCALE);
+    }
+
+    /**
+     * Returns the number of digits after the decimal point of a value in ASCII
+     * bytes.
+     *
+     * @see #scale(String)
+     */
+    public static int scale(byte[] data, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            if (data[i] == '.') {
+                return Math.min(end - i - 1, MAX_SCALE);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Converts a mantissa from one scale to another.
+     *
+     * @param mantissa the mantissa
+     * @param scale the scale of the mantissa
+     * @param newScale the scale of the result
+     * @return the mantissa with the new scale
+     * @throws FieldConvertError if the value does not fit a long or cannot be
+     *         represented with the new scale without rounding.
+     */
+    public static long rescale(long mantissa, int scale, int newScale) throws FieldConvertError {
+        checkScale(scale);
+        checkScale(newScale);
+        if (newScale >= scale) {
+            final long factor = POWERS_OF_TEN[newScale - scale];
+            final long limit = Long.MAX_VALUE / factor;
+            if (mantissa > limit || mantissa < -limit) {
+                throw new FieldConvertError("decimal value out of range: "
+                        + convert(mantissa, scale));
+            }
+            return mantissa * factor;
+        }
+        final long factor = POWERS_OF_TEN[scale - newScale];
+        if (mantissa % factor != 0) {
+            throw new FieldConvertError("decimal value has more than " + newScale
+                    + " decimal places: " + convert(mantissa, scale));
+        }
+        return mantissa / factor;
+    }
+
+    private static long parse(String string, byte[] data, int offset, int length, int scale)
+            throws FieldConvertError {
+        checkScale(scale);
+        final int end = offset + length;
+        int i = offset;
+        final boolean negative = i < end && charAt(string, data, i) == '-';
+        if (negative) {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = -1;
+        for (; i < end; i++) {
+            final char c = charAt(string, data, i);
+            if (c == '.' && decimals == -1) {
+                decimals = 0;
+                continue;
+            }
+            if (c < '0' || c > '9') {
+                throw newConvertError(string, data, offset, length);
+            }
+            digits++;
+            if (decimals != -1 && ++decimals > scale) {
+                // digits beyond the scale must be trailing zeros
+                if (c != '0') {
+                    throw new FieldConvertError("decimal value has more than " + scale
+                            + " decimal places: " + toString(string, data, offset, length));
+                }
+                continue;
+            }
+            if (mantissa > (Long.MAX_VALUE - (c - '0')) / 10) {
+                throw new FieldConvertError("decimal value out of range: "
+                        + toString(string, data, offset, length));
+            }
+            mantissa = mantissa * 10 + (c - '0');
+        }
+        if (digits == 0) {
+            throw newConvertError(string, data, offset, length);
+        }
+        if (decimals < scale) {
+            final int padding = scale - Math.max(decimals, 0);
+            if (mantissa > Long.MAX_VALUE / POWERS_OF_TEN[padding]) {
+                throw new FieldConvertError("decimal value out of range: "
+                        + toString(string, data, offset, length));
+            }
+            mantissa *= POWERS_OF_TEN[padding];
+        }
+        return negative ? -mantissa : mantissa;
+    }
+
+    private static char charAt(String string, byte[] data, int i) {
+        return data != null ? (char) (data[i] & 0xFF) : string.charAt(i);
+    }
+
+    private static String toString(String string, byte[] data, int offset, int length) {
+        if (data == null) {
+            return string;
+        }
+        final char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) (data[offset + i] & 0xFF);
+        }
+        return new String(chars);
+    }
+
+    private static FieldConvertError newConvertError(String string, byte[] data, int offset,
+            int length) {
+        return new FieldConvertError("invalid decimal value: "
+                + toString(string, data, offset, length));
+    }
+
+    private static void checkScale(int scale) {
+        if (scale < 0 || scale > MAX_SCALE) {
+            throw new IllegalArgumentException("scale must be between 0 and " + MAX_SCALE
+                    + ": " + scale);
+        }
+    }
+}
@@ -19,24 +19,27 @@
 
 package quickfix.field.converter;
 
-import java.text.DateFormat;
-import java.util.Calendar;
 import java.util.Date;
-import java.util.GregorianCalendar;
-import java.util.HashMap;
 
 import quickfix.FieldConvertError;
-import quickfix.SystemTime;
+import quickfix.UtcTimestampPrecision;
 
 /**
  * Convert between a timestamp and a String. A timestamp includes both a date
- * and a time.
+ * and a time, with optional milli-, micro- or nanoseconds.
+ * <p>
+ * Dates are computed arithmetically rather than with Calendars. The
+ * "yyyyMMdd-" prefix of the most recently formatted day is cached, so
+ * formatting the current time only writes the time of day digits. The
+ * converter is safe for concurrent use.
  */
 public class UtcTimestampConverter extends AbstractDateTimeConverter {
-    private static ThreadLocal<UtcTimestampConverter> utcTimestampConverter = new ThreadLocal<UtcTimestampConverter>();
-    private final DateFormat utcTimestampFormat = createDateFormat("yyyyMMdd-HH:mm:ss");
-    private final DateFormat utcTimestampFormatMillis = createDateFormat("yyyyMMdd-HH:mm:ss.SSS");
-    private static HashMap<String, Long> dateCache = new HashMap<String, Long>();
+    private static final long MILLIS_PER_DAY = 86400000L;
+    private static final long NANOS_PER_MILLI = 1000000L;
+    private static final int PREFIX_LENGTH = 9;
+    private static final int SECONDS_LENGTH = 17;
+
+    private static volatile Day cachedDay = new Day(0);
 
     /**
      * Convert a timestamp (represented as a Date) to a String.
@@ -46,75 +49,258 @@ public class UtcTimestampConverter extends AbstractDateTimeConverter {
      * @return the formatted timestamp
      */
     public static String convert(Date d, boolean includeMilliseconds) {
-        return getFormatter(includeMilliseconds).format(d);
+        return convert(d.getTime(), includeMilliseconds
+                ? UtcTimestampPrecision.MILLIS
+                : UtcTimestampPrecision.SECONDS);
     }
 
-    private static DateFormat getFormatter(boolean includeMillis) {
-        UtcTimestampConverter converter = utcTimestampConverter.get();
-        if (converter == null) {
-            converter = new UtcTimestampConverter();
-            utcTimestampConverter.set(converter);
-        }
-        return includeMillis ? converter.utcTimestampFormatMillis : converter.utcTimestampFormat;
+    /**
+     * Convert a timestamp (represented as a Date) to a String. Digits beyond
+     * milliseconds are zero.
+     *
+     * @param d the date to convert
+     * @param precision the precision of the fractional seconds
+     * @return the formatted timestamp
+     */
+    public static String convert(Date d, UtcTimestampPrecision precision) {
+        return convert(d.getTime(), precision);
     }
 
-    //
-    // Performance optimization: the calendar for the start of the day is cached.
-    // The time is converted to millis and then added to the millis specified by
-    // the base calendar.
-    //
+    /**
+     * Convert a timestamp in milliseconds since the epoch to a String. Digits
+     * beyond milliseconds are zero.
+     *
+     * @param epochMillis the timestamp
+     * @param precision the precision of the fractional seconds
+     * @return the formatted timestamp
+     */
+    public static String convert(long epochMillis, UtcTimestampPrecision precision) {
+        return format(epochMillis, 0, precision);
+    }
 
     /**
-     * Convert a timestamp string into a Date.
+     * Convert a timestamp in nanoseconds since the epoch to a String.
+     *
+     * @param epochNanos the timestamp
+     * @param precision the precision of the fractional seconds
+     * @return the formatted timestamp
+     */
+    public static String convertEpochNanos(long epochNanos, UtcTimestampPrecision precision) {
+        final long epochMillis = floorDiv(epochNanos, NANOS_PER_MILLI);
+        return format(epochMillis, (int) (epochNanos - epochMillis * NANOS_PER_MILLI), precision);
+    }
+
+    private static String format(long epochMillis, int nanosOfMilli, UtcTimestampPrecision precision) {
+        final int digits = precision.getDigits();
+        final char[] chars = new char[digits > 0 ? SECONDS_LENGTH + 1 + digits : SECONDS_LENGTH];
+
+        Day day = cachedDay;
+        if (!day.contains(epochMillis)) {
+            day = new Day(floorDiv(epochMillis, MILLIS_PER_DAY));
+            cachedDay = day;
+        }
+        System.arraycopy(day.prefix, 0, chars, 0, PREFIX_LENGTH);
+
+        final int millisOfDay = (int) (epochMillis - day.start);
+        final int secondsOfDay = millisOfDay / 1000;
+        putTwoDigits(chars, 9, secondsOfDay / 3600);
+        chars[11] = ':';
+        putTwoDigits(chars, 12, secondsOfDay / 60 % 60);
+        chars[14] = ':';
+        putTwoDigits(chars, 15, secondsOfDay % 60);
+        if (digits > 0) {
+            chars[SECONDS_LENGTH] = '.';
+            long fraction = (millisOfDay % 1000) * NANOS_PER_MILLI + nanosOfMilli;
+            for (int i = 9; i > digits; i--) {
+                fraction /= 10;
+            }
+            for (int i = chars.length - 1; i > SECONDS_LENGTH; i--) {
+                chars[i] = (char) ('0' + fraction % 10);
+                fraction /= 10;
+            }
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Convert a timestamp string into a Date. Digits beyond milliseconds are
+     * ignored.
      *
      * @param value the timestamp String
      * @return the parsed timestamp
      * @exception FieldConvertError raised if timestamp is an incorrect format.
      */
     public static Date convert(String value) throws FieldConvertError {
-        verifyFormat(value);
-        long timeOffset = (parseLong(value.substring(9, 11)) * 3600000L)
-                + (parseLong(value.substring(12, 14)) * 60000L)
-                + (parseLong(value.substring(15, 17)) * 1000L);
-        if (value.length() == 21) {
-            timeOffset += parseLong(value.substring(18, 21));
+        return new Date(parseMillis(value, null, 0, value.length()));
+    }
+
+    /**
+     * Convert a timestamp in ASCII bytes into milliseconds since the epoch.
+     * Digits beyond milliseconds are ignored.
+     *
+     * @see #convert(String)
+     */
+    public static long convertToEpochMillis(byte[] data, int offset, int length)
+            throws FieldConvertError {
+        return parseMillis(null, data, offset, length);
+    }
+
+    /**
+     * Convert a timestamp string into nanoseconds since the epoch.
+     *
+     * @param value the timestamp String
+     * @return the parsed timestamp
+     * @exception FieldConvertError raised if timestamp is an incorrect format.
+     */
+    public static long convertToEpochNanos(String value) throws FieldConvertError {
+        return parseNanos(value, null, 0, value.length());
+    }
+
+    /**
+     * Convert a timestamp in ASCII bytes into nanoseconds since the epoch.
+     *
+     * @see #convertToEpochNanos(String)
+     */
+    public static long convertToEpochNanos(byte[] data, int offset, int length)
+            throws FieldConvertError {
+        return parseNanos(null, data, offset, length);
+    }
+
+    private static long parseNanos(String string, byte[] data, int offset, int length)
+            throws FieldConvertError {
+        final long epochMillis = parseMillis(string, data, offset, length);
+        long nanosOfMilli = 0;
+        if (length > 21) {
+            nanosOfMilli = digits(string, data, offset + 21, offset + length);
+            for (int i = length; i < 27; i++) {
+                nanosOfMilli *= 10;
+            }
+        }
+        return epochMillis * NANOS_PER_MILLI + nanosOfMilli;
+    }
+
+    private static long parseMillis(String string, byte[] data, int offset, int length)
+            throws FieldConvertError {
+        verifyFormat(string, data, offset, length);
+        final int year = digits(string, data, offset, offset + 4);
+        final int month = digits(string, data, offset + 4, offset + 6);
+        final int day = digits(string, data, offset + 6, offset + 8);
+        if (month < 1 || month > 12 || day < 1 || day > 31) {
+            throwFieldConvertError(toString(string, data, offset, length), "timestamp");
         }
-        return new Date(getMillisForDay(value) + timeOffset);
-    }
-
-    private static Long getMillisForDay(String value) {
-        String dateString = value.substring(0, 8);
-        Long millis = dateCache.get(dateString);
-        if (millis == null) {
-            Calendar c = new GregorianCalendar(1970, 0, 1, 0, 0, 0);
-            c.setTimeZone(SystemTime.UTC_TIMEZONE);
-            int year = Integer.parseInt(value.substring(0, 4));
-            int month = Integer.parseInt(value.substring(4, 6));
-            int day = Integer.parseInt(value.substring(6, 8));
-            c.set(year, month - 1, day);
-            millis = c.getTimeInMillis();
-            dateCache.put(dateString, c.getTimeInMillis());
+        long millis = daysFromCivil(year, month, day) * MILLIS_PER_DAY
+                + digits(string, data, offset + 9, offset + 11) * 3600000L
+                + digits(string, data, offset + 12, offset + 14) * 60000L
+                + digits(string, data, offset + 15, offset + 17) * 1000L;
+        if (length > SECONDS_LENGTH) {
+            millis += digits(string, data, offset + 18, offset + 21);
         }
         return millis;
     }
 
-    private static void verifyFormat(String value) throws FieldConvertError {
-        String type = "timestamp";
-        if (value.length() != 17 && value.length() != 21) {
-            throwFieldConvertError(value, type);
+    private static void verifyFormat(String string, byte[] data, int offset, int length)
+            throws FieldConvertError {
+        if (length != 17 && length != 21 && length != 24 && length != 27) {
+            throwFieldConvertError(toString(string, data, offset, length), "timestamp");
+        }
+        for (int i = 0; i < length; i++) {
+            final char c = charAt(string, data, offset + i);
+            final boolean valid;
+            switch (i) {
+            case 8:
+                valid = c == '-';
+                break;
+            case 11:
+            case 14:
+                valid = c == ':';
+                break;
+            case 17:
+                valid = c == '.';
+                break;
+            default:
+                valid = c >= '0' && c <= '9';
+            }
+            if (!valid) {
+                throwFieldConvertError(toString(string, data, offset, length), "timestamp");
+            }
+        }
+    }
+
+    private static int digits(String string, byte[] data, int start, int end) {
+        int n = 0;
+        for (int i = start; i < end; i++) {
+            n = n * 10 + (charAt(string, data, i) - '0');
+        }
+        return n;
+    }
+
+    private static char charAt(String string, byte[] data, int i) {
+        return data != null ? (char) (data[i] & 0xFF) : string.charAt(i);
+    }
+
+    private static String toString(String string, byte[] data, int offset, int length) {
+        if (data == null) {
+            return string;
+        }
+        final char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) (data[offset + i] & 0xFF);
+        }
+        return new String(chars);
+    }
+
+    private static void putTwoDigits(char[] chars, int offset, int value) {
+        chars[offset] = (char) ('0' + value / 10);
+        chars[offset + 1] = (char) ('0' + value % 10);
+    }
+
+    private static long floorDiv(long x, long y) {
+        final long q = x / y;
+        return x % y < 0 ? q - 1 : q;
+    }
+
+    /**
+     * @return the number of days from 1970-01-01 to the date in the proleptic
+     *         Gregorian calendar
+     */
+    static long daysFromCivil(int year, int month, int day) {
+        final int y = month <= 2 ? year - 1 : year;
+        final int era = (y >= 0 ? y : y - 399) / 400;
+        final int yearOfEra = y - era * 400;
+        final int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    /**
+     * A day and its formatted "yyyyMMdd-" prefix.
+     */
+    private static final class Day {
+        final long start;
+        final char[] prefix = new char[PREFIX_LENGTH];
+
+        Day(long epochDay) {
+            start = epochDay * MILLIS_PER_DAY;
+            // the inverse of daysFromCivil
+            final long z = epochDay + 719468;
+            final long era = (z >= 0 ? z : z - 146096) / 146097;
+            final int dayOfEra = (int) (z - era * 146097);
+            final int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+            final int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+            final int mp = (5 * dayOfYear + 2) / 153;
+            final int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+            final int month = mp < 10 ? mp + 3 : mp - 9;
+            final int year = (int) (yearOfEra + era * 400) + (month <= 2 ? 1 : 0);
+
+            putTwoDigits(prefix, 0, year / 100);
+            putTwoDigits(prefix, 2, year % 100);
+            putTwoDigits(prefix, 4, month);
+            putTwoDigits(prefix, 6, day);
+            prefix[8] = '-';
         }
-        assertDigitSequence(value, 0, 8, type);
-        assertSeparator(value, 8, '-', type);
-        assertDigitSequence(value, 9, 11, type);
-        assertSeparator(value, 11, ':', type);
-        assertDigitSequence(value, 12, 14, type);
-        assertSeparator(value, 14, ':', type);
-        assertDigitSequence(value, 15, 17, type);
-        if (value.length() == 21) {
-            assertSeparator(value, 17, '.', type);
-            assertDigitSequence(value, 18, 21, type);
-        } else if (value.length() != 17) {
-            throwFieldConvertError(value, type);
+
+        boolean contains(long epochMillis) {
+            return epochMillis >= start && epochMillis - start < MILLIS_PER_DAY;
         }
     }
 }
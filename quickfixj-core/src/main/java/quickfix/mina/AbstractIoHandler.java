@@ -30,9 +30,12 @@ import org.apache.mina.filter.codec.ProtocolDecoderException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import quickfix.ByteLog;
 import quickfix.InvalidMessage;
+import quickfix.Log;
 import quickfix.Message;
 import quickfix.MessageUtils;
+import quickfix.RawMessage;
 import quickfix.Session;
 import quickfix.SessionID;
 import quickfix.field.MsgType;
@@ -104,6 +107,10 @@ public abstract class AbstractIoHandler extends IoHandlerAdapter {
     }
 
     public void messageReceived(IoSession ioSession, Object message) throws Exception {
+        if (message instanceof RawMessage) {
+            rawMessageReceived(ioSession, (RawMessage) message);
+            return;
+        }
         String messageString = (String) message;
         SessionID remoteSessionID = MessageUtils.getReverseSessionID(messageString);
         Session quickFixSession = findQFSession(ioSession, remoteSessionID);
@@ -126,6 +133,39 @@ public abstract class AbstractIoHandler extends IoHandlerAdapter {
         }
     }
 
+    private void rawMessageReceived(IoSession ioSession, RawMessage rawMessage) throws Exception {
+        SessionID remoteSessionID = MessageUtils.getReverseSessionID(rawMessage);
+        Session quickFixSession = findQFSession(ioSession, remoteSessionID);
+        if (quickFixSession != null) {
+            final boolean rawMessageDecoding = quickFixSession.isRawMessageDecoding();
+            final Log qfLog = quickFixSession.getLog();
+            if (rawMessageDecoding && qfLog instanceof ByteLog) {
+                // logged as received, without decoding the message
+                ((ByteLog) qfLog).onIncoming(rawMessage.getData(), rawMessage.getOffset(),
+                        rawMessage.getLength());
+            } else {
+                qfLog.onIncoming(rawMessage.toString());
+            }
+            try {
+                // the codec may be shared with sessions that use raw messages
+                Message fixMessage = rawMessageDecoding
+                        ? parse(quickFixSession, rawMessage)
+                        : parse(quickFixSession, rawMessage.toString());
+                processMessage(ioSession, fixMessage);
+            } catch (InvalidMessage e) {
+                if (MsgType.LOGON.equals(rawMessage.getStringField(MsgType.FIELD))) {
+                    log.error("Invalid LOGON message, disconnecting: " + e.getMessage());
+                    ioSession.close(true);
+                } else {
+                    log.error("Invalid message: " + e.getMessage());
+                }
+            }
+        } else {
+            log.error("Disconnecting; received message for unknown session: " + rawMessage);
+            ioSession.close(true);
+        }
+    }
+
     protected Session findQFSession(IoSession ioSession, SessionID sessionID) {
         Session quickfixSession = findQFSession(ioSession);
         if (quickfixSession == null) {
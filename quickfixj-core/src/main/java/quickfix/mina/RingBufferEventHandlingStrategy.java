@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix.mina;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import quickfix.Message;
+import quickfix.Session;
+
+/**
+ * Processes messages for all sessions in a single thread, like
+ * {@link SingleThreadedEventHandlingStrategy}, but hands messages to that
+ * thread through a preallocated ring buffer instead of a blocking queue. Any
+ * number of I/O threads may add messages. Adding a message does not allocate
+ * and takes no lock, except that the {@link WaitStrategy#BLOCK} strategy
+ * signals a waiting processing thread.
+ *
+ * @see SessionConnector#SETTING_EVENT_WAIT_STRATEGY
+ */
+public class RingBufferEventHandlingStrategy extends SingleThreadedEventHandlingStrategy {
+
+    /**
+     * How the processing thread waits for messages.
+     */
+    public enum WaitStrategy {
+        /** Spins on the ring buffer; lowest latency, uses a whole core. */
+        BUSY_SPIN,
+        /** Yields the processor between checks. */
+        YIELD,
+        /** Parks for a few microseconds between checks. */
+        PARK,
+        /** Blocks until a message is added; slowest wake-up, no idle CPU. */
+        BLOCK
+    }
+
+    private static final long WAIT_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final int SPINS_PER_CLOCK_CHECK = 1024;
+
+    private final WaitStrategy waitStrategy;
+    private final int mask;
+    private final Session[] sessions;
+    private final Message[] messages;
+    // the sequence last published at each index
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong(-1);
+    // the last processed sequence, only written by the processing thread
+    private final AtomicLong processed = new AtomicLong(-1);
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private volatile boolean waiting;
+
+    /**
+     * @param connector the session connector
+     * @param capacity the number of slots, rounded up to a power of two
+     * @param waitStrategy how the processing thread waits for messages
+     */
+    public RingBufferEventHandlingStrategy(SessionConnector connector, int capacity,
+            WaitStrategy waitStrategy) {
+        super(connector);
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid ring buffer capacity: " + capacity);
+        }
+        final int size = nextPowerOfTwo(capacity);
+        this.waitStrategy = waitStrategy;
+        mask = size - 1;
+        sessions = new Session[size];
+        messages = new Message[size];
+        published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            published.set(i, -1);
+        }
+    }
+
+    private static int nextPowerOfTwo(int n) {
+        final int power = Integer.highestOneBit(n);
+        return power == n ? n : power << 1;
+    }
+
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    public int getCapacity() {
+        return sessions.length;
+    }
+
+    @Override
+    public void onMessage(Session quickfixSession, Message message) {
+        final long sequence = claimed.incrementAndGet();
+        // wait for the processing thread when the ring is full
+        while (sequence - sessions.length > processed.get()) {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        final int index = (int) sequence & mask;
+        sessions[index] = quickfixSession;
+        messages[index] = message;
+        published.set(index, sequence);
+        if (waiting) {
+            lock.lock();
+            try {
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public int getQueueSize() {
+        return (int) (claimed.get() - processed.get());
+    }
+
+    /**
+     * Processes the published messages, waiting up to a second for the first
+     * one according to the wait strategy.
+     */
+    @Override
+    protected void processMessages() throws InterruptedException {
+        long next = processed.get() + 1;
+        if (!awaitPublished(next)) {
+            return;
+        }
+        // bounded so that the caller regularly checks whether it has been stopped
+        final long last = next + sessions.length;
+        do {
+            final int index = (int) next & mask;
+            final Session session = sessions[index];
+            final Message message = messages[index];
+            sessions[index] = null;
+            messages[index] = null;
+            // frees the slot for producers
+            processed.lazySet(next);
+            processMessage(session, message);
+            next++;
+        } while (next < last && isPublished(next));
+    }
+
+    private boolean isPublished(long sequence) {
+        return published.get((int) sequence & mask) == sequence;
+    }
+
+    private boolean awaitPublished(long sequence) throws InterruptedException {
+        if (isPublished(sequence)) {
+            return true;
+        }
+        final long deadline = System.nanoTime() + WAIT_TIMEOUT_NANOS;
+        switch (waitStrategy) {
+        case BLOCK:
+            lock.lock();
+            try {
+                waiting = true;
+                long remaining = WAIT_TIMEOUT_NANOS;
+                while (!isPublished(sequence) && remaining > 0) {
+                    remaining = notEmpty.awaitNanos(remaining);
+                }
+            } finally {
+                waiting = false;
+                lock.unlock();
+            }
+            break;
+        default:
+            int spins = 0;
+            while (!isPublished(sequence)) {
+                if (waitStrategy == WaitStrategy.PARK) {
+                    LockSupport.parkNanos(PARK_NANOS);
+                } else if (waitStrategy == WaitStrategy.YIELD) {
+                    Thread.yield();
+                }
+                if (++spins % SPINS_PER_CLOCK_CHECK == 0 || waitStrategy == WaitStrategy.PARK) {
+                    if (System.nanoTime() - deadline > 0) {
+                        break;
+                    }
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                }
+            }
+        }
+        return isPublished(sequence);
+    }
+}
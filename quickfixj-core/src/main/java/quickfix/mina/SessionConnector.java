@@ -24,17 +24,21 @@ import java.beans.PropertyChangeSupport;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.buffer.SimpleBufferAllocator;
 import org.apache.mina.core.filterchain.IoFilterChainBuilder;
 import org.apache.mina.core.session.IoSession;
 import org.slf4j.Logger;
@@ -47,7 +51,9 @@ import quickfix.Session;
 import quickfix.SessionFactory;
 import quickfix.SessionID;
 import quickfix.SessionSettings;
+import quickfix.SystemTime;
 import quickfix.field.converter.IntConverter;
+import quickfix.mina.message.IoBufferPool;
 
 /**
  * An abstract base class for acceptors and initiators. Provides support for common functionality and also serves as an
@@ -58,6 +64,48 @@ public abstract class SessionConnector implements Connector {
     public static final String SESSIONS_PROPERTY = "sessions";
     public final static String QF_SESSION = "QF_SESSION";
 
+    /**
+     * Pool the buffers used to read and encode messages, see {@link IoBufferPool}.
+     * Read from the default section since MINA has a single buffer allocator.
+     */
+    public static final String SETTING_SOCKET_BUFFER_POOL = "SocketBufferPool";
+
+    /**
+     * Use direct buffers for the buffer pool.
+     */
+    public static final String SETTING_SOCKET_BUFFER_POOL_DIRECT = "SocketBufferPoolDirect";
+
+    /**
+     * Hand received messages to the message processing thread of a
+     * single-threaded connector through a ring buffer, see
+     * {@link RingBufferEventHandlingStrategy}. The value is the
+     * {@link RingBufferEventHandlingStrategy.WaitStrategy} of the processing
+     * thread. Read from the default section.
+     */
+    public static final String SETTING_EVENT_WAIT_STRATEGY = "EventWaitStrategy";
+
+    /**
+     * The number of threads processing messages in a connector that uses a
+     * {@link WorkerPoolEventHandlingStrategy}. Defaults to the number of
+     * available processors. Read from the default section.
+     */
+    public static final String SETTING_EVENT_WORKER_THREADS = "EventWorkerThreads";
+
+    /**
+     * Process the messages of each session of a connector that uses a
+     * {@link ThreadPerSessionEventHandlingStrategy} in a virtual thread, if the
+     * JVM supports them. Read from the default section.
+     */
+    public static final String SETTING_USE_VIRTUAL_THREADS = "UseVirtualThreads";
+
+    /**
+     * Schedule the timer work of each session on a timing wheel, so that a
+     * session is only visited when a heartbeat, test request, timeout or
+     * schedule check is due, instead of every session once a second. Read from
+     * the default section.
+     */
+    public static final String SETTING_SESSION_TIMER_WHEEL = "SessionTimerWheel";
+
     protected final Logger log = LoggerFactory.getLogger(getClass());
 
     protected PropertyChangeSupport propertyChangeSupport = new PropertyChangeSupport(this);
@@ -68,7 +116,10 @@ public abstract class SessionConnector implements Connector {
     private final static ScheduledExecutorService scheduledExecutorService = Executors
             .newSingleThreadScheduledExecutor(new QFTimerThreadFactory());
     private ScheduledFuture<?> sessionTimerFuture;
+    private final boolean useTimerWheel;
+    private volatile SessionTimerWheelTask sessionTimerWheelTask;
     private IoFilterChainBuilder ioFilterChainBuilder;
+    private IoBufferPool bufferPool;
 
     public SessionConnector(SessionSettings settings, SessionFactory sessionFactory) throws ConfigError {
         this.settings = settings;
@@ -76,6 +127,12 @@ public abstract class SessionConnector implements Connector {
         if (settings == null) {
             throw new ConfigError("no settings");
         }
+        try {
+            useTimerWheel = settings.isSetting(SETTING_SESSION_TIMER_WHEEL)
+                    && settings.getBool(SETTING_SESSION_TIMER_WHEEL);
+        } catch (FieldConvertError e) {
+            throw new ConfigError(e);
+        }
     }
 
     public void addPropertyChangeListener(PropertyChangeListener listener) {
@@ -89,6 +146,12 @@ public abstract class SessionConnector implements Connector {
     protected void setSessions(Map<SessionID, Session> sessions) {
         this.sessions = sessions;
         propertyChangeSupport.firePropertyChange(SESSIONS_PROPERTY, null, sessions);
+        final SessionTimerWheelTask timerWheelTask = sessionTimerWheelTask;
+        if (timerWheelTask != null) {
+            for (Session session : sessions.values()) {
+                timerWheelTask.wakeUp(session);
+            }
+        }
     }
 
     /**
@@ -125,12 +188,22 @@ public abstract class SessionConnector implements Connector {
         sessions.put(inSession.getSessionID(), inSession);
         log.debug("adding session for " + inSession.getSessionID());
         propertyChangeSupport.firePropertyChange(SESSIONS_PROPERTY, null, sessions);
+        final SessionTimerWheelTask timerWheelTask = sessionTimerWheelTask;
+        if (timerWheelTask != null) {
+            timerWheelTask.wakeUp(inSession);
+        }
     }
 
     public void removeDynamicSession(SessionID inSessionID) {
-        sessions.remove(inSessionID);
+        final Session session = sessions.remove(inSessionID);
         log.debug("removing session for " + inSessionID);
         propertyChangeSupport.firePropertyChange(SESSIONS_PROPERTY, null, sessions);
+        final SessionTimerWheelTask timerWheelTask = sessionTimerWheelTask;
+        if (timerWheelTask != null && session != null) {
+            // lets the timer drop the session
+            timerWheelTask.wakeUp(session);
+            session.setTimerWakeUp(null);
+        }
     }
 
     public SessionSettings getSettings() {
@@ -254,7 +327,18 @@ public abstract class SessionConnector implements Connector {
     }
 
     protected void startSessionTimer() {
-        sessionTimerFuture = scheduledExecutorService.scheduleAtFixedRate(new SessionTimerTask(), 0, 1000L,
+        final Runnable timerTask;
+        if (useTimerWheel) {
+            final SessionTimerWheelTask timerWheelTask = new SessionTimerWheelTask();
+            for (Session session : sessions.values()) {
+                timerWheelTask.wakeUp(session);
+            }
+            sessionTimerWheelTask = timerWheelTask;
+            timerTask = timerWheelTask;
+        } else {
+            timerTask = new SessionTimerTask();
+        }
+        sessionTimerFuture = scheduledExecutorService.scheduleAtFixedRate(timerTask, 0, 1000L,
                 TimeUnit.MILLISECONDS);
         log.info("SessionTimer started");
     }
@@ -264,6 +348,115 @@ public abstract class SessionConnector implements Connector {
             if (sessionTimerFuture.cancel(false))
                 log.info("SessionTimer canceled");
         }
+        final SessionTimerWheelTask timerWheelTask = sessionTimerWheelTask;
+        if (timerWheelTask != null) {
+            sessionTimerWheelTask = null;
+            for (Session session : sessions.values()) {
+                session.setTimerWakeUp(null);
+            }
+        }
+    }
+
+    /**
+     * Sets the MINA buffer allocator. If buffer pooling is enabled, a buffer pool
+     * is installed as the allocator and used by the FIX codecs of this connector.
+     *
+     * @throws ConfigError if the buffer pool settings are invalid
+     */
+    protected void installBufferAllocator() throws ConfigError {
+        try {
+            if (settings.isSetting(SETTING_SOCKET_BUFFER_POOL)
+                    && settings.getBool(SETTING_SOCKET_BUFFER_POOL)) {
+                final boolean direct = settings.isSetting(SETTING_SOCKET_BUFFER_POOL_DIRECT)
+                        && settings.getBool(SETTING_SOCKET_BUFFER_POOL_DIRECT);
+                bufferPool = new IoBufferPool(direct);
+                IoBuffer.setAllocator(bufferPool);
+                IoBuffer.setUseDirectBuffer(direct);
+                log.info("Using " + (direct ? "direct" : "heap") + " buffer pool");
+            } else {
+                bufferPool = null;
+                IoBuffer.setAllocator(new SimpleBufferAllocator());
+                IoBuffer.setUseDirectBuffer(false);
+            }
+        } catch (FieldConvertError e) {
+            throw new ConfigError(e);
+        }
+    }
+
+    /**
+     * Creates the event handling strategy of a connector that processes the
+     * messages of all sessions in one thread.
+     *
+     * @param queueCapacity the maximum number of queued messages
+     * @throws ConfigError if the wait strategy setting is invalid
+     * @see #SETTING_EVENT_WAIT_STRATEGY
+     */
+    protected SingleThreadedEventHandlingStrategy createSingleThreadedEventHandlingStrategy(
+            int queueCapacity) throws ConfigError {
+        if (!settings.isSetting(SETTING_EVENT_WAIT_STRATEGY)) {
+            return new SingleThreadedEventHandlingStrategy(this, queueCapacity);
+        }
+        final String value;
+        try {
+            value = settings.getString(SETTING_EVENT_WAIT_STRATEGY);
+        } catch (FieldConvertError e) {
+            throw new ConfigError(e);
+        }
+        final RingBufferEventHandlingStrategy.WaitStrategy waitStrategy;
+        try {
+            waitStrategy = RingBufferEventHandlingStrategy.WaitStrategy.valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ConfigError("Invalid " + SETTING_EVENT_WAIT_STRATEGY + ": " + value);
+        }
+        log.info("Using ring buffer with " + waitStrategy + " wait strategy");
+        return new RingBufferEventHandlingStrategy(this, queueCapacity, waitStrategy);
+    }
+
+    /**
+     * Creates the event handling strategy of a connector that processes
+     * messages on a pool of worker threads.
+     *
+     * @param queueCapacity the maximum number of queued messages per session
+     * @throws ConfigError if the worker threads setting is invalid
+     * @see #SETTING_EVENT_WORKER_THREADS
+     */
+    protected WorkerPoolEventHandlingStrategy createWorkerPoolEventHandlingStrategy(
+            int queueCapacity) throws ConfigError {
+        final int workerCount = settings.isSetting(SETTING_EVENT_WORKER_THREADS)
+                ? getIntSetting(SETTING_EVENT_WORKER_THREADS)
+                : Runtime.getRuntime().availableProcessors();
+        if (workerCount < 1) {
+            throw new ConfigError("Invalid " + SETTING_EVENT_WORKER_THREADS + ": " + workerCount);
+        }
+        log.info("Using " + workerCount + " event worker threads");
+        return new WorkerPoolEventHandlingStrategy(this, queueCapacity, workerCount);
+    }
+
+    /**
+     * Creates the event handling strategy of a connector that processes the
+     * messages of each session in its own thread.
+     *
+     * @param queueCapacity the maximum number of queued messages per session
+     * @throws ConfigError if the virtual threads setting is invalid
+     * @see #SETTING_USE_VIRTUAL_THREADS
+     */
+    protected ThreadPerSessionEventHandlingStrategy createThreadPerSessionEventHandlingStrategy(
+            int queueCapacity) throws ConfigError {
+        final boolean useVirtualThreads;
+        try {
+            useVirtualThreads = settings.isSetting(SETTING_USE_VIRTUAL_THREADS)
+                    && settings.getBool(SETTING_USE_VIRTUAL_THREADS);
+        } catch (FieldConvertError e) {
+            throw new ConfigError(e);
+        }
+        return new ThreadPerSessionEventHandlingStrategy(this, queueCapacity, useVirtualThreads);
+    }
+
+    /**
+     * @return the buffer pool of this connector, or null if buffers are not pooled
+     */
+    public IoBufferPool getBufferPool() {
+        return bufferPool;
     }
 
     protected ScheduledExecutorService getScheduledExecutorService() {
@@ -286,6 +479,76 @@ public abstract class SessionConnector implements Connector {
         }
     }
 
+    /**
+     * Calls {@link Session#next()} for the sessions whose timer deadline has
+     * been reached and for the sessions that have been woken up since the last
+     * tick.
+     */
+    private class SessionTimerWheelTask implements Runnable {
+        private final TimingWheel<Session> wheel = new TimingWheel<Session>(1000L,
+                SystemTime.currentTimeMillis());
+        // only accessed by the timer thread
+        private final Map<SessionID, TimingWheel.Timeout<Session>> timeouts = new HashMap<SessionID, TimingWheel.Timeout<Session>>();
+        private final Set<Session> wokenUp = Collections
+                .newSetFromMap(new ConcurrentHashMap<Session, Boolean>());
+        private final List<Session> due = new ArrayList<Session>();
+
+        void wakeUp(final Session session) {
+            if (wokenUp.add(session)) {
+                session.setTimerWakeUp(new Runnable() {
+                    public void run() {
+                        wokenUp.add(session);
+                    }
+                });
+            }
+        }
+
+        public void run() {
+            try {
+                for (Iterator<Session> i = wokenUp.iterator(); i.hasNext();) {
+                    due.add(i.next());
+                    i.remove();
+                }
+                wheel.advance(SystemTime.currentTimeMillis(), due);
+                for (Session session : due) {
+                    next(session);
+                }
+            } catch (Throwable e) {
+                log.error("Error during timer processing", e);
+            } finally {
+                due.clear();
+            }
+        }
+
+        private void next(Session session) {
+            final SessionID sessionID = session.getSessionID();
+            TimingWheel.Timeout<Session> timeout = timeouts.get(sessionID);
+            if (sessions.get(sessionID) != session) {
+                // removed from the connector
+                if (timeout != null && timeout.getItem() == session) {
+                    wheel.cancel(timeout);
+                    timeouts.remove(sessionID);
+                }
+                return;
+            }
+            try {
+                session.next();
+            } catch (IOException e) {
+                logError(sessionID, null, "Error in session timer processing", e);
+            }
+            if (timeout == null || timeout.getItem() != session) {
+                timeout = new TimingWheel.Timeout<Session>(session);
+                timeouts.put(sessionID, timeout);
+            }
+            final long deadline = session.getNextTimerDeadline();
+            if (deadline == Long.MAX_VALUE) {
+                wheel.cancel(timeout);
+            } else {
+                wheel.schedule(timeout, deadline);
+            }
+        }
+    }
+
     private static class QFTimerThreadFactory implements ThreadFactory {
 
         public Thread newThread(Runnable runnable) {
@@ -45,6 +45,16 @@ public class SingleThreadedEventHandlingStrategy implements EventHandlingStrateg
         eventQueue = new LinkedBlockingQueue<SessionMessageEvent>(queueCapacity);
     }
 
+    /**
+     * For subclasses that queue messages themselves. They override
+     * {@link #onMessage(Session, Message)}, {@link #getQueueSize()} and
+     * {@link #processMessages()}.
+     */
+    protected SingleThreadedEventHandlingStrategy(SessionConnector connector) {
+        sessionConnector = connector;
+        eventQueue = null;
+    }
+
     public void onMessage(Session quickfixSession, Message message) {
         try {
             eventQueue.put(new SessionMessageEvent(quickfixSession, message));
@@ -73,18 +83,22 @@ public class SingleThreadedEventHandlingStrategy implements EventHandlingStrateg
                 }
             }
             try {
-                SessionMessageEvent event = getMessage();
-                if (event != null) {
-                    event.processMessage();
-                }
+                processMessages();
             } catch (InterruptedException e) {
                 // ignore
             }
         }
     }
 
-    private SessionMessageEvent getMessage() throws InterruptedException {
-        return eventQueue.poll(1000L, TimeUnit.MILLISECONDS);
+    /**
+     * Processes the next queued message, waiting up to a second for one to
+     * arrive so that the caller can check whether it has been stopped.
+     */
+    protected void processMessages() throws InterruptedException {
+        SessionMessageEvent event = eventQueue.poll(1000L, TimeUnit.MILLISECONDS);
+        if (event != null) {
+            processMessage(event.quickfixSession, event.message);
+        }
     }
 
     public void blockInThread() {
@@ -106,23 +120,24 @@ public class SingleThreadedEventHandlingStrategy implements EventHandlingStrateg
             this.message = message;
             quickfixSession = session;
         }
+    }
 
-        public void processMessage() {
-            try {
-                if (quickfixSession.hasResponder()) {
-                    quickfixSession.next(message);
-                } else {
-                    try {
-                        final String msgType = message.getHeader().getString(MsgType.FIELD);
-                        if (msgType.equals(MsgType.LOGOUT))
-                            quickfixSession.next(message);
-                    } catch (FieldNotFound ex) {
-                        // ignore
-                    }
+    void processMessage(Session quickfixSession, Message message) {
+        try {
+            if (quickfixSession.hasResponder()) {
+                quickfixSession.next(message);
+            } else {
+                try {
+                    final String msgType = message.getHeader().getString(MsgType.FIELD);
+                    if (msgType.equals(MsgType.LOGOUT))
+                        quickfixSession.next(message);
+                } catch (FieldNotFound ex) {
+                    // ignore
                 }
-            } catch (Throwable e) {
-                LogUtil.logThrowable(quickfixSession.getSessionID(), e.getMessage(), e);
             }
+            quickfixSession.releaseMessage(message);
+        } catch (Throwable e) {
+            LogUtil.logThrowable(quickfixSession.getSessionID(), e.getMessage(), e);
         }
     }
 
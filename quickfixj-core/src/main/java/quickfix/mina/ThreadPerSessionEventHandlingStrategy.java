@@ -27,13 +27,18 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import quickfix.LogUtil;
 import quickfix.Message;
 import quickfix.Session;
 import quickfix.SessionID;
 
 /**
- * Processes messages in a session-specific thread.
+ * Processes messages in a session-specific thread. The threads can be virtual
+ * threads on JVMs that support them, so that one JVM can host many more
+ * sessions.
  */
 public class ThreadPerSessionEventHandlingStrategy implements EventHandlingStrategy {
 
@@ -45,10 +50,36 @@ public class ThreadPerSessionEventHandlingStrategy implements EventHandlingStrat
     private final ConcurrentMap<SessionID, MessageDispatchingThread> dispatchers = new ConcurrentHashMap<SessionID, MessageDispatchingThread>();
     private final SessionConnector sessionConnector;
     private final int queueCapacity;
+    private final boolean useVirtualThreads;
 
     public ThreadPerSessionEventHandlingStrategy(SessionConnector connector, int queueCapacity) {
+        this(connector, queueCapacity, false);
+    }
+
+    /**
+     * @param connector the session connector
+     * @param queueCapacity the maximum number of queued messages per session
+     * @param useVirtualThreads whether to process the messages of each session
+     *        in a virtual thread; platform threads are used if the JVM does not
+     *        support virtual threads
+     */
+    public ThreadPerSessionEventHandlingStrategy(SessionConnector connector, int queueCapacity,
+            boolean useVirtualThreads) {
         sessionConnector = connector;
         this.queueCapacity = queueCapacity;
+        if (useVirtualThreads && !VirtualThreads.isSupported()) {
+            final Logger log = LoggerFactory.getLogger(getClass());
+            log.warn("Virtual threads are not supported by this JVM, using platform threads");
+            useVirtualThreads = false;
+        }
+        this.useVirtualThreads = useVirtualThreads;
+    }
+
+    /**
+     * @return true if messages are processed in virtual threads
+     */
+    public boolean isUsingVirtualThreads() {
+        return useVirtualThreads;
     }
 
     public void onMessage(Session quickfixSession, Message message) {
@@ -74,7 +105,10 @@ public class ThreadPerSessionEventHandlingStrategy implements EventHandlingStrat
     }
 
     protected void startDispatcherThread(MessageDispatchingThread dispatcher) {
-        dispatcher.start();
+        // the dispatcher only serves as the task of the virtual thread
+        if (!useVirtualThreads || VirtualThreads.start(dispatcher, dispatcher.getName()) == null) {
+            dispatcher.start();
+        }
     }
 
     public void stopDispatcherThreads() {
@@ -134,6 +168,7 @@ public class ThreadPerSessionEventHandlingStrategy implements EventHandlingStrat
                         final Message message = getNextMessage(messages);
                         if (message != null && quickfixSession.hasResponder()) {
                             quickfixSession.next(message);
+                            quickfixSession.releaseMessage(message);
                         }
                     } else {
                         stopping = true;
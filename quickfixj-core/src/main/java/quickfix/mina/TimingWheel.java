@@ -0,0 +1,198 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix.mina;
+
+import java.util.List;
+
+/**
+ * A hierarchical timing wheel. Scheduling and cancelling a timeout take
+ * constant time, and advancing the wheel only touches the timeouts that expire
+ * or move to a finer level, so the cost does not depend on the number of
+ * pending timeouts.
+ * <p>
+ * The wheel has four levels of 64 slots. A slot of the lowest level spans one
+ * tick; a slot of each higher level spans 64 slots of the level below. Timeouts
+ * further away than the wheel spans are parked in the highest level and placed
+ * again when their slot comes around.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @param <T> the type of the items scheduled on the wheel
+ */
+class TimingWheel<T> {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long SPAN = 1L << (SLOT_BITS * LEVELS);
+
+    private final long tickMillis;
+    private final Timeout<T>[][] slots;
+    private long currentTick;
+    private int size;
+
+    /**
+     * @param tickMillis the resolution of the wheel
+     * @param now the current time in milliseconds
+     */
+    @SuppressWarnings("unchecked")
+    TimingWheel(long tickMillis, long now) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("Invalid tick: " + tickMillis);
+        }
+        this.tickMillis = tickMillis;
+        currentTick = now / tickMillis;
+        slots = new Timeout[LEVELS][SLOTS];
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                final Timeout<T> head = new Timeout<T>(null);
+                head.next = head;
+                head.previous = head;
+                slots[level][slot] = head;
+            }
+        }
+    }
+
+    /**
+     * A scheduled item. An item can be rescheduled using its timeout.
+     */
+    static final class Timeout<T> {
+        private final T item;
+        private long deadline;
+        private long tick;
+        private Timeout<T> next;
+        private Timeout<T> previous;
+
+        Timeout(T item) {
+            this.item = item;
+        }
+
+        T getItem() {
+            return item;
+        }
+
+        long getDeadline() {
+            return deadline;
+        }
+
+        boolean isScheduled() {
+            return next != null;
+        }
+    }
+
+    long getTickMillis() {
+        return tickMillis;
+    }
+
+    /**
+     * @return the number of scheduled timeouts
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Schedules a timeout, replacing its previous deadline. A deadline that
+     * has already passed expires at the next tick.
+     */
+    void schedule(Timeout<T> timeout, long deadline) {
+        cancel(timeout);
+        timeout.deadline = deadline;
+        // round up so that the timeout never expires before its deadline
+        final long tick = deadline / tickMillis + (deadline % tickMillis > 0 ? 1 : 0);
+        timeout.tick = Math.max(tick, currentTick + 1);
+        place(timeout);
+        size++;
+    }
+
+    void cancel(Timeout<T> timeout) {
+        if (timeout.next != null) {
+            unlink(timeout);
+            size--;
+        }
+    }
+
+    /**
+     * Advances the wheel to the current time.
+     *
+     * @param now the current time in milliseconds
+     * @param expired receives the items whose deadline has been reached
+     */
+    void advance(long now, List<T> expired) {
+        final long targetTick = now / tickMillis;
+        while (currentTick < targetTick) {
+            currentTick++;
+            cascade(1);
+            final Timeout<T> head = slots[0][(int) (currentTick & SLOT_MASK)];
+            while (head.next != head) {
+                final Timeout<T> timeout = head.next;
+                unlink(timeout);
+                size--;
+                expired.add(timeout.item);
+            }
+        }
+    }
+
+    /**
+     * Moves the timeouts of the current slot of a level down, when all the
+     * levels below have wrapped around.
+     */
+    private void cascade(int level) {
+        if (level == LEVELS || (currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+            return;
+        }
+        cascade(level + 1);
+        final Timeout<T> head = slots[level][(int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK)];
+        Timeout<T> timeout = head.next;
+        head.next = head;
+        head.previous = head;
+        while (timeout != head) {
+            final Timeout<T> next = timeout.next;
+            place(timeout);
+            timeout = next;
+        }
+    }
+
+    private void place(Timeout<T> timeout) {
+        long tick = timeout.tick;
+        long delta = tick - currentTick;
+        if (delta >= SPAN) {
+            // parked until its slot in the highest level comes around
+            tick = currentTick + SPAN - 1;
+            delta = SPAN - 1;
+        }
+        int level = 0;
+        while (delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        final Timeout<T> head = slots[level][(int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK)];
+        timeout.previous = head.previous;
+        timeout.next = head;
+        head.previous.next = timeout;
+        head.previous = timeout;
+    }
+
+    private static <T> void unlink(Timeout<T> timeout) {
+        timeout.previous.next = timeout.next;
+        timeout.next.previous = timeout.previous;
+        timeout.next = null;
+        timeout.previous = null;
+    }
+}
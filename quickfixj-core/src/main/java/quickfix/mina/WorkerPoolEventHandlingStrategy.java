@@ -0,0 +1,372 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix.mina;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import quickfix.FieldNotFound;
+import quickfix.LogUtil;
+import quickfix.Message;
+import quickfix.Session;
+import quickfix.SessionID;
+import quickfix.field.MsgType;
+
+/**
+ * Processes messages on a fixed pool of worker threads. The messages of a
+ * session are always processed in the order they were received and by one
+ * worker at a time, but different sessions are processed concurrently.
+ * <p>
+ * Each session is assigned to a worker. A session with queued messages waits
+ * in the run queue of its worker, which processes a few of its messages and
+ * then moves on to the next session. When a session becomes ready while its
+ * worker already has many sessions waiting, the session is moved to the worker
+ * with the fewest waiting sessions.
+ */
+public class WorkerPoolEventHandlingStrategy implements EventHandlingStrategy {
+
+    /**
+     * Constant indicating how long a worker waits for a ready session. After
+     * the workers have been asked to stop, they can take up to this long to
+     * terminate.
+     */
+    private static final long THREAD_WAIT_FOR_SESSION_MS = 250;
+
+    /**
+     * How long to wait for a worker that is still processing a message when
+     * the workers are stopped.
+     */
+    private static final long THREAD_JOIN_TIMEOUT_MS = 5000;
+
+    /**
+     * The number of messages of a session processed before the worker moves
+     * on to its next ready session.
+     */
+    static final int MESSAGES_PER_TURN = 16;
+
+    /**
+     * The number of sessions waiting for a worker above which a session that
+     * becomes ready is moved to a less busy worker.
+     */
+    static final int REBALANCE_QUEUE_DEPTH = 8;
+
+    private final ConcurrentMap<SessionID, SessionQueue> sessionQueues = new ConcurrentHashMap<SessionID, SessionQueue>();
+    private final SessionConnector sessionConnector;
+    private final int queueCapacity;
+    private final Worker[] workers;
+    private final AtomicInteger nextAssignment = new AtomicInteger();
+    private boolean started;
+
+    /**
+     * @param connector the session connector
+     * @param queueCapacity the maximum number of queued messages per session
+     * @param workerCount the number of worker threads
+     */
+    public WorkerPoolEventHandlingStrategy(SessionConnector connector, int queueCapacity,
+            int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("Invalid number of worker threads: " + workerCount);
+        }
+        sessionConnector = connector;
+        this.queueCapacity = queueCapacity;
+        workers = new Worker[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Worker(i);
+        }
+    }
+
+    public void onMessage(Session quickfixSession, Message message) {
+        SessionQueue sessionQueue;
+        do {
+            sessionQueue = getSessionQueue(quickfixSession);
+        } while (!sessionQueue.addProducer());
+        try {
+            sessionQueue.messages.put(message);
+        } catch (final InterruptedException e) {
+            quickfixSession.getLog().onErrorEvent(e.toString());
+            return;
+        } finally {
+            sessionQueue.removeProducer();
+        }
+        if (sessionQueue.scheduled.compareAndSet(false, true)) {
+            schedule(sessionQueue);
+        }
+    }
+
+    private SessionQueue getSessionQueue(Session quickfixSession) {
+        SessionQueue sessionQueue = sessionQueues.get(quickfixSession.getSessionID());
+        if (sessionQueue == null) {
+            final SessionQueue temp = new SessionQueue(quickfixSession, queueCapacity,
+                    workers[(nextAssignment.getAndIncrement() & Integer.MAX_VALUE) % workers.length]);
+            sessionQueue = sessionQueues.putIfAbsent(quickfixSession.getSessionID(), temp);
+            if (sessionQueue == null) {
+                sessionQueue = temp;
+            }
+        }
+        return sessionQueue;
+    }
+
+    /**
+     * Drops the queue of a session that is no longer used, for example a
+     * dynamic session that was removed from the connector. Messages of the
+     * session that are still queued are discarded.
+     *
+     * @param sessionID the ID of the session
+     */
+    public void removeSession(SessionID sessionID) {
+        final SessionQueue sessionQueue = sessionQueues.remove(sessionID);
+        if (sessionQueue != null) {
+            sessionQueue.remove();
+            sessionQueue.messages.clear();
+        }
+    }
+
+    public SessionConnector getSessionConnector() {
+        return sessionConnector;
+    }
+
+    public int getQueueSize() {
+        int ret = 0;
+        for (final SessionQueue sessionQueue : sessionQueues.values()) {
+            ret += sessionQueue.messages.size();
+        }
+        return ret;
+    }
+
+    public int getWorkerCount() {
+        return workers.length;
+    }
+
+    /**
+     * Starts the worker threads, unless they are already running. Messages
+     * received before are queued until then.
+     */
+    public synchronized void startWorkerThreads() {
+        if (!started) {
+            for (final Worker worker : workers) {
+                worker.startThread();
+            }
+            started = true;
+        }
+    }
+
+    /**
+     * Stops the worker threads and waits for them to terminate, for at most
+     * five seconds each. Messages that are still queued are processed when the
+     * workers are started again.
+     */
+    public synchronized void stopWorkerThreads() {
+        started = false;
+        for (final Worker worker : workers) {
+            worker.stopThread();
+        }
+        for (final Worker worker : workers) {
+            worker.joinThread();
+        }
+    }
+
+    /**
+     * Adds a session that has queued messages, and is not in any run queue or
+     * being processed, to the run queue of its worker or a less busy one.
+     */
+    private void schedule(SessionQueue sessionQueue) {
+        Worker worker = sessionQueue.worker;
+        final int depth = worker.readySessions.size();
+        if (depth >= REBALANCE_QUEUE_DEPTH) {
+            final Worker leastBusy = getLeastBusyWorker();
+            if (leastBusy.readySessions.size() < depth / 2) {
+                worker = leastBusy;
+                sessionQueue.worker = worker;
+            }
+        }
+        worker.readySessions.add(sessionQueue);
+    }
+
+    private Worker getLeastBusyWorker() {
+        Worker leastBusy = workers[0];
+        int leastDepth = leastBusy.readySessions.size();
+        for (int i = 1; i < workers.length; i++) {
+            final int depth = workers[i].readySessions.size();
+            if (depth < leastDepth) {
+                leastBusy = workers[i];
+                leastDepth = depth;
+            }
+        }
+        return leastBusy;
+    }
+
+    /**
+     * @return the index of the worker the session is assigned to, or -1 if no
+     *         message has been received for the session
+     */
+    int getWorkerIndex(SessionID sessionID) {
+        final SessionQueue sessionQueue = sessionQueues.get(sessionID);
+        return sessionQueue != null ? sessionQueue.worker.index : -1;
+    }
+
+    void processMessage(Session quickfixSession, Message message) {
+        try {
+            if (quickfixSession.hasResponder()) {
+                quickfixSession.next(message);
+            } else {
+                try {
+                    final String msgType = message.getHeader().getString(MsgType.FIELD);
+                    if (msgType.equals(MsgType.LOGOUT)) {
+                        quickfixSession.next(message);
+                    }
+                } catch (FieldNotFound ex) {
+                    // ignore
+                }
+            }
+            quickfixSession.releaseMessage(message);
+        } catch (Throwable e) {
+            LogUtil.logThrowable(quickfixSession.getSessionID(), "Error during message processing", e);
+        }
+    }
+
+    private static final class SessionQueue {
+        private final Session quickfixSession;
+        private final BlockingQueue<Message> messages;
+        // set while the session is in a run queue or being processed
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        // only changed while the session is neither queued nor processed
+        private volatile Worker worker;
+        // the number of threads adding a message, guarded by this
+        private int producers;
+        // set when the queue no longer accepts messages, guarded by this
+        private boolean removed;
+
+        private SessionQueue(Session session, int queueCapacity, Worker worker) {
+            quickfixSession = session;
+            messages = new LinkedBlockingQueue<Message>(queueCapacity);
+            this.worker = worker;
+        }
+
+        /**
+         * @return false if the queue was removed and a new one must be used
+         */
+        private synchronized boolean addProducer() {
+            if (removed) {
+                return false;
+            }
+            producers++;
+            return true;
+        }
+
+        private synchronized void removeProducer() {
+            producers--;
+        }
+
+        private synchronized void remove() {
+            removed = true;
+        }
+
+        /**
+         * Removes the queue unless a message is queued or being added, so a
+         * message is never left behind in a removed queue.
+         */
+        private synchronized boolean removeIfIdle() {
+            if (producers == 0 && messages.isEmpty()) {
+                removed = true;
+            }
+            return removed;
+        }
+    }
+
+    private final class Worker implements Runnable {
+        private final int index;
+        private final BlockingQueue<SessionQueue> readySessions = new LinkedBlockingQueue<SessionQueue>();
+        private volatile Thread thread;
+        private volatile boolean stopping;
+
+        private Worker(int index) {
+            this.index = index;
+        }
+
+        private void startThread() {
+            stopping = false;
+            final Thread t = new Thread(this, "QF/J Event worker " + index);
+            t.setDaemon(true);
+            thread = t;
+            t.start();
+        }
+
+        private void stopThread() {
+            stopping = true;
+        }
+
+        private void joinThread() {
+            final Thread t = thread;
+            if (t != null && t != Thread.currentThread()) {
+                try {
+                    t.join(THREAD_JOIN_TIMEOUT_MS);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            thread = null;
+        }
+
+        public void run() {
+            while (!stopping) {
+                final SessionQueue sessionQueue;
+                try {
+                    sessionQueue = readySessions.poll(THREAD_WAIT_FOR_SESSION_MS,
+                            TimeUnit.MILLISECONDS);
+                } catch (final InterruptedException e) {
+                    break;
+                }
+                if (sessionQueue != null) {
+                    processMessages(sessionQueue);
+                }
+            }
+        }
+
+        private void processMessages(SessionQueue sessionQueue) {
+            for (int i = 0; i < MESSAGES_PER_TURN; i++) {
+                final Message message = sessionQueue.messages.poll();
+                if (message == null) {
+                    break;
+                }
+                processMessage(sessionQueue.quickfixSession, message);
+            }
+            if (sessionQueue.messages.isEmpty()) {
+                // like a session dispatcher thread, the queue of a disconnected
+                // session is dropped and created again for the next connection
+                if (!sessionQueue.quickfixSession.hasResponder()
+                        && sessionQueue.removeIfIdle()) {
+                    sessionQueues.remove(sessionQueue.quickfixSession.getSessionID(), sessionQueue);
+                }
+                sessionQueue.scheduled.set(false);
+                // a message may have been added before the flag was cleared
+                if (sessionQueue.messages.isEmpty()
+                        || !sessionQueue.scheduled.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+            schedule(sessionQueue);
+        }
+    }
+}
@@ -29,11 +29,8 @@ import java.util.Map;
 
 import javax.net.ssl.SSLContext;
 
-import org.apache.mina.core.buffer.IoBuffer;
 import org.apache.mina.core.service.IoAcceptor;
-import org.apache.mina.core.buffer.SimpleBufferAllocator;
 import org.apache.mina.filter.ssl.SslFilter;
-import org.apache.mina.filter.codec.ProtocolCodecFilter;
 
 import quickfix.Acceptor;
 import quickfix.Application;
@@ -55,6 +52,7 @@ import quickfix.mina.NetworkingOptions;
 import quickfix.mina.ProtocolFactory;
 import quickfix.mina.SessionConnector;
 import quickfix.mina.message.FIXProtocolCodecFactory;
+import quickfix.mina.message.FIXProtocolCodecFilter;
 import quickfix.mina.ssl.SSLContextFactory;
 import quickfix.mina.ssl.SSLSupport;
 
@@ -70,8 +68,7 @@ public abstract class AbstractSocketAcceptor extends SessionConnector implements
     protected AbstractSocketAcceptor(SessionSettings settings, SessionFactory sessionFactory)
             throws ConfigError {
         super(settings, sessionFactory);
-        IoBuffer.setAllocator(new SimpleBufferAllocator());
-        IoBuffer.setUseDirectBuffer(false);
+        installBufferAllocator();
         this.sessionFactory = sessionFactory;
     }
 
@@ -107,7 +104,8 @@ public abstract class AbstractSocketAcceptor extends SessionConnector implements
                 }
 
                 ioFilterChainBuilder.addLast(FIXProtocolCodecFactory.FILTER_NAME,
-                        new ProtocolCodecFilter(new FIXProtocolCodecFactory()));
+                        new FIXProtocolCodecFilter(new FIXProtocolCodecFactory(socketDescriptor
+                                .isRawMessageDecoding(), getBufferPool())));
 
                 ioAcceptor.setFilterChainBuilder(ioFilterChainBuilder);
                 ioAcceptor.setCloseOnDeactivation(false);
@@ -214,6 +212,13 @@ public abstract class AbstractSocketAcceptor extends SessionConnector implements
             socketDescriptorForAddress.put(acceptorAddress, descriptor);
         }
 
+        // the codec is shared by all sessions on the socket, so it emits raw messages if
+        // any session wants them and the IO handler decodes them for the other sessions
+        if (settings.isSetting(sessionID, Session.SETTING_RAW_MESSAGE_DECODING)
+                && settings.getBool(sessionID, Session.SETTING_RAW_MESSAGE_DECODING)) {
+            descriptor.setRawMessageDecoding(true);
+        }
+
         return descriptor;
     }
 
@@ -267,6 +272,7 @@ public abstract class AbstractSocketAcceptor extends SessionConnector implements
         private final String keyStoreName;
         private final String keyStorePassword;
         private final Map<SessionID, Session> acceptedSessions = new HashMap<SessionID, Session>();
+        private boolean rawMessageDecoding;
 
         public AcceptorSocketDescriptor(SocketAddress address, boolean useSSL, String keyStoreName,
                 String keyStorePassword) {
@@ -299,6 +305,14 @@ public abstract class AbstractSocketAcceptor extends SessionConnector implements
         public boolean isUseSSL() {
             return useSSL;
         }
+
+        public boolean isRawMessageDecoding() {
+            return rawMessageDecoding;
+        }
+
+        public void setRawMessageDecoding(boolean rawMessageDecoding) {
+            this.rawMessageDecoding = rawMessageDecoding;
+        }
     }
 
     public Collection<IoAcceptor> getEndpoints() {
@@ -28,8 +28,6 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
-import org.apache.mina.core.buffer.IoBuffer;
-import org.apache.mina.core.buffer.SimpleBufferAllocator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -50,6 +48,7 @@ import quickfix.mina.EventHandlingStrategy;
 import quickfix.mina.NetworkingOptions;
 import quickfix.mina.ProtocolFactory;
 import quickfix.mina.SessionConnector;
+import quickfix.mina.message.FIXProtocolCodecFactory;
 import quickfix.mina.ssl.SSLSupport;
 
 /**
@@ -70,8 +69,7 @@ public abstract class AbstractSocketInitiator extends SessionConnector implement
     protected AbstractSocketInitiator(SessionSettings settings, SessionFactory sessionFactory)
             throws ConfigError {
         super(settings, sessionFactory);
-        IoBuffer.setAllocator(new SimpleBufferAllocator());
-        IoBuffer.setUseDirectBuffer(false);
+        installBufferAllocator();
     }
 
     protected void createSessionInitiators()
@@ -116,7 +114,8 @@ public abstract class AbstractSocketInitiator extends SessionConnector implement
                 final IoSessionInitiator ioSessionInitiator = new IoSessionInitiator(session,
                         socketAddresses, localAddress, reconnectingIntervals, getScheduledExecutorService(),
                         networkingOptions, getEventHandlingStrategy(), getIoFilterChainBuilder(),
-                        sslEnabled, keyStoreName, keyStorePassword, enableProtocole, cipherSuites);
+                        sslEnabled, keyStoreName, keyStorePassword, enableProtocole, cipherSuites,
+                        new FIXProtocolCodecFactory(session.isRawMessageDecoding(), getBufferPool()));
 
                 initiators.add(ioSessionInitiator);
             }
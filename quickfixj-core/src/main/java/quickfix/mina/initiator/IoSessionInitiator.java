@@ -33,7 +33,6 @@ import org.apache.mina.core.service.IoConnector;
 import org.apache.mina.core.filterchain.IoFilterChainBuilder;
 import org.apache.mina.core.session.IoSession;
 import org.apache.mina.filter.ssl.SslFilter;
-import org.apache.mina.filter.codec.ProtocolCodecFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -46,6 +45,7 @@ import quickfix.mina.EventHandlingStrategy;
 import quickfix.mina.NetworkingOptions;
 import quickfix.mina.ProtocolFactory;
 import quickfix.mina.message.FIXProtocolCodecFactory;
+import quickfix.mina.message.FIXProtocolCodecFilter;
 import quickfix.mina.ssl.SSLContextFactory;
 import quickfix.mina.ssl.SSLSupport;
 
@@ -62,6 +62,18 @@ public class IoSessionInitiator {
             NetworkingOptions networkingOptions, EventHandlingStrategy eventHandlingStrategy,
             IoFilterChainBuilder userIoFilterChainBuilder, boolean sslEnabled, String keyStoreName,
             String keyStorePassword, String[] enableProtocole, String[] cipherSuites) throws ConfigError {
+        this(fixSession, socketAddresses, localAddress, reconnectIntervalInSeconds, executor,
+                networkingOptions, eventHandlingStrategy, userIoFilterChainBuilder, sslEnabled,
+                keyStoreName, keyStorePassword, enableProtocole, cipherSuites,
+                new FIXProtocolCodecFactory());
+    }
+
+    public IoSessionInitiator(Session fixSession, SocketAddress[] socketAddresses, SocketAddress localAddress,
+            int[] reconnectIntervalInSeconds, ScheduledExecutorService executor,
+            NetworkingOptions networkingOptions, EventHandlingStrategy eventHandlingStrategy,
+            IoFilterChainBuilder userIoFilterChainBuilder, boolean sslEnabled, String keyStoreName,
+            String keyStorePassword, String[] enableProtocole, String[] cipherSuites,
+            FIXProtocolCodecFactory codecFactory) throws ConfigError {
         this.executor = executor;
         final long[] reconnectIntervalInMillis = new long[reconnectIntervalInSeconds.length];
         for (int ii = 0; ii != reconnectIntervalInSeconds.length; ++ii) {
@@ -70,7 +82,8 @@ public class IoSessionInitiator {
         try {
             reconnectTask = new ConnectTask(sslEnabled, socketAddresses, localAddress, userIoFilterChainBuilder,
                     fixSession, reconnectIntervalInMillis, networkingOptions,
-                    eventHandlingStrategy, keyStoreName, keyStorePassword, enableProtocole, cipherSuites);
+                    eventHandlingStrategy, keyStoreName, keyStorePassword, enableProtocole, cipherSuites,
+                    codecFactory);
         } catch (GeneralSecurityException e) {
             throw new ConfigError(e);
         }
@@ -100,7 +113,8 @@ public class IoSessionInitiator {
                 SocketAddress localAddress, IoFilterChainBuilder userIoFilterChainBuilder, Session fixSession,
                 long[] reconnectIntervalInMillis, NetworkingOptions networkingOptions,
                 EventHandlingStrategy eventHandlingStrategy, String keyStoreName,
-                String keyStorePassword, String[] enableProtocole, String[] cipherSuites) throws ConfigError, GeneralSecurityException {
+                String keyStorePassword, String[] enableProtocole, String[] cipherSuites,
+                FIXProtocolCodecFactory codecFactory) throws ConfigError, GeneralSecurityException {
             this.socketAddresses = socketAddresses;
             this.localAddress = localAddress;
             this.fixSession = fixSession;
@@ -118,7 +132,7 @@ public class IoSessionInitiator {
             }
 
             ioFilterChainBuilder.addLast(FIXProtocolCodecFactory.FILTER_NAME,
-                    new ProtocolCodecFilter(new FIXProtocolCodecFactory()));
+                    new FIXProtocolCodecFilter(codecFactory));
 
             ioConnector.setFilterChainBuilder(ioFilterChainBuilder);
             ioHandler = new InitiatorIoHandler(fixSession, networkingOptions,
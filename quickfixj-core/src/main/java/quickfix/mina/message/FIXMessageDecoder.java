@@ -23,6 +23,8 @@ import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
@@ -39,11 +41,14 @@ import org.quickfixj.CharsetSupport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import quickfix.RawMessage;
 import quickfix.mina.CriticalProtocolCodecException;
 
 /**
  * Detects and decodes FIX message strings in an incoming data stream. The
  * message string is then passed to MINA IO handlers for further processing.
+ * Optionally, the message is passed on as a {@link RawMessage} so that it
+ * can be parsed without first being decoded into a String.
  */
 public class FIXMessageDecoder implements MessageDecoder {
     private static final char SOH = '\001';
@@ -54,6 +59,9 @@ public class FIXMessageDecoder implements MessageDecoder {
     private final byte[] HEADER_PATTERN;
     private final byte[] CHECKSUM_PATTERN;
     private final byte[] LOGON_PATTERN;
+    private final int headerMinLength;
+    private final int checksumMinLength;
+    private final int logonMinLength;
 
     // Parsing states
     private static final int SEEKING_HEADER = 1;
@@ -68,25 +76,9 @@ public class FIXMessageDecoder implements MessageDecoder {
     private int state;
     private int bodyLength;
     private int position;
+    private int matchLength;
     private final String charsetEncoding;
-
-    static class BufPos {
-        int _offset;
-        int _length;
-
-        /**
-         * @param offset
-         * @param length
-         */
-        public BufPos(int offset, int length) {
-            _offset = offset;
-            _length = length;
-        }
-
-        public String toString() {
-            return _offset + "," + _length;
-        }
-    }
+    private final boolean rawMessages;
 
     private void resetState() {
         state = SEEKING_HEADER;
@@ -103,16 +95,31 @@ public class FIXMessageDecoder implements MessageDecoder {
     }
 
     public FIXMessageDecoder(String charset, String delimiter) throws UnsupportedEncodingException {
+        this(charset, delimiter, false);
+    }
+
+    /**
+     * @param charset the charset used to decode message strings
+     * @param delimiter the field delimiter
+     * @param rawMessages if true, each decoded message is passed on as a
+     *        {@link RawMessage} holding the received bytes instead of a String
+     * @throws UnsupportedEncodingException
+     */
+    public FIXMessageDecoder(String charset, String delimiter, boolean rawMessages)
+            throws UnsupportedEncodingException {
         charsetEncoding = CharsetSupport.validate(charset);
+        this.rawMessages = rawMessages;
         HEADER_PATTERN = getBytes("8=FIXt.?.?" + delimiter + "9=");
         CHECKSUM_PATTERN = getBytes("10=???" + delimiter);
         LOGON_PATTERN = getBytes("\00135=A" + delimiter);
+        headerMinLength = minMaskLength(HEADER_PATTERN);
+        checksumMinLength = minMaskLength(CHECKSUM_PATTERN);
+        logonMinLength = minMaskLength(LOGON_PATTERN);
         resetState();
     }
 
     public MessageDecoderResult decodable(IoSession session, IoBuffer in) {
-        BufPos bufPos = indexOf(in, in.position(), HEADER_PATTERN);
-        int headerOffset = bufPos._offset;
+        int headerOffset = indexOf(in, in.position(), HEADER_PATTERN, headerMinLength);
         return headerOffset != -1 ? MessageDecoderResult.OK :
             (in.remaining() > MAX_UNDECODED_DATA_LENGTH ? MessageDecoderResult.NOT_OK : MessageDecoderResult.NEED_DATA);
     }
@@ -148,8 +155,7 @@ public class FIXMessageDecoder implements MessageDecoder {
             while (in.hasRemaining() && !messageFound) {
                 if (state == SEEKING_HEADER) {
 
-                    BufPos bufPos = indexOf(in, position, HEADER_PATTERN);
-                    int headerOffset = bufPos._offset;
+                    int headerOffset = indexOf(in, position, HEADER_PATTERN, headerMinLength);
                     if (headerOffset == -1) {
                         break;
                     }
@@ -159,7 +165,7 @@ public class FIXMessageDecoder implements MessageDecoder {
                         log.debug("detected header: " + getBufferDebugInfo(in));
                     }
 
-                    position = headerOffset + bufPos._length;
+                    position = headerOffset + matchLength;
                     state = PARSING_LENGTH;
                 }
 
@@ -201,7 +207,7 @@ public class FIXMessageDecoder implements MessageDecoder {
                 }
 
                 if (state == PARSING_CHECKSUM) {
-                    if (startsWith(in, position, CHECKSUM_PATTERN) > 0) {
+                    if (startsWith(in, position, CHECKSUM_PATTERN, checksumMinLength) > 0) {
                         // we are trying to parse the checksum but should
                         // check if the CHECKSUM_PATTERN is preceded by SOH
                         // or if the pattern just occurs inside of another field
@@ -228,11 +234,11 @@ public class FIXMessageDecoder implements MessageDecoder {
                             break;
                         }
                     }
-                    String messageString = getMessageString(in);
+                    Object message = rawMessages ? getRawMessage(in) : getMessageString(in);
                     if (log.isDebugEnabled()) {
-                        log.debug("parsed message: " + getBufferDebugInfo(in) + " " + messageString);
+                        log.debug("parsed message: " + getBufferDebugInfo(in) + " " + message);
                     }
-                    out.write(messageString);
+                    out.write(message);
                     state = SEEKING_HEADER;
                     bodyLength = 0;
                     messageFound = true;
@@ -284,6 +290,13 @@ public class FIXMessageDecoder implements MessageDecoder {
         return new String(data, charsetEncoding);
     }
 
+    private RawMessage getRawMessage(IoBuffer buffer) {
+        // the buffer is compacted once decoding returns, so the frame must be copied
+        byte[] data = new byte[position - buffer.position()];
+        buffer.get(data);
+        return new RawMessage(data);
+    }
+
     private String getMessageStringForError(IoBuffer buffer) throws UnsupportedEncodingException {
         int initialPosition = buffer.position();
         byte[] data = new byte[buffer.limit() - initialPosition];
@@ -306,18 +319,66 @@ public class FIXMessageDecoder implements MessageDecoder {
     }
 
     private boolean isLogon(IoBuffer buffer) {
-        BufPos bufPos = indexOf(buffer, buffer.position(), LOGON_PATTERN);
-        return bufPos._offset != -1;
+        return indexOf(buffer, buffer.position(), LOGON_PATTERN, logonMinLength) != -1;
+    }
+
+    /**
+     * Finds the first match of the pattern at or after the position. The
+     * length of the match is left in matchLength.
+     *
+     * @return the offset of the match or -1
+     */
+    private int indexOf(IoBuffer buffer, int position, byte[] data, int minLength) {
+        final int limit = buffer.limit() - minLength + 1;
+        for (int offset = position; (offset = indexOf(buffer, offset, limit, data[0])) != -1; offset++) {
+            int length = startsWith(buffer, offset, data, minLength);
+            if (length > 0) {
+                matchLength = length;
+                return offset;
+            }
+        }
+        return -1;
     }
 
-    private static BufPos indexOf(IoBuffer buffer, int position, byte[] data) {
-        for (int offset = position, limit = buffer.limit() - minMaskLength(data) + 1; offset < limit; offset++) {
-            int length;
-            if (buffer.get(offset) == data[0] && (length = startsWith(buffer, offset, data)) > 0) {
-                return new BufPos(offset, length);
+    /**
+     * Finds the first occurrence of a byte between the offset and the limit.
+     * Heap buffers are scanned in their backing array. Other buffers are
+     * scanned a long at a time, testing all eight bytes of each long at once.
+     *
+     * @return the index of the byte or -1
+     */
+    static int indexOf(IoBuffer buffer, int offset, int limit, byte b) {
+        if (buffer.hasArray()) {
+            final byte[] array = buffer.array();
+            final int arrayOffset = buffer.arrayOffset();
+            for (int i = offset + arrayOffset, end = limit + arrayOffset; i < end; i++) {
+                if (array[i] == b) {
+                    return i - arrayOffset;
+                }
+            }
+            return -1;
+        }
+
+        final ByteBuffer buf = buffer.buf();
+        final boolean bigEndian = buf.order() == ByteOrder.BIG_ENDIAN;
+        final long pattern = (b & 0xFFL) * 0x0101010101010101L;
+        for (; offset <= limit - 8; offset += 8) {
+            // the bytes equal to b are zero in x, and only they have their
+            // high bit set in found
+            final long x = buf.getLong(offset) ^ pattern;
+            final long found = ~(((x & 0x7F7F7F7F7F7F7F7FL) + 0x7F7F7F7F7F7F7F7FL) | x
+                    | 0x7F7F7F7F7F7F7F7FL);
+            if (found != 0) {
+                return offset + ((bigEndian ? Long.numberOfLeadingZeros(found)
+                        : Long.numberOfTrailingZeros(found)) >>> 3);
+            }
+        }
+        for (; offset < limit; offset++) {
+            if (buf.get(offset) == b) {
+                return offset;
             }
         }
-        return new BufPos(-1, 0);
+        return -1;
     }
 
     /**
@@ -327,10 +388,11 @@ public class FIXMessageDecoder implements MessageDecoder {
      * @param buffer
      * @param bufferOffset
      * @param data
-     * @return
+     * @param minLength the minimum length of a match, see {@link #minMaskLength(byte[])}
+     * @return the length of the match or -1
      */
-    private static int startsWith(IoBuffer buffer, int bufferOffset, byte[] data) {
-        if (bufferOffset + minMaskLength(data) > buffer.limit()) {
+    private static int startsWith(IoBuffer buffer, int bufferOffset, byte[] data, int minLength) {
+        if (bufferOffset + minLength > buffer.limit()) {
             return -1;
         }
         final int initOffset = bufferOffset;
@@ -414,7 +476,7 @@ public class FIXMessageDecoder implements MessageDecoder {
         decode(null, IoBuffer.wrap(memoryMappedBuffer), new ProtocolDecoderOutput() {
 
             public void write(Object message) {
-                listener.onMessage((String) message);
+                listener.onMessage(message.toString());
             }
 
             public void flush(IoFilter.NextFilter nextFilter, IoSession ioSession) {
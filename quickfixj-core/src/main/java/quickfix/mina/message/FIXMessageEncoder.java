@@ -19,7 +19,8 @@
 
 package quickfix.mina.message;
 
-import java.io.UnsupportedEncodingException;
+import java.nio.BufferOverflowException;
+import java.nio.charset.Charset;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
@@ -32,15 +33,20 @@ import org.apache.mina.filter.codec.demux.MessageEncoder;
 import org.quickfixj.CharsetSupport;
 
 import quickfix.Message;
+import quickfix.MessageUtils;
 
 /**
  * Encodes a Message object or message string as a byte array to be
- * transmitted on MINA connection.
+ * transmitted on MINA connection. Messages are encoded directly into the
+ * buffer without creating an intermediate String or byte array.
  */
 public class FIXMessageEncoder implements MessageEncoder<Object> {
 
     private static final Set<Class<?>> TYPES;
-    private final String charsetEncoding;
+    private static final int INITIAL_BUFFER_SIZE = 512;
+    private final Charset charset;
+    private final IoBufferPool bufferPool;
+    private int bufferSize = INITIAL_BUFFER_SIZE;
 
     static {
         Set<Class<?>> types = new HashSet<Class<?>>();
@@ -50,7 +56,15 @@ public class FIXMessageEncoder implements MessageEncoder<Object> {
     }
 
     public FIXMessageEncoder() {
-        charsetEncoding = CharsetSupport.getCharset();
+        this(null);
+    }
+
+    /**
+     * @param bufferPool the pool the buffers are allocated from, or null
+     */
+    public FIXMessageEncoder(IoBufferPool bufferPool) {
+        charset = CharsetSupport.getCharsetInstance();
+        this.bufferPool = bufferPool;
     }
 
     public static Set<Class<?>> getMessageTypes() {
@@ -59,26 +73,47 @@ public class FIXMessageEncoder implements MessageEncoder<Object> {
 
     public void encode(IoSession session, Object message, ProtocolEncoderOutput out)
             throws ProtocolCodecException {
-        String fixMessageString;
+        IoBuffer buffer;
         if (message instanceof String) {
-            fixMessageString = (String) message;
+            buffer = encodeString((String) message);
         } else if (message instanceof Message) {
-            fixMessageString = message.toString();
+            buffer = encodeMessage((Message) message);
         } else {
             throw new ProtocolCodecException("Invalid FIX message object type: "
                     + message.getClass());
         }
+        out.write(buffer);
+    }
 
-        byte[] bytes;
-        try {
-            bytes = fixMessageString.getBytes(charsetEncoding);
-        } catch (UnsupportedEncodingException e) {
-            throw new ProtocolCodecException(e);
+    private IoBuffer encodeString(String message) {
+        if (!CharsetSupport.isStringEquivalent(charset)) {
+            return IoBuffer.wrap(message.getBytes(charset));
         }
-
-        IoBuffer buffer = IoBuffer.allocate(bytes.length);
-        buffer.put(bytes);
+        final IoBuffer buffer = allocate(message.length());
+        MessageUtils.encode(charset, message, buffer.buf());
         buffer.flip();
-        out.write(buffer);
+        return buffer;
+    }
+
+    private IoBuffer encodeMessage(Message message) {
+        while (true) {
+            final IoBuffer buffer = allocate(bufferSize);
+            try {
+                final int start = message.encode(buffer.buf());
+                buffer.flip();
+                buffer.position(start);
+                return buffer;
+            } catch (BufferOverflowException e) {
+                if (bufferPool != null) {
+                    bufferPool.release(buffer);
+                }
+                // remembered for the following messages of this session
+                bufferSize *= 2;
+            }
+        }
+    }
+
+    private IoBuffer allocate(int capacity) {
+        return bufferPool != null ? bufferPool.allocate(capacity) : IoBuffer.allocate(capacity);
     }
 }
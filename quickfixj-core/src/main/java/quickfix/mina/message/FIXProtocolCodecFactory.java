@@ -20,6 +20,11 @@
 package quickfix.mina.message;
 
 import org.apache.mina.filter.codec.demux.DemuxingProtocolCodecFactory;
+import org.apache.mina.filter.codec.demux.MessageDecoder;
+import org.apache.mina.filter.codec.demux.MessageDecoderFactory;
+import org.apache.mina.filter.codec.demux.MessageEncoder;
+import org.apache.mina.filter.codec.demux.MessageEncoderFactory;
+import org.quickfixj.CharsetSupport;
 
 /**
  * Provides the FIX codecs to MINA.
@@ -27,8 +32,49 @@ import org.apache.mina.filter.codec.demux.DemuxingProtocolCodecFactory;
 public class FIXProtocolCodecFactory extends DemuxingProtocolCodecFactory {
     public static final String FILTER_NAME = "FIXCodec";
 
+    private final IoBufferPool bufferPool;
+
     public FIXProtocolCodecFactory() {
-        addMessageDecoder(FIXMessageDecoder.class);
-        addMessageEncoder(FIXMessageEncoder.getMessageTypes(), FIXMessageEncoder.class);
+        this(false);
+    }
+
+    /**
+     * @param rawMessageDecoding if true, decoded messages are passed on as
+     *        {@link quickfix.RawMessage} instances instead of Strings
+     */
+    public FIXProtocolCodecFactory(boolean rawMessageDecoding) {
+        this(rawMessageDecoding, null);
+    }
+
+    /**
+     * @param rawMessageDecoding if true, decoded messages are passed on as
+     *        {@link quickfix.RawMessage} instances instead of Strings
+     * @param bufferPool the pool for encoded and received buffers, or null
+     * @see FIXProtocolCodecFilter
+     */
+    public FIXProtocolCodecFactory(boolean rawMessageDecoding, final IoBufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+        if (rawMessageDecoding) {
+            addMessageDecoder(new MessageDecoderFactory() {
+                public MessageDecoder getDecoder() throws Exception {
+                    return new FIXMessageDecoder(CharsetSupport.getCharset(), "\001", true);
+                }
+            });
+        } else {
+            addMessageDecoder(FIXMessageDecoder.class);
+        }
+        if (bufferPool != null) {
+            addMessageEncoder(FIXMessageEncoder.getMessageTypes(), new MessageEncoderFactory<Object>() {
+                public MessageEncoder<Object> getEncoder() throws Exception {
+                    return new FIXMessageEncoder(bufferPool);
+                }
+            });
+        } else {
+            addMessageEncoder(FIXMessageEncoder.getMessageTypes(), FIXMessageEncoder.class);
+        }
+    }
+
+    public IoBufferPool getBufferPool() {
+        return bufferPool;
     }
 }
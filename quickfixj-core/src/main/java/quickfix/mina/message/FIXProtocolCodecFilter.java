@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix.mina.message;
+
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.core.write.WriteRequest;
+import org.apache.mina.filter.codec.ProtocolCodecFilter;
+
+/**
+ * Codec filter for FIX messages. If the codec factory has a buffer pool, the
+ * received buffers are returned to the pool once they have been decoded, and
+ * the encoded buffers once they have been written.
+ */
+public class FIXProtocolCodecFilter extends ProtocolCodecFilter {
+    private final IoBufferPool bufferPool;
+
+    public FIXProtocolCodecFilter(FIXProtocolCodecFactory codecFactory) {
+        super(codecFactory);
+        bufferPool = codecFactory.getBufferPool();
+    }
+
+    @Override
+    public void messageReceived(NextFilter nextFilter, IoSession session, Object message)
+            throws Exception {
+        try {
+            super.messageReceived(nextFilter, session, message);
+        } finally {
+            // the decoder copies any partial message it keeps
+            if (bufferPool != null && message instanceof IoBuffer) {
+                bufferPool.release((IoBuffer) message);
+            }
+        }
+    }
+
+    @Override
+    public void messageSent(NextFilter nextFilter, IoSession session, WriteRequest writeRequest)
+            throws Exception {
+        final Object message = writeRequest.getMessage();
+        super.messageSent(nextFilter, session, writeRequest);
+        if (bufferPool != null && message instanceof IoBuffer) {
+            bufferPool.release((IoBuffer) message);
+        }
+    }
+}
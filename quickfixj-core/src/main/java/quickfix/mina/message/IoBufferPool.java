@@ -0,0 +1,266 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix.mina.message;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.buffer.IoBufferAllocator;
+import org.apache.mina.core.buffer.SimpleBufferAllocator;
+
+/**
+ * A pool of IoBuffers used by the FIX codec. Buffers are pooled in power of two
+ * size classes from 64 bytes to 64 KB, either all on the heap or all direct.
+ * <p>
+ * Each thread has its own cache of released buffers, backed by a cache shared
+ * by all threads. IoProcessor threads allocate and release their read buffers
+ * in their own cache. Buffers for outgoing messages are allocated by the
+ * sending threads and released by the IoProcessor threads once written, so
+ * they reach the senders through the shared cache.
+ * <p>
+ * MINA touches a written buffer after its messageSent event, so a released
+ * buffer is kept in the releasing thread's cache until a later release moves
+ * it to the shared cache.
+ * <p>
+ * The pool can also be installed as the MINA buffer allocator, so the buffers
+ * allocated by MINA itself come from the pool.
+ */
+public class IoBufferPool implements IoBufferAllocator {
+    public static final int DEFAULT_THREAD_CACHE_SIZE = 16;
+    public static final int DEFAULT_SHARED_CACHE_SIZE = 256;
+
+    private static final int MIN_SIZE_SHIFT = 6;
+    private static final int MAX_SIZE_SHIFT = 16;
+    private static final int SIZE_CLASSES = MAX_SIZE_SHIFT - MIN_SIZE_SHIFT + 1;
+
+    private final SimpleBufferAllocator allocator = new SimpleBufferAllocator();
+    private final boolean direct;
+    private final int threadCacheSize;
+    private final Cache sharedCache;
+    private final ThreadLocal<Cache> threadCache = new ThreadLocal<Cache>() {
+        @Override
+        protected Cache initialValue() {
+            return new Cache(threadCacheSize);
+        }
+    };
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong discards = new AtomicLong();
+
+    public IoBufferPool(boolean direct) {
+        this(direct, DEFAULT_THREAD_CACHE_SIZE, DEFAULT_SHARED_CACHE_SIZE);
+    }
+
+    /**
+     * @param direct whether pooled buffers are direct buffers
+     * @param threadCacheSize the number of buffers per size class cached by each thread
+     * @param sharedCacheSize the number of buffers per size class in the shared cache
+     */
+    public IoBufferPool(boolean direct, int threadCacheSize, int sharedCacheSize) {
+        if (threadCacheSize < 1) {
+            throw new IllegalArgumentException("thread cache size must be at least 1");
+        }
+        this.direct = direct;
+        this.threadCacheSize = threadCacheSize;
+        sharedCache = new Cache(sharedCacheSize);
+    }
+
+    public boolean isDirect() {
+        return direct;
+    }
+
+    /**
+     * Allocates a buffer of the pool's type. The capacity of the buffer may be
+     * larger than requested but its limit is the requested capacity.
+     *
+     * @param capacity the requested capacity
+     * @return the buffer
+     */
+    public IoBuffer allocate(int capacity) {
+        return allocate(capacity, direct);
+    }
+
+    public IoBuffer allocate(int capacity, boolean direct) {
+        final int sizeClass = sizeClass(capacity);
+        if (sizeClass == -1 || direct != this.direct) {
+            misses.incrementAndGet();
+            return allocator.allocate(capacity, direct);
+        }
+
+        IoBuffer buffer = threadCache.get().poll(sizeClass);
+        if (buffer == null) {
+            synchronized (sharedCache) {
+                buffer = sharedCache.poll(sizeClass);
+            }
+        }
+        if (buffer == null) {
+            misses.incrementAndGet();
+            buffer = allocator.allocate(1 << (sizeClass + MIN_SIZE_SHIFT), direct);
+        } else {
+            hits.incrementAndGet();
+            buffer.clear();
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            buffer.setAutoExpand(false);
+            buffer.setAutoShrink(false);
+        }
+        buffer.limit(capacity);
+        return buffer;
+    }
+
+    public ByteBuffer allocateNioBuffer(int capacity, boolean direct) {
+        return allocator.allocateNioBuffer(capacity, direct);
+    }
+
+    public IoBuffer wrap(ByteBuffer nioBuffer) {
+        return allocator.wrap(nioBuffer);
+    }
+
+    /**
+     * Returns a buffer to the pool. The buffer must not be used by the caller,
+     * or anybody else, after it has been released. Buffers that do not fit
+     * the pool are discarded.
+     *
+     * @param buffer the buffer
+     */
+    public void release(IoBuffer buffer) {
+        final int capacity = buffer.capacity();
+        final int sizeClass = sizeClass(capacity);
+        if (sizeClass == -1 || capacity != 1 << (sizeClass + MIN_SIZE_SHIFT)
+                || buffer.isDirect() != direct || buffer.isDerived() || buffer.isReadOnly()) {
+            discards.incrementAndGet();
+            return;
+        }
+
+        final IoBuffer evicted = threadCache.get().push(sizeClass, buffer);
+        if (evicted != null) {
+            boolean added;
+            synchronized (sharedCache) {
+                added = sharedCache.offer(sizeClass, evicted);
+            }
+            if (!added) {
+                discards.incrementAndGet();
+            }
+        }
+    }
+
+    public void dispose() {
+        synchronized (sharedCache) {
+            sharedCache.clear();
+        }
+    }
+
+    /**
+     * @return the number of allocations served from the pool
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of allocations that created a new buffer
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of released buffers that did not fit the pool
+     */
+    public long getDiscards() {
+        return discards.get();
+    }
+
+    @Override
+    public String toString() {
+        return "IoBufferPool[direct=" + direct + ", hits=" + hits + ", misses=" + misses
+                + ", discards=" + discards + "]";
+    }
+
+    private static int sizeClass(int capacity) {
+        if (capacity > 1 << MAX_SIZE_SHIFT) {
+            return -1;
+        }
+        int sizeClass = 0;
+        while (capacity > 1 << (sizeClass + MIN_SIZE_SHIFT)) {
+            sizeClass++;
+        }
+        return sizeClass;
+    }
+
+    /**
+     * Released buffers of each size class, newest last.
+     */
+    private static final class Cache {
+        private final IoBuffer[][] buffers;
+        private final int[] counts = new int[SIZE_CLASSES];
+
+        Cache(int size) {
+            buffers = new IoBuffer[SIZE_CLASSES][size];
+        }
+
+        IoBuffer poll(int sizeClass) {
+            final int count = counts[sizeClass];
+            if (count == 0) {
+                return null;
+            }
+            final IoBuffer buffer = buffers[sizeClass][count - 1];
+            buffers[sizeClass][count - 1] = null;
+            counts[sizeClass] = count - 1;
+            return buffer;
+        }
+
+        boolean offer(int sizeClass, IoBuffer buffer) {
+            final int count = counts[sizeClass];
+            if (count == buffers[sizeClass].length) {
+                return false;
+            }
+            buffers[sizeClass][count] = buffer;
+            counts[sizeClass] = count + 1;
+            return true;
+        }
+
+        /**
+         * Adds the buffer, evicting the oldest buffer if the cache is full.
+         *
+         * @return the evicted buffer or null
+         */
+        IoBuffer push(int sizeClass, IoBuffer buffer) {
+            if (offer(sizeClass, buffer)) {
+                return null;
+            }
+            final IoBuffer[] classBuffers = buffers[sizeClass];
+            final IoBuffer evicted = classBuffers[0];
+            System.arraycopy(classBuffers, 1, classBuffers, 0, classBuffers.length - 1);
+            classBuffers[classBuffers.length - 1] = buffer;
+            return evicted;
+        }
+
+        void clear() {
+            for (int i = 0; i < SIZE_CLASSES; i++) {
+                Arrays.fill(buffers[i], null);
+                counts[i] = 0;
+            }
+        }
+    }
+}
@@ -21,6 +21,8 @@ package quickfix;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import junit.framework.TestCase;
 
@@ -64,6 +66,13 @@ public abstract class AbstractMessageStoreTest extends TestCase {
         return messageStoreFactory.create(sessionID);
     }
 
+    /**
+     * Creates a store for the session like the one of another process would.
+     */
+    protected MessageStore createFailoverStore() throws Exception {
+        return getMessageStoreFactory().create(sessionID);
+    }
+
     public void testMessageStoreSequenceNumbers() throws Exception {
         if (!testEnabled) {
             return;
@@ -130,13 +139,66 @@ public abstract class AbstractMessageStoreTest extends TestCase {
         assertEquals("wrong message", "message2", messages.get(1));
     }
 
+    public void testMessageStorageBatch() throws Exception {
+        if (!testEnabled || !(store instanceof BatchMessageStore)) {
+            return;
+        }
+        assertTrue("set failed", ((BatchMessageStore) store).set(111,
+                Arrays.asList("message1", "\u00E4bcf\u00F6d\u00E7\u00E9", "message3")));
+        assertTrue("set failed", store.set(114, "message4"));
+
+        store.refresh();
+
+        final ArrayList<String> messages = new ArrayList<String>();
+        store.get(100, 115, messages);
+        assertEquals("wrong messages", Arrays.asList("message1", "\u00E4bcf\u00F6d\u00E7\u00E9",
+                "message3", "message4"), messages);
+    }
+
+    public void testMessageStorageCursor() throws Exception {
+        if (!testEnabled) {
+            return;
+        }
+        assertTrue("set failed", store.set(111, "message1"));
+        assertTrue("set failed", store.set(113, "\u00E4bcf\u00F6d\u00E7\u00E9"));
+        assertTrue("set failed", store.set(114, "message3"));
+        assertTrue("set failed", store.set(120, "message4"));
+
+        store.refresh();
+
+        final ArrayList<String> expected = new ArrayList<String>();
+        store.get(100, 115, expected);
+        assertEquals("wrong # of messages", 3, expected.size());
+        assertEquals("wrong messages", expected, readCursor(new ChunkedMessageCursor(store, 100, 115, 2)));
+        if (store instanceof StreamingMessageStore) {
+            assertEquals("wrong messages", expected,
+                    readCursor(((StreamingMessageStore) store).openCursor(100, 115)));
+            assertEquals("wrong messages", Arrays.asList("message4"),
+                    readCursor(((StreamingMessageStore) store).openCursor(115, 200)));
+        }
+    }
+
+    private List<String> readCursor(StoredMessageCursor cursor) throws IOException {
+        final ArrayList<String> messages = new ArrayList<String>();
+        try {
+            String message;
+            while ((message = cursor.next()) != null) {
+                messages.add(message);
+            }
+            assertNull(cursor.next());
+        } finally {
+            cursor.close();
+        }
+        return messages;
+    }
+
     public void testRefreshableMessageStore() throws Exception {
         if (!testEnabled) {
             return;
         }
 
         if (!(store instanceof MemoryStore)) {
-            final MessageStore failoverStore = getMessageStoreFactory().create(sessionID);
+            final MessageStore failoverStore = createFailoverStore();
             try {
                 final MessageStore primaryStore = store;
 
@@ -0,0 +1,259 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class AsyncJdbcLogTest extends TestCase {
+    private Connection connection;
+    private SessionSettings settings;
+    private SessionID sessionID;
+    private File spillFile;
+    private BlockingJdbcLog blockingLog;
+    private AsyncJdbcLog log;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        connection = JdbcTestSupport.getConnection();
+        settings = new SessionSettings();
+        JdbcTestSupport.setHypersonicSettings(settings);
+        JdbcTestSupport.loadSQL(connection, "config/sql/hsqldb/messages_log_table.sql",
+                new JdbcTestSupport.HypersonicPreprocessor(null));
+        JdbcTestSupport.loadSQL(connection, "config/sql/hsqldb/event_log_table.sql",
+                new JdbcTestSupport.HypersonicPreprocessor(null));
+        long now = System.currentTimeMillis();
+        sessionID = new SessionID("FIX.4.2", "SENDER-" + now, "TARGET-" + now);
+        settings.setString(sessionID, "ConnectionType", "acceptor");
+        spillFile = new File(System.getProperty("java.io.tmpdir"), "AsyncJdbcLogTest-" + now
+                + ".logspill");
+    }
+
+    protected void tearDown() throws Exception {
+        if (blockingLog != null) {
+            blockingLog.release.countDown();
+        }
+        if (log != null) {
+            log.close();
+        }
+        spillFile.delete();
+        new File(spillFile.getPath() + ".drain").delete();
+        connection.close();
+        super.tearDown();
+    }
+
+    public void testCreatedByFactory() throws Exception {
+        settings.setBool(sessionID, JdbcSetting.SETTING_JDBC_LOG_ASYNC, true);
+        settings.setString(sessionID, JdbcSetting.SETTING_JDBC_LOG_ASYNC_OVERFLOW_POLICY,
+                "drop_events_first");
+        log = (AsyncJdbcLog) new JdbcLogFactory(settings).create(sessionID);
+        assertEquals(AsyncJdbcLog.OverflowPolicy.DROP_EVENTS_FIRST, log.getOverflowPolicy());
+
+        log.onIncoming("INCOMING");
+        log.onOutgoing("OUTGOING");
+        log.onEvent("EVENT");
+        log.flush();
+        assertEquals(0, log.getQueuedCount());
+        assertEquals(2, getRowCount("messages_log"));
+        assertEquals(1, getRowCount("event_log"));
+
+        log.clear();
+        assertEquals(0, getRowCount("messages_log"));
+        assertEquals(0, getRowCount("event_log"));
+    }
+
+    public void testInvalidOverflowPolicy() throws Exception {
+        settings.setBool(sessionID, JdbcSetting.SETTING_JDBC_LOG_ASYNC, true);
+        settings.setString(sessionID, JdbcSetting.SETTING_JDBC_LOG_ASYNC_OVERFLOW_POLICY,
+                "DISCARD");
+        try {
+            new JdbcLogFactory(settings).create(sessionID);
+            fail("expected RuntimeError");
+        } catch (RuntimeError e) {
+            assertTrue(e.getCause() instanceof ConfigError);
+        }
+    }
+
+    public void testCloseInsertsQueuedEntries() throws Exception {
+        log = createLog(1000, 10, AsyncJdbcLog.OverflowPolicy.BLOCK);
+        for (int i = 0; i < 95; i++) {
+            log.onIncoming("INCOMING" + i);
+        }
+        blockingLog.release.countDown();
+        log.close();
+        assertEquals(95, getRowCount("messages_log"));
+        assertTrue(blockingLog.batches >= 10);
+
+        log.onEvent("EVENT");
+        assertEquals(1, log.getDroppedEventCount());
+        assertEquals(0, getRowCount("event_log"));
+    }
+
+    public void testDropEventsFirst() throws Exception {
+        log = createLog(2, 10, AsyncJdbcLog.OverflowPolicy.DROP_EVENTS_FIRST);
+        log.onEvent("EVENT1");
+        assertTrue(blockingLog.writing.await(5, TimeUnit.SECONDS));
+        // the writer is blocked inserting the first event
+        log.onEvent("EVENT2");
+        log.onIncoming("INCOMING1");
+        assertEquals(2, log.getQueuedCount());
+
+        log.onIncoming("INCOMING2");
+        assertEquals(1, log.getDroppedEventCount());
+        log.onEvent("EVENT3");
+        assertEquals(2, log.getDroppedEventCount());
+        log.onOutgoing("OUTGOING1");
+        assertEquals(1, log.getDroppedMessageCount());
+
+        blockingLog.release.countDown();
+        log.flush();
+        assertEquals(2, getRowCount("messages_log"));
+        assertEquals(1, getRowCount("event_log"));
+        assertEquals(0, getRowCount("event_log WHERE text = 'EVENT2'"));
+    }
+
+    public void testSpillToFile() throws Exception {
+        log = createLog(1, 10, AsyncJdbcLog.OverflowPolicy.SPILL_TO_FILE);
+        log.onEvent("EVENT1");
+        assertTrue(blockingLog.writing.await(5, TimeUnit.SECONDS));
+        log.onIncoming("INCOMING1");
+        log.onIncoming("INCOMING2");
+        log.onEvent("EVENT2");
+        log.onOutgoing("OUTGOING1");
+        assertEquals(3, log.getSpilledCount());
+        assertEquals(4, log.getQueuedCount());
+        assertTrue(spillFile.exists());
+
+        blockingLog.release.countDown();
+        log.flush();
+        assertEquals(0, log.getQueuedCount());
+        assertEquals(0, log.getDroppedEventCount() + log.getDroppedMessageCount());
+        assertEquals(3, getRowCount("messages_log"));
+        assertEquals(2, getRowCount("event_log"));
+        assertFalse(spillFile.exists());
+        assertEquals(0, log.getFailedCount());
+    }
+
+    public void testFailedInsert() throws Exception {
+        log = createLog(10, 10, AsyncJdbcLog.OverflowPolicy.BLOCK);
+        blockingLog.release.countDown();
+        connection.prepareStatement("DROP TABLE messages_log IF EXISTS;").execute();
+        log.onIncoming("INCOMING");
+        log.flush();
+        assertEquals(1, log.getFailedCount());
+    }
+
+    public void testSpillToFileKeepsEntriesWhileInsertsFail() throws Exception {
+        log = createLog(1, 2, AsyncJdbcLog.OverflowPolicy.SPILL_TO_FILE);
+        log.onEvent("EVENT1");
+        assertTrue(blockingLog.writing.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i <= 5; i++) {
+            log.onIncoming("INCOMING" + i);
+        }
+        assertEquals(4, log.getSpilledCount());
+        connection.prepareStatement("DROP TABLE messages_log IF EXISTS;").execute();
+        log.onOutgoing("OUTGOING1");
+
+        blockingLog.release.countDown();
+        File drainFile = new File(spillFile.getPath() + ".drain");
+        for (int i = 0; i < 50 && !drainFile.exists(); i++) {
+            Thread.sleep(100);
+        }
+        assertTrue(drainFile.exists());
+        assertEquals(1, getRowCount("event_log"));
+        assertEquals(0, log.getFailedCount());
+
+        JdbcTestSupport.loadSQL(connection, "config/sql/hsqldb/messages_log_table.sql",
+                new JdbcTestSupport.HypersonicPreprocessor(null));
+        log.flush();
+        assertEquals(6, getRowCount("messages_log"));
+        assertFalse(drainFile.exists());
+        assertEquals(0, log.getFailedCount());
+    }
+
+    public void testCloseKeepsEntriesThatCannotBeInserted() throws Exception {
+        log = createLog(10, 10, AsyncJdbcLog.OverflowPolicy.SPILL_TO_FILE);
+        blockingLog.release.countDown();
+        connection.prepareStatement("DROP TABLE messages_log IF EXISTS;").execute();
+        log.onIncoming("INCOMING1");
+        log.onIncoming("INCOMING2");
+        log.close();
+        assertEquals(0, log.getFailedCount());
+        assertTrue(new File(spillFile.getPath() + ".drain").exists());
+
+        JdbcTestSupport.loadSQL(connection, "config/sql/hsqldb/messages_log_table.sql",
+                new JdbcTestSupport.HypersonicPreprocessor(null));
+        // inserted when the log is created again
+        log = createLog(10, 10, AsyncJdbcLog.OverflowPolicy.SPILL_TO_FILE);
+        blockingLog.release.countDown();
+        log.flush();
+        assertEquals(2, getRowCount("messages_log"));
+        assertFalse(new File(spillFile.getPath() + ".drain").exists());
+    }
+
+    private AsyncJdbcLog createLog(int capacity, int batchSize,
+            AsyncJdbcLog.OverflowPolicy overflowPolicy) throws Exception {
+        blockingLog = new BlockingJdbcLog(settings, sessionID);
+        return new AsyncJdbcLog(blockingLog, sessionID, capacity, batchSize, overflowPolicy,
+                spillFile);
+    }
+
+    private int getRowCount(String table) throws SQLException {
+        Statement s = connection.createStatement();
+        try {
+            ResultSet rs = s.executeQuery("select count(*) from " + table);
+            rs.next();
+            return rs.getInt(1);
+        } finally {
+            s.close();
+        }
+    }
+
+    private static class BlockingJdbcLog extends JdbcLog {
+        private final CountDownLatch writing = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private volatile int batches;
+
+        BlockingJdbcLog(SessionSettings settings, SessionID sessionID) throws Exception {
+            super(settings, sessionID, null);
+        }
+
+        @Override
+        void insert(List<Record> records) throws SQLException {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new SQLException(e.toString());
+            }
+            batches++;
+            super.insert(new ArrayList<Record>(records));
+        }
+    }
+}
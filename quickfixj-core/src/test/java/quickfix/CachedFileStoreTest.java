@@ -20,7 +20,10 @@
 package quickfix;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 
 public class CachedFileStoreTest extends AbstractMessageStoreTest {
 
@@ -57,6 +60,30 @@ public class CachedFileStoreTest extends AbstractMessageStoreTest {
         assertEquals(321, store.getNextTargetMsgSeqNum());
     }
 
+    public void testRangesBeyondTheCachedMessages() throws Exception {
+        CachedFileStore store = (CachedFileStore) getStore();
+        for (int i = 1; i <= 150; i++) {
+            store.set(i, "message" + i);
+        }
+        List<String> messages = new ArrayList<String>();
+        store.get(1, 150, messages);
+        assertEquals(150, messages.size());
+        messages.clear();
+        store.get(140, 160, messages);
+        assertEquals(Arrays.asList("message140", "message141", "message142", "message143",
+                "message144", "message145", "message146", "message147", "message148",
+                "message149", "message150"), messages);
+
+        store.closeFiles();
+        store.initialize(false);
+        messages.clear();
+        store.get(148, 150, messages);
+        assertEquals(Arrays.asList("message148", "message149", "message150"), messages);
+        messages.clear();
+        store.get(40, 41, messages);
+        assertEquals(Arrays.asList("message40", "message41"), messages);
+    }
+
     protected void closeMessageStore(MessageStore store) throws IOException {
         ((CachedFileStore) store).closeFiles();
     }
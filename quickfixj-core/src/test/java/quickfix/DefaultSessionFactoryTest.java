@@ -111,6 +111,34 @@ public class DefaultSessionFactoryTest {
                 is(notNullValue()));
     }
 
+    @Test
+    public void testRawMessageDecoding() throws Exception {
+        assertFalse(factory.create(sessionID, settings).isRawMessageDecoding());
+
+        settings.setBool(sessionID, Session.SETTING_RAW_MESSAGE_DECODING, true);
+        assertTrue(factory.create(sessionID, settings).isRawMessageDecoding());
+    }
+
+    @Test
+    public void testTimestampPrecision() throws Exception {
+        assertNull(factory.create(sessionID, settings).getTimestampPrecision());
+
+        settings.setString(sessionID, Session.SETTING_TIMESTAMP_PRECISION, "MICROS");
+        assertEquals(UtcTimestampPrecision.MICROS,
+                factory.create(sessionID, settings).getTimestampPrecision());
+
+        settings.setString(sessionID, Session.SETTING_TIMESTAMP_PRECISION, "picos");
+        createSessionAndAssertConfigError("invalid precision", "Invalid TimeStampPrecision: picos");
+    }
+
+    @Test
+    public void testMessagePoolSize() throws Exception {
+        assertEquals(0, factory.create(sessionID, settings).getMessagePoolSize());
+
+        settings.setLong(sessionID, Session.SETTING_MESSAGE_POOL_SIZE, 16);
+        assertEquals(16, factory.create(sessionID, settings).getMessagePoolSize());
+    }
+
     @Test
     public void testNoConnectionType() throws Exception {
         settings.removeSetting(sessionID, SessionFactory.SETTING_CONNECTION_TYPE);
@@ -23,10 +23,12 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicReference;
 
 import quickfix.field.converter.BooleanConverter;
 import quickfix.field.converter.CharConverter;
 import quickfix.field.converter.DoubleConverter;
+import quickfix.field.converter.FixedDecimalConverter;
 import quickfix.field.converter.IntConverter;
 import quickfix.field.converter.UtcDateOnlyConverter;
 import quickfix.field.converter.UtcTimeOnlyConverter;
@@ -123,6 +125,60 @@ public class FieldConvertersTest extends TestCase {
         assertEquals("0.0", DoubleConverter.convert(0, 1));
     }
 
+    public void testFixedDecimalConversion() throws Exception {
+        assertEquals("123.45", FixedDecimalConverter.convert(12345, 2));
+        assertEquals("-0.05", FixedDecimalConverter.convert(-5, 2));
+        assertEquals("0", FixedDecimalConverter.convert(0, 0));
+        assertEquals("0.000", FixedDecimalConverter.convert(0, 3));
+        assertEquals("9223372036854775807", FixedDecimalConverter.convert(Long.MAX_VALUE, 0));
+        assertEquals("-9.223372036854775808", FixedDecimalConverter.convert(Long.MIN_VALUE, 18));
+
+        assertEquals(12345, FixedDecimalConverter.convert("123.45", 2));
+        assertEquals(1234500, FixedDecimalConverter.convert("123.45", 4));
+        assertEquals(12345, FixedDecimalConverter.convert("123.4500", 2));
+        assertEquals(-500, FixedDecimalConverter.convert("-5", 2));
+        assertEquals(50, FixedDecimalConverter.convert(".5", 2));
+        assertEquals(500, FixedDecimalConverter.convert("5.", 2));
+        assertEquals(Long.MAX_VALUE, FixedDecimalConverter.convert("9223372036854775807", 0));
+        assertEquals(12345, FixedDecimalConverter.convert("xx123.45".getBytes(), 2, 6, 2));
+
+        assertEquals(2, FixedDecimalConverter.scale("123.45"));
+        assertEquals(0, FixedDecimalConverter.scale("123"));
+        assertEquals(4, FixedDecimalConverter.scale("xx1.2500".getBytes(), 2, 6));
+
+        assertEquals(12345, FixedDecimalConverter.rescale(1234500, 4, 2));
+        assertEquals(1234500, FixedDecimalConverter.rescale(12345, 2, 4));
+
+        String[] invalid = { "", "-", ".", "abc", "+200", "1.2.3", "1E6", "123.456",
+                "9223372036854775808", "92233720368547758.08" };
+        for (String value : invalid) {
+            try {
+                FixedDecimalConverter.convert(value, 2);
+                fail("FieldConvertError expected for " + value);
+            } catch (FieldConvertError e) {
+                // expected
+            }
+        }
+        try {
+            FixedDecimalConverter.rescale(12345, 2, 1);
+            fail();
+        } catch (FieldConvertError e) {
+            // expected
+        }
+        try {
+            FixedDecimalConverter.rescale(Long.MAX_VALUE / 10 + 1, 0, 1);
+            fail();
+        } catch (FieldConvertError e) {
+            // expected
+        }
+        try {
+            FixedDecimalConverter.convert(1, 19);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
     public void testCharConversion() throws Exception {
         assertEquals("a", CharConverter.convert('a'));
         assertEquals("1", CharConverter.convert('1'));
@@ -213,6 +269,94 @@ public class FieldConvertersTest extends TestCase {
         }
     }
 
+    public void testUtcTimeStampPrecision() throws Exception {
+        Calendar c = new GregorianCalendar(2000, 3, 26, 12, 5, 6);
+        c.setTimeZone(TimeZone.getTimeZone("UTC"));
+        c.set(Calendar.MILLISECOND, 555);
+        long millis = c.getTimeInMillis();
+        assertEquals("20000426-12:05:06", UtcTimestampConverter.convert(millis,
+                UtcTimestampPrecision.SECONDS));
+        assertEquals("20000426-12:05:06.555000", UtcTimestampConverter.convert(millis,
+                UtcTimestampPrecision.MICROS));
+        assertEquals("20000426-12:05:06.555000000", UtcTimestampConverter.convert(c.getTime(),
+                UtcTimestampPrecision.NANOS));
+
+        long nanos = millis * 1000000L + 123456;
+        assertEquals("20000426-12:05:06.555", UtcTimestampConverter.convertEpochNanos(nanos,
+                UtcTimestampPrecision.MILLIS));
+        assertEquals("20000426-12:05:06.555123", UtcTimestampConverter.convertEpochNanos(nanos,
+                UtcTimestampPrecision.MICROS));
+        assertEquals("20000426-12:05:06.555123456", UtcTimestampConverter.convertEpochNanos(
+                nanos, UtcTimestampPrecision.NANOS));
+
+        assertEquals(nanos, UtcTimestampConverter.convertToEpochNanos("20000426-12:05:06.555123456"));
+        assertEquals(nanos - 456, UtcTimestampConverter.convertToEpochNanos("20000426-12:05:06.555123"));
+        assertEquals(millis * 1000000L, UtcTimestampConverter.convertToEpochNanos("20000426-12:05:06.555"));
+        assertEquals(new Date(millis), UtcTimestampConverter.convert("20000426-12:05:06.555123456"));
+        byte[] bytes = "x20000426-12:05:06.555123".getBytes("US-ASCII");
+        assertEquals(millis, UtcTimestampConverter.convertToEpochMillis(bytes, 1, bytes.length - 1));
+        assertEquals(nanos - 456, UtcTimestampConverter.convertToEpochNanos(bytes, 1, bytes.length - 1));
+
+        try {
+            UtcTimestampConverter.convert("20000426-12:05:06.5551");
+            fail();
+        } catch (FieldConvertError e) {
+            // expected
+        }
+        try {
+            UtcTimestampConverter.convert("20001326-12:05:06");
+            fail();
+        } catch (FieldConvertError e) {
+            // expected
+        }
+    }
+
+    public void testUtcTimeStampCalendarDates() throws Exception {
+        Calendar c = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+        c.clear();
+        c.set(1899, 11, 31, 23, 59, 59);
+        // every day from 1899 to 2100, including leap days and centuries
+        for (int day = 0; day < 73415; day++) {
+            long millis = c.getTimeInMillis();
+            String expected = String.format("%1$tY%1$tm%1$td-%1$tH:%1$tM:%1$tS.%1$tL", c);
+            assertEquals(expected, UtcTimestampConverter.convert(millis,
+                    UtcTimestampPrecision.MILLIS));
+            assertEquals(millis, UtcTimestampConverter.convert(expected).getTime());
+            c.add(Calendar.DAY_OF_MONTH, 1);
+            c.add(Calendar.MILLISECOND, 1);
+        }
+    }
+
+    public void testUtcTimeStampConcurrentConversion() throws Exception {
+        final long start = new GregorianCalendar(2014, 0, 1).getTimeInMillis();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final long offset = t * 86400000L;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 10000; i++) {
+                            // each thread formats a different day so the cached prefix changes
+                            long millis = start + offset + i * 1001L;
+                            String value = UtcTimestampConverter.convert(millis,
+                                    UtcTimestampPrecision.MILLIS);
+                            assertEquals(millis, UtcTimestampConverter.convert(value).getTime());
+                        }
+                    } catch (Throwable e) {
+                        failure.set(e);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(String.valueOf(failure.get()), failure.get());
+    }
+
     public void testUtcTimeOnlyConversion() throws Exception {
         Calendar c = new GregorianCalendar(0, 0, 0, 12, 5, 6);
         c.setTimeZone(TimeZone.getTimeZone("UTC"));
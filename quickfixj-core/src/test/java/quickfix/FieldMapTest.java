@@ -5,8 +5,10 @@ import junit.framework.TestCase;
 import junit.framework.TestSuite;
 import quickfix.field.EffectiveTime;
 import quickfix.field.MDEntryTime;
+import quickfix.field.SessionRejectReason;
 import quickfix.field.converter.UtcTimeOnlyConverter;
 
+import java.math.BigDecimal;
 import java.util.Date;
 import java.util.Iterator;
 
@@ -87,4 +89,90 @@ public class FieldMapTest extends TestCase {
         testOrdering(new int[] { 1, 2, 3 }, new int[] { 3, 1 }, new int[] { 3, 1, 2 });
         testOrdering(new int[] { 3, 2, 1 }, new int[] { 3, 1 }, new int[] { 3, 1, 2 });
     }
+
+    public void testOrderingWithLargeTags() {
+        testOrdering(new int[] { 20000, 55, 5000, 8 }, new int[] { 5000, 55 },
+                new int[] { 5000, 55, 8, 20000 });
+    }
+
+    public void testReplaceAndRemoveField() throws Exception {
+        FieldMap map = new Message();
+        for (int tag = 100; tag > 0; tag -= 3) {
+            map.setInt(tag, tag);
+        }
+        map.setInt(55, 5);
+        assertEquals(5, map.getInt(55));
+        map.removeField(55);
+        map.removeField(56);
+        assertFalse(map.isSetField(55));
+        int previous = 0;
+        int count = 0;
+        for (Iterator<Field<?>> it = map.iterator(); it.hasNext();) {
+            int tag = it.next().getField();
+            assertTrue(tag > previous);
+            previous = tag;
+            count++;
+        }
+        assertEquals(33, count);
+    }
+
+    public void testIteratorRemove() {
+        FieldMap map = new Message();
+        map.setInt(1, 1);
+        map.setInt(2, 2);
+        map.setInt(3, 3);
+        Iterator<Field<?>> it = map.iterator();
+        it.next();
+        it.next();
+        it.remove();
+        assertEquals(3, it.next().getField());
+        assertFalse(it.hasNext());
+        assertTrue(map.isSetField(1));
+        assertFalse(map.isSetField(2));
+    }
+
+    public void testFixedDecimal() throws Exception {
+        FieldMap map = new Message();
+        map.setFixedDecimal(44, 12345, 2);
+        assertEquals(12345, map.getFixedDecimal(44, 2));
+        assertEquals(1234500, map.getFixedDecimal(44, 4));
+        assertEquals(new BigDecimal("123.45"), map.getDecimal(44));
+        assertEquals("123.45", map.getString(44));
+        assertEquals(123.45, map.getDouble(44), 0);
+
+        map.setString(38, "100.50");
+        assertEquals(10050, map.getFixedDecimal(38, 2));
+        FixedDecimalField field = map.getField(new FixedDecimalField(38));
+        assertEquals(10050, field.getMantissa());
+        assertEquals(2, field.getScale());
+
+        map.setField(new FixedDecimalField(38, 5, 3));
+        assertEquals("0.005", map.getString(38));
+        try {
+            map.getFixedDecimal(38, 2);
+            fail("no exception thrown");
+        } catch (FieldException e) {
+            assertEquals(SessionRejectReason.INCORRECT_DATA_FORMAT_FOR_VALUE, e.getSessionRejectReason());
+        }
+        try {
+            map.getFixedDecimal(1, 2);
+            fail("no exception thrown");
+        } catch (FieldNotFound e) {
+            // expected
+        }
+    }
+
+    public void testSetFieldsWithDifferentFieldOrder() {
+        FieldMap source = new Message();
+        source.setInt(1, 1);
+        source.setInt(2, 2);
+        source.setInt(3, 3);
+        FieldMap map = new Message(new int[] { 3 });
+        map.setFields(source);
+        Iterator<Field<?>> it = map.iterator();
+        assertEquals(3, it.next().getField());
+        assertEquals(1, it.next().getField());
+        assertEquals(2, it.next().getField());
+        assertFalse(it.hasNext());
+    }
 }
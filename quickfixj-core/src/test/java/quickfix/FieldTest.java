@@ -195,6 +195,40 @@ public class FieldTest {
         DecimalField field = new DecimalField(11, Double.POSITIVE_INFINITY);
     }
 
+    @Test
+    public void testFixedDecimalField() {
+        FixedDecimalField field = new FixedDecimalField(11, 12345, 2);
+        assertEquals(12345, field.getMantissa());
+        assertEquals(2, field.getScale());
+        assertEquals(new BigDecimal("123.45"), field.getValue());
+        assertEquals("11=123.45", field.toString());
+        field.setValue(new BigDecimal("1E+3"));
+        assertEquals(1000, field.getMantissa());
+        assertEquals(0, field.getScale());
+        assertEquals("11=1000", field.toString());
+        field.setValue(-0.5);
+        assertTrue(field.valueEquals(-50, 2));
+        assertTrue(field.valueEquals(new BigDecimal("-0.500")));
+        assertEquals(new FixedDecimalField(11, -5, 1), field);
+        assertEquals(new FixedDecimalField(11, -5, 1).hashCode(), field.hashCode());
+    }
+
+    @Test
+    public void testFixedDecimalFieldFromDouble() {
+        // generated fixed decimal fields pass doubles to this constructor
+        FixedDecimalField field = new FixedDecimalField(44, 0.1);
+        assertEquals(1, field.getMantissa());
+        assertEquals(1, field.getScale());
+        assertEquals("44=0.1", field.toString());
+        field = new FixedDecimalField(44, 1234.5678);
+        assertTrue(field.valueEquals(12345678, 4));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testFixedDecimalFieldException() {
+        new FixedDecimalField(11, new BigDecimal("92233720368547758.08"));
+    }
+
     @Test
     public void testCharField() {
         CharField field = new CharField(11);
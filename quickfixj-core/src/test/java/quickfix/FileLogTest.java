@@ -183,6 +183,47 @@ public class FileLogTest {
                 .getEventFileName()));
     }
 
+    @Test
+    public void testGroupCommit() throws Exception {
+        long systemTime = System.currentTimeMillis();
+        SessionID sessionID = new SessionID("FIX.4.2", "SENDER" + systemTime, "TARGET" + systemTime);
+
+        SessionSettings settings = new SessionSettings();
+        settings.setString(sessionID, FileLogFactory.SETTING_FILE_LOG_PATH, getTempDirectory());
+        settings.setLong(sessionID, FileLogFactory.SETTING_LOG_GROUP_COMMIT_LATENCY, 300);
+        FileLog log = (FileLog) new FileLogFactory(settings).create(sessionID);
+        log.clear();
+
+        GroupCommit groupCommit = GroupCommit.getInstance(300);
+        long submitCount = groupCommit.getSubmitCount();
+        log.onIncoming("INTEST");
+        log.onOutgoing("OUTTEST");
+        assertEquals(submitCount + 2, groupCommit.getSubmitCount());
+        assertEquals("wrong message", "INTEST\nOUTTEST\n", readLog(log.getMessagesFileName()));
+        log.close();
+    }
+
+    @Test
+    public void testLogBytes() throws Exception {
+        long systemTime = System.currentTimeMillis();
+        SessionID sessionID = new SessionID("FIX.4.2", "SENDER" + systemTime, "TARGET" + systemTime);
+
+        SessionSettings settings = new SessionSettings();
+        settings.setString(sessionID, FileLogFactory.SETTING_FILE_LOG_PATH, getTempDirectory());
+        settings.setBool(sessionID, FileLogFactory.SETTING_LOG_HEARTBEATS, false);
+        FileLog log = (FileLog) new FileLogFactory(settings).create(sessionID);
+        log.clear();
+
+        byte[] data = "XX8=FIX.4.2\00135=D\001XX".getBytes(CharsetSupport.getCharset());
+        log.onIncoming(data, 2, data.length - 4);
+        byte[] heartbeat = "8=FIX.4.2\00135=0\001".getBytes(CharsetSupport.getCharset());
+        log.onOutgoing(heartbeat, 0, heartbeat.length);
+        log.onOutgoing(data, 2, data.length - 4);
+        assertEquals("wrong message", "8=FIX.4.2\00135=D\001\n8=FIX.4.2\00135=D\001\n",
+                readLog(log.getMessagesFileName()));
+        log.close();
+    }
+
     private String readLog(String path) throws IOException {
         File file = new File(path);
         FileInputStream in = new FileInputStream(file);
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures how long opening a FileStore takes depending on the number of
+ * stored messages, with and without a saved message index.
+ * <p>
+ * Usage: FileStoreStartupBenchmark [directory] [message counts...]
+ */
+public class FileStoreStartupBenchmark {
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) throws Exception {
+        final String path = args.length > 0 ? args[0] : "target/data/benchmark";
+        final int[] counts = { 10000, 100000, 1000000 };
+        final int[] messageCounts;
+        if (args.length > 1) {
+            messageCounts = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                messageCounts[i - 1] = Integer.parseInt(args[i]);
+            }
+        } else {
+            messageCounts = counts;
+        }
+        final SessionID sessionID = new SessionID("FIX.4.4", "SENDER", "TARGET");
+        System.out.println("messages\tfull scan (ms)\tcheckpoint (ms)");
+        for (final int messageCount : messageCounts) {
+            final FileStore store = new FileStore(path, sessionID, false, 10000, 10000);
+            store.reset();
+            store(store, messageCount);
+            // closing the store saves the index
+            store.close();
+            final double checkpointMillis = open(path, sessionID, 10000);
+            final double fullScanMillis = open(path, sessionID, 0);
+            System.out.println(messageCount + "\t" + fullScanMillis + "\t" + checkpointMillis);
+            store.deleteFiles();
+        }
+        new File(path).delete();
+    }
+
+    private static void store(FileStore store, int messageCount) throws Exception {
+        final String message = "8=FIX.4.49=6535=D34=149=SENDER52=20150101-00:00:00.00056=TARGET"
+                + "11=ID55=SYM10=000";
+        final List<String> batch = new ArrayList<String>();
+        for (int i = 1; i <= messageCount; i++) {
+            batch.add(message);
+            if (batch.size() == 1000 || i == messageCount) {
+                store.set(i - batch.size() + 1, batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private static double open(String path, SessionID sessionID, int checkpointInterval)
+            throws Exception {
+        long total = 0;
+        for (int run = 0; run < RUNS; run++) {
+            final long start = System.nanoTime();
+            final FileStore store = new FileStore(path, sessionID, false, 10000,
+                    checkpointInterval);
+            total += System.nanoTime() - start;
+            store.close();
+        }
+        return total / RUNS / 1000 / 1000.0;
+    }
+}
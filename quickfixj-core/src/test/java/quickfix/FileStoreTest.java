@@ -19,8 +19,11 @@
 
 package quickfix;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
@@ -72,6 +75,171 @@ public class FileStoreTest extends AbstractMessageStoreTest {
         assertEquals(321, store.getNextTargetMsgSeqNum());
     }
 
+    public void testIndexCheckpoint() throws Exception {
+        ((FileStore) getStore()).close();
+        FileStore store = createFileStore(3);
+        for (int i = 1; i <= 4; i++) {
+            store.set(i, "message" + i);
+        }
+        File indexFile = new File(store.getIndexFileName());
+        // saved after the third message
+        assertEquals(8 + 3 * 16, indexFile.length());
+
+        // the checkpoint is loaded and the fourth header is read from the header file
+        FileStore reopenedStore = createFileStore(3);
+        List<String> messages = new ArrayList<String>();
+        reopenedStore.get(1, 4, messages);
+        assertEquals(Arrays.asList("message1", "message2", "message3", "message4"), messages);
+        reopenedStore.close();
+
+        store.set(5, "message5");
+        store.close();
+        assertEquals(8 + 5 * 16, indexFile.length());
+        store = createFileStore(3);
+        messages.clear();
+        store.get(2, 5, messages);
+        assertEquals(Arrays.asList("message2", "message3", "message4", "message5"), messages);
+        store.close();
+    }
+
+    public void testIndexCheckpointOfOtherHeaderFileIsIgnored() throws Exception {
+        ((FileStore) getStore()).close();
+        FileStore store = createFileStore(1);
+        store.set(1, "message1");
+        store.set(2, "message2");
+        store.close();
+        assertTrue(new File(store.getIndexFileName()).exists());
+        assertTrue(new File(store.getHeaderFileName()).delete());
+        assertTrue(new File(store.getMsgFileName()).delete());
+
+        store = createFileStore(1);
+        List<String> messages = new ArrayList<String>();
+        store.get(1, 2, messages);
+        assertEquals(0, messages.size());
+        store.close();
+    }
+
+    public void testPartlyWrittenHeaderIsCutOff() throws Exception {
+        ((FileStore) getStore()).close();
+        FileStore store = createFileStore(0);
+        store.set(1, "message1");
+        store.set(2, "message2");
+        store.close();
+
+        // a header record that was not completely written
+        File headerFile = new File(store.getHeaderFileName());
+        RandomAccessFile file = new RandomAccessFile(headerFile, "rw");
+        try {
+            file.seek(file.length());
+            file.write(new byte[7]);
+        } finally {
+            file.close();
+        }
+
+        store = createFileStore(0);
+        assertEquals(2 * 16, headerFile.length());
+        store.set(3, "message3");
+        store.set(4, "message4");
+        store.close();
+
+        store = createFileStore(0);
+        List<String> messages = new ArrayList<String>();
+        store.get(1, 4, messages);
+        assertEquals(Arrays.asList("message1", "message2", "message3", "message4"), messages);
+        store.close();
+    }
+
+    public void testGroupCommit() throws Exception {
+        ((FileStore) getStore()).close();
+        SessionSettings settings = new SessionSettings(getConfigurationFileName());
+        GroupCommit groupCommit = new GroupCommit(200);
+        FileStore store = new FileStore(settings.getString(FileStoreFactory.SETTING_FILE_STORE_PATH),
+                getSessionID(), true, 10000, 0, groupCommit);
+        store.set(1, "message1");
+        store.set(2, Arrays.asList("message2", "message3"));
+        store.setNextSenderMsgSeqNum(4);
+        store.setNextTargetMsgSeqNum(5);
+        // the messages and the sequence numbers are synced before returning
+        assertEquals(4, groupCommit.getSubmitCount());
+        assertEquals(6, groupCommit.getSyncCount());
+
+        // the incremented sequence number is synced with the next message
+        store.incrNextSenderMsgSeqNum();
+        assertEquals(5, groupCommit.getSubmitCount());
+        store.set(4, "message4");
+        assertEquals(6, groupCommit.getSubmitCount());
+        assertTrue(groupCommit.getSyncCount() >= 9);
+        store.incrNextSenderMsgSeqNum();
+        store.close();
+        assertEquals(8, groupCommit.getSubmitCount());
+
+        store = createFileStore(0);
+        assertEquals(6, store.getNextSenderMsgSeqNum());
+        assertEquals(5, store.getNextTargetMsgSeqNum());
+        List<String> messages = new ArrayList<String>();
+        store.get(1, 4, messages);
+        assertEquals(Arrays.asList("message1", "message2", "message3", "message4"), messages);
+        store.close();
+    }
+
+    public void testLostIncrementDoesNotReuseSequenceNumber() throws Exception {
+        ((FileStore) getStore()).close();
+        SessionSettings settings = new SessionSettings(getConfigurationFileName());
+        FileStore store = new FileStore(settings.getString(FileStoreFactory.SETTING_FILE_STORE_PATH),
+                getSessionID(), true, 10000, 0, new GroupCommit(200));
+        store.set(1, "message1");
+        store.incrNextSenderMsgSeqNum();
+        store.close();
+
+        // the increment did not reach the device before a crash
+        RandomAccessFile file = new RandomAccessFile(store.getSeqNumSenderFileName(), "rw");
+        try {
+            file.writeUTF("1");
+        } finally {
+            file.close();
+        }
+
+        store = createFileStore(0);
+        assertEquals(2, store.getNextSenderMsgSeqNum());
+        store.close();
+    }
+
+    public void testCursorReadsChunks() throws Exception {
+        ((FileStore) getStore()).close();
+        SessionSettings settings = new SessionSettings(getConfigurationFileName());
+        // only the last 100 messages are in the index
+        FileStore store = new FileStore(settings.getString(FileStoreFactory.SETTING_FILE_STORE_PATH),
+                getSessionID(), false, 100, 0);
+        for (int i = 1; i <= 10000; i++) {
+            store.set(i, "message" + i);
+        }
+        store.close();
+
+        // the highest stored sequence number is not known after opening
+        store = createFileStore(0);
+        StoredMessageCursor cursor = store.openCursor(2, Integer.MAX_VALUE);
+        for (int i = 2; i <= 10000; i++) {
+            assertEquals("message" + i, cursor.next());
+        }
+        assertNull(cursor.next());
+        cursor.close();
+
+        store.set(10001, "message10001");
+        cursor = store.openCursor(9999, Integer.MAX_VALUE);
+        assertEquals("message9999", cursor.next());
+        assertEquals("message10000", cursor.next());
+        assertEquals("message10001", cursor.next());
+        assertNull(cursor.next());
+        cursor.close();
+        store.close();
+    }
+
+    private FileStore createFileStore(int checkpointInterval) throws Exception {
+        SessionSettings settings = new SessionSettings(getConfigurationFileName());
+        return new FileStore(settings.getString(FileStoreFactory.SETTING_FILE_STORE_PATH),
+                getSessionID(), false, 10000, checkpointInterval);
+    }
+
     protected void closeMessageStore(MessageStore store) throws IOException {
         ((FileStore) store).close();
     }
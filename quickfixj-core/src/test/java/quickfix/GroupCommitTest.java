@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class GroupCommitTest extends TestCase {
+    private final List<File> files = new ArrayList<File>();
+    private final List<FileOutputStream> streams = new ArrayList<FileOutputStream>();
+
+    protected void tearDown() throws Exception {
+        for (FileOutputStream stream : streams) {
+            stream.close();
+        }
+        for (File file : files) {
+            file.delete();
+        }
+        super.tearDown();
+    }
+
+    public void testSubmissionsAreSyncedTogether() throws Exception {
+        GroupCommit groupCommit = new GroupCommit(100000);
+        FileOutputStream first = createStream();
+        FileOutputStream second = createStream();
+        first.write(1);
+        second.write(2);
+
+        GroupCommit.Ticket ticket1 = groupCommit.submit(first.getFD());
+        GroupCommit.Ticket ticket2 = groupCommit.submit(first.getFD(), second.getFD());
+        assertFalse(ticket1.isDone());
+        ticket1.await();
+        ticket2.await();
+        assertTrue(ticket2.isDone());
+        // each file is synced once for both submissions
+        assertEquals(2, groupCommit.getSubmitCount());
+        assertEquals(2, groupCommit.getSyncCount());
+    }
+
+    public void testConcurrentWriters() throws Exception {
+        final GroupCommit groupCommit = new GroupCommit(500);
+        final List<Throwable> failures = new ArrayList<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 8; i++) {
+            final FileOutputStream stream = createStream();
+            threads.add(new Thread() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < 20; j++) {
+                            stream.write(j);
+                            groupCommit.sync(stream.getFD());
+                        }
+                    } catch (Throwable e) {
+                        synchronized (failures) {
+                            failures.add(e);
+                        }
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join(10000);
+        }
+        assertEquals(0, failures.size());
+        assertEquals(160, groupCommit.getSubmitCount());
+        assertTrue(groupCommit.getSyncCount() <= 160);
+        for (File file : files) {
+            assertEquals(20, file.length());
+        }
+    }
+
+    public void testFailureIsReportedToItsSubmitter() throws Exception {
+        GroupCommit groupCommit = new GroupCommit(100000);
+        FileOutputStream open = createStream();
+        FileOutputStream closed = createStream();
+        closed.close();
+
+        GroupCommit.Ticket failing = groupCommit.submit(closed.getFD());
+        GroupCommit.Ticket succeeding = groupCommit.submit(open.getFD());
+        succeeding.await();
+        try {
+            failing.await();
+            fail("expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    public void testSharedInstances() {
+        assertSame(GroupCommit.getInstance(1000), GroupCommit.getInstance(1000));
+        assertNotSame(GroupCommit.getInstance(1000), GroupCommit.getInstance(2000));
+        try {
+            new GroupCommit(0);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private FileOutputStream createStream() throws IOException {
+        File file = File.createTempFile("GroupCommitTest", ".dat");
+        files.add(file);
+        FileOutputStream stream = new FileOutputStream(file);
+        streams.add(stream);
+        return stream;
+    }
+}
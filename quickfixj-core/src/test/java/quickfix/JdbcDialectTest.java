@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.stub;
+
+import java.sql.DatabaseMetaData;
+
+import junit.framework.TestCase;
+
+public class JdbcDialectTest extends TestCase {
+    private static final String KEYS = "beginstring,msgseqnum";
+
+    public void testUpsertSql() {
+        assertNull(JdbcDialect.GENERIC.getUpsertSql("messages", KEYS, "message"));
+        assertEquals("INSERT INTO messages (beginstring,msgseqnum,message) VALUES (?,?,?)"
+                + " ON DUPLICATE KEY UPDATE message=VALUES(message)", JdbcDialect.MYSQL
+                .getUpsertSql("messages", KEYS, "message"));
+        assertEquals("INSERT INTO messages (beginstring,msgseqnum,message) VALUES (?,?,?)"
+                + " ON CONFLICT (beginstring,msgseqnum) DO UPDATE SET message=EXCLUDED.message",
+                JdbcDialect.POSTGRESQL.getUpsertSql("messages", KEYS, "message"));
+        assertEquals("MERGE INTO messages (beginstring,msgseqnum,message)"
+                + " KEY (beginstring,msgseqnum) VALUES (?,?,?)", JdbcDialect.H2.getUpsertSql(
+                "messages", KEYS, "message"));
+        assertEquals("MERGE INTO messages t USING (SELECT ? beginstring, ? msgseqnum, ? message"
+                + " FROM dual) v ON (t.beginstring=v.beginstring and t.msgseqnum=v.msgseqnum)"
+                + " WHEN MATCHED THEN UPDATE SET t.message=v.message"
+                + " WHEN NOT MATCHED THEN INSERT (beginstring,msgseqnum,message)"
+                + " VALUES (v.beginstring,v.msgseqnum,v.message)", JdbcDialect.ORACLE
+                .getUpsertSql("messages", KEYS, "message"));
+        assertEquals("MERGE INTO messages t USING (VALUES (?,?,?))"
+                + " AS v (beginstring,msgseqnum,message)"
+                + " ON (t.beginstring=v.beginstring and t.msgseqnum=v.msgseqnum)"
+                + " WHEN MATCHED THEN UPDATE SET t.message=v.message"
+                + " WHEN NOT MATCHED THEN INSERT (beginstring,msgseqnum,message)"
+                + " VALUES (v.beginstring,v.msgseqnum,v.message);", JdbcDialect.SQLSERVER
+                .getUpsertSql("messages", KEYS, "message"));
+    }
+
+    public void testForDatabase() throws Exception {
+        assertEquals(JdbcDialect.MYSQL, JdbcDialect.forDatabase(metaData("MySQL", 5, 7)));
+        assertEquals(JdbcDialect.POSTGRESQL, JdbcDialect.forDatabase(metaData("PostgreSQL", 9, 5)));
+        assertEquals(JdbcDialect.GENERIC, JdbcDialect.forDatabase(metaData("PostgreSQL", 9, 4)));
+        assertEquals(JdbcDialect.H2, JdbcDialect.forDatabase(metaData("H2", 1, 4)));
+        assertEquals(JdbcDialect.ORACLE, JdbcDialect.forDatabase(metaData("Oracle", 11, 2)));
+        assertEquals(JdbcDialect.SQLSERVER, JdbcDialect.forDatabase(metaData(
+                "Microsoft SQL Server", 10, 0)));
+        assertEquals(JdbcDialect.GENERIC, JdbcDialect.forDatabase(metaData(
+                "HSQL Database Engine", 1, 8)));
+    }
+
+    private DatabaseMetaData metaData(String product, int major, int minor) throws Exception {
+        DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+        stub(metaData.getDatabaseProductName()).toReturn(product);
+        stub(metaData.getDatabaseMajorVersion()).toReturn(major);
+        stub(metaData.getDatabaseMinorVersion()).toReturn(minor);
+        return metaData;
+    }
+}
@@ -34,6 +34,7 @@ import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
@@ -66,7 +67,7 @@ public class JdbcStoreTest extends AbstractMessageStoreTest {
         new InitialContext().rebind("TestDataSource", getDataSource());
     }
 
-    protected MessageStoreFactory getMessageStoreFactory() throws ConfigError, SQLException,
+    protected JdbcStoreFactory getMessageStoreFactory() throws ConfigError, SQLException,
             IOException {
         return getMessageStoreFactory(null, null);
     }
@@ -159,6 +160,48 @@ public class JdbcStoreTest extends AbstractMessageStoreTest {
         return JdbcStore.class;
     }
 
+    public void testCommit() throws Exception {
+        JdbcStore store = (JdbcStore) getStore();
+        store.reset();
+        assertTrue(store.set(2, "OLD2"));
+
+        // the insert of message 2 fails, so the messages are stored one at a time
+        store.commit(new int[] { 1, 2, 3 }, Arrays.asList("MESSAGE1", "MESSAGE2", "MESSAGE3"), 4,
+                7);
+        store.commit(new int[] { 4 }, Arrays.asList("MESSAGE4"), -1, 8);
+        store.close();
+        assertEquals(4, store.getNextSenderMsgSeqNum());
+        assertEquals(8, store.getNextTargetMsgSeqNum());
+
+        JdbcStore reloadedStore = (JdbcStore) createStore();
+        List<String> messages = new ArrayList<String>();
+        reloadedStore.get(1, 4, messages);
+        assertEquals(Arrays.asList("MESSAGE1", "MESSAGE2", "MESSAGE3", "MESSAGE4"), messages);
+        assertEquals(4, reloadedStore.getNextSenderMsgSeqNum());
+        assertEquals(8, reloadedStore.getNextTargetMsgSeqNum());
+    }
+
+    public void testWriteBehind() throws Exception {
+        ((JdbcStore) getStore()).reset();
+        JdbcStoreFactory factory = getMessageStoreFactory();
+        factory.getSettings().setBool(JdbcSetting.SETTING_JDBC_STORE_WRITE_BEHIND, true);
+        WriteBehindMessageStore store = (WriteBehindMessageStore) factory.create(getSessionID());
+        assertTrue(store.getStore() instanceof JdbcStore);
+        for (int i = 1; i <= 3; i++) {
+            store.set(i, "MESSAGE" + i);
+            store.incrNextSenderMsgSeqNum();
+        }
+        store.incrNextTargetMsgSeqNum();
+        store.close();
+
+        JdbcStore reloadedStore = (JdbcStore) createStore();
+        List<String> messages = new ArrayList<String>();
+        reloadedStore.get(1, 3, messages);
+        assertEquals(Arrays.asList("MESSAGE1", "MESSAGE2", "MESSAGE3"), messages);
+        assertEquals(4, reloadedStore.getNextSenderMsgSeqNum());
+        assertEquals(2, reloadedStore.getNextTargetMsgSeqNum());
+    }
+
     public void testMessageUpdate() throws Exception {
         JdbcStore store = (JdbcStore) getMessageStoreFactory().create(getSessionID());
         store.reset();
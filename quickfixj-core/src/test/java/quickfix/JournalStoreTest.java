@@ -0,0 +1,245 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class JournalStoreTest extends AbstractMessageStoreTest {
+    private File journalFile;
+    private SessionSettings settings;
+
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        ((JournalStore) getStore()).close();
+        if (journalFile.exists() && !journalFile.delete()) {
+            System.err.println("File delete failed: " + journalFile);
+        }
+    }
+
+    protected MessageStoreFactory getMessageStoreFactory() throws ConfigError, FieldConvertError {
+        return new JournalStoreFactory(createSettings(0));
+    }
+
+    private SessionSettings createSettings(long compactionThreshold) throws ConfigError,
+            FieldConvertError {
+        settings = new SessionSettings(getConfigurationFileName());
+        String path = settings.getString(FileStoreFactory.SETTING_FILE_STORE_PATH) + "/journal";
+        settings.setString(JournalStoreFactory.SETTING_JOURNAL_STORE_PATH, path);
+        settings.setLong(JournalStoreFactory.SETTING_JOURNAL_STORE_COMPACTION_THRESHOLD,
+                compactionThreshold);
+        settings.setString(getSessionID(), SessionSettings.BEGINSTRING, getSessionID()
+                .getBeginString());
+        journalFile = new File(path, JournalStoreFactory.JOURNAL_FILE_NAME).getAbsoluteFile();
+        return settings;
+    }
+
+    protected Class<?> getMessageStoreClass() {
+        return JournalStore.class;
+    }
+
+    protected void closeMessageStore(MessageStore store) throws IOException {
+        ((JournalStore) store).close();
+    }
+
+    protected MessageStore createFailoverStore() throws Exception {
+        // the factories of one JVM share the journal
+        return new JournalStore(new StoreJournal(journalFile, false, 0), getSessionID());
+    }
+
+    public void testFactoriesShareJournal() throws Exception {
+        JournalStore store = (JournalStore) getStore();
+        JournalStore otherStore = (JournalStore) new JournalStoreFactory(createSettings(0))
+                .create(getSessionID());
+        assertSame(store.getJournal(), otherStore.getJournal());
+        store.set(1, "message1");
+        List<String> messages = new ArrayList<String>();
+        otherStore.get(1, 1, messages);
+        assertEquals(Arrays.asList("message1"), messages);
+        otherStore.close();
+        assertTrue(store.getJournal().isOpen());
+        store.close();
+        assertFalse(store.getJournal().isOpen());
+
+        store = (JournalStore) createStore();
+        assertNotSame(otherStore.getJournal(), store.getJournal());
+        store.close();
+    }
+
+    public void testSessionsShareJournal() throws Exception {
+        ((JournalStore) getStore()).close();
+        JournalStoreFactory factory = new JournalStoreFactory(createSettings(0));
+        List<JournalStore> stores = new ArrayList<JournalStore>();
+        for (int i = 0; i < 50; i++) {
+            JournalStore store = (JournalStore) factory.create(createSessionID(i));
+            store.set(1, "message1-" + i);
+            store.set(2, Arrays.asList("message2-" + i, "message3-" + i));
+            store.setNextSenderMsgSeqNum(4);
+            store.setNextTargetMsgSeqNum(i + 1);
+            stores.add(store);
+        }
+        assertSame(stores.get(0).getJournal(), stores.get(49).getJournal());
+        assertEquals(1, journalFile.getParentFile().list().length);
+        for (JournalStore store : stores) {
+            store.close();
+        }
+        assertFalse(stores.get(0).getJournal().isOpen());
+
+        factory = new JournalStoreFactory(createSettings(0));
+        for (int i = 0; i < 50; i++) {
+            JournalStore store = (JournalStore) factory.create(createSessionID(i));
+            assertEquals(4, store.getNextSenderMsgSeqNum());
+            assertEquals(i + 1, store.getNextTargetMsgSeqNum());
+            List<String> messages = new ArrayList<String>();
+            store.get(1, 3, messages);
+            assertEquals(Arrays.asList("message1-" + i, "message2-" + i, "message3-" + i),
+                    messages);
+            store.close();
+        }
+    }
+
+    public void testResetRemovesMessages() throws Exception {
+        JournalStore store = (JournalStore) getStore();
+        store.set(1, "message1");
+        store.setNextSenderMsgSeqNum(2);
+        final long creationTime = store.getCreationTime().getTime();
+        Thread.sleep(10);
+        store.reset();
+        assertTrue(store.getCreationTime().getTime() > creationTime);
+        store.close();
+
+        store = (JournalStore) createStore();
+        assertEquals(1, store.getNextSenderMsgSeqNum());
+        List<String> messages = new ArrayList<String>();
+        store.get(1, 1, messages);
+        assertEquals(0, messages.size());
+        store.close();
+    }
+
+    public void testIncompleteRecordIsCutOff() throws Exception {
+        JournalStore store = (JournalStore) getStore();
+        store.set(1, "message1");
+        store.set(2, "message2");
+        long size = store.getJournal().size();
+        store.close();
+
+        // the last message record loses its checksum
+        RandomAccessFile file = new RandomAccessFile(journalFile, "rw");
+        try {
+            file.setLength(size - 2);
+        } finally {
+            file.close();
+        }
+
+        store = (JournalStore) createStore();
+        List<String> messages = new ArrayList<String>();
+        store.get(1, 2, messages);
+        assertEquals(Arrays.asList("message1"), messages);
+        assertEquals(size - 17 - "message2".length(), journalFile.length());
+        store.set(2, "message2b");
+        messages.clear();
+        store.get(1, 2, messages);
+        assertEquals(Arrays.asList("message1", "message2b"), messages);
+        store.close();
+    }
+
+    public void testCompaction() throws Exception {
+        ((JournalStore) getStore()).close();
+        JournalStoreFactory factory = new JournalStoreFactory(createSettings(4096));
+        JournalStore store = (JournalStore) factory.create(getSessionID());
+        JournalStore otherStore = (JournalStore) factory.create(createSessionID(1));
+        otherStore.set(1, "other1");
+        for (int i = 1; i <= 1000; i++) {
+            store.set(i % 10 + 1, "message" + i);
+            store.incrNextSenderMsgSeqNum();
+        }
+        // messages 1 to 10 are replaced 100 times
+        assertTrue(store.getJournal().size() < 8192);
+        List<String> messages = new ArrayList<String>();
+        store.get(1, 2, messages);
+        assertEquals(Arrays.asList("message1000", "message991"), messages);
+        store.close();
+        otherStore.close();
+
+        factory = new JournalStoreFactory(createSettings(4096));
+        store = (JournalStore) factory.create(getSessionID());
+        otherStore = (JournalStore) factory.create(createSessionID(1));
+        assertEquals(1001, store.getNextSenderMsgSeqNum());
+        messages.clear();
+        store.get(1, 10, messages);
+        assertEquals(10, messages.size());
+        assertEquals("message1000", messages.get(0));
+        messages.clear();
+        otherStore.get(1, 1, messages);
+        assertEquals(Arrays.asList("other1"), messages);
+        store.close();
+        otherStore.close();
+    }
+
+    public void testCompactionFileReplacesMissingJournal() throws Exception {
+        JournalStore store = (JournalStore) getStore();
+        store.set(1, "message1");
+        store.close();
+
+        // the journal was removed before the compacted file was renamed
+        File compactionFile = new File(journalFile.getPath() + ".compact");
+        assertTrue(journalFile.renameTo(compactionFile));
+
+        store = (JournalStore) createStore();
+        List<String> messages = new ArrayList<String>();
+        store.get(1, 1, messages);
+        assertEquals(Arrays.asList("message1"), messages);
+        assertFalse(compactionFile.exists());
+        store.close();
+    }
+
+    public void testCompactionFileOfIntactJournalIsDeleted() throws Exception {
+        JournalStore store = (JournalStore) getStore();
+        store.set(1, "message1");
+        store.close();
+
+        // a compaction that did not finish
+        File compactionFile = new File(journalFile.getPath() + ".compact");
+        RandomAccessFile file = new RandomAccessFile(compactionFile, "rw");
+        try {
+            file.writeInt(0);
+        } finally {
+            file.close();
+        }
+
+        store = (JournalStore) createStore();
+        List<String> messages = new ArrayList<String>();
+        store.get(1, 1, messages);
+        assertEquals(Arrays.asList("message1"), messages);
+        assertFalse(compactionFile.exists());
+        store.close();
+    }
+
+    private SessionID createSessionID(int number) {
+        SessionID sessionID = new SessionID(getSessionID().getBeginString(), getSessionID()
+                .getSenderCompID(), getSessionID().getTargetCompID() + "-" + number);
+        settings.setString(sessionID, SessionSettings.BEGINSTRING, sessionID.getBeginString());
+        return sessionID;
+    }
+}
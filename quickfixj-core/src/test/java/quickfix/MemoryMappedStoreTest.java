@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class MemoryMappedStoreTest extends AbstractMessageStoreTest {
+
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        ((MemoryMappedStore) getStore()).deleteFiles();
+    }
+
+    protected MessageStoreFactory getMessageStoreFactory() throws ConfigError, FieldConvertError {
+        SessionSettings settings = new SessionSettings(getConfigurationFileName());
+        settings.setString(getSessionID(), MemoryMappedStoreFactory.SETTING_MEMORY_MAPPED_STORE_PATH,
+                settings.getString(FileStoreFactory.SETTING_FILE_STORE_PATH));
+        settings.setLong(getSessionID(),
+                MemoryMappedStoreFactory.SETTING_MEMORY_MAPPED_STORE_SEGMENT_SIZE, 1024);
+        return new MemoryMappedStoreFactory(settings);
+    }
+
+    protected Class<?> getMessageStoreClass() {
+        return MemoryMappedStore.class;
+    }
+
+    protected void closeMessageStore(MessageStore store) throws IOException {
+        ((MemoryMappedStore) store).close();
+    }
+
+    public void testSegmentsAreReadWhenReopened() throws Exception {
+        MemoryMappedStore store = (MemoryMappedStore) getStore();
+        final List<String> expected = new ArrayList<String>();
+        for (int i = 1; i <= 100; i++) {
+            final String message = "message" + i;
+            store.set(i, message);
+            expected.add(message);
+        }
+        // stored again, replaces the first one
+        store.set(50, "message50b");
+        expected.set(49, "message50b");
+        // larger than a segment
+        final char[] large = new char[3000];
+        Arrays.fill(large, 'x');
+        store.set(101, new String(large));
+        expected.add(new String(large));
+        store.setNextSenderMsgSeqNum(102);
+        store.setNextTargetMsgSeqNum(7);
+        final int segmentCount = store.getSegmentCount();
+        assertTrue(segmentCount > 2);
+        final long creationTime = store.getCreationTime().getTime();
+        store.close();
+
+        store = createMemoryMappedStore(MemoryMappedStore.SyncPolicy.NONE);
+        assertEquals(segmentCount, store.getSegmentCount());
+        assertEquals(102, store.getNextSenderMsgSeqNum());
+        assertEquals(7, store.getNextTargetMsgSeqNum());
+        assertEquals(creationTime, store.getCreationTime().getTime());
+        final List<String> messages = new ArrayList<String>();
+        store.get(1, 200, messages);
+        assertEquals(expected, messages);
+
+        // appends to the last segment
+        store.set(102, "message102");
+        messages.clear();
+        store.get(101, 102, messages);
+        assertEquals(Arrays.asList(new String(large), "message102"), messages);
+        store.close();
+    }
+
+    public void testIncompleteRecordIsIgnored() throws Exception {
+        MemoryMappedStore store = (MemoryMappedStore) getStore();
+        store.set(1, "message1");
+        store.set(2, "message2");
+        store.close();
+
+        // a record is complete once its length is written
+        final File segment = new File(getSegmentFileName(0, 0));
+        final RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        try {
+            file.seek(16 + 8 + "message1".length());
+            file.writeInt(0);
+        } finally {
+            file.close();
+        }
+
+        store = createMemoryMappedStore(MemoryMappedStore.SyncPolicy.ALWAYS);
+        final List<String> messages = new ArrayList<String>();
+        store.get(1, 2, messages);
+        assertEquals(Arrays.asList("message1"), messages);
+        store.set(2, "message2");
+        messages.clear();
+        store.get(1, 2, messages);
+        assertEquals(Arrays.asList("message1", "message2"), messages);
+        store.close();
+    }
+
+    public void testResetDeletesSegments() throws Exception {
+        final MemoryMappedStore store = (MemoryMappedStore) getStore();
+        for (int i = 1; i <= 100; i++) {
+            store.set(i, "message" + i);
+        }
+        assertTrue(store.getSegmentCount() > 1);
+        store.reset();
+        assertEquals(1, store.getSegmentCount());
+        assertFalse(new File(getSegmentFileName(0, 0)).exists());
+        assertFalse(new File(getSegmentFileName(0, 1)).exists());
+        assertTrue(new File(getSegmentFileName(1, 0)).exists());
+        final List<String> messages = new ArrayList<String>();
+        store.get(1, 100, messages);
+        assertTrue(messages.isEmpty());
+    }
+
+    public void testSegmentsOfEarlierGenerationAreIgnored() throws Exception {
+        MemoryMappedStore store = (MemoryMappedStore) getStore();
+        store.set(1, "message1");
+        store.set(2, "message2");
+        store.close();
+        final File segment = new File(getSegmentFileName(0, 0));
+        final File copy = new File(segment.getParentFile(), "copy-" + segment.getName());
+        copy.delete();
+        assertTrue(segment.renameTo(copy));
+
+        store = createMemoryMappedStore(MemoryMappedStore.SyncPolicy.ALWAYS);
+        store.reset();
+        store.set(1, "message1b");
+        store.close();
+        // as if it could not be deleted while it was mapped
+        assertTrue(copy.renameTo(segment));
+
+        store = createMemoryMappedStore(MemoryMappedStore.SyncPolicy.ALWAYS);
+        final List<String> messages = new ArrayList<String>();
+        store.get(1, 2, messages);
+        assertEquals(Arrays.asList("message1b"), messages);
+        assertFalse(segment.exists());
+        store.close();
+    }
+
+    public void testUnstampedLastSegmentIsEmpty() throws Exception {
+        MemoryMappedStore store = (MemoryMappedStore) getStore();
+        store.set(1, "message1");
+        store.close();
+        // created before a crash, but neither mapped nor stamped
+        new RandomAccessFile(getSegmentFileName(0, 1), "rw").close();
+
+        store = createMemoryMappedStore(MemoryMappedStore.SyncPolicy.ALWAYS);
+        assertEquals(1, store.getSegmentCount());
+        final char[] large = new char[2000];
+        Arrays.fill(large, 'x');
+        store.set(2, new String(large));
+        assertEquals(2, store.getSegmentCount());
+        store.close();
+
+        store = createMemoryMappedStore(MemoryMappedStore.SyncPolicy.ALWAYS);
+        final List<String> messages = new ArrayList<String>();
+        store.get(1, 2, messages);
+        assertEquals(Arrays.asList("message1", new String(large)), messages);
+        store.close();
+    }
+
+    public void testInvalidSettings() throws Exception {
+        final SessionSettings settings = new SessionSettings();
+        settings.setString(getSessionID(), MemoryMappedStoreFactory.SETTING_MEMORY_MAPPED_STORE_PATH,
+                "target/data/test");
+        settings.setString(getSessionID(), MemoryMappedStoreFactory.SETTING_MEMORY_MAPPED_STORE_SYNC,
+                "sometimes");
+        try {
+            new MemoryMappedStoreFactory(settings).create(getSessionID());
+            fail("expected exception");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof ConfigError);
+        }
+    }
+
+    private MemoryMappedStore createMemoryMappedStore(MemoryMappedStore.SyncPolicy syncPolicy)
+            throws IOException {
+        return new MemoryMappedStore("target/data/test", getSessionID(), 1024, syncPolicy);
+    }
+
+    private String getSegmentFileName(int generation, int number) {
+        return FileUtil.fileAppendPath(new File("target/data/test").getAbsolutePath(),
+                FileUtil.sessionIdFileName(getSessionID()) + ".segment" + generation + "."
+                        + number);
+    }
+}
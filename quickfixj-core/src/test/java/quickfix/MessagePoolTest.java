@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import junit.framework.TestCase;
+import quickfix.field.Headline;
+import quickfix.field.MsgType;
+import quickfix.fix44.News;
+
+public class MessagePoolTest extends TestCase {
+    private final MessagePool pool = new MessagePool(new DefaultMessageFactory(), 2);
+
+    public void testReuse() throws Exception {
+        Message message = pool.create(FixVersions.BEGINSTRING_FIX44, MsgType.NEWS);
+        assertTrue(message instanceof News);
+        message.parse("8=FIX.4.4\0019=22\00135=B\001148=headline\00110=000\001", null, null, false);
+        assertEquals("headline", message.getString(Headline.FIELD));
+
+        pool.release(message);
+        assertEquals(1, pool.size(FixVersions.BEGINSTRING_FIX44, MsgType.NEWS));
+        assertTrue(message.isEmpty());
+        assertFalse(message.isSetField(Headline.FIELD));
+
+        assertSame(message, pool.create(FixVersions.BEGINSTRING_FIX44, MsgType.NEWS));
+        assertEquals(0, pool.size(FixVersions.BEGINSTRING_FIX44, MsgType.NEWS));
+    }
+
+    public void testPoolsPerType() throws Exception {
+        Message news = pool.create(FixVersions.BEGINSTRING_FIX44, MsgType.NEWS);
+        pool.release(news);
+        assertNotSame(news, pool.create(FixVersions.BEGINSTRING_FIX44, MsgType.HEARTBEAT));
+        assertNotSame(news, pool.create(FixVersions.BEGINSTRING_FIX42, MsgType.NEWS));
+        assertSame(news, pool.create(FixVersions.BEGINSTRING_FIX44, MsgType.NEWS));
+    }
+
+    public void testRetainedMessageIsNotRecycled() throws Exception {
+        Message message = pool.create(FixVersions.BEGINSTRING_FIX44, MsgType.NEWS);
+        message.setString(Headline.FIELD, "headline");
+        message.retain();
+        pool.release(message);
+        assertEquals(0, pool.size(FixVersions.BEGINSTRING_FIX44, MsgType.NEWS));
+        assertEquals("headline", message.getString(Headline.FIELD));
+    }
+
+    public void testOtherMessagesAreIgnored() throws Exception {
+        pool.release(new News());
+        pool.release(new MessagePool(new DefaultMessageFactory(), 2).create(
+                FixVersions.BEGINSTRING_FIX44, MsgType.NEWS));
+        assertEquals(0, pool.size(FixVersions.BEGINSTRING_FIX44, MsgType.NEWS));
+    }
+
+    public void testCapacity() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            pool.release(pool.create(FixVersions.BEGINSTRING_FIX44, MsgType.NEWS));
+        }
+        assertEquals(1, pool.size(FixVersions.BEGINSTRING_FIX44, MsgType.NEWS));
+
+        Message[] messages = new Message[3];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = pool.create(FixVersions.BEGINSTRING_FIX44, MsgType.NEWS);
+        }
+        for (Message message : messages) {
+            pool.release(message);
+        }
+        assertEquals(2, pool.size(FixVersions.BEGINSTRING_FIX44, MsgType.NEWS));
+    }
+}
@@ -27,6 +27,8 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.TimeZone;
@@ -91,6 +93,7 @@ import quickfix.field.SignatureLength;
 import quickfix.field.Symbol;
 import quickfix.field.TargetCompID;
 import quickfix.field.TargetSubID;
+import quickfix.field.Text;
 import quickfix.field.TotNoOrders;
 import quickfix.field.TransactTime;
 import quickfix.field.UnderlyingCurrency;
@@ -296,6 +299,86 @@ public class MessageTest {
         assertEquals("wrong value", "CAD", valueMessageType.getString(UnderlyingCurrency.FIELD));
     }
 
+    @Test
+    public void testRawMessageParsing() throws Exception {
+        final DataDictionary dictionary = DataDictionaryTest.getDictionary();
+        final Message expected = new Message("8=FIX.4.4\0019=309\00135=8\00149=ASX\00156=CL1_FIX44\00134=4\001" +
+            "52=20060324-01:05:58\00117=X-B-WOW-1494E9A0:58BD3F9D-1109\001150=D\00139=0\001" +
+            "11=184271\00138=200\001198=1494E9A0:58BD3F9D\001526=4324\00137=B-WOW-1494E9A0:58BD3F9D\001" +
+            "55=WOW\00154=1\001151=200\00114=0\00140=2\00144=15\00159=1\0016=0\001453=3\001448=AAA35791\001" +
+            "447=D\001452=3\001448=8\001447=D\001452=4\001448=FIX11\001" +
+            "447=D\001452=36\00160=20060320-03:34:29\00110=169\001", dictionary, false);
+        final String data = expected.toString();
+
+        final Message message = new Message();
+        message.parse(new RawMessage(data.getBytes(CharsetSupport.getCharset())), dictionary,
+                dictionary, true);
+
+        assertEquals(data, message.toString());
+        assertEquals("WOW", message.getString(Symbol.FIELD));
+        assertEquals(309, message.getHeader().getInt(BodyLength.FIELD));
+        final ExecutionReport.NoPartyIDs parties = new ExecutionReport.NoPartyIDs();
+        message.getGroup(3, parties);
+        assertEquals("FIX11", parties.getString(PartyID.FIELD));
+
+        message.setString(Symbol.FIELD, "IBM");
+        expected.setString(Symbol.FIELD, "IBM");
+        assertEquals(expected.toString(), message.toString());
+    }
+
+    @Test
+    public void testRawMessageParsingWithOffset() throws Exception {
+        final String data = new Message("8=FIX.4.2\0019=40\00135=A\001"
+                + "98=0\001384=2\001372=D\001385=R\001372=8\001385=S\00110=96\001",
+                DataDictionaryTest.getDictionary(), false).toString();
+        final byte[] bytes = ("garbage" + data + "garbage").getBytes(CharsetSupport.getCharset());
+
+        final Message message = new Message();
+        message.parse(new RawMessage(bytes, 7, data.length()), DataDictionaryTest.getDictionary(),
+                DataDictionaryTest.getDictionary(), true);
+
+        assertEquals(data, message.toString());
+    }
+
+    @Test
+    public void testRawMessageBadCheckSum() throws Exception {
+        final String data = "8=FIX.4.2\0019=40\00135=A\001"
+                + "98=0\001384=2\001372=D\001385=R\001372=8\001385=S\00110=96\001";
+        try {
+            new Message().parse(new RawMessage(data.getBytes(CharsetSupport.getCharset())),
+                    DataDictionaryTest.getDictionary(), DataDictionaryTest.getDictionary(), true);
+            fail("InvalidMessage expected");
+        } catch (final InvalidMessage e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Expected CheckSum="));
+        }
+    }
+
+    @Test
+    public void testRawMessageBadTag() throws Exception {
+        final String data = "8=FIX.4.2\0019=12\00135=A\001x98=0\00110=096\001";
+        try {
+            new Message().parse(new RawMessage(data.getBytes(CharsetSupport.getCharset())),
+                    DataDictionaryTest.getDictionary(), DataDictionaryTest.getDictionary(), false);
+            fail("InvalidMessage expected");
+        } catch (final InvalidMessage e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Bad tag format"));
+        }
+    }
+
+    @Test
+    public void testRawMessageSignedTag() throws Exception {
+        final String data = "8=FIX.4.2\0019=16\00135=0\001-1=HI\001+5=X\00110=249\001";
+        final Message expected = new Message(data, DataDictionaryTest.getDictionary(), false);
+
+        final Message message = new Message();
+        message.parse(new RawMessage(data.getBytes(CharsetSupport.getCharset())),
+                DataDictionaryTest.getDictionary(), DataDictionaryTest.getDictionary(), false);
+
+        assertEquals("HI", message.getString(-1));
+        assertEquals("X", message.getString(5));
+        assertEquals(expected.toString(), message.toString());
+    }
+
     @Test
     public void testParseEmptyString() throws Exception {
         final String data = "";
@@ -526,6 +609,89 @@ public class MessageTest {
         }
     }
 
+    @Test
+    public void testEncode() throws Exception {
+        final DataDictionary dictionary = DataDictionaryTest.getDictionary();
+        final Message message = new Message("8=FIX.4.4\0019=309\00135=8\00149=ASX\00156=CL1_FIX44\00134=4\001" +
+            "52=20060324-01:05:58\00117=X-B-WOW-1494E9A0:58BD3F9D-1109\001150=D\00139=0\001" +
+            "11=184271\00138=200\001198=1494E9A0:58BD3F9D\001526=4324\00137=B-WOW-1494E9A0:58BD3F9D\001" +
+            "55=WOW\00154=1\001151=200\00114=0\00140=2\00144=15\00159=1\0016=0\001453=3\001448=AAA35791\001" +
+            "447=D\001452=3\001448=8\001447=D\001452=4\001448=FIX11\001" +
+            "447=D\001452=36\00160=20060320-03:34:29\00110=169\001", dictionary, false);
+        message.setString(Symbol.FIELD, "IBM");
+
+        assertEncoded(message, ByteBuffer.allocate(1024));
+        assertEncoded(message, ByteBuffer.allocateDirect(1024));
+
+        // received fields are copied unless they have been modified
+        final Message rawMessage = new Message();
+        rawMessage.parse(new RawMessage(message.toString().getBytes(CharsetSupport.getCharset())),
+                dictionary, dictionary, true);
+        rawMessage.setString(Symbol.FIELD, "MSFT");
+        assertEncoded(rawMessage, ByteBuffer.allocate(1024));
+
+        // fixed-point decimals are written without formatting a String
+        message.setFixedDecimal(Price.FIELD, -12345, 3);
+        assertEncoded(message, ByteBuffer.allocate(1024));
+        assertEquals("-12.345", message.getString(Price.FIELD));
+    }
+
+    @Test
+    public void testEncodeSetsBodyLengthAndCheckSum() throws Exception {
+        final Message message = new Message();
+        message.getHeader().setString(BeginString.FIELD, FixVersions.BEGINSTRING_FIX42);
+        message.getHeader().setString(MsgType.FIELD, MsgType.HEARTBEAT);
+        message.getHeader().setInt(BodyLength.FIELD, 999);
+        message.getTrailer().setString(CheckSum.FIELD, "000");
+
+        final ByteBuffer buffer = ByteBuffer.allocate(64);
+        final int start = message.encode(buffer);
+
+        assertEquals("8=FIX.4.2\0019=5\00135=0\00110=161\001", new String(buffer.array(), start,
+                buffer.position() - start, CharsetSupport.getCharset()));
+        assertEquals(5, message.getHeader().getInt(BodyLength.FIELD));
+        assertEquals("161", message.getTrailer().getString(CheckSum.FIELD));
+    }
+
+    @Test(expected = BufferOverflowException.class)
+    public void testEncodeBufferOverflow() throws Exception {
+        final Message message = new Message();
+        message.getHeader().setString(BeginString.FIELD, FixVersions.BEGINSTRING_FIX42);
+        message.getHeader().setString(MsgType.FIELD, MsgType.HEARTBEAT);
+        message.setString(Text.FIELD, "text that does not fit");
+        message.encode(ByteBuffer.allocate(32));
+    }
+
+    private static void assertEncoded(Message message, ByteBuffer buffer) throws Exception {
+        buffer.position(3);
+        final int start = message.encode(buffer);
+
+        final byte[] bytes = new byte[buffer.position() - start];
+        buffer.position(start);
+        buffer.get(bytes);
+        assertEquals(message.toString(), new String(bytes, CharsetSupport.getCharset()));
+    }
+
+    @Test
+    public void testRawMessageDataFieldParsing() throws Exception {
+        // the data field contains SOH and multi-byte characters
+        final String data = "ab\001c\u00E4\u00F6";
+        final DataDictionary dictionary = DataDictionaryTest.getDictionary();
+
+        CharsetSupport.setCharset("UTF-8");
+        try {
+            final String messageString = new Message("8=FIX.4.4\0019=29\00135=A\00198=0\001"
+                    + "95=8\00196=" + data + "\00110=000\001", dictionary, false).toString();
+            final byte[] bytes = messageString.getBytes("UTF-8");
+            final Message message = new Message();
+            message.parse(new RawMessage(bytes), dictionary, dictionary, true);
+            assertEquals(data, message.getString(RawData.FIELD));
+            assertEquals(messageString, message.toString());
+        } finally {
+            CharsetSupport.setCharset(CharsetSupport.getDefaultCharset());
+        }
+    }
+
     /**
      * Test for data fields with SOH. This test is based on report from a user on
      * the QuickFIX mailing list. The problem was the user's configuration but this
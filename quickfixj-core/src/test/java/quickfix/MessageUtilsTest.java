@@ -22,6 +22,12 @@ package quickfix;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
 import junit.framework.TestCase;
 import quickfix.field.ApplVerID;
 import quickfix.field.BeginString;
@@ -95,6 +101,62 @@ public class MessageUtilsTest extends TestCase {
         assertEquals("TWL", sessionID.getTargetLocationID());
     }
 
+    public void testReverseSessionIdFromRawMessageBytes() throws Exception {
+        String messageString = "8=FIX.4.0\0019=56\00135=A\00134=1\00149=TW\00150=TWS\001" +
+            "142=TWL\00152=20060118-16:34:19\00156=ISLD\00198=0\001108=2\00110=223\001";
+        SessionID sessionID = MessageUtils.getReverseSessionID(new RawMessage(messageString.getBytes()));
+        assertEquals(MessageUtils.getReverseSessionID(messageString), sessionID);
+        assertEquals("TWS", sessionID.getTargetSubID());
+    }
+
+    public void testMessageTypeFromRawMessageBytes() throws Exception {
+        String messageString = "8=FIX.4.0\0019=56\00135=A\00134=1\00149=TW\001" +
+            "52=20060118-16:34:19\00156=ISLD\00198=0\001108=2\00110=223\001";
+        assertEquals("A", MessageUtils.getMessageType(new RawMessage(messageString.getBytes())));
+        try {
+            MessageUtils.getMessageType(new RawMessage("8=FIX.4.0\0019=56\00135=1".getBytes()));
+            fail("expected exception");
+        } catch (InvalidMessage e) {
+            // expected
+        }
+    }
+
+    public void testRawMessageChecksum() throws Exception {
+        String messageString = "8=FIX.4.2\0019=12\00135=X\001108=30\00110=049\001";
+        byte[] bytes = ("xx" + messageString).getBytes();
+        assertEquals(MessageUtils.checksum(messageString),
+                MessageUtils.checksum(bytes, 2, messageString.length(), true));
+        assertEquals(49, MessageUtils.checksum(bytes, 2, messageString.length(), true));
+    }
+
+    public void testEncode() throws Exception {
+        String data = "58=\u00E4bcf\u00F6d\u00E7\u00E9\001";
+        for (String charsetName : new String[] { "ISO-8859-1", "UTF-8" }) {
+            Charset charset = Charset.forName(charsetName);
+            byte[] expected = data.getBytes(charset);
+            for (ByteBuffer buffer : new ByteBuffer[] { ByteBuffer.allocate(32),
+                    ByteBuffer.allocateDirect(32) }) {
+                buffer.put((byte) 'x');
+                assertEquals(MessageUtils.checksum(expected, 0, expected.length, false),
+                        MessageUtils.encode(charset, data, buffer));
+                assertEquals(1 + expected.length, buffer.position());
+                byte[] actual = new byte[expected.length];
+                buffer.position(1);
+                buffer.get(actual);
+                assertTrue(Arrays.equals(expected, actual));
+            }
+        }
+    }
+
+    public void testEncodeBufferOverflow() throws Exception {
+        try {
+            MessageUtils.encode(Charset.forName("ISO-8859-1"), "58=text\001", ByteBuffer.allocate(4));
+            fail("expected exception");
+        } catch (BufferOverflowException e) {
+            // expected
+        }
+    }
+
     public void testMessageType() throws Exception {
         String messageString = "8=FIX.4.0\0019=56\00135=A\00134=1\00149=TW\001" +
             "52=20060118-16:34:19\00156=ISLD\00198=0\001108=2\00110=223\001";
@@ -147,6 +209,25 @@ public class MessageUtilsTest extends TestCase {
         assertThat(message, is(notNullValue()));
     }
 
+    public void testParseRawMessage() throws Exception {
+        Session mockSession = mock(Session.class);
+        DataDictionaryProvider mockDataDictionaryProvider = mock(DataDictionaryProvider.class);
+        stub(mockSession.getDataDictionaryProvider()).toReturn(mockDataDictionaryProvider);
+        stub(mockSession.getMessageFactory()).toReturn(new DefaultMessageFactory());
+
+        Email email = new Email(new EmailThreadID("THREAD_ID"), new EmailType(EmailType.NEW), new Subject("SUBJECT"));
+        email.getHeader().setField(new ApplVerID(ApplVerID.FIX50));
+        email.getHeader().setField(new SenderCompID("SENDER"));
+        email.getHeader().setField(new TargetCompID("TARGET"));
+
+        Message message = MessageUtils.parse(mockSession, new RawMessage(email.toString().getBytes()));
+
+        assertThat(message, is(notNullValue()));
+        assertThat(message, is(quickfix.fix50.Email.class));
+        assertEquals("SUBJECT", message.getString(Subject.FIELD));
+        assertEquals(email.toString(), message.toString());
+    }
+
     public void testLegacyParse() throws Exception {
         String data = "8=FIX.4.4\0019=309\00135=8\00149=ASX\00156=CL1_FIX44\00134=4\001" +
             "52=20060324-01:05:58\00117=X-B-WOW-1494E9A0:58BD3F9D-1109\001150=D\001" +
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+import junit.framework.TestCase;
+import quickfix.field.converter.DoubleConverter;
+import quickfix.field.converter.IntConverter;
+import quickfix.field.converter.UtcTimestampConverter;
+
+public class RawStringFieldTest extends TestCase {
+
+    private static RawStringField field(String value) {
+        byte[] data = ("xx" + value + "\001").getBytes();
+        return new RawStringField(44, data, 2, value.length());
+    }
+
+    public void testIntValue() throws Exception {
+        String[] values = { "0", "123", "-45", "0012", "999999999", "2147483647", "-2147483648" };
+        for (String value : values) {
+            assertEquals(value, IntConverter.convert(value), field(value).intValue());
+        }
+    }
+
+    public void testInvalidIntValue() throws Exception {
+        String[] values = { "", "-", "+1", "12a", "1.5", "2147483648" };
+        for (String value : values) {
+            try {
+                field(value).intValue();
+                fail("FieldConvertError expected for " + value);
+            } catch (FieldConvertError e) {
+                // expected
+            }
+        }
+    }
+
+    public void testDoubleValue() throws Exception {
+        String[] values = { "0", "1.5", "-0.25", "5.", ".5", "-0", "123.456", "0.1",
+                "999999999999999", "1234567890.12345", "12345678901234567890.5",
+                "0.000000000000000001" };
+        for (String value : values) {
+            assertEquals(value, Double.doubleToLongBits(DoubleConverter.convert(value)),
+                    Double.doubleToLongBits(field(value).doubleValue()));
+        }
+    }
+
+    public void testInvalidDoubleValue() throws Exception {
+        String[] values = { "", "-", ".", "1e5", "1.2.3", "abc" };
+        for (String value : values) {
+            try {
+                field(value).doubleValue();
+                fail("FieldConvertError expected for " + value);
+            } catch (FieldConvertError e) {
+                // expected
+            }
+        }
+    }
+
+    public void testDecimalValueIsCached() throws Exception {
+        RawStringField field = field("12.50");
+        assertEquals(new BigDecimal("12.50"), field.decimalValue());
+        assertSame(field.decimalValue(), field.decimalValue());
+    }
+
+    public void testFixedDecimalValue() throws Exception {
+        assertEquals(1250, field("12.50").fixedDecimalValue(2));
+        assertEquals(-125000, field("-12.5").fixedDecimalValue(4));
+        assertEquals(2, field("12.50").fixedDecimalScale());
+        try {
+            field("12.505").fixedDecimalValue(2);
+            fail("FieldConvertError expected");
+        } catch (FieldConvertError e) {
+            // expected
+        }
+        RawStringField field = field("12.50");
+        field.setValue("7");
+        assertEquals(700, field.fixedDecimalValue(2));
+        assertEquals(0, field.fixedDecimalScale());
+    }
+
+    public void testUtcTimeStampValue() throws Exception {
+        String value = "20060320-03:34:29.123";
+        RawStringField field = field(value);
+        Date date = field.utcTimeStampValue();
+        assertEquals(UtcTimestampConverter.convert(value), date);
+        date.setTime(0);
+        assertEquals(UtcTimestampConverter.convert(value), field.utcTimeStampValue());
+    }
+
+    public void testUtcTimeStampNanos() throws Exception {
+        String value = "20060320-03:34:29.123456789";
+        RawStringField field = field(value);
+        assertEquals(UtcTimestampConverter.convertToEpochNanos(value), field.utcTimeStampNanos());
+        assertEquals(UtcTimestampConverter.convert(value), field.utcTimeStampValue());
+        field.setValue("20060320-03:34:29.1");
+        try {
+            field.utcTimeStampNanos();
+            fail();
+        } catch (FieldConvertError e) {
+            // expected
+        }
+    }
+
+    public void testSetValueDiscardsConvertedValue() throws Exception {
+        RawStringField field = field("123");
+        assertEquals(123, field.intValue());
+        field.setValue("456");
+        assertEquals(456, field.intValue());
+        assertEquals(456.0, field.doubleValue(), 0);
+        assertEquals("44=456", field.toString());
+    }
+
+    public void testHasValue() throws Exception {
+        assertFalse(field("").hasValue());
+        assertTrue(field("A").hasValue());
+    }
+
+    public void testValidationOnRawMessage() throws Exception {
+        DataDictionary dictionary = DataDictionaryTest.getDictionary();
+        String data = new Message("8=FIX.4.4\0019=0\00135=D\00134=3\00149=SENDER\001"
+                + "52=20060320-03:34:29\00156=TARGET\00111=ID\00121=1\00155=IBM\00154=1\001"
+                + "60=20060320-03:34:29\00138=100\00140=2\00144=12.5\00110=000\001",
+                dictionary, false).toString();
+
+        Message message = new Message();
+        message.parse(new RawMessage(data.getBytes()), dictionary, dictionary, true);
+        dictionary.validate(message);
+        assertEquals(100, message.getInt(38));
+        assertEquals(12.5, message.getDouble(44), 0);
+
+        String badPrice = data.replace("\00144=12.5\001", "\00144=1x.5\001");
+        message = new Message();
+        message.parse(new RawMessage(badPrice.getBytes()), dictionary, dictionary, false);
+        try {
+            dictionary.validate(message);
+            fail("IncorrectDataFormat expected");
+        } catch (IncorrectDataFormat e) {
+            assertEquals(44, e.field);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import junit.framework.TestCase;
+import quickfix.field.Headline;
+import quickfix.field.HopCompID;
+import quickfix.field.LinesOfText;
+import quickfix.field.MsgSeqNum;
+import quickfix.field.MsgType;
+import quickfix.field.NoHops;
+import quickfix.field.OnBehalfOfCompID;
+import quickfix.field.OrigSendingTime;
+import quickfix.field.PossDupFlag;
+import quickfix.field.SenderCompID;
+import quickfix.field.SendingTime;
+import quickfix.field.TargetCompID;
+import quickfix.field.Text;
+import quickfix.fix44.News;
+
+public class ResendHeaderRewriterTest extends TestCase {
+    private static final String NOW = "20140101-12:00:01.123";
+
+    private DataDictionary dataDictionary;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        dataDictionary = DataDictionaryTest.getDictionary();
+    }
+
+    public void testSameAsResendOfParsedMessage() throws Exception {
+        final News news = createNews();
+        news.getHeader().setString(OnBehalfOfCompID.FIELD, "ONBEHALF");
+        assertRewrite(news.toString(), UtcTimestampPrecision.MILLIS);
+        assertRewrite(news.toString(), UtcTimestampPrecision.MICROS);
+    }
+
+    public void testMessageThatWasResentBefore() throws Exception {
+        final News news = createNews();
+        news.getHeader().setBoolean(PossDupFlag.FIELD, false);
+        news.getHeader().setString(OrigSendingTime.FIELD, "20131231-23:59:59.999");
+        assertRewrite(news.toString(), UtcTimestampPrecision.MILLIS);
+    }
+
+    public void testMessageWithoutBody() throws Exception {
+        final Message heartbeat = new quickfix.fix44.Heartbeat();
+        initializeHeader(heartbeat, 7);
+        final ResendHeaderRewriter rewriter = assertRewrite(heartbeat.toString(),
+                UtcTimestampPrecision.SECONDS);
+        assertEquals(MsgType.HEARTBEAT, rewriter.getMsgType());
+        assertEquals(7, rewriter.getMsgSeqNum());
+    }
+
+    public void testUnsupportedHeaders() throws Exception {
+        final News withoutSendingTime = createNews();
+        withoutSendingTime.getHeader().removeField(SendingTime.FIELD);
+        assertNull(ResendHeaderRewriter.parse(withoutSendingTime.toString(), dataDictionary));
+
+        final News withHops = createNews();
+        final Group hop = new Group(NoHops.FIELD, HopCompID.FIELD);
+        hop.setString(HopCompID.FIELD, "HOP");
+        withHops.getHeader().addGroup(hop);
+        assertEquals(1, withHops.getHeader().getInt(NoHops.FIELD));
+        assertNull(ResendHeaderRewriter.parse(withHops.toString(), dataDictionary));
+
+        assertNull(ResendHeaderRewriter.parse("8=FIX.4.4\0019=5\00135=B\001garbled", dataDictionary));
+        assertNull(ResendHeaderRewriter.parse("8=FIX.4.4\00135=B\00134=1\00110=000\001",
+                dataDictionary));
+    }
+
+    public void testInvalidSendingTime() throws Exception {
+        final News news = createNews();
+        news.getHeader().setString(SendingTime.FIELD, "yesterday");
+        final ResendHeaderRewriter rewriter = ResendHeaderRewriter.parse(news.toString(),
+                dataDictionary);
+        assertNotNull(rewriter);
+        assertNull(rewriter.rewrite(NOW, UtcTimestampPrecision.MILLIS));
+    }
+
+    private ResendHeaderRewriter assertRewrite(String stored, UtcTimestampPrecision precision)
+            throws Exception {
+        // what a session does when it parses the stored message
+        final Message expected = new DefaultMessageFactory().create(
+                MessageUtils.getStringField(stored, 8), MessageUtils.getMessageType(stored));
+        expected.fromString(stored, dataDictionary, false);
+        final Message.Header header = expected.getHeader();
+        header.setUtcTimeStampNanos(OrigSendingTime.FIELD,
+                header.getUtcTimeStampNanos(SendingTime.FIELD), precision);
+        header.setBoolean(PossDupFlag.FIELD, true);
+        header.setString(SendingTime.FIELD, NOW);
+
+        final ResendHeaderRewriter rewriter = ResendHeaderRewriter.parse(stored, dataDictionary);
+        assertNotNull(rewriter);
+        final String rewritten = rewriter.rewrite(NOW, precision);
+        assertEquals(expected.toString(), rewritten);
+        assertEquals(expected.getHeader().getInt(MsgSeqNum.FIELD), rewriter.getMsgSeqNum());
+        return rewriter;
+    }
+
+    private News createNews() throws FieldNotFound {
+        final News news = new News(new Headline("headline"));
+        initializeHeader(news, 12);
+        final News.LinesOfText line = new News.LinesOfText();
+        line.set(new Text("line1"));
+        news.addGroup(line);
+        line.set(new Text("line2"));
+        news.addGroup(line);
+        assertEquals(2, news.getInt(LinesOfText.FIELD));
+        return news;
+    }
+
+    private void initializeHeader(Message message, int msgSeqNum) {
+        final Message.Header header = message.getHeader();
+        header.setString(SenderCompID.FIELD, "SENDER");
+        header.setString(TargetCompID.FIELD, "TARGET");
+        header.setInt(MsgSeqNum.FIELD, msgSeqNum);
+        header.setString(SendingTime.FIELD, "20140101-11:00:00.456");
+    }
+}
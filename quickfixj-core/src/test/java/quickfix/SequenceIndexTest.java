@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import junit.framework.TestCase;
+
+public class SequenceIndexTest extends TestCase {
+    private final SequenceIndex index = new SequenceIndex(2);
+
+    public void testPutInOrder() {
+        for (int i = 1; i <= 100; i++) {
+            index.put(i, i * 10L);
+        }
+        assertEquals(100, index.size());
+        assertEquals(49, index.indexOf(50));
+        assertEquals(500L, index.valueAt(index.indexOf(50)));
+        assertEquals(-1, index.indexOf(101));
+        assertEquals(0, index.ceiling(-5));
+        assertEquals(100, index.ceiling(101));
+    }
+
+    public void testPutOutOfOrderAndReplace() {
+        index.put(10, 100L);
+        index.put(30, 300L);
+        index.put(20, 200L);
+        index.put(5, 50L);
+        index.put(20, 201L);
+        assertEquals(4, index.size());
+        final int[] sequences = { 5, 10, 20, 30 };
+        final long[] values = { 50L, 100L, 201L, 300L };
+        for (int i = 0; i < sequences.length; i++) {
+            assertEquals(sequences[i], index.sequenceAt(i));
+            assertEquals(values[i], index.valueAt(i));
+        }
+        assertEquals(2, index.ceiling(15));
+        assertEquals(-1, index.indexOf(15));
+
+        index.clear();
+        assertEquals(0, index.size());
+        assertEquals(-1, index.indexOf(10));
+    }
+
+    public void testRemoveFirstWithLengths() {
+        for (int i = 1; i <= 10; i++) {
+            index.put(i, i * 10L, i);
+            if (index.size() > 3) {
+                index.removeFirst();
+            }
+        }
+        assertEquals(3, index.size());
+        assertEquals(8, index.sequenceAt(0));
+        assertEquals(80L, index.valueAt(0));
+        assertEquals(8, index.lengthAt(0));
+        assertEquals(-1, index.indexOf(7));
+        assertEquals(2, index.indexOf(10));
+
+        index.put(9, 91L, 9);
+        index.put(7, 70L, 7);
+        assertEquals(4, index.size());
+        assertEquals(0, index.indexOf(7));
+        assertEquals(91L, index.valueAt(index.indexOf(9)));
+        assertEquals(10, index.lengthAt(index.indexOf(10)));
+    }
+}
@@ -802,6 +802,78 @@ public class SessionScheduleTest {
                 TimeZone.getTimeZone("America/New_York"));
     }
 
+    @Test
+    public void testNextSessionTimeBoundaryWithDST() throws Exception {
+        SessionSettings settings = new SessionSettings();
+        settings.setString(Session.SETTING_TIMEZONE, "Europe/Zurich");
+        settings.setString(Session.SETTING_START_TIME, "01:30:00");
+        settings.setString(Session.SETTING_END_TIME, "03:15:00");
+        SessionID sessionID = new SessionID("FIX.4.2", "SENDER", "TARGET");
+        SessionSchedule schedule = new SessionSchedule(settings, sessionID);
+        TimeZone zurich = TimeZone.getTimeZone("Europe/Zurich");
+
+        long time = getTimeStamp(2013, Calendar.MARCH, 30, 2, 0, 0, zurich).getTimeInMillis();
+        assertEquals(getTimeStamp(2013, Calendar.MARCH, 30, 3, 15, 0, zurich).getTimeInMillis() + 1,
+                schedule.getNextSessionTimeBoundary(time));
+        time = getTimeStamp(2013, Calendar.MARCH, 30, 3, 16, 0, zurich).getTimeInMillis();
+        assertEquals(getUtcTimeStamp(2013, Calendar.MARCH, 31, 0, 30, 0).getTimeInMillis(),
+                schedule.getNextSessionTimeBoundary(time));
+        // daylight saving time starts at 02:00
+        time = getUtcTimeStamp(2013, Calendar.MARCH, 31, 0, 30, 0).getTimeInMillis();
+        assertEquals(getUtcTimeStamp(2013, Calendar.MARCH, 31, 1, 15, 0).getTimeInMillis() + 1,
+                schedule.getNextSessionTimeBoundary(time));
+        time = getUtcTimeStamp(2013, Calendar.MARCH, 31, 1, 16, 0).getTimeInMillis();
+        assertEquals(getUtcTimeStamp(2013, Calendar.MARCH, 31, 23, 30, 0).getTimeInMillis(),
+                schedule.getNextSessionTimeBoundary(time));
+
+        settings.setString(Session.SETTING_NON_STOP_SESSION, "Y");
+        schedule = new SessionSchedule(settings, sessionID);
+        assertEquals(Long.MAX_VALUE, schedule.getNextSessionTimeBoundary(time));
+    }
+
+    @Test
+    public void testSessionTimeBoundariesOverAYear() throws Exception {
+        SessionSettings settings = new SessionSettings();
+        settings.setString(Session.SETTING_TIMEZONE, "America/New_York");
+        settings.setString(Session.SETTING_START_DAY, DayConverter.toString(Calendar.SUNDAY));
+        settings.setString(Session.SETTING_START_TIME, "20:00:00");
+        settings.setString(Session.SETTING_END_DAY, DayConverter.toString(Calendar.FRIDAY));
+        settings.setString(Session.SETTING_END_TIME, "17:00:00");
+        doSessionTimeBoundariesTest(settings);
+
+        settings = new SessionSettings();
+        settings.setString(Session.SETTING_TIMEZONE, "Europe/Zurich");
+        settings.setString(Session.SETTING_START_TIME, "22:30:00");
+        // a time that is skipped when daylight saving time starts is resolved
+        // differently depending on the calendar it is computed from
+        settings.setString(Session.SETTING_END_TIME, "01:30:00");
+        doSessionTimeBoundariesTest(settings);
+    }
+
+    /**
+     * Walks from boundary to boundary through 2013 and checks the cached
+     * results against schedules that have not cached anything yet.
+     */
+    private void doSessionTimeBoundariesTest(SessionSettings settings) throws Exception {
+        SessionID sessionID = new SessionID("FIX.4.2", "SENDER", "TARGET");
+        SessionSchedule schedule = new SessionSchedule(settings, sessionID);
+        long time = getUtcTimeStamp(2013, Calendar.JANUARY, 1, 0, 0, 0).getTimeInMillis();
+        long end = getUtcTimeStamp(2014, Calendar.JANUARY, 1, 0, 0, 0).getTimeInMillis();
+        int boundaries = 0;
+        while (time < end) {
+            long boundary = schedule.getNextSessionTimeBoundary(time);
+            assertTrue(boundary > time);
+            boolean inSession = schedule.isSessionTime(time);
+            assertEquals(inSession, schedule.isSessionTime(boundary - 1));
+            assertEquals(!inSession, schedule.isSessionTime(boundary));
+            assertEquals(inSession, new SessionSchedule(settings, sessionID).isSessionTime(boundary - 1));
+            assertEquals(!inSession, new SessionSchedule(settings, sessionID).isSessionTime(boundary));
+            time = boundary;
+            boundaries++;
+        }
+        assertTrue(boundaries >= 104);
+    }
+
     @Test
     // QFJ-767
     public void testNonStopSession() throws Exception {
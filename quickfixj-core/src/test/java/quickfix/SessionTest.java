@@ -4,6 +4,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.anyString;
@@ -24,7 +25,10 @@ import java.io.IOException;
 import java.lang.reflect.Field;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.TimeZone;
 
 import org.junit.AfterClass;
@@ -33,6 +37,7 @@ import org.junit.Test;
 import quickfix.field.ApplVerID;
 import quickfix.field.BeginSeqNo;
 import quickfix.field.BeginString;
+import quickfix.field.BodyLength;
 import quickfix.field.DefaultApplVerID;
 import quickfix.field.EncryptMethod;
 import quickfix.field.EndSeqNo;
@@ -196,6 +201,224 @@ public class SessionTest {
         session.close();
     }
 
+    @Test
+    public void testSendingTimePrecision() throws Exception {
+        final long now = 1388577906123L; // 20140101-12:05:06.123
+        SystemTime.setTimeSource(new MockSystemTimeSource(now));
+        try {
+            final SessionID sessionID = new SessionID(
+                    FixVersions.BEGINSTRING_FIX44, "SENDER", "TARGET");
+            final Session session = createSession(sessionID, new UnitTestApplication(), true,
+                    true, false);
+            final UnitTestResponder responder = new UnitTestResponder();
+            session.setResponder(responder);
+
+            session.logon();
+            session.next();
+            final Message logonRequest = new Message(responder.sentMessageData);
+            assertEquals("20140101-12:05:06.123", logonRequest.getHeader().getString(SendingTime.FIELD));
+            session.next(createLogonResponse(sessionID, logonRequest, 1));
+
+            session.setTimestampPrecision(UtcTimestampPrecision.MICROS);
+            session.generateHeartbeat();
+            assertEquals("20140101-12:05:06.123000", new Message(responder.sentMessageData)
+                    .getHeader().getString(SendingTime.FIELD));
+
+            session.close();
+        } finally {
+            SystemTime.setTimeSource(null);
+        }
+    }
+
+    @Test
+    public void testNextTimerDeadline() throws Exception {
+        final long now = 1388577906000L;
+        final MockSystemTimeSource timeSource = new MockSystemTimeSource(now);
+        SystemTime.setTimeSource(timeSource);
+        try {
+            final UnitTestResponder responder = new UnitTestResponder();
+            final Session session = setUpSession(new UnitTestApplication(), true, responder);
+            final int[] wakeUps = new int[1];
+            session.setTimerWakeUp(new Runnable() {
+                public void run() {
+                    wakeUps[0]++;
+                }
+            });
+
+            session.logon();
+            assertEquals(1, wakeUps[0]);
+            session.next();
+            assertEquals(MsgType.LOGON, MessageUtils.getMessageType(responder.sentMessageData));
+            // waiting for the logon response
+            assertEquals(now + 1000L, session.getNextTimerDeadline());
+
+            logonTo(session);
+            assertEquals(2, wakeUps[0]);
+            // the heartbeat is due one heartbeat interval after the logon
+            assertEquals(now + 30000L - 9, session.getNextTimerDeadline());
+
+            timeSource.increment(30000L);
+            session.next();
+            assertEquals(MsgType.HEARTBEAT, MessageUtils.getMessageType(responder.sentMessageData));
+            // the test request is due 1.5 heartbeat intervals after the logon response
+            assertEquals(now + 45000L, session.getNextTimerDeadline());
+
+            timeSource.increment(15000L);
+            session.next();
+            assertEquals(MsgType.TEST_REQUEST, MessageUtils.getMessageType(responder.sentMessageData));
+            // no heartbeats while a test request is pending, timeout after 2.4 intervals
+            assertEquals(now + 72000L, session.getNextTimerDeadline());
+
+            session.logout();
+            assertEquals(3, wakeUps[0]);
+            assertEquals(now + 45000L, session.getNextTimerDeadline());
+            session.next();
+            assertEquals(MsgType.LOGOUT, MessageUtils.getMessageType(responder.sentMessageData));
+            assertEquals(4, wakeUps[0]);
+            // waiting for the logout response
+            assertEquals(now + 46000L, session.getNextTimerDeadline());
+
+            session.setResponder(null);
+            assertEquals(5, wakeUps[0]);
+        } finally {
+            SystemTime.setTimeSource(null);
+        }
+    }
+
+    @Test
+    public void testLogoutTimeoutAfterBadCompIDWithTimerWakeUp() throws Exception {
+        final long now = 1388577906000L;
+        final MockSystemTimeSource timeSource = new MockSystemTimeSource(now);
+        SystemTime.setTimeSource(timeSource);
+        try {
+            final UnitTestResponder responder = new UnitTestResponder();
+            final Session session = setUpSession(new UnitTestApplication(), true, responder);
+            // runs next() at the deadline like the session timer wheel
+            final long[] deadline = new long[1];
+            session.setTimerWakeUp(new Runnable() {
+                public void run() {
+                    deadline[0] = session.getNextTimerDeadline();
+                }
+            });
+            session.logon();
+            session.next();
+            logonTo(session);
+            // the next heartbeat is due
+            assertTrue(deadline[0] > now + 1000L);
+
+            final Message heartbeat = new Heartbeat();
+            setUpHeader(session.getSessionID(), heartbeat, true, 2);
+            heartbeat.getHeader().setString(SenderCompID.FIELD, "OTHER");
+            session.next(heartbeat);
+            assertEquals(MsgType.LOGOUT, MessageUtils.getMessageType(responder.sentMessageData));
+            // the session stays connected until the logout response or timeout
+            assertFalse(responder.disconnectCalled);
+            assertEquals(now + 1000L, deadline[0]);
+
+            while (!responder.disconnectCalled) {
+                timeSource.increment(deadline[0] - timeSource.getTime());
+                session.next();
+                deadline[0] = session.getNextTimerDeadline();
+            }
+            // disconnected once the default logout timeout of 2 seconds has passed
+            assertEquals(now + 2000L, timeSource.getTime());
+        } finally {
+            SystemTime.setTimeSource(null);
+        }
+    }
+
+    @Test
+    public void testNextTimerDeadlineWithSchedule() throws Exception {
+        final long now = 1388664000000L; // 2014-01-02 12:00:00 UTC
+        final MockSystemTimeSource timeSource = new MockSystemTimeSource(now);
+        SystemTime.setTimeSource(timeSource);
+        try {
+            SessionID sessionID = new SessionID("FIX.4.2", "US", "THEM");
+            SessionSettings settings = new SessionSettings();
+            settings.setString(SessionFactory.SETTING_CONNECTION_TYPE,
+                    SessionFactory.ACCEPTOR_CONNECTION_TYPE);
+            settings.setString(Session.SETTING_START_TIME, "08:00:00");
+            settings.setString(Session.SETTING_END_TIME, "17:00:00");
+            Session session = new DefaultSessionFactory(new ApplicationAdapter(),
+                    new MemoryStoreFactory(), new ScreenLogFactory(settings))
+                    .create(sessionID, settings);
+
+            // the schedule has not been checked yet
+            assertEquals(now, session.getNextTimerDeadline());
+            session.next();
+            // the session ends at 17:00:00
+            assertEquals(now + 5 * 3600000L + 1, session.getNextTimerDeadline());
+
+            timeSource.increment(5 * 3600000L + 1800000L);
+            session.next();
+            assertFalse(session.isSessionTime());
+            // the next session starts at 08:00:00
+            assertEquals(now + 20 * 3600000L, session.getNextTimerDeadline());
+            session.close();
+        } finally {
+            SystemTime.setTimeSource(null);
+        }
+    }
+
+    @Test
+    public void testInboundMessageRecycling() throws Exception {
+        final Session session = setUpSession(new UnitTestApplication(), false,
+                new UnitTestResponder());
+        session.setMessagePoolSize(4);
+        logonTo(session);
+
+        final Message heartbeat = receive(session, createHeartbeatMessage(2));
+        session.next(heartbeat);
+        session.releaseMessage(heartbeat);
+        assertTrue(heartbeat.isEmpty());
+        assertSame(heartbeat, session.getMessagePool().create(FixVersions.BEGINSTRING_FIX44,
+                MsgType.HEARTBEAT));
+
+        // a message received out of sequence is queued for later processing
+        final Message queued = receive(session, createHeartbeatMessage(4));
+        session.next(queued);
+        session.releaseMessage(queued);
+        assertTrue(queued.isRetained());
+        assertEquals(4, queued.getHeader().getInt(MsgSeqNum.FIELD));
+
+        session.close();
+    }
+
+    @Test
+    public void testSendBatch() throws Exception {
+        final UnitTestResponder responder = new UnitTestResponder();
+        final Session session = setUpSession(new UnitTestApplication(), false, responder);
+        logonTo(session);
+        final int firstSeqNum = session.getExpectedSenderNum();
+
+        final List<Message> messages = new ArrayList<Message>();
+        for (int i = 0; i < 3; i++) {
+            messages.add(new News(new Headline("headline " + i)));
+        }
+        assertTrue(session.send(messages));
+
+        // one write with all messages in order
+        final StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < messages.size(); i++) {
+            final Message message = messages.get(i);
+            assertEquals(firstSeqNum + i, message.getHeader().getInt(MsgSeqNum.FIELD));
+            expected.append(message.toString());
+        }
+        assertEquals(expected.toString(), responder.sentMessageData);
+
+        final List<String> stored = new ArrayList<String>();
+        session.getStore().get(firstSeqNum, firstSeqNum + 2, stored);
+        assertEquals(3, stored.size());
+        assertEquals(messages.get(2).toString(), stored.get(2));
+        assertEquals(firstSeqNum + 3, session.getExpectedSenderNum());
+
+        session.close();
+    }
+
+    private Message receive(Session session, Message message) throws InvalidMessage {
+        return MessageUtils.parse(session, message.toString());
+    }
+
     // QFJ-703
     @Test
     public void testPossDupMessageWithoutOrigSendingTime() throws Exception {
@@ -1198,6 +1421,106 @@ public class SessionTest {
         session.close();
     }
 
+    @Test
+    public void testResendHeartbeatsWhenCorruptedStore() throws Exception {
+        final SessionID sessionID = new SessionID(FixVersions.BEGINSTRING_FIX44, "SENDER",
+                "TARGET");
+        final Session session = new Session(new UnitTestApplication(), new MessageStoreFactory() {
+            public MessageStore create(SessionID sessionID) {
+                try {
+                    return new MemoryStore() {
+                        @Override
+                        public void get(int startSequence, int endSequence,
+                                Collection<String> messages) throws IOException {
+                            throw new IOException("corrupted");
+                        }
+
+                        @Override
+                        public StoredMessageCursor openCursor(int startSequence, int endSequence) {
+                            // fails reading the first chunk
+                            return new ChunkedMessageCursor(this, startSequence, endSequence);
+                        }
+                    };
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }, sessionID, null, null, new ScreenLogFactory(true, true, true),
+                new DefaultMessageFactory(), 0);
+        final List<Message> sent = new ArrayList<Message>();
+        session.setResponder(new UnitTestResponder() {
+            @Override
+            public boolean send(String data) {
+                try {
+                    sent.add(new Message(data));
+                } catch (InvalidMessage e) {
+                    throw new RuntimeException(e);
+                }
+                return super.send(data);
+            }
+        });
+        logonTo(session, 1);
+        session.send(createAppMessage(2));
+        session.send(createAppMessage(3));
+        session.send(createAppMessage(4));
+        session.setForceResendWhenCorruptedStore(true);
+        sent.clear();
+
+        session.next(createResendRequest(2, 2));
+        // heartbeats are resent in place of the messages that cannot be read
+        assertTrue(sent.size() >= 2);
+        for (int i = 0; i < 2; i++) {
+            assertEquals(MsgType.HEARTBEAT, sent.get(i).getHeader().getString(MsgType.FIELD));
+            assertEquals(2 + i, sent.get(i).getHeader().getInt(MsgSeqNum.FIELD));
+            assertTrue(sent.get(i).getHeader().getBoolean(PossDupFlag.FIELD));
+        }
+        session.close();
+    }
+
+    @Test
+    public void testRawResend() throws Exception {
+        final UnitTestApplication application = new UnitTestApplication();
+        final Session session = SessionFactoryTestSupport.createSession(new SessionID(
+                FixVersions.BEGINSTRING_FIX44, "SENDER", "TARGET"), application, false);
+        final List<Message> sent = new ArrayList<Message>();
+        session.setResponder(new UnitTestResponder() {
+            @Override
+            public boolean send(String data) {
+                try {
+                    sent.add(new Message(data));
+                } catch (InvalidMessage e) {
+                    throw new RuntimeException(e);
+                }
+                return super.send(data);
+            }
+        });
+        session.setRawResend(true);
+        logonTo(session, 1);
+        session.send(createAppMessage(2));
+        session.generateHeartbeat();
+        session.send(createAppMessage(4));
+        final String sendingTime = sent.get(sent.size() - 1).getHeader().getString(
+                SendingTime.FIELD);
+        application.clear();
+        sent.clear();
+
+        session.next(createResendRequest(2, 2));
+        // the application is not asked about the resent messages
+        assertTrue(application.toAppMessages.isEmpty());
+        assertEquals(3, sent.size());
+        assertEquals(2, sent.get(0).getHeader().getInt(MsgSeqNum.FIELD));
+        assertEquals(MsgType.SEQUENCE_RESET, sent.get(1).getHeader().getString(MsgType.FIELD));
+        assertEquals(4, sent.get(1).getInt(NewSeqNo.FIELD));
+        final Message resent = sent.get(2);
+        assertEquals(MsgType.NEWS, resent.getHeader().getString(MsgType.FIELD));
+        assertEquals(4, resent.getHeader().getInt(MsgSeqNum.FIELD));
+        assertTrue(resent.getHeader().getBoolean(PossDupFlag.FIELD));
+        assertEquals(sendingTime, resent.getHeader().getString(OrigSendingTime.FIELD));
+        // the checksum is validated when the sent message is parsed
+        assertEquals(resent.bodyLength(), resent.getHeader().getInt(BodyLength.FIELD));
+        session.close();
+    }
+
     // QFJ-658 and acceptance test 20_SimultaneousResendRequests.def
     @Test
     public void testSimultaneousResendRequests() throws Exception {
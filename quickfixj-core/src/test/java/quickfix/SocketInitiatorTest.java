@@ -41,6 +41,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import quickfix.mina.ProtocolFactory;
+import quickfix.mina.SessionConnector;
+import quickfix.mina.message.IoBufferPool;
 import quickfix.test.acceptance.ATServer;
 
 public class SocketInitiatorTest {
@@ -181,6 +183,44 @@ public class SocketInitiatorTest {
         doTestOfRestart(clientSessionID, clientApplication, initiator, null);
     }
 
+    @Test
+    public void testInitiatorBufferPool() throws Exception {
+        ServerThread serverThread = new ServerThread();
+        try {
+            serverThread.setDaemon(true);
+            serverThread.start();
+            serverThread.waitForInitialization();
+
+            SessionID clientSessionID = new SessionID(FixVersions.BEGINSTRING_FIX42, "TW", "ISLD");
+            SessionSettings settings = getClientSessionSettings(clientSessionID);
+            settings.setString(SessionConnector.SETTING_SOCKET_BUFFER_POOL, "Y");
+            ClientApplication clientApplication = new ClientApplication();
+            SocketInitiator initiator = new SocketInitiator(clientApplication,
+                    new MemoryStoreFactory(), settings, new DefaultMessageFactory());
+            IoBufferPool bufferPool = initiator.getBufferPool();
+            assertNotNull(bufferPool);
+            try {
+                clientApplication.setUpLogonExpectation();
+                initiator.start();
+                Session clientSession = Session.lookupSession(clientSessionID);
+                assertLoggedOn(clientApplication, clientSession);
+
+                // the read buffers are reused once a message has been decoded
+                for (int i = 0; i < 50 && bufferPool.getHits() == 0; i++) {
+                    clientSession.generateTestRequest("TEST" + i);
+                    Thread.sleep(100);
+                }
+                assertTrue(bufferPool.toString(), bufferPool.getHits() > 0);
+                assertTrue(clientSession.isLoggedOn());
+            } finally {
+                initiator.stop();
+            }
+        } finally {
+            serverThread.interrupt();
+            serverThread.join();
+        }
+    }
+
     private void doTestOfRestart(SessionID clientSessionID, ClientApplication clientApplication,
             final Initiator initiator, File messageLog) throws InterruptedException, ConfigError {
         ServerThread serverThread = new ServerThread();
@@ -0,0 +1,256 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class WriteBehindMessageStoreTest extends AbstractMessageStoreTest {
+    private final List<MessageStore> createdStores = new ArrayList<MessageStore>();
+
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        for (MessageStore store : createdStores) {
+            try {
+                ((WriteBehindMessageStore) store).close();
+            } catch (IOException e) {
+                // expected if the test made the store fail
+            }
+        }
+        FileStore fileStore = (FileStore) ((WriteBehindMessageStore) getStore()).getStore();
+        try {
+            fileStore.deleteFiles();
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    protected MessageStoreFactory getMessageStoreFactory() throws ConfigError, FieldConvertError {
+        SessionSettings settings = new SessionSettings(getConfigurationFileName());
+        settings.setString(getSessionID(), FileStoreFactory.SETTING_FILE_STORE_PATH, settings
+                .getString(FileStoreFactory.SETTING_FILE_STORE_PATH));
+        return new WriteBehindMessageStoreFactory(new FileStoreFactory(settings), settings);
+    }
+
+    protected Class<?> getMessageStoreClass() {
+        return WriteBehindMessageStore.class;
+    }
+
+    protected void closeMessageStore(MessageStore store) throws IOException {
+        ((WriteBehindMessageStore) store).close();
+    }
+
+    public void testUnwrittenMessagesAreReturnedForResends() throws Exception {
+        BlockingStore blockingStore = new BlockingStore();
+        WriteBehindMessageStore store = createStore(blockingStore, 1, 0);
+        final List<Integer> written = Collections.synchronizedList(new ArrayList<Integer>());
+        store.setWriteListener(new WriteBehindMessageStore.WriteListener() {
+            public void onWritten(int sequence) {
+                written.add(sequence);
+            }
+        });
+
+        store.set(1, "message1");
+        store.incrNextSenderMsgSeqNum();
+        assertTrue(blockingStore.writing.await(5, TimeUnit.SECONDS));
+        // the writer is blocked writing the first message
+        store.set(2, "message2");
+        store.set(3, "message3");
+        store.incrNextSenderMsgSeqNum();
+        store.incrNextSenderMsgSeqNum();
+        assertEquals(4, store.getNextSenderMsgSeqNum());
+        assertEquals(3, store.getUnwrittenCount());
+        assertEquals(1, blockingStore.getNextSenderMsgSeqNum());
+
+        Future<Void> flushed = store.flush();
+        assertFalse(flushed.isDone());
+        List<String> messages = new ArrayList<String>();
+        blockingStore.release.countDown();
+        store.get(1, 10, messages);
+        assertEquals(Arrays.asList("message1", "message2", "message3"), messages);
+
+        flushed.get(5, TimeUnit.SECONDS);
+        assertEquals(0, store.getUnwrittenCount());
+        assertEquals(4, blockingStore.getNextSenderMsgSeqNum());
+        assertEquals(Arrays.asList(1, 2, 3), written);
+        messages.clear();
+        blockingStore.get(2, 3, messages);
+        assertEquals(Arrays.asList("message2", "message3"), messages);
+    }
+
+    public void testMixedWrittenAndUnwrittenMessages() throws Exception {
+        BlockingStore blockingStore = new BlockingStore();
+        blockingStore.release.countDown();
+        WriteBehindMessageStore store = createStore(blockingStore, 100, 10000);
+        store.set(1, "message1");
+        store.set(3, "message3");
+        store.flush().get(5, TimeUnit.SECONDS);
+
+        // waiting for the group to fill up
+        store.set(2, "message2");
+        store.set(4, "message4");
+        store.set(5, "message5");
+        assertEquals(3, store.getUnwrittenCount());
+
+        List<String> messages = new ArrayList<String>();
+        store.get(1, 4, messages);
+        assertEquals(Arrays.asList("message1", "message2", "message3", "message4"), messages);
+        messages.clear();
+        store.get(3, 6, messages);
+        assertEquals(Arrays.asList("message3", "message4", "message5"), messages);
+    }
+
+    public void testGroupCommit() throws Exception {
+        BlockingStore blockingStore = new BlockingStore();
+        blockingStore.release.countDown();
+        WriteBehindMessageStore store = createStore(blockingStore, 100, 10000);
+        for (int i = 1; i <= 250; i++) {
+            store.set(i, "message" + i);
+        }
+        store.flush().get(5, TimeUnit.SECONDS);
+        assertEquals(0, store.getUnwrittenCount());
+        // consecutive messages are written with one call to the batch store
+        assertTrue(blockingStore.batches <= 3);
+        assertEquals(0, blockingStore.singles);
+        List<String> messages = new ArrayList<String>();
+        blockingStore.get(1, 250, messages);
+        assertEquals(250, messages.size());
+    }
+
+    public void testResetDiscardsUnwrittenMessages() throws Exception {
+        final BlockingStore blockingStore = new BlockingStore();
+        final WriteBehindMessageStore store = createStore(blockingStore, 1, 0);
+        store.set(1, "message1");
+        store.incrNextSenderMsgSeqNum();
+        assertTrue(blockingStore.writing.await(5, TimeUnit.SECONDS));
+        // queued while the writer is blocked writing the first message
+        store.set(2, "message2");
+        store.set(3, "message3");
+        store.incrNextSenderMsgSeqNum();
+        store.incrNextSenderMsgSeqNum();
+
+        final CountDownLatch reset = new CountDownLatch(1);
+        Thread resetThread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    store.reset();
+                    reset.countDown();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+        resetThread.start();
+        blockingStore.release.countDown();
+        assertTrue(reset.await(5, TimeUnit.SECONDS));
+        assertEquals(0, store.getUnwrittenCount());
+        assertEquals(1, store.getNextSenderMsgSeqNum());
+
+        store.set(4, "message4");
+        store.flush().get(5, TimeUnit.SECONDS);
+        List<String> messages = new ArrayList<String>();
+        store.get(1, 10, messages);
+        assertEquals(Arrays.asList("message4"), messages);
+        messages.clear();
+        blockingStore.get(1, 10, messages);
+        assertEquals(Arrays.asList("message4"), messages);
+        assertEquals(1, blockingStore.getNextSenderMsgSeqNum());
+    }
+
+    public void testFailure() throws Exception {
+        BlockingStore blockingStore = new BlockingStore();
+        blockingStore.release.countDown();
+        blockingStore.failure = new IOException("disk full");
+        WriteBehindMessageStore store = createStore(blockingStore, 1, 0);
+        store.set(1, "message1");
+        try {
+            store.flush().get(5, TimeUnit.SECONDS);
+            fail("expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertSame(blockingStore.failure, e.getCause());
+        }
+        try {
+            store.set(2, "message2");
+            fail("expected IOException");
+        } catch (IOException e) {
+            assertSame(blockingStore.failure, e.getCause());
+        }
+        // still available for resends
+        List<String> messages = new ArrayList<String>();
+        store.get(1, 1, messages);
+        assertEquals(Arrays.asList("message1"), messages);
+    }
+
+    private WriteBehindMessageStore createStore(MessageStore store, int batchSize,
+            long maxDelayMillis) throws IOException {
+        WriteBehindMessageStore writeBehindStore = new WriteBehindMessageStore(getSessionID(),
+                store, batchSize, maxDelayMillis, 1000);
+        createdStores.add(writeBehindStore);
+        return writeBehindStore;
+    }
+
+    private static class BlockingStore extends MemoryStore {
+        private final CountDownLatch writing = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private volatile IOException failure;
+        private volatile int batches;
+        private volatile int singles;
+
+        BlockingStore() throws IOException {
+        }
+
+        @Override
+        public boolean set(int sequence, String message) throws IOException {
+            await();
+            singles++;
+            return super.set(sequence, message);
+        }
+
+        @Override
+        public boolean set(int startSequence, List<String> messages) throws IOException {
+            await();
+            batches++;
+            int sequence = startSequence;
+            for (String message : messages) {
+                super.set(sequence++, message);
+            }
+            return true;
+        }
+
+        private void await() throws IOException {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e.toString());
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix.mina;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import quickfix.Message;
+import quickfix.Session;
+
+public class RingBufferEventHandlingStrategyTest extends TestCase {
+
+    public void testCapacity() throws Exception {
+        assertEquals(1, new RingBufferEventHandlingStrategy(null, 1,
+                RingBufferEventHandlingStrategy.WaitStrategy.BLOCK).getCapacity());
+        assertEquals(1024, new RingBufferEventHandlingStrategy(null, 1000,
+                RingBufferEventHandlingStrategy.WaitStrategy.BLOCK).getCapacity());
+        assertEquals(1024, new RingBufferEventHandlingStrategy(null, 1024,
+                RingBufferEventHandlingStrategy.WaitStrategy.BLOCK).getCapacity());
+        try {
+            new RingBufferEventHandlingStrategy(null, 0,
+                    RingBufferEventHandlingStrategy.WaitStrategy.BLOCK);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testQueueSize() throws Exception {
+        List<RecordingMessage> processed = new ArrayList<RecordingMessage>();
+        RingBufferEventHandlingStrategy strategy = new RecordingStrategy(processed, 4,
+                RingBufferEventHandlingStrategy.WaitStrategy.BLOCK);
+        strategy.onMessage(null, new RecordingMessage(0, 0));
+        strategy.onMessage(null, new RecordingMessage(0, 1));
+        assertEquals(2, strategy.getQueueSize());
+
+        strategy.processMessages();
+        assertEquals(0, strategy.getQueueSize());
+        assertEquals(2, processed.size());
+    }
+
+    public void testBusySpin() throws Exception {
+        assertOrderedDelivery(RingBufferEventHandlingStrategy.WaitStrategy.BUSY_SPIN);
+    }
+
+    public void testYield() throws Exception {
+        assertOrderedDelivery(RingBufferEventHandlingStrategy.WaitStrategy.YIELD);
+    }
+
+    public void testPark() throws Exception {
+        assertOrderedDelivery(RingBufferEventHandlingStrategy.WaitStrategy.PARK);
+    }
+
+    public void testBlock() throws Exception {
+        assertOrderedDelivery(RingBufferEventHandlingStrategy.WaitStrategy.BLOCK);
+    }
+
+    /**
+     * Several producers add messages through a small ring, so that they
+     * regularly wait for the processing thread. Each producer's messages must
+     * be processed exactly once and in the order they were added.
+     */
+    private void assertOrderedDelivery(RingBufferEventHandlingStrategy.WaitStrategy waitStrategy)
+            throws Exception {
+        final int producerCount = 4;
+        final int messageCount = 10000;
+        final List<RecordingMessage> processed = new ArrayList<RecordingMessage>();
+        final RingBufferEventHandlingStrategy strategy = new RecordingStrategy(processed, 16,
+                waitStrategy);
+
+        Thread[] producers = new Thread[producerCount];
+        for (int i = 0; i < producerCount; i++) {
+            final int producer = i;
+            producers[i] = new Thread("producer-" + i) {
+                @Override
+                public void run() {
+                    for (int sequence = 0; sequence < messageCount; sequence++) {
+                        strategy.onMessage(null, new RecordingMessage(producer, sequence));
+                    }
+                }
+            };
+            producers[i].start();
+        }
+
+        long deadline = System.currentTimeMillis() + 30000L;
+        while (processed.size() < producerCount * messageCount
+                && System.currentTimeMillis() < deadline) {
+            strategy.processMessages();
+        }
+        for (Thread producer : producers) {
+            producer.join(1000L);
+        }
+
+        assertEquals(producerCount * messageCount, processed.size());
+        assertEquals(0, strategy.getQueueSize());
+        int[] nextSequence = new int[producerCount];
+        for (RecordingMessage message : processed) {
+            assertEquals(nextSequence[message.producer]++, message.sequence);
+        }
+    }
+
+    private static class RecordingStrategy extends RingBufferEventHandlingStrategy {
+        private final List<RecordingMessage> processed;
+
+        RecordingStrategy(List<RecordingMessage> processed, int capacity, WaitStrategy waitStrategy) {
+            super(null, capacity, waitStrategy);
+            this.processed = processed;
+        }
+
+        @Override
+        void processMessage(Session quickfixSession, Message message) {
+            processed.add((RecordingMessage) message);
+        }
+    }
+
+    private static class RecordingMessage extends Message {
+        private final int producer;
+        private final int sequence;
+
+        RecordingMessage(int producer, int sequence) {
+            this.producer = producer;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -173,6 +173,107 @@ public class SessionConnectorTest extends TestCase {
         assertEquals(0, connector.getManagedSessions().size());
     }
 
+    public void testEventWaitStrategy() throws Exception {
+        SessionID sessionID = new SessionID(FixVersions.BEGINSTRING_FIX40, "TW", "ISLD");
+        SessionSettings settings = setUpSessionSettings(sessionID);
+        DefaultSessionFactory sessionFactory = new DefaultSessionFactory(new UnitTestApplication(),
+                new MemoryStoreFactory(), new ScreenLogFactory(true, true, true));
+        SessionConnector connector = new SessionConnectorUnderTest(settings, sessionFactory);
+
+        SingleThreadedEventHandlingStrategy strategy = connector
+                .createSingleThreadedEventHandlingStrategy(100);
+        assertFalse(strategy instanceof RingBufferEventHandlingStrategy);
+
+        settings.setString(SessionConnector.SETTING_EVENT_WAIT_STRATEGY, "park");
+        strategy = connector.createSingleThreadedEventHandlingStrategy(100);
+        assertTrue(strategy instanceof RingBufferEventHandlingStrategy);
+        RingBufferEventHandlingStrategy ringBuffer = (RingBufferEventHandlingStrategy) strategy;
+        assertEquals(RingBufferEventHandlingStrategy.WaitStrategy.PARK, ringBuffer.getWaitStrategy());
+        assertEquals(128, ringBuffer.getCapacity());
+
+        settings.setString(SessionConnector.SETTING_EVENT_WAIT_STRATEGY, "SLEEP");
+        try {
+            connector.createSingleThreadedEventHandlingStrategy(100);
+            fail("expected ConfigError");
+        } catch (ConfigError e) {
+            // expected
+        }
+    }
+
+    public void testEventWorkerThreads() throws Exception {
+        SessionID sessionID = new SessionID(FixVersions.BEGINSTRING_FIX40, "TW", "ISLD");
+        SessionSettings settings = setUpSessionSettings(sessionID);
+        DefaultSessionFactory sessionFactory = new DefaultSessionFactory(new UnitTestApplication(),
+                new MemoryStoreFactory(), new ScreenLogFactory(true, true, true));
+        SessionConnector connector = new SessionConnectorUnderTest(settings, sessionFactory);
+
+        assertEquals(Runtime.getRuntime().availableProcessors(), connector
+                .createWorkerPoolEventHandlingStrategy(100).getWorkerCount());
+
+        settings.setLong(SessionConnector.SETTING_EVENT_WORKER_THREADS, 3);
+        assertEquals(3, connector.createWorkerPoolEventHandlingStrategy(100).getWorkerCount());
+
+        settings.setLong(SessionConnector.SETTING_EVENT_WORKER_THREADS, 0);
+        try {
+            connector.createWorkerPoolEventHandlingStrategy(100);
+            fail("expected ConfigError");
+        } catch (ConfigError e) {
+            // expected
+        }
+    }
+
+    public void testUseVirtualThreads() throws Exception {
+        SessionID sessionID = new SessionID(FixVersions.BEGINSTRING_FIX40, "TW", "ISLD");
+        SessionSettings settings = setUpSessionSettings(sessionID);
+        DefaultSessionFactory sessionFactory = new DefaultSessionFactory(new UnitTestApplication(),
+                new MemoryStoreFactory(), new ScreenLogFactory(true, true, true));
+        SessionConnector connector = new SessionConnectorUnderTest(settings, sessionFactory);
+
+        assertFalse(connector.createThreadPerSessionEventHandlingStrategy(100)
+                .isUsingVirtualThreads());
+
+        settings.setBool(SessionConnector.SETTING_USE_VIRTUAL_THREADS, true);
+        assertEquals(VirtualThreads.isSupported(), connector
+                .createThreadPerSessionEventHandlingStrategy(100).isUsingVirtualThreads());
+
+        settings.setString(SessionConnector.SETTING_USE_VIRTUAL_THREADS, "maybe");
+        try {
+            connector.createThreadPerSessionEventHandlingStrategy(100);
+            fail("expected ConfigError");
+        } catch (ConfigError e) {
+            // expected
+        }
+    }
+
+    public void testSessionTimerWheel() throws Exception {
+        SessionID sessionID = new SessionID(FixVersions.BEGINSTRING_FIX40, "TW", "ISLD");
+        SessionSettings settings = setUpSessionSettings(sessionID);
+        DefaultSessionFactory sessionFactory = new DefaultSessionFactory(new UnitTestApplication(),
+                new MemoryStoreFactory(), new ScreenLogFactory(true, true, true));
+
+        settings.setBool(SessionConnector.SETTING_SESSION_TIMER_WHEEL, true);
+        SessionConnector connector = new SessionConnectorUnderTest(settings, sessionFactory);
+        connector.setSessions(new HashMap<SessionID, Session>());
+        Session session = connector.createSession(sessionID);
+        connector.startSessionTimer();
+        try {
+            connector.addDynamicSession(session);
+            assertEquals(1, connector.getManagedSessions().size());
+            connector.removeDynamicSession(sessionID);
+            assertEquals(0, connector.getManagedSessions().size());
+        } finally {
+            connector.stopSessionTimer();
+        }
+
+        settings.setString(SessionConnector.SETTING_SESSION_TIMER_WHEEL, "maybe");
+        try {
+            new SessionConnectorUnderTest(settings, sessionFactory);
+            fail("expected ConfigError");
+        } catch (ConfigError e) {
+            // expected
+        }
+    }
+
     private SessionSettings setUpSessionSettings(SessionID sessionID) {
         SessionSettings settings = new SessionSettings();
         settings.setString(Session.SETTING_USE_DATA_DICTIONARY, "N");
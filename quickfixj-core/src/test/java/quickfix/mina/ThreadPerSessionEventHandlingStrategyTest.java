@@ -25,11 +25,17 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
 import static org.mockito.Mockito.mock;
 
+import java.lang.reflect.Method;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -272,6 +278,92 @@ public class ThreadPerSessionEventHandlingStrategyTest {
         strategy.getDispatcher(sessionID).run();
     }
 
+    @Test
+    public void testVirtualThreadsFallBackToPlatformThreads() throws Exception {
+        final ThreadPerSessionEventHandlingStrategy strategy = new ThreadPerSessionEventHandlingStrategy(
+                null, SessionConnector.DEFAULT_QUEUE_CAPACITY, true);
+        assertEquals(VirtualThreads.isSupported(), strategy.isUsingVirtualThreads());
+        assertFalse(new ThreadPerSessionEventHandlingStrategy(null,
+                SessionConnector.DEFAULT_QUEUE_CAPACITY).isUsingVirtualThreads());
+    }
+
+    /**
+     * Dispatches messages for 10,000 concurrent sessions, each with its own
+     * virtual thread blocked waiting for messages. Only runs on JVMs with
+     * virtual threads, which the mocking library does not support, so the
+     * sessions are real.
+     */
+    @Test
+    public void testVirtualThreadsForManySessions() throws Exception {
+        assumeTrue(VirtualThreads.isSupported());
+        final int sessionCount = 10000;
+        final CountDownLatch received = new CountDownLatch(sessionCount);
+        final Set<Thread> dispatchingThreads = Collections
+                .newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+        final ThreadPerSessionEventHandlingStrategy strategy = new ThreadPerSessionEventHandlingStrategy(
+                null, SessionConnector.DEFAULT_QUEUE_CAPACITY, true) {
+            @Override
+            protected Message getNextMessage(BlockingQueue<Message> messages)
+                    throws InterruptedException {
+                final Message message = super.getNextMessage(messages);
+                if (message != null) {
+                    dispatchingThreads.add(Thread.currentThread());
+                    received.countDown();
+                }
+                // only the dispatching is tested
+                return null;
+            }
+        };
+        assertTrue(strategy.isUsingVirtualThreads());
+
+        final DefaultSessionFactory sessionFactory = new DefaultSessionFactory(
+                new UnitTestApplication(), new MemoryStoreFactory(), new ScreenLogFactory(false,
+                        false, false));
+        final SessionSettings settings = new SessionSettings();
+        settings.setString(SessionFactory.SETTING_CONNECTION_TYPE,
+                SessionFactory.ACCEPTOR_CONNECTION_TYPE);
+        settings.setString(Session.SETTING_USE_DATA_DICTIONARY, "N");
+        settings.setString(Session.SETTING_START_TIME, "00:00:00");
+        settings.setString(Session.SETTING_END_TIME, "00:00:00");
+        final Responder responder = new Responder() {
+            public boolean send(String data) {
+                return true;
+            }
+
+            public void disconnect() {
+            }
+
+            public String getRemoteAddress() {
+                return null;
+            }
+        };
+        final SessionID[] sessionIDs = new SessionID[sessionCount];
+        final Session[] sessions = new Session[sessionCount];
+        for (int i = 0; i < sessionCount; i++) {
+            sessionIDs[i] = new SessionID(FixVersions.BEGINSTRING_FIX44, "ISLD", "TW" + i);
+            sessions[i] = sessionFactory.create(sessionIDs[i], settings);
+            sessions[i].setResponder(responder);
+        }
+        final Method isVirtual = Thread.class.getMethod("isVirtual");
+        try {
+            for (final Session session : sessions) {
+                strategy.onMessage(session, new Message());
+            }
+            if (!received.await(30, TimeUnit.SECONDS)) {
+                fail("Timeout");
+            }
+            for (final SessionID sessionID : sessionIDs) {
+                assertThat(strategy.getDispatcher(sessionID), notNullValue());
+            }
+            assertEquals(sessionCount, dispatchingThreads.size());
+            for (final Thread thread : dispatchingThreads) {
+                assertTrue(thread.getName(), (Boolean) isVirtual.invoke(thread));
+            }
+        } finally {
+            strategy.stopDispatcherThreads();
+        }
+    }
+
     // verify the assumption that this always returns null
     @Test
     public void testVerifyGetConnectorAssumption() throws Exception {
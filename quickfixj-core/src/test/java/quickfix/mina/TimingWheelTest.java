@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix.mina;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class TimingWheelTest extends TestCase {
+    private static final long START = 1388577906000L;
+
+    private final TimingWheel<String> wheel = new TimingWheel<String>(1000L, START);
+    private final List<String> expired = new ArrayList<String>();
+
+    public void testExpiresAtDeadline() throws Exception {
+        TimingWheel.Timeout<String> timeout = new TimingWheel.Timeout<String>("A");
+        wheel.schedule(timeout, START + 2500L);
+        assertTrue(timeout.isScheduled());
+        assertEquals(1, wheel.size());
+
+        wheel.advance(START + 2999L, expired);
+        assertTrue(expired.isEmpty());
+        wheel.advance(START + 3000L, expired);
+        assertEquals("A", expired.get(0));
+        assertFalse(timeout.isScheduled());
+        assertEquals(0, wheel.size());
+    }
+
+    public void testPastDeadlineExpiresAtNextTick() throws Exception {
+        wheel.schedule(new TimingWheel.Timeout<String>("A"), START - 5000L);
+        wheel.advance(START + 999L, expired);
+        assertTrue(expired.isEmpty());
+        wheel.advance(START + 1000L, expired);
+        assertEquals(1, expired.size());
+    }
+
+    public void testCancelAndReschedule() throws Exception {
+        TimingWheel.Timeout<String> a = new TimingWheel.Timeout<String>("A");
+        TimingWheel.Timeout<String> b = new TimingWheel.Timeout<String>("B");
+        wheel.schedule(a, START + 5000L);
+        wheel.schedule(b, START + 5000L);
+        wheel.cancel(a);
+        wheel.cancel(a);
+        wheel.schedule(b, START + 200000L);
+        assertEquals(1, wheel.size());
+
+        wheel.advance(START + 100000L, expired);
+        assertTrue(expired.isEmpty());
+        wheel.advance(START + 200000L, expired);
+        assertEquals(1, expired.size());
+        assertEquals("B", expired.get(0));
+    }
+
+    public void testBeyondSpan() throws Exception {
+        // further away than the 64^4 ticks the wheel spans
+        long deadline = START + 20000000L * 1000L;
+        wheel.schedule(new TimingWheel.Timeout<String>("A"), deadline);
+        wheel.advance(deadline - 1000L, expired);
+        assertTrue(expired.isEmpty());
+        wheel.advance(deadline, expired);
+        assertEquals(1, expired.size());
+    }
+
+    /**
+     * Compares the wheel with the deadlines of many random timeouts, checked
+     * while advancing in irregular steps across all levels.
+     */
+    public void testRandomDeadlines() throws Exception {
+        Random random = new Random(42);
+        int count = 2000;
+        long[] deadlines = new long[count];
+        boolean[] fired = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            long range = random.nextBoolean() ? 100000L : 30000000L;
+            deadlines[i] = START + (long) (random.nextDouble() * range);
+            wheel.schedule(new TimingWheel.Timeout<String>(Integer.toString(i)), deadlines[i]);
+        }
+        long now = START;
+        while (wheel.size() > 0) {
+            now += 1 + random.nextInt(random.nextBoolean() ? 3000 : 300000);
+            expired.clear();
+            wheel.advance(now, expired);
+            for (String item : expired) {
+                int i = Integer.parseInt(item);
+                assertFalse(fired[i]);
+                fired[i] = true;
+                assertTrue("expired early", deadlines[i] <= now);
+                // not later than the first tick at or after the deadline
+                assertTrue("expired late", now - deadlines[i] < 1000L + 300000L);
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            assertTrue(fired[i]);
+        }
+    }
+
+    public void testExpiresOnFirstTickAfterDeadline() throws Exception {
+        Random random = new Random(7);
+        for (int i = 0; i < 500; i++) {
+            long deadline = START + 1 + (long) (random.nextDouble() * 10000000L);
+            TimingWheel<String> w = new TimingWheel<String>(1000L, START);
+            w.schedule(new TimingWheel.Timeout<String>("A"), deadline);
+            long firstTick = (deadline + 999L) / 1000L * 1000L;
+            w.advance(firstTick - 1, expired);
+            assertTrue(expired.isEmpty());
+            w.advance(firstTick, expired);
+            assertEquals(1, expired.size());
+            expired.clear();
+        }
+    }
+}
@@ -0,0 +1,298 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix.mina;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.stub;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+import quickfix.FixVersions;
+import quickfix.Message;
+import quickfix.Session;
+import quickfix.SessionID;
+
+public class WorkerPoolEventHandlingStrategyTest extends TestCase {
+    private RecordingStrategy strategy;
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (strategy != null) {
+            strategy.release.countDown();
+            strategy.stopWorkerThreads();
+        }
+        super.tearDown();
+    }
+
+    public void testInvalidWorkerCount() throws Exception {
+        try {
+            new WorkerPoolEventHandlingStrategy(null, 10, 0);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Several I/O threads add messages for many sessions. The messages of each
+     * session must be processed in order and never by two workers at once.
+     */
+    public void testOrderingPerSession() throws Exception {
+        final int producerCount = 4;
+        final int sessionCount = 40;
+        final int messageCount = 500;
+        strategy = new RecordingStrategy(4);
+        strategy.startWorkerThreads();
+
+        final Session[] sessions = new Session[sessionCount];
+        for (int i = 0; i < sessionCount; i++) {
+            sessions[i] = createSession("S" + i);
+        }
+
+        Thread[] producers = new Thread[producerCount];
+        for (int i = 0; i < producerCount; i++) {
+            final int producer = i;
+            producers[i] = new Thread("producer-" + i) {
+                @Override
+                public void run() {
+                    for (int sequence = 0; sequence < messageCount; sequence++) {
+                        for (int s = producer; s < sessionCount; s += producerCount) {
+                            strategy.onMessage(sessions[s], new SequencedMessage(sequence));
+                        }
+                    }
+                }
+            };
+            producers[i].start();
+        }
+        for (Thread producer : producers) {
+            producer.join(30000L);
+        }
+
+        assertTrue(strategy.awaitProcessed(sessionCount * messageCount, 30000L));
+        assertEquals(0, strategy.getQueueSize());
+        assertFalse(strategy.concurrentProcessing);
+        for (Session session : sessions) {
+            List<Integer> sequences = strategy.getProcessed(session.getSessionID());
+            assertEquals(messageCount, sequences.size());
+            for (int i = 0; i < messageCount; i++) {
+                assertEquals(i, sequences.get(i).intValue());
+            }
+        }
+    }
+
+    /**
+     * Sessions that become ready while their worker is stuck on a slow session
+     * are moved to the other worker once enough sessions are waiting.
+     */
+    public void testRebalancing() throws Exception {
+        strategy = new RecordingStrategy(2);
+        strategy.startWorkerThreads();
+
+        // idle sessions are assigned to the workers in turn
+        final Session slowSession = createSession("SLOW");
+        final int sessionCount = 20;
+        final Session[] sessions = new Session[sessionCount];
+        strategy.onMessage(slowSession, new SequencedMessage(0));
+        assertTrue(strategy.awaitProcessed(1, 5000L));
+        for (int i = 0; i < sessionCount; i++) {
+            sessions[i] = createSession("S" + i);
+            strategy.onMessage(sessions[i], new SequencedMessage(0));
+            assertTrue(strategy.awaitProcessed(i + 2, 5000L));
+        }
+        assertEquals(0, strategy.getWorkerIndex(slowSession.getSessionID()));
+
+        strategy.blockedSession = slowSession.getSessionID();
+        strategy.onMessage(slowSession, new SequencedMessage(1));
+        assertTrue(strategy.blocking.await(5, TimeUnit.SECONDS));
+        List<Session> sessionsOnWorker0 = new ArrayList<Session>();
+        for (Session session : sessions) {
+            if (strategy.getWorkerIndex(session.getSessionID()) == 0) {
+                strategy.onMessage(session, new SequencedMessage(1));
+                sessionsOnWorker0.add(session);
+            }
+        }
+        assertEquals(sessionCount / 2, sessionsOnWorker0.size());
+
+        // only REBALANCE_QUEUE_DEPTH sessions remain waiting for the stuck worker
+        int moved = sessionsOnWorker0.size() - WorkerPoolEventHandlingStrategy.REBALANCE_QUEUE_DEPTH;
+        assertTrue(strategy.awaitProcessed(sessionCount + 1 + moved, 5000L));
+        int waiting = 0;
+        for (Session session : sessionsOnWorker0) {
+            if (strategy.getProcessed(session.getSessionID()).size() == 1) {
+                assertEquals(0, strategy.getWorkerIndex(session.getSessionID()));
+                waiting++;
+            } else {
+                assertEquals(1, strategy.getWorkerIndex(session.getSessionID()));
+            }
+        }
+        assertEquals(WorkerPoolEventHandlingStrategy.REBALANCE_QUEUE_DEPTH, waiting);
+
+        strategy.release.countDown();
+        assertTrue(strategy.awaitProcessed(2 * (sessionCount + 1) - sessionCount / 2, 5000L));
+        assertEquals(0, strategy.getQueueSize());
+    }
+
+    public void testMessagesQueuedUntilStarted() throws Exception {
+        strategy = new RecordingStrategy(2);
+        final Session session = createSession("S");
+        strategy.onMessage(session, new SequencedMessage(0));
+        strategy.onMessage(session, new SequencedMessage(1));
+        assertEquals(2, strategy.getQueueSize());
+
+        strategy.startWorkerThreads();
+        assertTrue(strategy.awaitProcessed(2, 5000L));
+        assertEquals(0, strategy.getQueueSize());
+
+        strategy.stopWorkerThreads();
+        strategy.onMessage(session, new SequencedMessage(2));
+        Thread.sleep(100);
+        assertEquals(1, strategy.getQueueSize());
+
+        strategy.startWorkerThreads();
+        assertTrue(strategy.awaitProcessed(3, 5000L));
+    }
+
+    /**
+     * The queue of a session is dropped once the session is disconnected and
+     * its messages are processed, and created again for the next message.
+     */
+    public void testQueueOfDisconnectedSessionIsRemoved() throws Exception {
+        strategy = new RecordingStrategy(2);
+        strategy.startWorkerThreads();
+        final Session session = createSession("S", false);
+        strategy.onMessage(session, new SequencedMessage(0));
+        strategy.onMessage(session, new SequencedMessage(1));
+        assertTrue(strategy.awaitProcessed(2, 5000L));
+        assertTrue(awaitRemoved(session.getSessionID(), 5000L));
+
+        strategy.onMessage(session, new SequencedMessage(2));
+        assertTrue(strategy.awaitProcessed(3, 5000L));
+        assertEquals(3, strategy.getProcessed(session.getSessionID()).size());
+        assertTrue(awaitRemoved(session.getSessionID(), 5000L));
+    }
+
+    public void testRemoveSession() throws Exception {
+        strategy = new RecordingStrategy(2);
+        final Session session = createSession("S");
+        strategy.onMessage(session, new SequencedMessage(0));
+        strategy.onMessage(session, new SequencedMessage(1));
+        assertEquals(2, strategy.getQueueSize());
+
+        strategy.removeSession(session.getSessionID());
+        assertEquals(0, strategy.getQueueSize());
+        assertEquals(-1, strategy.getWorkerIndex(session.getSessionID()));
+
+        strategy.startWorkerThreads();
+        strategy.onMessage(session, new SequencedMessage(2));
+        assertTrue(strategy.awaitProcessed(1, 5000L));
+        Thread.sleep(100);
+        assertEquals(Collections.singletonList(2), strategy.getProcessed(session.getSessionID()));
+    }
+
+    private boolean awaitRemoved(SessionID sessionID, long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (strategy.getWorkerIndex(sessionID) != -1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        return strategy.getWorkerIndex(sessionID) == -1;
+    }
+
+    private static Session createSession(String targetCompID) {
+        return createSession(targetCompID, true);
+    }
+
+    private static Session createSession(String targetCompID, boolean connected) {
+        Session session = mock(Session.class);
+        stub(session.getSessionID()).toReturn(
+                new SessionID(FixVersions.BEGINSTRING_FIX44, "SENDER", targetCompID));
+        stub(session.hasResponder()).toReturn(connected);
+        return session;
+    }
+
+    private static class SequencedMessage extends Message {
+        private final int sequence;
+
+        SequencedMessage(int sequence) {
+            this.sequence = sequence;
+        }
+    }
+
+    private static class RecordingStrategy extends WorkerPoolEventHandlingStrategy {
+        private final ConcurrentMap<SessionID, List<Integer>> processed = new ConcurrentHashMap<SessionID, List<Integer>>();
+        private final Map<SessionID, Boolean> inProgress = new ConcurrentHashMap<SessionID, Boolean>();
+        private final AtomicInteger processedCount = new AtomicInteger();
+        private final CountDownLatch blocking = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private volatile SessionID blockedSession;
+        private volatile boolean concurrentProcessing;
+
+        RecordingStrategy(int workerCount) {
+            super(null, SessionConnector.DEFAULT_QUEUE_CAPACITY, workerCount);
+        }
+
+        @Override
+        void processMessage(Session quickfixSession, Message message) {
+            final SessionID sessionID = quickfixSession.getSessionID();
+            if (inProgress.put(sessionID, Boolean.TRUE) != null) {
+                concurrentProcessing = true;
+            }
+            if (sessionID.equals(blockedSession)) {
+                blocking.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            getProcessed(sessionID).add(((SequencedMessage) message).sequence);
+            inProgress.remove(sessionID);
+            processedCount.incrementAndGet();
+        }
+
+        List<Integer> getProcessed(SessionID sessionID) {
+            List<Integer> sequences = processed.get(sessionID);
+            if (sequences == null) {
+                sequences = Collections.synchronizedList(new ArrayList<Integer>());
+                final List<Integer> existing = processed.putIfAbsent(sessionID, sequences);
+                if (existing != null) {
+                    sequences = existing;
+                }
+            }
+            return sequences;
+        }
+
+        boolean awaitProcessed(int count, long timeout) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeout;
+            while (processedCount.get() < count && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            return processedCount.get() >= count;
+        }
+    }
+}
@@ -48,6 +48,7 @@ import quickfix.DataDictionaryTest;
 import quickfix.FieldNotFound;
 import quickfix.InvalidMessage;
 import quickfix.Message;
+import quickfix.RawMessage;
 import quickfix.field.Headline;
 import quickfix.mina.CriticalProtocolCodecException;
 
@@ -164,6 +165,22 @@ public class FIXMessageDecoderTest {
         assertMessageFound(data);
     }
 
+    @Test
+    public void testRawMessage() throws Exception {
+        decoder = new FIXMessageDecoder(CharsetSupport.getCharset(), "\001", true);
+        String data = "8=FIX.4.2\0019=12\00135=X\001108=30\00110=049\001";
+        setUpBuffer(data + data);
+        assertEquals("wrong decoder result", MessageDecoderResult.OK, decoder.decode(null, buffer,
+                decoderOutput));
+        assertEquals("wrong message count", 2, decoderOutput.getMessageCount());
+        for (Object message : decoderOutput.messages) {
+            RawMessage rawMessage = (RawMessage) message;
+            assertEquals("incorrect msg framing", data, rawMessage.toString());
+            assertEquals(data.length(), rawMessage.getLength());
+            assertEquals("X", rawMessage.getStringField(35));
+        }
+    }
+
     @Test
     public void testSplitMessage() throws Exception {
         String data = "8=FIX.4.2\0019=12\00135=X\001108=30\00110=049\001";
@@ -243,6 +260,40 @@ public class FIXMessageDecoderTest {
         assertMessageFound(goodMessage, 3);
     }
 
+    @Test
+    public void testDirectBuffer() throws Exception {
+        buffer = IoBuffer.allocate(8192, true);
+        String goodMessage = "8=FIX.4.2\0019=12\00135=X\001108=30\00110=036\001";
+        setUpBuffer("!@#$%^&*()_+|8=FIX!" + goodMessage + goodMessage);
+        assertMessageFound(goodMessage, 2);
+    }
+
+    @Test
+    public void testIndexOfByte() throws Exception {
+        byte[] bytes = new byte[40];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) ('a' + i % 20);
+        }
+        IoBuffer[] buffers = new IoBuffer[] { IoBuffer.allocate(bytes.length, false),
+                IoBuffer.allocate(bytes.length, true),
+                IoBuffer.allocate(bytes.length, true).order(java.nio.ByteOrder.LITTLE_ENDIAN) };
+        for (IoBuffer in : buffers) {
+            in.put(bytes).flip();
+            for (int i = 0; i < bytes.length; i++) {
+                in.put(i, (byte) '8');
+                in.put(bytes.length - 1, (byte) '8');
+                assertEquals(i, FIXMessageDecoder.indexOf(in, 0, in.limit(), (byte) '8'));
+                assertEquals(bytes.length - 1, FIXMessageDecoder.indexOf(in, Math.min(i + 1,
+                        bytes.length - 1), in.limit(), (byte) '8'));
+                assertEquals(-1, FIXMessageDecoder.indexOf(in, 0, i, (byte) '8'));
+                // the bytes next to the searched byte do not match
+                assertEquals(-1, FIXMessageDecoder.indexOf(in, 0, in.limit(), (byte) '7'));
+                assertEquals(-1, FIXMessageDecoder.indexOf(in, 0, in.limit(), (byte) '9'));
+                in.put(i, bytes[i]);
+            }
+        }
+    }
+
     /**
      * QFJ-760
      */
@@ -360,6 +411,18 @@ public class FIXMessageDecoderTest {
         doTestMinaDemux(message);
     }
 
+    @Test
+    public void testMinaDemuxRawMessage() throws Exception {
+        ProtocolDecoder decoder = new FIXProtocolCodecFactory(true).getDecoder(null);
+        ProtocolDecoderOutputForTest output = new ProtocolDecoderOutputForTest();
+        String data = "8=FIX.4.2\0019=12\00135=X\001108=30\00110=036\001";
+        setUpBuffer(data);
+        decoder.decode(new IoSessionStub(), buffer, output);
+        assertEquals("wrong message count", 1, output.getMessageCount());
+        assertEquals(data, output.messages.get(0).toString());
+        assertTrue(output.messages.get(0) instanceof RawMessage);
+    }
+
     @Test
     public void testMinaDemuxFixt() throws Exception {
         String message = "8=FIXT.1.1\0019=12\00135=X\001108=30\00110=036\001";
@@ -96,6 +96,14 @@ public class FIXMessageEncoderTest extends TestCase {
         assertEquals("wrong encoding", new String(bytes, CharsetSupport.getCharset()), news.toString());
     }
 
+    public void testEncodingLargeMessage() throws Exception {
+        StringBuilder headline = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            headline.append("headline ");
+        }
+        doEncodingTest(headline.toString());
+    }
+
     public void testEncodingBadType() throws Exception {
         FIXMessageEncoder encoder = new FIXMessageEncoder();
         try {
@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix.mina.message;
+
+import junit.framework.TestCase;
+
+import org.apache.mina.core.buffer.IoBuffer;
+import org.quickfixj.CharsetSupport;
+
+import quickfix.Message;
+import quickfix.field.Headline;
+import quickfix.fix44.News;
+
+public class IoBufferPoolTest extends TestCase {
+
+    public void testAllocateSizeClasses() throws Exception {
+        IoBufferPool pool = new IoBufferPool(false);
+        IoBuffer buffer = pool.allocate(100);
+        assertEquals(128, buffer.capacity());
+        assertEquals(100, buffer.limit());
+        assertEquals(0, buffer.position());
+        assertFalse(buffer.isDirect());
+
+        assertEquals(64, pool.allocate(1).capacity());
+        assertEquals(65536, pool.allocate(65536).capacity());
+        assertEquals(65537, pool.allocate(65537).capacity());
+        assertEquals(4, pool.getMisses());
+        assertEquals(0, pool.getHits());
+    }
+
+    public void testReuse() throws Exception {
+        IoBufferPool pool = new IoBufferPool(true);
+        IoBuffer buffer = pool.allocate(1000);
+        assertTrue(buffer.isDirect());
+        buffer.putInt(42);
+        buffer.setAutoExpand(true);
+        pool.release(buffer);
+
+        IoBuffer reused = pool.allocate(600);
+        assertSame(buffer, reused);
+        assertEquals(0, reused.position());
+        assertEquals(600, reused.limit());
+        assertFalse(reused.isAutoExpand());
+        assertEquals(1, pool.getHits());
+        assertEquals(1, pool.getMisses());
+
+        // different size class
+        assertNotSame(buffer, pool.allocate(2000));
+    }
+
+    public void testDiscard() throws Exception {
+        IoBufferPool pool = new IoBufferPool(false);
+        pool.release(IoBuffer.allocate(100));
+        pool.release(IoBuffer.allocate(128, true));
+        pool.release(pool.allocate(128).duplicate());
+        pool.release(IoBuffer.allocate(131072));
+        assertEquals(4, pool.getDiscards());
+
+        // buffers of the right size are adopted, whoever allocated them
+        IoBuffer buffer = IoBuffer.allocate(256, false);
+        pool.release(buffer);
+        assertSame(buffer, pool.allocate(256));
+        assertEquals(4, pool.getDiscards());
+    }
+
+    public void testReleaseOnOtherThread() throws Exception {
+        final IoBufferPool pool = new IoBufferPool(false, 2, 10);
+        final IoBuffer[] buffers = new IoBuffer[3];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = pool.allocate(512);
+        }
+
+        Thread thread = new Thread() {
+            public void run() {
+                for (IoBuffer buffer : buffers) {
+                    pool.release(buffer);
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+
+        // only the oldest buffer is passed to the shared cache, the most
+        // recently released ones stay with the releasing thread
+        assertSame(buffers[0], pool.allocate(512));
+        assertNotSame(buffers[1], pool.allocate(512));
+        assertEquals(1, pool.getHits());
+    }
+
+    public void testSharedCacheFull() throws Exception {
+        IoBufferPool pool = new IoBufferPool(false, 1, 1);
+        pool.release(IoBuffer.allocate(64, false));
+        pool.release(IoBuffer.allocate(64, false));
+        assertEquals(0, pool.getDiscards());
+        pool.release(IoBuffer.allocate(64, false));
+        assertEquals(1, pool.getDiscards());
+    }
+
+    public void testEncoderUsesPool() throws Exception {
+        IoBufferPool pool = new IoBufferPool(false);
+        FIXMessageEncoder encoder = new FIXMessageEncoder(pool);
+        Message message = new News(new Headline("headline"));
+
+        ProtocolEncoderOutputForTest out = new ProtocolEncoderOutputForTest();
+        encoder.encode(null, message, out);
+        IoBuffer buffer = out.buffer;
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        assertEquals(message.toString(), new String(bytes, CharsetSupport.getCharset()));
+        pool.release(buffer);
+
+        encoder.encode(null, message, out);
+        assertSame(buffer, out.buffer);
+        assertEquals(1, pool.getHits());
+    }
+}